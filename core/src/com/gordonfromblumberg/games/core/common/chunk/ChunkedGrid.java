@@ -0,0 +1,251 @@
+package com.gordonfromblumberg.games.core.common.chunk;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Sparse grid of square chunks of {@link #CHUNK_SIZE} x {@link #CHUNK_SIZE} cells.
+ * Cell index keeps chunk coordinates in high bits and coordinates inside the chunk in low bits,
+ * so chunk of a cell, its local index and neighbours are computed with shifts only.
+ * <p>
+ * Chunks which have not been written are represented by the shared empty chunk, it must never be changed.
+ * A chunk is created on the first write via {@link #getForWrite(int)} and may be replaced by the empty one
+ * again with {@link #release(int)}. Optional settled chunk is the second shared placeholder,
+ * it replaces released chunks whose state doesn't change any more, see {@link #release(int, Object)}.
+ * Chunks may be created by several threads, a placeholder read by another thread at the same time
+ * has the same values as the created chunk, because the factory creates the chunk in the state of the placeholder.
+ */
+public class ChunkedGrid<C> {
+    public static final int CHUNK_SHIFT = 6;
+    public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    public static final int CHUNK_AREA = CHUNK_SIZE * CHUNK_SIZE;
+    private static final int COORD_MASK = CHUNK_SIZE - 1;
+    private static final int LOCAL_BITS = 2 * CHUNK_SHIFT;
+    private static final int LOCAL_MASK = CHUNK_AREA - 1;
+
+    private final int width, height;
+    private final int chunksX, chunksY;
+    /** Bits of chunk x in chunk key, chunk key is chunkY << chunkXBits | chunkX */
+    private final int chunkXBits;
+    private final int chunkXMask;
+    private final C empty;
+    private final C settled;
+    private final C[] chunks;
+    private final IntFunction<C> factory;
+    private int chunkCount;
+
+    /**
+     * @param factory Creates chunk with default values by its key
+     */
+    public ChunkedGrid(int width, int height, C empty, IntFunction<C[]> arrayFactory, IntFunction<C> factory) {
+        this(width, height, empty, null, arrayFactory, factory);
+    }
+
+    /**
+     * @param settled Placeholder of released chunks in the settled state, may be null
+     * @param factory Creates chunk by its key in the state of the placeholder which is replaced,
+     *                the placeholder is still returned by {@link #getChunk(int)} while the factory is invoked
+     */
+    public ChunkedGrid(int width, int height, C empty, C settled,
+                       IntFunction<C[]> arrayFactory, IntFunction<C> factory) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Grid size should be positive, but = " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.chunksX = (width + COORD_MASK) >>> CHUNK_SHIFT;
+        this.chunksY = (height + COORD_MASK) >>> CHUNK_SHIFT;
+        this.chunkXBits = 32 - Integer.numberOfLeadingZeros(chunksX - 1);
+        this.chunkXMask = (1 << chunkXBits) - 1;
+        final long indexBound = ((long) chunksY << chunkXBits) * CHUNK_AREA;
+        if (indexBound > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Grid " + width + "x" + height + " is too large for int cell index");
+        }
+        this.empty = empty;
+        this.settled = settled;
+        this.chunks = arrayFactory.apply(chunksY << chunkXBits);
+        this.factory = factory;
+        Arrays.fill(chunks, empty);
+    }
+
+    public int index(int x, int y) {
+        return (y >>> CHUNK_SHIFT) << (LOCAL_BITS + chunkXBits)
+                | (x >>> CHUNK_SHIFT) << LOCAL_BITS
+                | (y & COORD_MASK) << CHUNK_SHIFT
+                | x & COORD_MASK;
+    }
+
+    public int x(int index) {
+        return ((index >>> LOCAL_BITS) & chunkXMask) << CHUNK_SHIFT | index & COORD_MASK;
+    }
+
+    public int y(int index) {
+        return (index >>> (LOCAL_BITS + chunkXBits)) << CHUNK_SHIFT | (index >>> CHUNK_SHIFT) & COORD_MASK;
+    }
+
+    /**
+     * @return Index of the cell shifted by (dx, dy), -1 if it is out of the grid
+     */
+    public int neighbour(int index, int dx, int dy) {
+        final int x = x(index) + dx;
+        if (x < 0 || x >= width) {
+            return -1;
+        }
+        final int y = y(index) + dy;
+        if (y < 0 || y >= height) {
+            return -1;
+        }
+        final int localX = (index & COORD_MASK) + dx;
+        final int localY = ((index >>> CHUNK_SHIFT) & COORD_MASK) + dy;
+        if (((localX | localY) & ~COORD_MASK) == 0) {
+            return index + dx + (dy << CHUNK_SHIFT);
+        }
+        return index(x, y);
+    }
+
+    /**
+     * @return Index of the cell inside its chunk, local index of (x, y) is localY * CHUNK_SIZE + localX
+     */
+    public static int local(int index) {
+        return index & LOCAL_MASK;
+    }
+
+    public static int key(int index) {
+        return index >>> LOCAL_BITS;
+    }
+
+    /**
+     * @return Index of the first cell of the chunk
+     */
+    public static int firstIndex(int key) {
+        return key << LOCAL_BITS;
+    }
+
+    /**
+     * @return Chunk of the cell, a placeholder if it has not been created
+     */
+    public C get(int index) {
+        return chunks[index >>> LOCAL_BITS];
+    }
+
+    /**
+     * @return Chunk of the cell, it is created if it has not been yet
+     */
+    public C getForWrite(int index) {
+        final C chunk = chunks[index >>> LOCAL_BITS];
+        return !isPlaceholder(chunk) ? chunk : create(index >>> LOCAL_BITS);
+    }
+
+    public C getChunk(int key) {
+        return chunks[key];
+    }
+
+    public boolean isCreated(int key) {
+        return !isPlaceholder(chunks[key]);
+    }
+
+    /**
+     * @return true if the chunk is the empty or the settled placeholder
+     */
+    public boolean isPlaceholder(C chunk) {
+        return chunk == empty || chunk == settled;
+    }
+
+    /**
+     * Replaces the chunk by the empty one, caller is responsible for the chunk to have only default values
+     */
+    public void release(int key) {
+        release(key, empty);
+    }
+
+    /**
+     * Replaces the chunk by the placeholder, caller is responsible for the chunk to have values of the placeholder
+     */
+    public synchronized void release(int key, C placeholder) {
+        if (placeholder == null || !isPlaceholder(placeholder)) {
+            throw new IllegalArgumentException("Chunk can be released only to the empty or the settled placeholder");
+        }
+        if (!isPlaceholder(chunks[key])) {
+            --chunkCount;
+        }
+        chunks[key] = placeholder;
+    }
+
+    /**
+     * @return Upper bound of chunk keys, some keys below it may be out of the grid
+     */
+    public int getKeyBound() {
+        return chunks.length;
+    }
+
+    /**
+     * @return true if the key is a key of a chunk in the grid
+     */
+    public boolean isInGrid(int key) {
+        return (key & chunkXMask) < chunksX;
+    }
+
+    /**
+     * @return X of the bottom left cell of the chunk
+     */
+    public int getOriginX(int key) {
+        return (key & chunkXMask) << CHUNK_SHIFT;
+    }
+
+    /**
+     * @return Y of the bottom left cell of the chunk
+     */
+    public int getOriginY(int key) {
+        return (key >>> chunkXBits) << CHUNK_SHIFT;
+    }
+
+    /**
+     * @return Count of cells of the chunk along x which are in the grid
+     */
+    public int getChunkWidth(int key) {
+        return Math.min(CHUNK_SIZE, width - getOriginX(key));
+    }
+
+    /**
+     * @return Count of cells of the chunk along y which are in the grid
+     */
+    public int getChunkHeight(int key) {
+        return Math.min(CHUNK_SIZE, height - getOriginY(key));
+    }
+
+    /**
+     * @return Count of created chunks
+     */
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    public int getChunksX() {
+        return chunksX;
+    }
+
+    public int getChunksY() {
+        return chunksY;
+    }
+
+    public C getEmpty() {
+        return empty;
+    }
+
+    public C getSettled() {
+        return settled;
+    }
+
+    private synchronized C create(int key) {
+        C chunk = chunks[key];
+        if (isPlaceholder(chunk)) {
+            chunk = factory.apply(key);
+            if (isPlaceholder(chunk)) {
+                throw new IllegalStateException("Factory returned a placeholder for chunk " + key);
+            }
+            chunks[key] = chunk;
+            ++chunkCount;
+        }
+        return chunk;
+    }
+}
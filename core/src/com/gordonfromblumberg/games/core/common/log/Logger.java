@@ -37,7 +37,7 @@ public class Logger {
         LogEntry logEntry = LogEntry.getInstance();
         logEntry.level = level;
         logEntry.timestamp = System.currentTimeMillis();
-        logEntry.frameId = Gdx.graphics.getFrameId();
+        logEntry.frameId = Gdx.graphics != null ? Gdx.graphics.getFrameId() : 0; // null in headless mode
         logEntry.clazz = this.clazz;
         logEntry.message = message;
         if (!LogManager.queue.put(logEntry)) {
@@ -93,6 +93,9 @@ public class ConfigManager {
     }
 
     public int getIntegerPref(String propertyName) {
+        if (Gdx.app == null) // headless mode, no preferences
+            return getInteger(propertyName);
+
         Preferences prefs = Gdx.app.getPreferences(configPreference);
         int value = prefs.getInteger(propertyName, Integer.MAX_VALUE);
         if (value != Integer.MAX_VALUE)
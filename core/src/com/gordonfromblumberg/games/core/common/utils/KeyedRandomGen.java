@@ -0,0 +1,80 @@
+package com.gordonfromblumberg.games.core.common.utils;
+
+import java.util.Random;
+
+/**
+ * Counter-based generator: the draw is a pure function of the seed, the key set by
+ * {@link #setKey(int, int, int)} and the index of the draw since the key was set.
+ * Draws keyed by e.g. a cell and a turn do not depend on the order of updates and on threads.
+ * The generator itself is not thread-safe, every thread should have its own instance.
+ */
+public class KeyedRandomGen extends RandomGen {
+    private final CounterRandom counterRandom;
+
+    public KeyedRandomGen(long seed) {
+        this(new CounterRandom(seed));
+    }
+
+    private KeyedRandomGen(CounterRandom counterRandom) {
+        super(counterRandom);
+        this.counterRandom = counterRandom;
+    }
+
+    /**
+     * @param turn Turn of the draws
+     * @param index Index of the keyed object, e.g. of a cell
+     * @param domain Separates independent kinds of draws with the same turn and index
+     */
+    @Override
+    public void setKey(int turn, int index, int domain) {
+        counterRandom.setKey(turn, index, domain);
+    }
+
+    /**
+     * SplitMix64 sequence which starts from the hash of the seed and the key
+     */
+    private static class CounterRandom extends Random {
+        private static final long serialVersionUID = 1L;
+
+        private long base;
+        private long key;
+        private long counter;
+
+        CounterRandom(long seed) {
+            base = mix(seed);
+            key = base;
+        }
+
+        void setKey(int turn, int index, int domain) {
+            key = mix(base + GOLDEN_GAMMA * (((long) turn << 34) ^ ((long) domain << 32) ^ (index & 0xFFFFFFFFL)));
+            counter = 0;
+        }
+
+        @Override
+        public void setSeed(long seed) {
+            // invoked by the constructor of Random before fields are initialized
+            base = mix(seed);
+            key = base;
+            counter = 0;
+        }
+
+        @Override
+        protected int next(int bits) {
+            return (int) (nextLong() >>> (64 - bits));
+        }
+
+        @Override
+        public long nextLong() {
+            return mix(key + ++counter * GOLDEN_GAMMA);
+        }
+
+        /**
+         * Box-Muller transform without the cached second value, so the draw depends only on the key and the counter
+         */
+        @Override
+        public double nextGaussian() {
+            final double radius = Math.sqrt(-2 * Math.log(1 - nextDouble()));
+            return radius * Math.cos(2 * Math.PI * nextDouble());
+        }
+    }
+}
@@ -5,15 +5,87 @@ import com.badlogic.gdx.utils.Array;
 
 import java.util.Random;
 
+/**
+ * Random generator. {@link #INSTANCE} is the stream of the main thread, other threads should draw from their own
+ * streams: {@link #stream(long)} derives independent streams from the world seed, {@link #split()} from a generator.
+ * Code which may run in several threads draws from {@link #current()}, the stream assigned to the current thread.
+ */
 public class RandomGen {
+    static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
     public static final RandomGen INSTANCE = new RandomGen();
+    private static final ThreadLocal<RandomGen> current = ThreadLocal.withInitial(() -> INSTANCE);
+    private static long seed;
+
+    private final Random rand;
+
+    public RandomGen() {
+        rand = new RandomXS128();
+    }
 
-    private final Random rand = new RandomXS128();
+    public RandomGen(long seed) {
+        rand = new RandomXS128(seed);
+    }
+
+    protected RandomGen(Random rand) {
+        this.rand = rand;
+    }
 
     public static void setSeed(long seed) {
+        RandomGen.seed = seed;
         INSTANCE.rand.setSeed(seed);
     }
 
+    /**
+     * @return Stream assigned to the current thread by {@link #setCurrent(RandomGen)}, {@link #INSTANCE} by default
+     */
+    public static RandomGen current() {
+        return current.get();
+    }
+
+    /**
+     * Assigns the stream to the current thread, null restores {@link #INSTANCE}
+     */
+    public static void setCurrent(RandomGen rand) {
+        current.set(rand != null ? rand : INSTANCE);
+    }
+
+    /**
+     * @param index Index of the stream, e.g. of a tile of the world
+     * @return New generator which depends only on the seed and the index
+     */
+    public static RandomGen stream(long index) {
+        return new RandomGen(mix(seed + (index + 1) * GOLDEN_GAMMA));
+    }
+
+    /**
+     * @return Seed set by {@link #setSeed(long)}
+     */
+    public static long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Sets the key of the following draws, ordinary generators ignore it
+     * @see KeyedRandomGen
+     */
+    public void setKey(int turn, int index, int domain) {
+    }
+
+    /**
+     * @return New generator seeded from this one, its draws do not correlate with draws of this generator
+     */
+    public RandomGen split() {
+        return new RandomGen(mix(rand.nextLong()));
+    }
+
+    // finalizer of SplitMix64
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
     /**
      * @param to Upper bound (exclusive)
      * @return random int from [0; to)
@@ -68,6 +140,75 @@ public class RandomGen {
         return rand.nextFloat() < chance;
     }
 
+    /**
+     * @param chance Probability of success of a single trial
+     * @return Count of failed trials before the first success
+     */
+    public int nextGeometric(float chance) {
+        if (chance >= 1f) return 0;
+        if (chance <= 0f) return Integer.MAX_VALUE;
+        final double failures = Math.log(1.0 - rand.nextDouble()) / Math.log(1.0 - chance);
+        return failures < Integer.MAX_VALUE ? (int) failures : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Samples count of successes of n independent trials.
+     * Big samples use normal approximation
+     * @param chance Probability of success of a single trial
+     * @return Random int from [0; n]
+     */
+    public int nextBinomial(int n, float chance) {
+        final float mean = n * chance;
+        if (mean < 20f) {
+            int count = 0;
+            for (long i = nextGeometric(chance); i < n; i += 1L + nextGeometric(chance)) {
+                ++count;
+            }
+            return count;
+        }
+
+        final double deviation = Math.sqrt(mean * (1.0 - chance));
+        final long count = Math.round(mean + deviation * rand.nextGaussian());
+        return (int) Math.max(0, Math.min(n, count));
+    }
+
+    /**
+     * Fills [from; to) with random bytes, a single long gives 8 bytes
+     */
+    public void nextBytes(byte[] bytes, int from, int to) {
+        int i = from;
+        for (int n = to - 7; i < n; i += 8) {
+            long bits = rand.nextLong();
+            for (int j = 0; j < 8; ++j, bits >>>= 8) {
+                bytes[i + j] = (byte) bits;
+            }
+        }
+        if (i < to) {
+            long bits = rand.nextLong();
+            for (; i < to; ++i, bits >>>= 8) {
+                bytes[i] = (byte) bits;
+            }
+        }
+    }
+
+    /**
+     * Fills [from; to) with random ints from [0; bound)
+     */
+    public void nextInts(int[] ints, int from, int to, int bound) {
+        for (int i = from; i < to; ++i) {
+            ints[i] = rand.nextInt(bound);
+        }
+    }
+
+    /**
+     * Fills [from; to) with random floats from [0; 1)
+     */
+    public void nextFloats(float[] floats, int from, int to) {
+        for (int i = from; i < to; ++i) {
+            floats[i] = rand.nextFloat();
+        }
+    }
+
     public <T> T getRandomItem(Array<T> array) {
         return array.get(nextInt(array.size));
     }
@@ -35,7 +35,7 @@ public record ActionDef(
                                 byte max) implements DefaultParameterValue {
         @Override
         public byte get() {
-            return RandomGen.INSTANCE.nextByte(min, max);
+            return RandomGen.current().nextByte(min, max);
         }
     }
 }
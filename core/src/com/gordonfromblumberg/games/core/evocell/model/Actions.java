@@ -4,40 +4,64 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.utils.IntMap;
 import com.badlogic.gdx.utils.JsonReader;
 import com.badlogic.gdx.utils.JsonValue;
-import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.ObjectIntMap;
+import com.gordonfromblumberg.games.core.evocell.world.GameWorld;
 
 public final class Actions {
-    static final ObjectMap<String, ActionMapping> actionsMap = new ObjectMap<>();
+    static final int STOP = 0;
+    static final int NOTHING = 1;
+    static final int SET_ACTIVE_GENE = 2;
+    static final int MOVE = 3;
+    static final int ROTATE_LEFT = 4;
+    static final int ROTATE_RIGHT = 5;
+    static final int ROTATE = 6;
+    static final int INCREASE_PARAMETER = 7;
+    static final int DECREASE_PARAMETER = 8;
+    static final int PRODUCE_OFFSPRING = 9;
+    static final int PRODUCE_ORGANICS = 10;
+    static final int EAT_ORGANICS = 11;
+    static final int DIGEST_ORGANICS = 12;
+    static final int BITE = 13;
+    static final int SHARE_RESOURCE = 14;
+    static final int EAT_MINERALS = 15;
+    static final int CHEMOSYNTHESIS = 16;
+    static final int TRANSFORM_MINERALS_TO_ORGANICS = 17;
+    static final int TRANSFORM_ORGANICS_TO_MINERALS = 18;
+    static final int REGENERATE = 19;
+    static final int INCREASE_PARAMETER_EMBRYO = 20;
+    static final int DECREASE_PARAMETER_EMBRYO = 21;
+
+    // action name -> action id used by act
+    static final ObjectIntMap<String> actionIds = new ObjectIntMap<>();
+    // action tag -> index of the action counter
+    static final ObjectIntMap<String> tagIds = new ObjectIntMap<>();
     static final IntMap<ActionDef> actionDefs = new IntMap<>();
     static final IntMap<ActionDef> embryoActionDefs = new IntMap<>();
 
     static {
-        actionsMap.put("stop", (w, b, c, p) -> {});
-        actionsMap.put("nothing", (w, b, c, p) -> {});
-        actionsMap.put("setActiveGene", (w, b, c, p) -> b.setActiveGeneIndex(p));
-        actionsMap.put("move", (w, b, c, p) -> b.move(w.getGrid(), c));
-        actionsMap.put("rotateLeft", (w, b, c, p) -> b.rotateLeft(c));
-        actionsMap.put("rotateRight", (w, b, c, p) -> b.rotateRight(c));
-        actionsMap.put("rotate", (w, b, c, p) -> {
-            if (p > 0) b.rotateRight(c);
-            else b.rotateLeft(c);
-        });
-        actionsMap.put("increaseParameter", (w, b, c, p) -> b.increaseParameter(p, c));
-        actionsMap.put("decreaseParameter", (w, b, c, p) -> b.decreaseParameter(p, c));
-        actionsMap.put("produceOffspring", (w, b, c, p) -> b.produceOffspring(w, p, c));
-        actionsMap.put("produceOrganics", (w, b, c, p) -> b.produceOrganics(c));
-        actionsMap.put("eatOrganics", (w, b, c, p) -> b.eatOrganics(c));
-        actionsMap.put("digestOrganics", (w, b, c, p) -> b.digestOrganics(c));
-        actionsMap.put("bite", (w, b, c, p) -> b.bite(w.getGrid(), c));
-        actionsMap.put("shareResource", (w, b, c, p) -> b.shareResource(w.getGrid(), p, c));
-        actionsMap.put("eatMinerals", (w, b, c, p) -> b.eatMinerals(c));
-        actionsMap.put("chemosynthesis", (w, b, c, p) -> b.chemosynthesis(c));
-        actionsMap.put("transformMineralsToOrganics", (w, b, c, p) -> b.transformMineralsToOrganics(c));
-        actionsMap.put("transformOrganicsToMinerals", (w, b, c, p) -> b.transformOrganicsToMinerals(c));
-        actionsMap.put("regenerate", (w, b, c, p) -> b.regenerate(c));
+        actionIds.put("stop", STOP);
+        actionIds.put("nothing", NOTHING);
+        actionIds.put("setActiveGene", SET_ACTIVE_GENE);
+        actionIds.put("move", MOVE);
+        actionIds.put("rotateLeft", ROTATE_LEFT);
+        actionIds.put("rotateRight", ROTATE_RIGHT);
+        actionIds.put("rotate", ROTATE);
+        actionIds.put("increaseParameter", INCREASE_PARAMETER);
+        actionIds.put("decreaseParameter", DECREASE_PARAMETER);
+        actionIds.put("produceOffspring", PRODUCE_OFFSPRING);
+        actionIds.put("produceOrganics", PRODUCE_ORGANICS);
+        actionIds.put("eatOrganics", EAT_ORGANICS);
+        actionIds.put("digestOrganics", DIGEST_ORGANICS);
+        actionIds.put("bite", BITE);
+        actionIds.put("shareResource", SHARE_RESOURCE);
+        actionIds.put("eatMinerals", EAT_MINERALS);
+        actionIds.put("chemosynthesis", CHEMOSYNTHESIS);
+        actionIds.put("transformMineralsToOrganics", TRANSFORM_MINERALS_TO_ORGANICS);
+        actionIds.put("transformOrganicsToMinerals", TRANSFORM_ORGANICS_TO_MINERALS);
+        actionIds.put("regenerate", REGENERATE);
 
-        actionsMap.put("increaseParameterEmbryo", (w, b, c, p) -> b.increaseParameterEmbryo(p));
-        actionsMap.put("decreaseParameterEmbryo", (w, b, c, p) -> b.decreaseParameterEmbryo(p));
+        actionIds.put("increaseParameterEmbryo", INCREASE_PARAMETER_EMBRYO);
+        actionIds.put("decreaseParameterEmbryo", DECREASE_PARAMETER_EMBRYO);
 
         loadActionDefs();
         loadEmbryoActionDefs();
@@ -47,6 +71,46 @@ public final class Actions {
         throw new UnsupportedOperationException("Actions should not be instantiated");
     }
 
+    static void act(int action, GameWorld w, EvoBot b, int c, int p) {
+        switch (action) {
+            case STOP, NOTHING -> {}
+            case SET_ACTIVE_GENE -> b.setActiveGeneIndex(p);
+            case MOVE -> b.move(w, c);
+            case ROTATE_LEFT -> b.rotateLeft(c);
+            case ROTATE_RIGHT -> b.rotateRight(c);
+            case ROTATE -> {
+                if (p > 0) b.rotateRight(c);
+                else b.rotateLeft(c);
+            }
+            case INCREASE_PARAMETER -> b.increaseParameter(p, c);
+            case DECREASE_PARAMETER -> b.decreaseParameter(p, c);
+            case PRODUCE_OFFSPRING -> b.produceOffspring(w, p, c);
+            case PRODUCE_ORGANICS -> b.produceOrganics(c);
+            case EAT_ORGANICS -> b.eatOrganics(c);
+            case DIGEST_ORGANICS -> b.digestOrganics(c);
+            case BITE -> b.bite(w, c);
+            case SHARE_RESOURCE -> b.shareResource(w, p, c);
+            case EAT_MINERALS -> b.eatMinerals(c);
+            case CHEMOSYNTHESIS -> b.chemosynthesis(c);
+            case TRANSFORM_MINERALS_TO_ORGANICS -> b.transformMineralsToOrganics(c);
+            case TRANSFORM_ORGANICS_TO_MINERALS -> b.transformOrganicsToMinerals(c);
+            case REGENERATE -> b.regenerate(c);
+            case INCREASE_PARAMETER_EMBRYO -> b.increaseParameterEmbryo(p);
+            case DECREASE_PARAMETER_EMBRYO -> b.decreaseParameterEmbryo(p);
+            default -> throw new IllegalStateException("Unknown action " + action);
+        }
+    }
+
+    /**
+     * @return true if the action depends on the count of previously performed actions with the same tag
+     */
+    static boolean usesCounter(int action) {
+        return switch (action) {
+            case STOP, NOTHING, SET_ACTIVE_GENE, INCREASE_PARAMETER_EMBRYO, DECREASE_PARAMETER_EMBRYO -> false;
+            default -> true;
+        };
+    }
+
     private static void loadActionDefs() {
         final JsonReader jsonReader = new JsonReader();
         final JsonValue array = jsonReader.parse(Gdx.files.internal("model/actions.json"));
@@ -59,9 +123,10 @@ public final class Actions {
                                                 actionDesc.getString("description"),
                                                 tagValue == null ? actionDesc.getString("name") : tagValue.asString(),
                                                 parseParameters(actionDesc.get("parameters")));
-            if (actionDef.type() == ActionDef.Type.action && !actionsMap.containsKey(actionDef.name())) {
+            if (actionDef.type() == ActionDef.Type.action && !actionIds.containsKey(actionDef.name())) {
                 throw new IllegalStateException("Action " + actionDef.name() + " is not mapped");
             }
+            registerTag(actionDef.tag());
             ActionDef existing = actionDefs.put(code, actionDef);
             if (existing != null) {
                 throw new IllegalStateException("Duplicated action code " + code);
@@ -83,6 +148,7 @@ public final class Actions {
             String description = actionDesc.getString("description");
             JsonValue tagValue = actionDesc.get("tag");
             String tag = tagValue == null ? actionDesc.getString("name") : tagValue.asString();
+            registerTag(tag);
             ActionDef.ActionParameterDef[] parameters = parseParameters(actionDesc.get("parameters"));
             if (codeValue != null) {
                 byte code = codeValue.asByte();
@@ -103,6 +169,12 @@ public final class Actions {
         }
     }
 
+    private static void registerTag(String tag) {
+        if (!tagIds.containsKey(tag)) {
+            tagIds.put(tag, tagIds.size);
+        }
+    }
+
     private static ActionDef.ActionParameterDef[] parseParameters(JsonValue parameters) {
         if (parameters == null)
             return null;
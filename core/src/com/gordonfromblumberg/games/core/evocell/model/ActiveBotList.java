@@ -0,0 +1,54 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+import com.gordonfromblumberg.games.core.common.utils.RandomGen;
+
+/**
+ * Slots of bots which should be updated in the current turn, collected from {@link BotStore} before turn.
+ * Bots born during the turn get new slots and are not in the list,
+ * slots of bots removed during the turn are not reused until the end of turn, so {@link BotStore#get(int)}
+ * returns null for them.
+ */
+public class ActiveBotList {
+    private int[] slots = new int[1024];
+    private int size;
+
+    /**
+     * Collects slots of living bots placed on the grid in slot order
+     */
+    public void collect(BotStore store) {
+        if (slots.length < store.size) {
+            slots = new int[Math.max(store.size, slots.length * 2)];
+        }
+        final int[] slots = this.slots;
+        final Bot[] bots = store.bots;
+        int size = 0;
+        for (int slot = 0, n = store.size; slot < n; ++slot) {
+            final Bot bot = bots[slot];
+            if (bot != null && !bot.isDead && bot.cell >= 0) {
+                slots[size++] = slot;
+            }
+        }
+        this.size = size;
+    }
+
+    /**
+     * Fisher-Yates shuffle, so no bot has a constant advantage of being updated first
+     */
+    public void shuffle(RandomGen random) {
+        final int[] slots = this.slots;
+        for (int i = size - 1; i > 0; --i) {
+            final int j = random.nextInt(0, i);
+            final int tmp = slots[i];
+            slots[i] = slots[j];
+            slots[j] = tmp;
+        }
+    }
+
+    public int[] slots() {
+        return slots;
+    }
+
+    public int size() {
+        return size;
+    }
+}
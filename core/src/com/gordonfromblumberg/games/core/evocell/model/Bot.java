@@ -9,6 +9,8 @@ import com.gordonfromblumberg.games.core.common.utils.Poolable;
 import com.gordonfromblumberg.games.core.evocell.model.BotParameters.ParameterName;
 import com.gordonfromblumberg.games.core.evocell.world.GameWorld;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static com.gordonfromblumberg.games.core.common.utils.MathHelper.modPos;
 
 public abstract class Bot implements Poolable {
@@ -32,7 +34,7 @@ public abstract class Bot implements Poolable {
     static final int minAgeToReproduce = 15;
     static final int reproduceDelay = 7;
 
-    protected static int nextId = 1;
+    protected static final AtomicInteger nextId = new AtomicInteger(1);
 
     static {
         final ConfigManager configManager = AbstractFactory.getInstance().configManager();
@@ -51,64 +53,76 @@ public abstract class Bot implements Poolable {
         maxAge = configManager.getInteger("bot.maxAge");
     }
 
-    int id;
     int parentId;
     int lastTurnUpdated;
-    int hp;
-    int energy;
-    int organics;
-    int minerals;
-    int age;
-    int temperature;
-    int heat;
-    int water;
-    int generation;
     int turnsAfterReproduced;
     boolean isDead;
-    Cell cell;
-    Direction dir;
+    CellGrid grid;
+    int cell = -1;
+    BotStore store;
+    /** Index of the bot's columns in {@link #store} */
+    int slot = -1;
     Bot offspring;
-    final BotParameters parameters = new BotParameters();
+    final BotParameters parameters = new BotParameters(this);
+
+    /**
+     * Allocates columns of the bot in the store, should be invoked right after obtaining from pool
+     */
+    void attach(BotStore store) {
+        this.store = store;
+        this.slot = store.allocate(this);
+    }
 
     public void init() {
-        id = nextId++;
-        hp = maxHp;
+        store.setId(slot, nextId.getAndIncrement());
+        store.hp[slot] = maxHp;
     }
 
     public void update(GameWorld world) {
+        if (startUpdate(world)) {
+            _update(world);
+            finishUpdate(world);
+        }
+    }
+
+    /**
+     * Ages the bot and exchanges heat and light with its cell
+     * @return false if the bot was updated already at this turn or died
+     */
+    boolean startUpdate(GameWorld world) {
         if (lastTurnUpdated == world.getTurn())
-            return;
+            return false;
 
-        if (++age == maxAge) {
+        if (++store.age[slot] == maxAge) {
 //            log.debug("Cell #" + id + " dies from aging");
             die();
-            return;
+            return false;
         }
 
         ++turnsAfterReproduced;
 
-        if (hp < maxHp && energy > regenerateCost) {
-            ++hp;
-            energy -= regenerateCost;
+        if (store.hp[slot] < maxHp && store.energy[slot] > regenerateCost) {
+            ++store.hp[slot];
+            store.energy[slot] -= regenerateCost;
         }
 
-        if (minerals > organics) {
-            int organicsForDmg = (int) (organics * (1 + 0.5f * parameters.get(ParameterName.chemosynthesis)));
-            hp -= minerals / organicsForDmg;
+        if (store.minerals[slot] > store.organics[slot]) {
+            int organicsForDmg = (int) (store.organics[slot] * (1 + 0.5f * parameters.get(ParameterName.chemosynthesis)));
+            store.hp[slot] -= store.minerals[slot] / organicsForDmg;
         }
 
         int mass = mass();
-        int heatDiff = 2 * (cell.temperature - temperature);
+        int heatDiff = 2 * (grid.getTemperature(cell) - store.temperature[slot]);
         if (heatDiff != 0) {
             int thermalInsulation = Math.min(Math.abs(heatDiff) - 1, parameters.get(ParameterName.thermalInsulation));
             if (heatDiff < 0) heatDiff += thermalInsulation;
             else heatDiff -= thermalInsulation;
-            heat += heatDiff;
+            store.heat[slot] += heatDiff;
         }
-        int tempDiff = heat / mass;
-        temperature += tempDiff;
-        heat -= tempDiff * mass;
-        hp -= Math.abs(temperature - parameters.get(ParameterName.wishedTemperature)) / 3;
+        int tempDiff = store.heat[slot] / mass;
+        store.temperature[slot] += tempDiff;
+        store.heat[slot] -= tempDiff * mass;
+        store.hp[slot] -= Math.abs(store.temperature[slot] - parameters.get(ParameterName.wishedTemperature)) / 3;
 
 //        if (water == 0) {
 //            hp -= 2;
@@ -116,18 +130,23 @@ public abstract class Bot implements Poolable {
 //            --hp;
 //        }
 
-        if (hp <= 0) {
+        if (store.hp[slot] <= 0) {
             die();
-            return;
+            return false;
         }
 
         photosynthesize();
-        _update(world);
+        return true;
+    }
 
+    /**
+     * Spends energy of the bot after its own update and collects its statistic
+     */
+    void finishUpdate(GameWorld world) {
         checkHp();
         checkOrganics();
         int energyDiff = getEnergyConsumption();
-        energy -= energyDiff;
+        store.energy[slot] -= energyDiff;
         checkEnergy();
 
         lastTurnUpdated = world.getTurn();
@@ -138,82 +157,114 @@ public abstract class Bot implements Poolable {
 
     public void photosynthesize() {
         final int chlorophyll = parameters.get(ParameterName.chlorophyll);
-        final int sunLight = cell.sunLight;
+        final int sunLight = grid.getSunLight(cell);
         if (chlorophyll > 0 && sunLight >= 8 - chlorophyll) {
             int energyDiff = (int) (sunLight * (0.5f + 0.2f * chlorophyll));
-            if (energyDiff > 0 && minerals == 0 && cell.minerals == 0) {
+            if (energyDiff > 0 && store.minerals[slot] == 0 && grid.getMinerals(cell) == 0) {
                 energyDiff -= Math.max(1, energyDiff / 3);
             }
-            energy += energyDiff;
-
-            if (minerals > 0) {
-                --minerals;
-                ++organics;
-            } else if (cell.minerals > 0) {
-                --cell.minerals;
-                ++organics;
+            store.energy[slot] += energyDiff;
+
+            if (store.minerals[slot] > 0) {
+                --store.minerals[slot];
+                ++store.organics[slot];
+            } else if (grid.getMinerals(cell) > 0) {
+                grid.addMinerals(cell, -1);
+                ++store.organics[slot];
             }
         }
     }
 
     void produceOffspring(GameWorld world, int parameter, int counter) {
-        if (age < minAgeToReproduce || turnsAfterReproduced < reproduceDelay) return;
+        if (store.age[slot] < minAgeToReproduce || turnsAfterReproduced < reproduceDelay) return;
         changeEnergy(-offspringProducingCost);
         if (counter > 0) return;
 
-        Cell targetCell = findCellToProduceOffspring(world.getGrid());
-        if (targetCell != null) {
+        int targetCell = findCellToProduceOffspring(world.getGrid());
+        if (targetCell >= 0) {
             turnsAfterReproduced = 0;
-            Bot offspring = getOffspringInstance(parameter);
-            offspring.parentId = id;
-            offspring.setCell(targetCell);
 
-            int offspringEnergy = energy / 4;
+            int offspringEnergy = store.energy[slot] / 4;
             changeEnergy(-offspringEnergy);
-            offspring.setEnergy(offspringEnergy);
-
-            int offspringOrganics = organics / 4;
+            int offspringOrganics = store.organics[slot] / 4;
             changeOrganics(-offspringOrganics);
-            offspring.setOrganics(offspringOrganics);
-
-            int offspringMinerals = minerals / 4;
+            int offspringMinerals = store.minerals[slot] / 4;
             changeMinerals(-offspringMinerals);
-            offspring.setMinerals(offspringMinerals);
-
-            int offspringWater = water / 4;
+            int offspringWater = store.water[slot] / 4;
             changeWater(-offspringWater);
-            offspring.setWater(offspringWater);
 
-            offspring.setDir(Direction.random());
-            offspring.setTemperature(temperature);
+            if (world.isIntentMode()) {
+                world.intents().offspring(this, targetCell,
+                        offspringEnergy, offspringOrganics, offspringMinerals, offspringWater, parameter);
+            } else {
+                this.offspring = createOffspring(targetCell, parameter,
+                        offspringEnergy, offspringOrganics, offspringMinerals, offspringWater);
+            }
+        }
+    }
 
-            offspring.generation = generation + 1;
-            this.offspring = offspring;
+    Bot createOffspring(int targetCell, int parameter, int energy, int organics, int minerals, int water) {
+        Bot offspring = getOffspringInstance(parameter);
+        offspring.parentId = getId();
+        offspring.setCell(grid, targetCell);
+        offspring.setEnergy(energy);
+        offspring.setOrganics(organics);
+        offspring.setMinerals(minerals);
+        offspring.setWater(water);
+        offspring.setDir(Direction.random());
+        offspring.setTemperature(store.temperature[slot]);
+        offspring.setGeneration(store.generation[slot] + 1);
+        return offspring;
+    }
+
+    /**
+     * Initializes just produced offspring or removes it if it has not got enough resources to live
+     */
+    void settleOffspring(GameWorld world, Bot offspring) {
+        if (offspring.store.energy[offspring.slot] > 0 && offspring.store.organics[offspring.slot] > 0) {
+            initOffspring(world, offspring);
+            offspring.lastTurnUpdated = world.getTurn();
+            world.updateCellStatistic(offspring);
+        } else {
+            offspring.die();
+            offspring.remove();
         }
     }
 
+    /**
+     * Drops bot's resources to its cell. Dead bot still occupies the cell until {@link #remove()}
+     */
     void die() {
         if (!isDead) {
-            cell.energy += Math.max(energy, 0);
-            cell.organics += Math.max(organics, 0);
-            cell.minerals += Math.max(minerals, 0);
-            cell.bot = null;
+            grid.addEnergy(cell, Math.max(store.energy[slot], 0));
+            grid.addOrganics(cell, Math.max(store.organics[slot], 0));
+            grid.addMinerals(cell, Math.max(store.minerals[slot], 0));
             isDead = true;
         }
     }
 
+    /**
+     * Frees the cell and returns bot to pool
+     */
+    void remove() {
+        if (grid.getBot(cell) == this) {
+            grid.setBot(cell, null);
+        }
+        release();
+    }
+
     public void rotateLeft(int counter) {
         int cost = (1 + counter) * getRotateCost();
         changeEnergy(-cost);
         if (counter <= actionLimitPerTurn)
-            dir = dir.prev();
+            setDir(getDir().prev());
     }
 
     public void rotateRight(int counter) {
         int cost = (1 + counter) * getRotateCost();
         changeEnergy(-cost);
         if (counter <= actionLimitPerTurn)
-            dir = dir.next();
+            setDir(getDir().next());
     }
 
     protected int getRotateCost() {
@@ -221,13 +272,24 @@ public abstract class Bot implements Poolable {
         return (int) (rotateCost + mass() / grow);
     }
 
-    public void move(CellGrid grid, int counter) {
+    /**
+     * In intent mode bot moves at most once per turn, at the end of the turn
+     */
+    public void move(GameWorld world, int counter) {
         int cost = (counter + 1) * getMoveCost();
         changeEnergy(-cost);
-        if (counter <= actionLimitPerTurn && energy > 0) {
-            Cell target = getForwardCell(grid);
-            if (target != null && target.bot == null) {
-                setCell(target);
+        if (counter <= actionLimitPerTurn && store.energy[slot] > 0) {
+            final CellGrid grid = world.getGrid();
+            int target = getForwardCellIndex(grid);
+            if (target >= 0 && grid.getBot(target) == null) {
+                if (!world.isIntentMode()) {
+                    if (world.isLazyCells()) {
+                        grid.catchUpAround(target, world.getTurn());
+                    }
+                    setCell(grid, target);
+                } else if (counter == 0) {
+                    world.intents().move(this, target);
+                }
             }
         }
     }
@@ -237,42 +299,64 @@ public abstract class Bot implements Poolable {
         return (int) (moveCost + mass() / grow);
     }
 
+    /**
+     * @return Flyweight accessor to the bot's cell or null
+     */
     public Cell getCell() {
+        return cell >= 0 ? grid.getCell(cell) : null;
+    }
+
+    public int getCellIndex() {
         return cell;
     }
 
     public void setCell(Cell cell) {
-        if (cell.bot != null) {
+        setCell(cell.grid, cell.index);
+    }
+
+    public void setCell(CellGrid grid, int cell) {
+        if (grid.getBot(cell) != null) {
             throw new IllegalStateException("Cell must be empty");
         }
-        if (this.cell != null) {
-            this.cell.bot = null;
+        if (this.cell >= 0) {
+            this.grid.setBot(this.cell, null);
         }
+        this.grid = grid;
         this.cell = cell;
-        cell.bot = this;
+        grid.setBot(cell, this);
     }
 
     public Cell getForwardCell(CellGrid grid) {
-        return grid.getCell(cell, dir);
+        int index = getForwardCellIndex(grid);
+        return index >= 0 ? grid.getCell(index) : null;
+    }
+
+    /**
+     * @return Index of the cell in front of the bot or -1 if it is out of the grid
+     */
+    public int getForwardCellIndex(CellGrid grid) {
+        return grid.neighbour(cell, getDir());
     }
 
     public void eatOrganics(int counter) {
         int cost = 1 + 4 * counter;
         changeEnergy(-cost);
-        if (energy > 0 && counter < actionLimitPerTurn) {
-            int organicsToEat = Math.min(cell.getOrganics(), 3 + parameters.get(ParameterName.bigMouth) / 2);
-            int energyToAbsorb = Math.min(Math.min(cell.energy, organicsToEat), 5);
-            cell.changeOrganics(-organicsToEat);
-            cell.changeEnergy(-energyToAbsorb);
-            organics += organicsToEat;
-            energy += energyToAbsorb;
-            if (cell.minerals > 10) {
-                --cell.minerals;
-                ++minerals;
+        if (store.energy[slot] > 0 && counter < actionLimitPerTurn) {
+            final CellGrid grid = this.grid;
+            final int cell = this.cell;
+            int organicsToEat = Math.min(grid.getOrganics(cell), 3 + parameters.get(ParameterName.bigMouth) / 2);
+            int energyToAbsorb = Math.min(Math.min(grid.getEnergy(cell), organicsToEat), 5);
+            grid.changeOrganics(cell, -organicsToEat);
+            grid.changeEnergy(cell, -energyToAbsorb);
+            store.organics[slot] += organicsToEat;
+            store.energy[slot] += energyToAbsorb;
+            if (grid.getMinerals(cell) > 10) {
+                grid.addMinerals(cell, -1);
+                ++store.minerals[slot];
             }
-            if (cell.water > 10) {
-                --cell.water;
-                ++water;
+            if (grid.getWater(cell) > 10) {
+                grid.addWater(cell, -1);
+                ++store.water[slot];
             }
         }
     }
@@ -280,65 +364,63 @@ public abstract class Bot implements Poolable {
     public void produceOrganics(int counter) {
         int cost = 5 + 4 * counter;
         changeEnergy(-cost);
-        if (energy > 0 && counter < actionLimitPerTurn) {
-            int energyDiff = Math.min(energy, 25);
+        if (store.energy[slot] > 0 && counter < actionLimitPerTurn) {
+            int energyDiff = Math.min(store.energy[slot], 25);
             changeEnergy(-energyDiff);
-            organics += energyDiff / 25;
+            store.organics[slot] += energyDiff / 25;
         }
     }
 
     public void digestOrganics(int counter) {
         int cost = 1 + 5 * counter;
         changeEnergy(-cost);
-        if (energy > 0 && counter < actionLimitPerTurn && organics > 0) {
-            --organics;
-            energy += (int) (25 * (0.8f + 0.1f * parameters.get(ParameterName.organicsDigestion)));
-            heat += organics + counter * organics / 2;
+        if (store.energy[slot] > 0 && counter < actionLimitPerTurn && store.organics[slot] > 0) {
+            --store.organics[slot];
+            store.energy[slot] += (int) (25 * (0.8f + 0.1f * parameters.get(ParameterName.organicsDigestion)));
+            store.heat[slot] += store.organics[slot] + counter * store.organics[slot] / 2;
         }
     }
 
     public void transformMineralsToOrganics(int counter) {
         int cost = 3 + 7 * counter;
         changeEnergy(-cost);
-        if (energy > 0 && counter < actionLimitPerTurn && minerals > 0) {
-            --minerals;
-            ++organics;
+        if (store.energy[slot] > 0 && counter < actionLimitPerTurn && store.minerals[slot] > 0) {
+            --store.minerals[slot];
+            ++store.organics[slot];
         }
     }
 
-    public void bite(CellGrid grid, int counter) {
+    public void bite(GameWorld world, int counter) {
         int cost = 10 + 15 * counter;
         changeEnergy(-cost);
-        if (energy > 0 && counter < actionLimitPerTurn) {
-            Cell forwardCell = getForwardCell(grid);
-            if (forwardCell != null) {
-                Bot target = forwardCell.bot;
+        if (store.energy[slot] > 0 && counter < actionLimitPerTurn) {
+            final CellGrid grid = world.getGrid();
+            int forwardCell = getForwardCellIndex(grid);
+            if (forwardCell >= 0) {
+                Bot target = grid.getBot(forwardCell);
                 if (target != null) {
-                    int dmg = 5;
-                    float massRatio = ((float) mass()) / target.mass();
-                    if (massRatio > 1) {
-                        dmg += (int) ((massRatio - 1) / 0.3f);
-                    } else {
-                        dmg -= (int) ((1 - massRatio) / 0.2f);
+                    if (world.isIntentMode()) {
+                        world.intents().bite(this, forwardCell, mass(), getOrganicsToBite());
+                        return;
                     }
-                    dmg = MathUtils.clamp(dmg, 1, 15);
-                    target.hp -= dmg;
-                    int organicsDiff = Math.min(1 + organics / (20 - parameters.get(ParameterName.bigMouth)),
-                                                target.organics);
-                    target.organics -= organicsDiff;
-                    organics += organicsDiff;
-                    if (dmg > 3 && target.minerals > 10) {
-                        --target.minerals;
-                        ++minerals;
+
+                    int dmg = getBiteDamage(mass(), target);
+                    target.store.hp[target.slot] -= dmg;
+                    int organicsDiff = Math.min(getOrganicsToBite(), target.store.organics[target.slot]);
+                    target.store.organics[target.slot] -= organicsDiff;
+                    store.organics[slot] += organicsDiff;
+                    if (dmg > 3 && target.store.minerals[target.slot] > 10) {
+                        --target.store.minerals[target.slot];
+                        ++store.minerals[slot];
                     }
-                    if (dmg > 3 && target.water > 10) {
-                        --target.water;
-                        ++water;
+                    if (dmg > 3 && target.store.water[target.slot] > 10) {
+                        --target.store.water[target.slot];
+                        ++store.water[slot];
                     }
 
-                    if (target.hp <= 0 || target.organics <= 0) {
+                    if (target.store.hp[target.slot] <= 0 || target.store.organics[target.slot] <= 0) {
                         target.die();
-                        target.release();
+                        target.remove();
                         if (target == offspring) offspring = null;
                     }
                 }
@@ -346,23 +428,40 @@ public abstract class Bot implements Poolable {
         }
     }
 
+    static int getBiteDamage(int attackerMass, Bot target) {
+        int dmg = 5;
+        float massRatio = ((float) attackerMass) / target.mass();
+        if (massRatio > 1) {
+            dmg += (int) ((massRatio - 1) / 0.3f);
+        } else {
+            dmg -= (int) ((1 - massRatio) / 0.2f);
+        }
+        return MathUtils.clamp(dmg, 1, 15);
+    }
+
+    int getOrganicsToBite() {
+        return 1 + store.organics[slot] / (20 - parameters.get(ParameterName.bigMouth));
+    }
+
     public void eatMinerals(int counter) {
         int cost = 1 + 4 * counter;
         changeEnergy(-cost);
-        if (energy > 0 && counter < actionLimitPerTurn) {
-            int mineralsToEat = Math.min(cell.getMinerals(), 2 + parameters.get(ParameterName.bigMouth) / 2);
-            int energyToAbsorb = Math.min(Math.min(cell.energy, mineralsToEat), 5);
-            cell.changeMinerals(-mineralsToEat);
-            cell.changeEnergy(-energyToAbsorb);
-            minerals += mineralsToEat;
-            energy += energyToAbsorb;
-            if (cell.organics > 10) {
-                --cell.organics;
-                ++organics;
+        if (store.energy[slot] > 0 && counter < actionLimitPerTurn) {
+            final CellGrid grid = this.grid;
+            final int cell = this.cell;
+            int mineralsToEat = Math.min(grid.getMinerals(cell), 2 + parameters.get(ParameterName.bigMouth) / 2);
+            int energyToAbsorb = Math.min(Math.min(grid.getEnergy(cell), mineralsToEat), 5);
+            grid.changeMinerals(cell, -mineralsToEat);
+            grid.changeEnergy(cell, -energyToAbsorb);
+            store.minerals[slot] += mineralsToEat;
+            store.energy[slot] += energyToAbsorb;
+            if (grid.getOrganics(cell) > 10) {
+                grid.addOrganics(cell, -1);
+                ++store.organics[slot];
             }
-            if (cell.water > 10) {
-                --cell.water;
-                ++water;
+            if (grid.getWater(cell) > 10) {
+                grid.addWater(cell, -1);
+                ++store.water[slot];
             }
         }
     }
@@ -370,19 +469,19 @@ public abstract class Bot implements Poolable {
     public void chemosynthesis(int counter) {
         int cost = 1 + 5 * counter;
         changeEnergy(-cost);
-        if (energy > 0 && counter < actionLimitPerTurn && minerals > 0) {
-            --minerals;
-            energy += (int) (20 * (0.8f + 0.15f * parameters.get(ParameterName.chemosynthesis)));
-            heat += (organics + counter * organics / 2) / 2;
+        if (store.energy[slot] > 0 && counter < actionLimitPerTurn && store.minerals[slot] > 0) {
+            --store.minerals[slot];
+            store.energy[slot] += (int) (20 * (0.8f + 0.15f * parameters.get(ParameterName.chemosynthesis)));
+            store.heat[slot] += (store.organics[slot] + counter * store.organics[slot] / 2) / 2;
         }
     }
 
     public void transformOrganicsToMinerals(int counter) {
         int cost = 2 + 5 * counter;
         changeEnergy(-cost);
-        if (energy > 0 && counter < actionLimitPerTurn) {
-            --organics;
-            ++minerals;
+        if (store.energy[slot] > 0 && counter < actionLimitPerTurn) {
+            --store.organics[slot];
+            ++store.minerals[slot];
         }
     }
 
@@ -392,7 +491,7 @@ public abstract class Bot implements Poolable {
             return;
         int cost = parameters.getIncreaseCost(parameter) + increaseParameterCost;
         changeEnergy(-cost);
-        if (energy > 0 && counter < 1) {
+        if (store.energy[slot] > 0 && counter < 1) {
             parameters.increase(parameter);
         }
     }
@@ -403,7 +502,7 @@ public abstract class Bot implements Poolable {
             return;
         int cost = Math.max(1, parameters.getIncreaseCost(parameter) / 4);
         changeEnergy(-cost);
-        if (energy > 0) {
+        if (store.energy[slot] > 0) {
             parameters.increase(parameter);
         }
     }
@@ -414,7 +513,7 @@ public abstract class Bot implements Poolable {
             return;
         int cost = parameters.getDecreaseCost(parameter) + increaseParameterCost / 2;
         changeEnergy(-cost);
-        if (energy > 0 && counter < 1) {
+        if (store.energy[slot] > 0 && counter < 1) {
             parameters.decrease(parameter);
         }
     }
@@ -425,7 +524,7 @@ public abstract class Bot implements Poolable {
             return;
         int cost = Math.max(1, parameters.getDecreaseCost(parameter) / 4);
         changeEnergy(-cost);
-        if (energy > 0) {
+        if (store.energy[slot] > 0) {
             parameters.decrease(parameter);
         }
     }
@@ -433,81 +532,112 @@ public abstract class Bot implements Poolable {
     public void regenerate(int counter) {
         int cost = 2 * regenerateCost * (counter + 1);
         changeEnergy(-cost);
-        if (hp < maxHp && energy > 0 && counter < actionLimitPerTurn) {
-            ++hp;
+        if (store.hp[slot] < maxHp && store.energy[slot] > 0 && counter < actionLimitPerTurn) {
+            ++store.hp[slot];
         }
     }
 
     public boolean isNearEmptyCell(CellGrid grid) {
         for (Direction dir : Direction.ALL) {
-            Cell next = grid.getCell(cell, dir);
-            if (next != null && next.bot == null)
+            int next = grid.neighbour(cell, dir);
+            if (next >= 0 && grid.getBot(next) == null)
                 return true;
         }
         return false;
     }
 
-    public void shareResource(CellGrid grid, int resource, int counter) {
+    public void shareResource(GameWorld world, int resource, int counter) {
         int cost = 1 + 3 * counter;
         changeEnergy(-cost);
-        if (energy > 0 && counter < actionLimitPerTurn) {
-            Cell fwCell = getForwardCell(grid);
-            if (fwCell == null)
+        if (store.energy[slot] > 0 && counter < actionLimitPerTurn) {
+            final CellGrid grid = world.getGrid();
+            int fwCell = getForwardCellIndex(grid);
+            if (fwCell < 0)
                 return;
 
-            switch (modPos(resource, 4)) {
+            resource = modPos(resource, 4);
+            int amount;
+            switch (resource) {
                 case 0 -> {
-                    int energyToShare = energy / 8;
-                    energy -= energyToShare;
-                    if (fwCell.bot != null) fwCell.bot.energy += energyToShare;
-                    else fwCell.energy += energyToShare;
+                    amount = store.energy[slot] / 8;
+                    store.energy[slot] -= amount;
                 }
                 case 1 -> {
-                    int organicsToShare = organics / 8;
-                    organics -= organicsToShare;
-                    if (fwCell.bot != null) fwCell.bot.organics += organicsToShare;
-                    else fwCell.organics += organicsToShare;
+                    amount = store.organics[slot] / 8;
+                    store.organics[slot] -= amount;
                 }
                 case 2 -> {
-                    int mineralsToShare = minerals / 8;
-                    minerals -= mineralsToShare;
-                    if (fwCell.bot != null) fwCell.bot.minerals += mineralsToShare;
-                    else fwCell.minerals += mineralsToShare;
+                    amount = store.minerals[slot] / 8;
+                    store.minerals[slot] -= amount;
                 }
-                case 3 -> {
-                    int waterToShare = water / 8;
-                    water -= waterToShare;
-                    if (fwCell.bot != null) fwCell.bot.water += waterToShare;
-                    else fwCell.water += waterToShare;
+                default -> {
+                    amount = store.water[slot] / 8;
+                    store.water[slot] -= amount;
                 }
             }
+
+            if (world.isIntentMode()) {
+                world.intents().share(this, fwCell, resource, amount);
+            } else {
+                receiveShare(grid, fwCell, resource, amount);
+            }
+        }
+    }
+
+    /**
+     * Gives shared resource to bot in the cell or to the cell itself if it is empty
+     */
+    static void receiveShare(CellGrid grid, int cell, int resource, int amount) {
+        final Bot cellBot = grid.getBot(cell);
+        final Bot bot = cellBot != null && !cellBot.isDead ? cellBot : null;
+        switch (resource) {
+            case 0 -> {
+                if (bot != null) bot.store.energy[bot.slot] += amount;
+                else grid.addEnergy(cell, amount);
+            }
+            case 1 -> {
+                if (bot != null) bot.store.organics[bot.slot] += amount;
+                else grid.addOrganics(cell, amount);
+            }
+            case 2 -> {
+                if (bot != null) bot.store.minerals[bot.slot] += amount;
+                else grid.addMinerals(cell, amount);
+            }
+            case 3 -> {
+                if (bot != null) bot.store.water[bot.slot] += amount;
+                else grid.addWater(cell, amount);
+            }
         }
     }
 
     public static int getCellProperty(Cell cell, int property) {
+        return getCellProperty(cell.grid, cell.index, property);
+    }
+
+    public static int getCellProperty(CellGrid grid, int cell, int property) {
         int index = modPos(property, CellProperty.values.length);
         return switch (CellProperty.values[index]) {
-            case sunLight -> cell.sunLight;
-            case temperature -> cell.temperature;
-            case organics -> cell.organics;
-            case minerals -> cell.minerals;
-            case energy -> cell.energy;
-            case humidity -> cell.humidity;
-            case water -> cell.water;
+            case sunLight -> grid.getSunLight(cell);
+            case temperature -> grid.getTemperature(cell);
+            case organics -> grid.getOrganics(cell);
+            case minerals -> grid.getMinerals(cell);
+            case energy -> grid.getEnergy(cell);
+            case humidity -> grid.getHumidity(cell);
+            case water -> grid.getWater(cell);
         };
     }
 
     public static int getBotProperty(Bot bot, int property) {
         int index = modPos(property, BotProperty.values.length);
         return switch (BotProperty.values[index]) {
-            case hp -> bot.hp;
-            case energy -> bot.energy;
-            case organics -> bot.organics;
-            case minerals -> bot.minerals;
-            case age -> bot.age;
-            case temperature -> bot.temperature;
-            case heat -> bot.heat;
-            case water -> bot.water;
+            case hp -> bot.store.hp[bot.slot];
+            case energy -> bot.store.energy[bot.slot];
+            case organics -> bot.store.organics[bot.slot];
+            case minerals -> bot.store.minerals[bot.slot];
+            case age -> bot.store.age[bot.slot];
+            case temperature -> bot.store.temperature[bot.slot];
+            case heat -> bot.store.heat[bot.slot];
+            case water -> bot.store.water[bot.slot];
         };
     }
 
@@ -517,36 +647,40 @@ public abstract class Bot implements Poolable {
                 : n1 < 0 ? Integer.MIN_VALUE : 0;
     }
 
-    protected Cell findCellToProduceOffspring(CellGrid grid) {
-        Cell result = grid.getCell(cell, dir);
-        if (result != null && result.bot == null)
+    /**
+     * @return Index of empty cell or -1
+     */
+    protected int findCellToProduceOffspring(CellGrid grid) {
+        final Direction dir = getDir();
+        int result = grid.neighbour(cell, dir);
+        if (result >= 0 && grid.getBot(result) == null)
             return result;
-        result = grid.getCell(cell, dir.prev());
-        if (result != null && result.bot == null)
+        result = grid.neighbour(cell, dir.prev());
+        if (result >= 0 && grid.getBot(result) == null)
             return result;
-        result = grid.getCell(cell, dir.next());
-        if (result != null && result.bot == null)
+        result = grid.neighbour(cell, dir.next());
+        if (result >= 0 && grid.getBot(result) == null)
             return result;
-        result = grid.getCell(cell, dir.opposite());
-        return result != null && result.bot == null ? result : null;
+        result = grid.neighbour(cell, dir.opposite());
+        return result >= 0 && grid.getBot(result) == null ? result : -1;
     }
 
     private void checkHp() {
-        if (hp <= 0) {
+        if (store.hp[slot] <= 0) {
 //            log.debug("Cell #" + id + " dies with HP " + hp);
             die();
         }
     }
 
     private void checkEnergy() {
-        if (energy <= 0 || energy >= maxEnergy) {
+        if (store.energy[slot] <= 0 || store.energy[slot] >= maxEnergy) {
 //            log.debug("Cell #" + id + " dies with energy " + energy);
             die();
         }
     }
 
     public int getId() {
-        return id;
+        return store.ids[slot];
     }
 
     public int getParentId() {
@@ -566,66 +700,66 @@ public abstract class Bot implements Poolable {
     }
 
     public int getEnergy() {
-        return energy;
+        return store.energy[slot];
     }
 
     public void setEnergy(int energy) {
-        this.energy = energy;
+        store.energy[slot] = energy;
     }
 
     public void changeEnergy(int diff) {
-        energy += diff;
-        if (energy < 0) energy = 0;
+        store.energy[slot] += diff;
+        if (store.energy[slot] < 0) store.energy[slot] = 0;
     }
 
     public int getEnergyConsumption() {
-        int agingConsumption = age > agingStart ? (age - agingStart) / 10 : 0;
-        return energyConsumption + agingConsumption + parameters.energyConsumption() + organics / energyConsumptionGrow;
+        int agingConsumption = store.age[slot] > agingStart ? (store.age[slot] - agingStart) / 10 : 0;
+        return energyConsumption + agingConsumption + parameters.energyConsumption() + store.organics[slot] / energyConsumptionGrow;
     }
 
     public int getHp() {
-        return hp;
+        return store.hp[slot];
     }
 
     public int getOrganics() {
-        return organics;
+        return store.organics[slot];
     }
 
     public void setOrganics(int organics) {
-        this.organics = organics;
+        store.organics[slot] = organics;
     }
 
     public void changeOrganics(int diff) {
-        organics += diff;
-        if (organics < 0) organics = 0;
+        store.organics[slot] += diff;
+        if (store.organics[slot] < 0) store.organics[slot] = 0;
     }
 
     private void checkOrganics() {
-        if (organics <= 0) {
+        if (store.organics[slot] <= 0) {
 //            log.debug("Cell #" + id + " dies with organics " + organics);
             die();
         }
     }
 
     public int getMinerals() {
-        return minerals;
+        return store.minerals[slot];
     }
 
     public void setMinerals(int minerals) {
-        this.minerals = minerals;
+        store.minerals[slot] = minerals;
     }
 
     void changeMinerals(int diff) {
-        minerals += diff;
-        if (minerals < 0) minerals = 0;
+        store.minerals[slot] += diff;
+        if (store.minerals[slot] < 0) store.minerals[slot] = 0;
     }
 
     public int mass() {
-        return organics + minerals;
+        return store.organics[slot] + store.minerals[slot];
     }
 
     public int getAge() {
-        return age;
+        return store.age[slot];
     }
 
     public int getWishedTemperature() {
@@ -633,44 +767,44 @@ public abstract class Bot implements Poolable {
     }
 
     public int getTemperature() {
-        return temperature;
+        return store.temperature[slot];
     }
 
     public void setTemperature(int temperature) {
-        this.temperature = temperature;
+        store.temperature[slot] = temperature;
     }
 
     public int getHeat() {
-        return heat;
+        return store.heat[slot];
     }
 
     public int getWater() {
-        return water;
+        return store.water[slot];
     }
 
     public void setWater(int water) {
-        this.water = water;
+        store.water[slot] = water;
     }
 
     void changeWater(int diff) {
-        water += diff;
-        if (water < 0) water = 0;
+        store.water[slot] += diff;
+        if (store.water[slot] < 0) store.water[slot] = 0;
     }
 
     public int getGeneration() {
-        return generation;
+        return store.generation[slot];
     }
 
     public void setGeneration(int generation) {
-        this.generation = generation;
+        store.generation[slot] = generation;
     }
 
     public Direction getDir() {
-        return dir;
+        return Direction.ALL[store.dir[slot]];
     }
 
     public void setDir(Direction dir) {
-        this.dir = dir;
+        store.dir[slot] = (byte) dir.ordinal();
     }
 
     protected abstract void initOffspring(GameWorld world, Bot offspring);
@@ -679,23 +813,17 @@ public abstract class Bot implements Poolable {
 
     @Override
     public void reset() {
-        id = 0;
+        if (store != null) {
+            store.free(slot);
+        }
         parentId = 0;
         lastTurnUpdated = 0;
-        hp = 0;
-        energy = 0;
-        organics = 0;
-        minerals = 0;
-        age = 0;
-        temperature = 0;
-        heat = 0;
-        water = 0;
-        generation = 0;
         turnsAfterReproduced = 0;
         isDead = false;
-        cell = null;
-        dir = null;
+        grid = null;
+        cell = -1;
+        store = null;
+        slot = -1;
         offspring = null;
-        parameters.reset();
     }
 }
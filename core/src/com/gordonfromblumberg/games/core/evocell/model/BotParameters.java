@@ -5,73 +5,85 @@ import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.JsonReader;
 import com.badlogic.gdx.utils.JsonValue;
 
+/**
+ * View of bot parameters, raw values are stored in {@link BotStore#parameters} column of the bot
+ */
 public class BotParameters {
-    private static final Array<ParameterType> parameterTypes = new Array<>();
+    private static final Array<ParameterType> parameterTypes = new Array<>(ParameterType.class);
 
-    private final Array<Parameter> parameters = new Array<>();
+    private final Bot bot;
 
     static {
         loadParameters();
     }
 
-    BotParameters() {
-        for (ParameterType type : parameterTypes) {
-            parameters.add(new Parameter(type));
-        }
+    BotParameters(Bot bot) {
+        this.bot = bot;
+    }
+
+    static int parameterCount() {
+        return parameterTypes.size;
     }
 
     int get(ParameterName parameterName) {
-        return parameters.get(parameterName.ordinal()).value();
+        return get(parameterName.ordinal());
     }
 
     void set(ParameterName parameterName, int value) {
-        parameters.get(parameterName.ordinal()).value = value;
+        bot.store.parameters[offset() + parameterName.ordinal()] = value;
     }
 
     int get(int index) {
-        return parameters.get(index).value();
+        return parameterTypes.get(index).defaultValue + bot.store.parameters[offset() + index];
     }
 
     boolean canIncrease(int index) {
-        return parameters.get(index).canIncrease();
+        return raw(index) < parameterTypes.get(index).maxValue;
     }
 
     int getIncreaseCost(int index) {
-        return parameters.get(index).increaseCost();
+        return parameterTypes.get(index).increaseCost(raw(index));
     }
 
     void increase(int index) {
-        parameters.get(index).increase();
+        if (canIncrease(index)) ++bot.store.parameters[offset() + index];
     }
 
     boolean canDecrease(int index) {
-        return parameters.get(index).canDecrease();
+        final ParameterType type = parameterTypes.get(index);
+        final int value = raw(index);
+        return type.signed ? value > -type.maxValue : value > 0;
     }
 
     int getDecreaseCost(int index) {
-        return parameters.get(index).decreaseCost();
+        return parameterTypes.get(index).increaseCost(Math.max(0, Math.abs(raw(index)) - 1));
     }
 
     void decrease(int index) {
-        parameters.get(index).decrease();
+        if (canDecrease(index)) --bot.store.parameters[offset() + index];
     }
 
     int count() {
-        return parameters.size;
+        return parameterTypes.size;
     }
 
     int energyConsumption() {
+        final int[] values = bot.store.parameters;
+        final int offset = offset();
+        final ParameterType[] types = parameterTypes.items;
         float sum = 0;
-        for (Parameter p : parameters) {
-            sum += p.energyConsumption();
+        for (int i = 0, n = parameterTypes.size; i < n; ++i) {
+            sum += types[i].energyConsumption(Math.abs(values[offset + i]));
         }
         return (int) sum;
     }
 
-    void reset() {
-        for (Parameter p : parameters) {
-            p.value = 0;
-        }
+    private int raw(int index) {
+        return bot.store.parameters[offset() + index];
+    }
+
+    private int offset() {
+        return bot.slot * parameterTypes.size;
     }
 
     public enum ParameterName {
@@ -84,47 +96,6 @@ public class BotParameters {
         thermalInsulation,
     }
 
-    static class Parameter {
-        private ParameterType type;
-        private int value;
-
-        Parameter(ParameterType type) {
-            this.type = type;
-        }
-
-        int value() {
-            return type.defaultValue + value;
-        }
-
-        float energyConsumption() {
-            return type.energyConsumption(Math.abs(value));
-        }
-
-        boolean canIncrease() {
-            return value < type.maxValue;
-        }
-
-        int increaseCost() {
-            return type.increaseCost(value);
-        }
-
-        void increase() {
-            if (value < type.maxValue) ++value;
-        }
-
-        boolean canDecrease() {
-            return type.signed ? value > -type.maxValue : value > 0;
-        }
-
-        int decreaseCost() {
-            return type.increaseCost(Math.max(0, Math.abs(value) - 1));
-        }
-
-        void decrease() {
-            if (canDecrease()) --value;
-        }
-    }
-
     static record ParameterType(ParameterName name,
                                 boolean signed,
                                 float baseCost,
@@ -0,0 +1,283 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntIntMap;
+import com.gordonfromblumberg.games.core.evocell.world.GameWorld;
+
+import java.util.Arrays;
+
+/**
+ * Dense storage of bot state. Scalars and parameter values of all bots are kept in parallel primitive columns,
+ * {@link Bot} instances are thin views which know their slot.
+ * Freed slots are compacted at the end of turn by moving the last bots into them,
+ * so slots are dense but not stable, bot id is stable and can be resolved via {@link #getSlot(int)}.
+ * <p>
+ * Slots may be allocated by several threads, columns must not grow during parallel update,
+ * so capacity should be reserved with {@link #reserve(int)} before, allocation over the reserved capacity fails.
+ */
+public class BotStore {
+    private static final int NO_SLOT = -1;
+
+    final int parameterCount = BotParameters.parameterCount();
+
+    int size;
+    int[] ids;
+    int[] hp;
+    int[] energy;
+    int[] organics;
+    int[] minerals;
+    int[] age;
+    int[] temperature;
+    int[] heat;
+    int[] water;
+    int[] generation;
+    byte[] dir;
+    /** Raw parameter values, bot slot * parameterCount + parameter index */
+    int[] parameters;
+    Bot[] bots;
+    /** Genes of bots of this store, they are collected with the store */
+    final GenomeArena genomeArena = new GenomeArena();
+
+    private final IntIntMap slotsById = new IntIntMap();
+    private final IntArray freedSlots = new IntArray();
+    /** Columns can't grow until {@link #compact()} */
+    private boolean reserved;
+
+    public BotStore() {
+        this(1024);
+    }
+
+    public BotStore(int capacity) {
+        ids = new int[capacity];
+        hp = new int[capacity];
+        energy = new int[capacity];
+        organics = new int[capacity];
+        minerals = new int[capacity];
+        age = new int[capacity];
+        temperature = new int[capacity];
+        heat = new int[capacity];
+        water = new int[capacity];
+        generation = new int[capacity];
+        dir = new byte[capacity];
+        parameters = new int[capacity * parameterCount];
+        bots = new Bot[capacity];
+    }
+
+    synchronized int allocate(Bot bot) {
+        if (size == bots.length) {
+            if (reserved) {
+                throw new IllegalStateException("Capacity of " + bots.length + " bots reserved for the turn is exceeded");
+            }
+            ensureCapacity(size + 1);
+        }
+        final int slot = size++;
+        clear(slot);
+        bots[slot] = bot;
+        return slot;
+    }
+
+    synchronized void setId(int slot, int id) {
+        ids[slot] = id;
+        slotsById.put(id, slot);
+    }
+
+    /**
+     * Marks the slot as free, it will be reused after {@link #compact()}
+     */
+    synchronized void free(int slot) {
+        if (ids[slot] != 0) {
+            slotsById.remove(ids[slot], NO_SLOT);
+        }
+        bots[slot] = null;
+        freedSlots.add(slot);
+    }
+
+    /**
+     * Updates bots from the given slots [from; to), dead bots are removed or reported to intents
+     */
+    public void update(GameWorld world, int[] slots, int from, int to) {
+        final Bot[] bots = this.bots;
+        final int turn = world.getTurn();
+        final boolean intentMode = world.isIntentMode();
+        // keyed draws are per bot, lock-step batches interleave draws of several bots
+        if (intentMode && Interpreter.isBatched() && !world.isDeterministic()) {
+            updateBatched(world, slots, from, to);
+            return;
+        }
+        for (int i = from; i < to; ++i) {
+            final Bot bot = bots[slots[i]];
+            if (bot != null && !bot.isDead && bot.lastTurnUpdated != turn) {
+                world.keyRandom(bot.getCellIndex(), GameWorld.RANDOM_BOTS);
+                bot.update(world);
+                if (bot.isDead) {
+                    if (intentMode) {
+                        world.intents().death(bot);
+                    } else {
+                        bot.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Intent mode: bots are started one by one, then their programs are run in lock-step batches
+     * and the updates are finished in the order of starting
+     */
+    private void updateBatched(GameWorld world, int[] slots, int from, int to) {
+        final Bot[] bots = this.bots;
+        final int turn = world.getTurn();
+        final Interpreter interpreter = world.interpreter();
+        final IntentBuffer intents = world.intents();
+        for (int i = from; i < to; ++i) {
+            final Bot bot = bots[slots[i]];
+            if (bot != null && !bot.isDead && bot.lastTurnUpdated != turn) {
+                if (bot instanceof EvoBot evoBot) {
+                    if (evoBot.startUpdate(world)) {
+                        evoBot.startProgram(world);
+                        interpreter.batch(evoBot);
+                        continue;
+                    }
+                } else {
+                    bot.update(world);
+                }
+                if (bot.isDead) {
+                    intents.death(bot);
+                }
+            }
+        }
+
+        final Array<EvoBot> batched = interpreter.runBatches(world);
+        for (int i = 0, n = batched.size; i < n; ++i) {
+            final EvoBot bot = batched.get(i);
+            bot.finishProgram(world);
+            bot.finishUpdate(world);
+            if (bot.isDead) {
+                intents.death(bot);
+            }
+        }
+    }
+
+    /**
+     * Ensures capacity for the given count of new bots and forbids growth of columns until {@link #compact()},
+     * so the bots may be allocated by several threads
+     */
+    public synchronized void reserve(int newBots) {
+        ensureCapacity(size + newBots);
+        reserved = true;
+    }
+
+    /**
+     * Moves the last bots to freed slots and lets columns grow again. Should be invoked when no bot is being updated
+     */
+    public void compact() {
+        reserved = false;
+        trimTail();
+        // slots may be freed by several threads, sorting makes the order of bots independent of threads scheduling
+        freedSlots.sort();
+        final int[] freed = freedSlots.items;
+        for (int i = 0, n = freedSlots.size; i < n; ++i) {
+            final int slot = freed[i];
+            if (slot < size && bots[slot] == null) {
+                move(size - 1, slot);
+                --size;
+                trimTail();
+            }
+        }
+        freedSlots.clear();
+    }
+
+    public synchronized void ensureCapacity(int capacity) {
+        if (capacity <= bots.length) {
+            return;
+        }
+        final int newCapacity = Math.max(capacity, bots.length * 2);
+        ids = Arrays.copyOf(ids, newCapacity);
+        hp = Arrays.copyOf(hp, newCapacity);
+        energy = Arrays.copyOf(energy, newCapacity);
+        organics = Arrays.copyOf(organics, newCapacity);
+        minerals = Arrays.copyOf(minerals, newCapacity);
+        age = Arrays.copyOf(age, newCapacity);
+        temperature = Arrays.copyOf(temperature, newCapacity);
+        heat = Arrays.copyOf(heat, newCapacity);
+        water = Arrays.copyOf(water, newCapacity);
+        generation = Arrays.copyOf(generation, newCapacity);
+        dir = Arrays.copyOf(dir, newCapacity);
+        parameters = Arrays.copyOf(parameters, newCapacity * parameterCount);
+        bots = Arrays.copyOf(bots, newCapacity);
+    }
+
+    /**
+     * @return Count of used slots including freed ones which are not compacted yet
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Bot in the slot or null if the slot is freed
+     */
+    public GenomeArena getGenomeArena() {
+        return genomeArena;
+    }
+
+    public Bot get(int slot) {
+        return bots[slot];
+    }
+
+    /**
+     * @return Slot of the living bot with the id or -1
+     */
+    public int getSlot(int id) {
+        return slotsById.get(id, NO_SLOT);
+    }
+
+    public Bot getById(int id) {
+        final int slot = getSlot(id);
+        return slot != NO_SLOT ? bots[slot] : null;
+    }
+
+    private void move(int from, int to) {
+        ids[to] = ids[from];
+        hp[to] = hp[from];
+        energy[to] = energy[from];
+        organics[to] = organics[from];
+        minerals[to] = minerals[from];
+        age[to] = age[from];
+        temperature[to] = temperature[from];
+        heat[to] = heat[from];
+        water[to] = water[from];
+        generation[to] = generation[from];
+        dir[to] = dir[from];
+        System.arraycopy(parameters, from * parameterCount, parameters, to * parameterCount, parameterCount);
+        final Bot bot = bots[from];
+        bots[to] = bot;
+        bots[from] = null;
+        bot.slot = to;
+        if (ids[to] != 0) {
+            slotsById.put(ids[to], to);
+        }
+    }
+
+    private void clear(int slot) {
+        ids[slot] = 0;
+        hp[slot] = 0;
+        energy[slot] = 0;
+        organics[slot] = 0;
+        minerals[slot] = 0;
+        age[slot] = 0;
+        temperature[slot] = 0;
+        heat[slot] = 0;
+        water[slot] = 0;
+        generation[slot] = 0;
+        dir[slot] = 0;
+        Arrays.fill(parameters, slot * parameterCount, (slot + 1) * parameterCount, 0);
+    }
+
+    private void trimTail() {
+        while (size > 0 && bots[size - 1] == null) {
+            --size;
+        }
+    }
+}
@@ -1,169 +1,83 @@
 package com.gordonfromblumberg.games.core.evocell.model;
 
-import com.gordonfromblumberg.games.core.common.factory.AbstractFactory;
-import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
-import com.gordonfromblumberg.games.core.common.utils.RandomGen;
-import com.gordonfromblumberg.games.core.evocell.world.GameWorld;
+/**
+ * Flyweight accessor to a cell of {@link CellGrid}, all data is stored in the grid chunks.
+ * Instances are created on demand, so they should be compared with {@link #equals(Object)}
+ */
+public final class Cell {
+    final CellGrid grid;
+    final int index;
 
-public class Cell {
-    private static final float MINERALS_INCREASING_PROB;
-
-    static {
-        final ConfigManager configManager = AbstractFactory.getInstance().configManager();
-        MINERALS_INCREASING_PROB = configManager.getFloat("cell.mineralsIncreasing");
+    Cell(CellGrid grid, int index) {
+        this.grid = grid;
+        this.index = index;
     }
 
-    final int x, y;
-    int sunLight;
-    int temperature;
-    int organics;
-    int turnsAfterOrganicsUpdate;
-    int minerals;
-    int turnsAfterMineralsUpdate;
-    int energy;
-    int humidity;
-    int water;
-    int turnsAfterWaterUpdate;
-    Bot bot;
-
-    Cell(int x, int y) {
-        this.x = x;
-        this.y = y;
+    public Bot getBot() {
+        return grid.getBot(index);
     }
 
-    public Bot getBot() {
-        return bot;
-    }
-
-    public void setBot(Bot bot) {
-        this.bot = bot;
-    }
-
-    public void update(GameWorld world) {
-        final CellGrid grid = world.getGrid();
-        final int light = this.sunLight;
-        if (minerals < 200 && ++turnsAfterMineralsUpdate >= 1 + 2 * light) {
-            turnsAfterMineralsUpdate = 0;
-            float mineralsIncreasing = MINERALS_INCREASING_PROB;
-            if (minerals == 0) {
-                float coef = 0.2f;
-                for (Direction d : Direction.ALL) {
-                    Cell n = grid.getCell(this, d);
-                    if (n != null && n.minerals > 0) {
-                        coef = 1f;
-                        break;
-                    }
-                }
-                mineralsIncreasing *= coef;
-            }
-
-            if (RandomGen.INSTANCE.nextBool(mineralsIncreasing)) {
-                ++minerals;
-            }
-        }
-
-        final int organicsDelayLimit = 42 - 2 * temperature;
-        if (organics > 0 && temperature > -10 && ++turnsAfterOrganicsUpdate >= organicsDelayLimit) {
-            turnsAfterOrganicsUpdate = 0;
-            changeOrganics(-2);
-            ++minerals;
-        }
-
-        if (organics == 0) {
-            energy = 0;
-        }
-        if (energy > 0) {
-            changeEnergy( -Math.max(3, energy / 4));
-        }
-
-        int waterDiff = humidity - water;
-        if (waterDiff != 0 && ++turnsAfterWaterUpdate >= 12 - Math.abs(waterDiff)) {
-            turnsAfterWaterUpdate = 0;
-            if (waterDiff > 0) ++water;
-            else --water;
-        }
-
-        final Bot bot = this.bot;
-        if (bot != null && bot.lastTurnUpdated != world.getTurn()) {
-            bot.update(world);
-            if (bot.isDead) {
-                bot.release();
-            }
-        }
+    public int getIndex() {
+        return index;
     }
 
     public int getX() {
-        return x;
+        return grid.x(index);
     }
 
     public int getY() {
-        return y;
+        return grid.y(index);
     }
 
     public int getSunLight() {
-        return sunLight;
-    }
-
-    public void setSunLight(int sunLight) {
-        this.sunLight = sunLight;
+        return grid.getSunLight(index);
     }
 
     public int getTemperature() {
-        return temperature;
-    }
-
-    public void setTemperature(int temperature) {
-        this.temperature = temperature;
+        return grid.getTemperature(index);
     }
 
     public int getHumidity() {
-        return humidity;
-    }
-
-    public void setHumidity(int humidity) {
-        this.humidity = humidity;
+        return grid.getHumidity(index);
     }
 
     public int getWater() {
-        return water;
+        return grid.getWater(index);
     }
 
     public void setWater(int water) {
-        this.water = water;
+        grid.setWater(index, water);
     }
 
     public int getOrganics() {
-        return organics;
+        return grid.getOrganics(index);
     }
 
     public void setOrganics(int organics) {
-        this.organics = organics;
-    }
-
-    void changeOrganics(int diff) {
-        organics += diff;
-        if (organics < 0) organics = 0;
+        grid.setOrganics(index, organics);
     }
 
     public int getMinerals() {
-        return minerals;
+        return grid.getMinerals(index);
     }
 
     public void setMinerals(int minerals) {
-        this.minerals = minerals;
+        grid.setMinerals(index, minerals);
     }
 
-    void changeMinerals(int diff) {
-        minerals += diff;
-        if (minerals < 0) minerals = 0;
+    public int getEnergy() {
+        return grid.getEnergy(index);
     }
 
-    public int getEnergy() {
-        return energy;
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Cell cell)) return false;
+        return index == cell.index && grid == cell.grid;
     }
 
-    void changeEnergy(int diff) {
-        energy += diff;
-        if (energy < 0) energy = 0;
+    @Override
+    public int hashCode() {
+        return index;
     }
 }
@@ -0,0 +1,160 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+import com.gordonfromblumberg.games.core.common.chunk.ChunkedGrid;
+
+import java.util.Arrays;
+
+/**
+ * Properties of cells of one chunk of {@link CellGrid} in flat arrays indexed by {@link ChunkedGrid#local(int)}.
+ * Environment arrays are computed by {@link EnvironmentField}, the rest is state of cells.
+ */
+final class CellChunk {
+    static final int AREA = ChunkedGrid.CHUNK_AREA;
+    /** Minerals of a settled cell, they don't increase any more */
+    static final int SETTLED_MINERALS = 200;
+
+    final int[] sunLight = new int[AREA];
+    final int[] temperature = new int[AREA];
+    final int[] humidity = new int[AREA];
+    final int[] organics = new int[AREA];
+    final int[] turnsAfterOrganicsUpdate = new int[AREA];
+    final int[] minerals = new int[AREA];
+    final int[] turnsAfterMineralsUpdate = new int[AREA];
+    final int[] energy = new int[AREA];
+    final int[] water = new int[AREA];
+    final int[] turnsAfterWaterUpdate = new int[AREA];
+    /** Turn up to which resources of the cell have been updated, lazy mode only */
+    final int[] updatedAt = new int[AREA];
+    final Bot[] bots = new Bot[AREA];
+    /** Bit of a cell is set if the cell had minerals at the start of resource update, see {@link #snapshotMinerals()} */
+    final long[] mineralBits = new long[AREA >>> 6];
+    /** Placeholders are shared by all not created chunks and must never be changed */
+    final boolean placeholder;
+
+    /**
+     * Creates a placeholder chunk, cells of the settled placeholder have {@link #SETTLED_MINERALS},
+     * their water is equal to humidity and it is read from environment
+     */
+    CellChunk(boolean settled) {
+        placeholder = true;
+        if (settled) {
+            Arrays.fill(minerals, SETTLED_MINERALS);
+            snapshotMinerals();
+        }
+    }
+
+    /**
+     * Creates chunk with computed environment in default or settled state.
+     * Everything is set in constructor, so the chunk is safely visible to other threads via final fields
+     * @param updatedAt Turn at which the chunk had the state, it is not 0 if the chunk had been released
+     * @param settled true if cells of the chunk should be settled, see {@link #isSettled(int, int)}
+     */
+    CellChunk(EnvironmentField[] environment, int originX, int originY, int width, int height, int updatedAt,
+              boolean settled) {
+        placeholder = false;
+        for (int property = 0; property < environment.length; ++property) {
+            final EnvironmentField field = environment[property];
+            if (field.getUpdatedAtTurn() >= 0) {
+                field.fill(environment(property), ChunkedGrid.CHUNK_SIZE, originX, originY, width, height,
+                        field.getUpdatedAtTurn(), true);
+            }
+        }
+        if (updatedAt != 0) {
+            Arrays.fill(this.updatedAt, updatedAt);
+        }
+        if (settled) {
+            // cells out of the grid are kept default, they are read as neighbours without minerals
+            for (int j = 0, row = 0; j < height; ++j, row += ChunkedGrid.CHUNK_SIZE) {
+                Arrays.fill(minerals, row, row + width, SETTLED_MINERALS);
+                System.arraycopy(humidity, row, water, row, width);
+            }
+            snapshotMinerals();
+        }
+    }
+
+    /**
+     * Remembers which cells have minerals, neighbours read it by {@link #hadMinerals(int)}
+     */
+    void snapshotMinerals() {
+        final int[] minerals = this.minerals;
+        for (int w = 0; w < mineralBits.length; ++w) {
+            final int from = w << 6;
+            long bits = 0;
+            for (int b = 0; b < 64; ++b) {
+                // minerals are not negative, so the sign of -minerals is set only for positive minerals
+                bits |= (long) (-minerals[from + b] >>> 31) << b;
+            }
+            mineralBits[w] = bits;
+        }
+    }
+
+    boolean hadMinerals(int l) {
+        return (mineralBits[l >>> 6] & 1L << l) != 0;
+    }
+
+    int[] environment(int property) {
+        return switch (property) {
+            case CellGrid.SUN_LIGHT -> sunLight;
+            case CellGrid.TEMPERATURE -> temperature;
+            case CellGrid.HUMIDITY -> humidity;
+            default -> throw new IllegalArgumentException("Unknown environment property " + property);
+        };
+    }
+
+    /**
+     * @return true if state of all cells is default and they were updated at the same turn,
+     * so the chunk may be replaced by the empty one
+     * @param width Count of cells of the chunk along x which are in the grid
+     * @param height Count of cells of the chunk along y which are in the grid
+     */
+    boolean isReleasable(int width, int height) {
+        final int turn = updatedAt[0];
+        for (int i = 0; i < AREA; ++i) {
+            if ((i & (ChunkedGrid.CHUNK_SIZE - 1)) >= width || i >>> ChunkedGrid.CHUNK_SHIFT >= height) {
+                continue;
+            }
+            if (bots[i] != null || organics[i] != 0 || minerals[i] != 0 || energy[i] != 0 || water[i] != 0
+                    || turnsAfterOrganicsUpdate[i] != 0 || turnsAfterMineralsUpdate[i] != 0
+                    || turnsAfterWaterUpdate[i] != 0 || updatedAt[i] != turn) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A settled cell has no bot, organics and energy, {@link #SETTLED_MINERALS} and water equal to humidity.
+     * Resource update doesn't change it and it can be rebuilt from environment, so it doesn't depend on turn
+     * @return true if all cells of the chunk are settled, so the chunk may be replaced by the settled placeholder
+     */
+    boolean isSettled(int width, int height) {
+        for (int i = 0; i < AREA; ++i) {
+            if ((i & (ChunkedGrid.CHUNK_SIZE - 1)) >= width || i >>> ChunkedGrid.CHUNK_SHIFT >= height) {
+                continue;
+            }
+            if (bots[i] != null || organics[i] != 0 || minerals[i] != SETTLED_MINERALS || energy[i] != 0
+                    || water[i] != humidity[i] || turnsAfterOrganicsUpdate[i] != 0
+                    || turnsAfterMineralsUpdate[i] != 0 || turnsAfterWaterUpdate[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks that nobody has written to the placeholder
+     * @throws IllegalStateException if the placeholder has been changed
+     */
+    void checkPlaceholder() {
+        final int expectedMinerals = minerals[0] == SETTLED_MINERALS ? SETTLED_MINERALS : 0;
+        for (int i = 0; i < AREA; ++i) {
+            if (bots[i] != null || organics[i] != 0 || minerals[i] != expectedMinerals
+                    || hadMinerals(i) != expectedMinerals > 0 || energy[i] != 0
+                    || water[i] != 0 || turnsAfterOrganicsUpdate[i] != 0 || turnsAfterMineralsUpdate[i] != 0
+                    || turnsAfterWaterUpdate[i] != 0 || updatedAt[i] != 0 || sunLight[i] != 0
+                    || temperature[i] != 0 || humidity[i] != 0) {
+                throw new IllegalStateException("Placeholder chunk has been changed at cell " + i);
+            }
+        }
+    }
+}
@@ -1,26 +1,471 @@
 package com.gordonfromblumberg.games.core.evocell.model;
 
+import com.gordonfromblumberg.games.core.common.chunk.ChunkedGrid;
+import com.gordonfromblumberg.games.core.common.factory.AbstractFactory;
+import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
+import com.gordonfromblumberg.games.core.common.utils.RandomGen;
+import com.gordonfromblumberg.games.core.evocell.world.GameWorld;
+
+import static com.gordonfromblumberg.games.core.common.chunk.ChunkedGrid.CHUNK_SIZE;
+import static com.gordonfromblumberg.games.core.common.chunk.ChunkedGrid.local;
+
+/**
+ * Cell properties are stored in {@link CellChunk}s of {@link ChunkedGrid}, cell index is {@link ChunkedGrid} index.
+ * Chunks are created on the first write of a non default value, until then cells have default state
+ * and environment is computed on demand, so large grids with small inhabited parts take little memory.
+ * In lazy mode chunks are released again when all their cells are default or settled, see {@link #releaseEmptyChunks()}.
+ * {@link Cell} is a flyweight accessor to cells for UI and other code outside of hot loops.
+ */
 public class CellGrid {
+    private static final float MINERALS_INCREASING_PROB;
+    static final int SUN_LIGHT = 0;
+    static final int TEMPERATURE = 1;
+    static final int HUMIDITY = 2;
+
+    static {
+        final ConfigManager configManager = AbstractFactory.getInstance().configManager();
+        MINERALS_INCREASING_PROB = configManager.getFloat("cell.mineralsIncreasing");
+    }
 
     int width, height;
     int cellSize;
-    public final Cell[][] cells;
+    private final ChunkedGrid<CellChunk> cells;
+    private final CellChunk empty = new CellChunk(false);
+    private final CellChunk settled = new CellChunk(true);
+    /** Turn at which released chunk had default state, by chunk key */
+    private final int[] releasedAt;
+    // water of settled cells is equal to humidity, so they can be rebuilt only if humidity doesn't change
+    private final boolean settledRelease;
+    private final EnvironmentField[] environment;
+    private final ResourceKernel resourceKernel;
+    // turn of the last environment update, it keys random draws of cells
+    private int turn;
 //    private final ChunkManager<LivingCell> chunkManager;
 //    private final Queue<LightSource> lightSources = new Queue<>();
 
-    public CellGrid(int width, int height, int cellSize) {
+    public CellGrid(int width, int height, int cellSize, EnvironmentField.Source sunLight,
+                    EnvironmentField.Source temperature, EnvironmentField.Source humidity) {
         this.width = width;
         this.height = height;
         this.cellSize = cellSize;
-        this.cells = new Cell[width][height];
 
-        for (int i = 0; i < width; ++i) {
-            for (int j = 0; j < height; ++j) {
-                this.cells[i][j] = new Cell(i, j);
+        this.cells = new ChunkedGrid<>(width, height, empty, settled, CellChunk[]::new, this::createChunk);
+        this.releasedAt = new int[cells.getKeyBound()];
+        this.environment = new EnvironmentField[] {
+                new EnvironmentField(height, sunLight),
+                new EnvironmentField(height, temperature),
+                new EnvironmentField(height, humidity)
+        };
+        this.settledRelease = humidity.isStatic();
+        this.resourceKernel = ResourceKernel.create(
+                AbstractFactory.getInstance().configManager().getBoolean("cell.vectorKernels"));
+
+//        this.chunkManager = new ChunkManager<>(width, height, chunkSize);
+    }
+
+    /**
+     * @return true if update of environment at the given turn may change values
+     */
+    public boolean isEnvironmentOutdated(int turn) {
+        for (EnvironmentField field : environment) {
+            if (field.isOutdated(turn)) {
+                return true;
             }
         }
+        return false;
+    }
 
-//        this.chunkManager = new ChunkManager<>(width, height, chunkSize);
+    /**
+     * Recomputes changed parts of environment in created chunks
+     */
+    public void updateEnvironment(int turn) {
+        this.turn = turn;
+        final ChunkedGrid<CellChunk> cells = this.cells;
+        for (int property = 0; property < environment.length; ++property) {
+            final EnvironmentField field = environment[property];
+            if (!field.isUpdateRequired(turn)) {
+                continue;
+            }
+            final boolean all = field.getUpdatedAtTurn() < 0;
+            boolean changed = false;
+            for (int key = 0, n = cells.getKeyBound(); key < n; ++key) {
+                if (cells.isCreated(key)) {
+                    changed |= field.fill(cells.getChunk(key).environment(property), CHUNK_SIZE,
+                            cells.getOriginX(key), cells.getOriginY(key),
+                            cells.getChunkWidth(key), cells.getChunkHeight(key), turn, all);
+                }
+            }
+            field.updated(turn, changed);
+        }
+    }
+
+    /**
+     * Remembers which cells of created chunks have minerals. Minerals increasing of {@link #updateResources}
+     * checks neighbours in this snapshot, so it doesn't depend on order of rows and tiles
+     * and doesn't race with concurrently updated tiles. Should be invoked before resources of every turn are updated
+     */
+    public void snapshotMinerals() {
+        final ChunkedGrid<CellChunk> cells = this.cells;
+        for (int key = 0, n = cells.getKeyBound(); key < n; ++key) {
+            if (cells.isCreated(key)) {
+                cells.getChunk(key).snapshotMinerals();
+            }
+        }
+    }
+
+    /**
+     * Updates resources of cells [fromX; toX) of row y.
+     * Minerals increasing uses random and neighbours from {@link #snapshotMinerals()},
+     * so it is updated first for the whole range,
+     * the rest is done by {@link ResourceKernel} for every chunk part of the range
+     */
+    public void updateResources(int y, int fromX, int toX) {
+        for (int x = fromX; x < toX; ) {
+            final int index = index(x, y);
+            final int from = local(index);
+            final int to = from + Math.min(toX - x, CHUNK_SIZE - (x & (CHUNK_SIZE - 1)));
+            updateMinerals(cells.getForWrite(index), from, to, index - from);
+            x += to - from;
+        }
+        for (int x = fromX; x < toX; ) {
+            final int index = index(x, y);
+            final int from = local(index);
+            final int to = from + Math.min(toX - x, CHUNK_SIZE - (x & (CHUNK_SIZE - 1)));
+            resourceKernel.update(cells.getChunk(ChunkedGrid.key(index)), from, to);
+            x += to - from;
+        }
+    }
+
+    private void updateMinerals(CellChunk chunk, int from, int to, int firstIndex) {
+        final int[] sunLight = chunk.sunLight;
+        final int[] minerals = chunk.minerals;
+        final int[] turnsAfterMineralsUpdate = chunk.turnsAfterMineralsUpdate;
+        final RandomGen rand = RandomGen.current();
+
+        for (int i = from; i < to; ++i) {
+            final int light = sunLight[i];
+            if (minerals[i] < 200 && ++turnsAfterMineralsUpdate[i] >= 1 + 2 * light) {
+                turnsAfterMineralsUpdate[i] = 0;
+                float mineralsIncreasing = MINERALS_INCREASING_PROB;
+                if (minerals[i] == 0 && !isNearMinerals(firstIndex + i, true)) {
+                    mineralsIncreasing *= 0.2f;
+                }
+
+                rand.setKey(turn, firstIndex + i, GameWorld.RANDOM_CELLS);
+                if (rand.nextBool(mineralsIncreasing)) {
+                    ++minerals[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds energy, organics and minerals of cells [fromX; toX) of row y to totals[0], totals[1], totals[2]
+     */
+    public void sumResources(int y, int fromX, int toX, long[] totals) {
+        long energy = 0;
+        long organics = 0;
+        long minerals = 0;
+        for (int x = fromX; x < toX; ) {
+            final int index = index(x, y);
+            final int from = local(index);
+            final int to = from + Math.min(toX - x, CHUNK_SIZE - (x & (CHUNK_SIZE - 1)));
+            final CellChunk chunk = cells.get(index);
+            for (int i = from; i < to; ++i) {
+                energy += chunk.energy[i];
+                organics += chunk.organics[i];
+                minerals += chunk.minerals[i];
+            }
+            x += to - from;
+        }
+        totals[0] += energy;
+        totals[1] += organics;
+        totals[2] += minerals;
+    }
+
+    /**
+     * Adds energy, organics and minerals of cells of created and settled chunks to totals[0], totals[1], totals[2]
+     */
+    public void sumCreatedChunks(long[] totals) {
+        final ChunkedGrid<CellChunk> cells = this.cells;
+        for (int key = 0, n = cells.getKeyBound(); key < n; ++key) {
+            if (cells.getChunk(key) == settled) {
+                totals[2] += (long) CellChunk.SETTLED_MINERALS * cells.getChunkWidth(key) * cells.getChunkHeight(key);
+            } else if (cells.isCreated(key)) {
+                final int originX = cells.getOriginX(key);
+                for (int y = cells.getOriginY(key), toY = y + cells.getChunkHeight(key); y < toY; ++y) {
+                    sumResources(y, originX, originX + cells.getChunkWidth(key), totals);
+                }
+            }
+        }
+    }
+
+    /**
+     * Brings resources of the cell up to the given turn as if {@link #updateResources(int, int, int)}
+     * had been invoked for every missed turn. Turns without events are skipped,
+     * mineral increasing trials are sampled in bulk, so the result is equivalent in distribution.
+     * Environment of the cell is supposed to be unchanged since the previous catch-up
+     */
+    public void catchUp(int i, int turn) {
+        CellChunk chunk = cells.get(i);
+        if (chunk == settled) {
+            // resource update doesn't change settled cells
+            return;
+        }
+        final int l = local(i);
+        // cells of the empty chunk have default state since the chunk was released, not since turn 0
+        final int updatedAt = chunk == empty ? releasedAt[ChunkedGrid.key(i)] : chunk.updatedAt[l];
+        final int elapsed = turn - updatedAt;
+        if (elapsed <= 0) {
+            return;
+        }
+        if (chunk == empty) {
+            chunk = cells.getForWrite(i);
+        }
+        chunk.updatedAt[l] = turn;
+        advance(i, chunk, l, elapsed, turn, chunk.sunLight[l], chunk.temperature[l], null);
+    }
+
+    /**
+     * Fills energy, organics, minerals and water of the cell at the given turn to resources[0], ..., resources[3]
+     * without changing the grid. Missed turns are applied as by {@link #catchUp(int, int)}, but minerals are increased
+     * by their expected value instead of random draws, so the projection doesn't consume random numbers
+     * and may be used by rendering and UI in lazy mode
+     */
+    public void project(int i, int turn, int[] resources) {
+        final CellChunk chunk = cells.get(i);
+        final int l = local(i);
+        final int updatedAt = chunk == settled ? turn : chunk == empty ? releasedAt[ChunkedGrid.key(i)] : chunk.updatedAt[l];
+        if (turn <= updatedAt) {
+            resources[0] = chunk.energy[l];
+            resources[1] = chunk.organics[l];
+            resources[2] = chunk.minerals[l];
+            resources[3] = getWater(i);
+            return;
+        }
+        advance(i, chunk, l, turn - updatedAt, turn, getSunLight(i), getTemperature(i), resources);
+    }
+
+    /**
+     * Applies elapsed turns to resources of the cell
+     * @param projection Receives projected energy, organics, minerals and water, null if the cell should be caught up
+     */
+    private void advance(int i, CellChunk chunk, int l, int elapsed, int turn, int light, int temperature,
+                         int[] projection) {
+        final int mineralsPeriod = 1 + 2 * light;
+        final boolean organicsDecay = temperature > -10;
+        final int organicsPeriod = Math.max(1, 42 - 2 * temperature);
+        int minerals = chunk.minerals[l];
+        int organics = chunk.organics[l];
+        int energy = chunk.energy[l];
+        int turnsAfterMinerals = chunk.turnsAfterMineralsUpdate[l];
+        int turnsAfterOrganics = chunk.turnsAfterOrganicsUpdate[l];
+
+        int remaining = elapsed;
+        while (remaining > 0) {
+            // advance to the next organics decay, energy decays every turn until it is 0
+            int step = remaining;
+            final boolean decaying = organics > 0 && organicsDecay;
+            if (decaying) {
+                step = Math.min(step, Math.max(1, organicsPeriod - turnsAfterOrganics));
+            }
+            if (energy > 0) {
+                step = 1;
+            }
+
+            if (minerals < 200) {
+                turnsAfterMinerals += step;
+                final int trials = turnsAfterMinerals / mineralsPeriod;
+                turnsAfterMinerals %= mineralsPeriod;
+                if (trials > 0) {
+                    minerals = projection == null
+                            ? increaseMinerals(i, turn - remaining + step, minerals, trials)
+                            : expectMinerals(i, minerals, trials);
+                }
+            }
+            if (decaying && (turnsAfterOrganics += step) >= organicsPeriod) {
+                turnsAfterOrganics = 0;
+                organics = Math.max(organics - 2, 0);
+                ++minerals;
+            }
+            if (organics == 0) {
+                energy = 0;
+            }
+            if (energy > 0) {
+                energy = Math.max(energy - Math.max(3, energy / 4), 0);
+            }
+            remaining -= step;
+        }
+
+        if (projection != null) {
+            projection[0] = energy;
+            projection[1] = organics;
+            projection[2] = minerals;
+            projection[3] = catchUpWater(chunk, l, getHumidity(i), elapsed, false);
+            return;
+        }
+        chunk.minerals[l] = minerals;
+        chunk.organics[l] = organics;
+        chunk.energy[l] = energy;
+        chunk.turnsAfterMineralsUpdate[l] = turnsAfterMinerals;
+        chunk.turnsAfterOrganicsUpdate[l] = turnsAfterOrganics;
+        catchUpWater(chunk, l, chunk.humidity[l], elapsed, true);
+    }
+
+    /**
+     * Catches up the cell and its neighbours, i.e. all cells a bot in the cell can read or change
+     */
+    public void catchUpAround(int i, int turn) {
+        catchUp(i, turn);
+        for (Direction dir : Direction.ALL) {
+            final int neighbour = neighbour(i, dir);
+            if (neighbour >= 0) {
+                catchUp(neighbour, turn);
+            }
+        }
+    }
+
+    /**
+     * Catches up all cells of created chunks, not created chunks have default state and are caught up
+     * when they are touched
+     */
+    public void catchUpCreatedChunks(int turn) {
+        final ChunkedGrid<CellChunk> cells = this.cells;
+        for (int key = 0, n = cells.getKeyBound(); key < n; ++key) {
+            if (cells.isCreated(key)) {
+                final int originX = cells.getOriginX(key);
+                final int originY = cells.getOriginY(key);
+                for (int y = originY, toY = y + cells.getChunkHeight(key); y < toY; ++y) {
+                    for (int x = originX, toX = x + cells.getChunkWidth(key); x < toX; ++x) {
+                        catchUp(index(x, y), turn);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces chunks with default state by the empty chunk and chunks with settled cells by the settled one.
+     * Cells should be caught up to the same turn before.
+     * @return Count of released chunks
+     * @throws IllegalStateException if a placeholder has been changed
+     */
+    public int releaseEmptyChunks() {
+        empty.checkPlaceholder();
+        settled.checkPlaceholder();
+        final ChunkedGrid<CellChunk> cells = this.cells;
+        int released = 0;
+        for (int key = 0, n = cells.getKeyBound(); key < n; ++key) {
+            if (cells.isCreated(key)) {
+                final CellChunk chunk = cells.getChunk(key);
+                final int width = cells.getChunkWidth(key);
+                final int height = cells.getChunkHeight(key);
+                if (chunk.isReleasable(width, height)) {
+                    releasedAt[key] = chunk.updatedAt[0];
+                    cells.release(key);
+                    ++released;
+                } else if (settledRelease && chunk.isSettled(width, height)) {
+                    cells.release(key, settled);
+                    ++released;
+                }
+            }
+        }
+        return released;
+    }
+
+    private int increaseMinerals(int i, int turn, int minerals, int trials) {
+        final RandomGen rand = RandomGen.current();
+        rand.setKey(turn, i, GameWorld.RANDOM_CELLS);
+        if (minerals == 0) {
+            float firstIncreasing = MINERALS_INCREASING_PROB;
+            if (!isNearMinerals(i, false)) {
+                firstIncreasing *= 0.2f;
+            }
+            final int failures = rand.nextGeometric(firstIncreasing);
+            if (failures >= trials) {
+                return 0;
+            }
+            minerals = 1;
+            trials -= failures + 1;
+        }
+        return Math.min(minerals + rand.nextBinomial(trials, MINERALS_INCREASING_PROB), 200);
+    }
+
+    /**
+     * The same as {@link #increaseMinerals(int, int, int, int)} with expected count of failures and successes
+     */
+    private int expectMinerals(int i, int minerals, int trials) {
+        if (minerals == 0) {
+            float firstIncreasing = MINERALS_INCREASING_PROB;
+            if (!isNearMinerals(i, false)) {
+                firstIncreasing *= 0.2f;
+            }
+            if (firstIncreasing <= 0) {
+                return 0;
+            }
+            final int failures = (int) ((1 - firstIncreasing) / firstIncreasing);
+            if (failures >= trials) {
+                return 0;
+            }
+            minerals = 1;
+            trials -= failures + 1;
+        }
+        return Math.min(minerals + Math.round(trials * MINERALS_INCREASING_PROB), 200);
+    }
+
+    /**
+     * @param write Store water and turns after its update to the chunk, otherwise only return water
+     * @return Water of the cell after elapsed turns
+     */
+    private int catchUpWater(CellChunk chunk, int l, int humidity, int elapsed, boolean write) {
+        int water = chunk.water[l];
+        int turnsAfterWater = chunk.turnsAfterWaterUpdate[l];
+        int remaining = elapsed;
+        while (remaining > 0 && water != humidity) {
+            final int toUpdate = Math.max(1, 12 - Math.abs(humidity - water) - turnsAfterWater);
+            if (toUpdate > remaining) {
+                turnsAfterWater += remaining;
+                break;
+            }
+            remaining -= toUpdate;
+            turnsAfterWater = 0;
+            if (humidity > water) ++water;
+            else --water;
+        }
+        if (write) {
+            chunk.water[l] = water;
+            chunk.turnsAfterWaterUpdate[l] = turnsAfterWater;
+        }
+        return water;
+    }
+
+    /**
+     * @param snapshot Read neighbours from {@link #snapshotMinerals()} instead of their current minerals
+     */
+    private boolean isNearMinerals(int i, boolean snapshot) {
+        final int l = local(i);
+        final int localX = l & (CHUNK_SIZE - 1);
+        final int localY = l >>> ChunkedGrid.CHUNK_SHIFT;
+        if (localX > 0 && localX < CHUNK_SIZE - 1 && localY > 0 && localY < CHUNK_SIZE - 1) {
+            // all neighbours are in the same chunk, cells of the chunk out of the grid are never written
+            final CellChunk chunk = cells.get(i);
+            if (snapshot) {
+                return chunk.hadMinerals(l - CHUNK_SIZE) || chunk.hadMinerals(l + CHUNK_SIZE)
+                        || chunk.hadMinerals(l - 1) || chunk.hadMinerals(l + 1);
+            }
+            final int[] minerals = chunk.minerals;
+            return minerals[l - CHUNK_SIZE] > 0 || minerals[l + CHUNK_SIZE] > 0
+                    || minerals[l - 1] > 0 || minerals[l + 1] > 0;
+        }
+        for (Direction dir : Direction.ALL) {
+            final int neighbour = neighbour(i, dir);
+            if (neighbour >= 0 && (snapshot
+                    ? cells.get(neighbour).hadMinerals(local(neighbour))
+                    : getMinerals(neighbour) > 0)) {
+                return true;
+            }
+        }
+        return false;
     }
 
 //    public void updateSunLight(LightDistribution lightDistribution) {
@@ -127,30 +572,176 @@ public class CellGrid {
         if (cellY < 0 || cellY >= height) {
             return null;
         }
-        return cells[cellX][cellY];
+        return getCell(cellX, cellY);
+    }
+
+    public Cell getCell(int x, int y) {
+        return new Cell(this, index(x, y));
+    }
+
+    public Cell getCell(int index) {
+        return new Cell(this, index);
     }
 
     public Cell getCell(Cell cell, Direction dir) {
-        int y = cell.y + dir.y;
-        if (y < 0 || y >= height) {
-            return null;
-        }
-        int x = cell.x + dir.x;
+        int n = neighbour(cell.index, dir);
+        return n >= 0 ? new Cell(this, n) : null;
+    }
+
+    public int index(int x, int y) {
+        return cells.index(x, y);
+    }
+
+    public int x(int index) {
+        return cells.x(index);
+    }
+
+    public int y(int index) {
+        return cells.y(index);
+    }
+
+    /**
+     * @return Index of the neighbour cell or -1 if it is out of the grid
+     */
+    public int neighbour(int index, Direction dir) {
 //        if (x < 0) x = width - 1;
 //        if (x == width) x = 0;
-        if (x < 0 || x >= width) {
-            return null;
+        return cells.neighbour(index, dir.x, dir.y);
+    }
+
+    /**
+     * @return true if the cell is in a created chunk, otherwise it has default state
+     */
+    public boolean isCreated(int index) {
+        return !cells.get(index).placeholder;
+    }
+
+    public int getCreatedChunkCount() {
+        return cells.getChunkCount();
+    }
+
+    public int getSunLight(int index) {
+        return getEnvironment(index, SUN_LIGHT);
+    }
+
+    public int getTemperature(int index) {
+        return getEnvironment(index, TEMPERATURE);
+    }
+
+    public int getHumidity(int index) {
+        return getEnvironment(index, HUMIDITY);
+    }
+
+    private int getEnvironment(int index, int property) {
+        final CellChunk chunk = cells.get(index);
+        return !chunk.placeholder
+                ? chunk.environment(property)[local(index)]
+                : environment[property].get(x(index), y(index));
+    }
+
+    public Bot getBot(int index) {
+        return cells.get(index).bots[local(index)];
+    }
+
+    public void setBot(int index, Bot bot) {
+        if (bot != null || isCreated(index)) {
+            cells.getForWrite(index).bots[local(index)] = bot;
+        }
+    }
+
+    public int getOrganics(int index) {
+        return cells.get(index).organics[local(index)];
+    }
+
+    public void setOrganics(int index, int organics) {
+        if (organics != getOrganics(index) || isCreated(index)) {
+            cells.getForWrite(index).organics[local(index)] = organics;
+        }
+    }
+
+    public void addOrganics(int index, int diff) {
+        if (diff != 0) {
+            cells.getForWrite(index).organics[local(index)] += diff;
+        }
+    }
+
+    void changeOrganics(int index, int diff) {
+        if (diff > 0 || diff < 0 && isCreated(index)) {
+            final int[] organics = cells.getForWrite(index).organics;
+            final int l = local(index);
+            organics[l] += diff;
+            if (organics[l] < 0) organics[l] = 0;
         }
-        return cells[x][y];
     }
 
-    public void addCellObject(Bot cellObject, int x, int y) {
-        addCellObject(cellObject, cells[x][y]);
+    public int getMinerals(int index) {
+        return cells.get(index).minerals[local(index)];
+    }
+
+    public void setMinerals(int index, int minerals) {
+        if (minerals != getMinerals(index) || isCreated(index)) {
+            cells.getForWrite(index).minerals[local(index)] = minerals;
+        }
+    }
+
+    public void addMinerals(int index, int diff) {
+        if (diff != 0) {
+            cells.getForWrite(index).minerals[local(index)] += diff;
+        }
+    }
+
+    void changeMinerals(int index, int diff) {
+        if (diff > 0 || diff < 0 && getMinerals(index) > 0) {
+            final int[] minerals = cells.getForWrite(index).minerals;
+            final int l = local(index);
+            minerals[l] += diff;
+            if (minerals[l] < 0) minerals[l] = 0;
+        }
+    }
+
+    public int getEnergy(int index) {
+        return cells.get(index).energy[local(index)];
+    }
+
+    public void addEnergy(int index, int diff) {
+        if (diff != 0) {
+            cells.getForWrite(index).energy[local(index)] += diff;
+        }
+    }
+
+    void changeEnergy(int index, int diff) {
+        if (diff > 0 || diff < 0 && isCreated(index)) {
+            final int[] energy = cells.getForWrite(index).energy;
+            final int l = local(index);
+            energy[l] += diff;
+            if (energy[l] < 0) energy[l] = 0;
+        }
+    }
+
+    public int getWater(int index) {
+        final CellChunk chunk = cells.get(index);
+        // settled water is equal to humidity which is not stored in placeholders
+        return chunk != settled ? chunk.water[local(index)] : getHumidity(index);
+    }
+
+    public void setWater(int index, int water) {
+        if (water != getWater(index) || isCreated(index)) {
+            cells.getForWrite(index).water[local(index)] = water;
+        }
+    }
+
+    public void addWater(int index, int diff) {
+        if (diff != 0) {
+            cells.getForWrite(index).water[local(index)] += diff;
+        }
     }
 
-    public void addCellObject(Bot cellObject, Cell cell) {
-//        cellObject.setCell(cell);
-        cell.bot = cellObject;
+    private CellChunk createChunk(int key) {
+        final ChunkedGrid<CellChunk> cells = this.cells;
+        // settled cells don't change, so they are up to date at the current turn
+        final boolean settled = cells.getChunk(key) == this.settled;
+        return new CellChunk(environment, cells.getOriginX(key), cells.getOriginY(key),
+                cells.getChunkWidth(key), cells.getChunkHeight(key), settled ? turn : releasedAt[key], settled);
     }
 
 //    public void moveCellObjectTo(LivingCell cellObject, Cell target) {
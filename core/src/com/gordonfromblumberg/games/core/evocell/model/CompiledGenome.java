@@ -0,0 +1,11 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+import com.gordonfromblumberg.games.core.evocell.world.GameWorld;
+
+/**
+ * Genome program translated to JVM bytecode by {@link GenomeCodeGenerator}.
+ * Implementations are hidden classes, the same instance is shared by all bots with the same program.
+ */
+public interface CompiledGenome {
+    void run(GameWorld world, EvoBot bot);
+}
@@ -1,8 +1,8 @@
 package com.gordonfromblumberg.games.core.evocell.model;
 
-import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ByteArray;
+import com.badlogic.gdx.utils.IntMap;
 import com.badlogic.gdx.utils.Pool;
-import com.badlogic.gdx.utils.Pools;
 import com.gordonfromblumberg.games.core.common.factory.AbstractFactory;
 import com.gordonfromblumberg.games.core.common.log.LogManager;
 import com.gordonfromblumberg.games.core.common.log.Logger;
@@ -10,8 +10,13 @@ import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
 import com.gordonfromblumberg.games.core.common.utils.Poolable;
 import com.gordonfromblumberg.games.core.common.utils.RandomGen;
 
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Genes of a bot, they are stored in a slice of {@link GenomeArena} as geneCount * geneValueCount bytes.
+ * DNA keeps the arena of the world where it was created, copies of DNA are allocated in the same arena.
+ */
 public class DNA implements Poolable {
     private static final Pool<DNA> pool = new Pool<>() {
         @Override
@@ -20,123 +25,371 @@ public class DNA implements Poolable {
         }
     };
     private static final Logger log = LogManager.create(DNA.class);
+    // genes being built by crossover or mutation, offsprings may be produced by several threads
+    private static final ThreadLocal<ByteArray> tmpGenes = ThreadLocal.withInitial(ByteArray::new);
+
 
     public static final int minGeneCount;
     public static final int maxGeneCount;
+    static final int geneValueCount;
     private static final float mutationChance;
     private static final float geneCountChangeChance;
     private static final float geneDuplicateChance;
+    // gene count is far less, so the skip does not overflow gene index
+    private static final int MAX_SKIP = 1 << 16;
 
     static {
         final ConfigManager configManager = AbstractFactory.getInstance().configManager();
         minGeneCount = configManager.getInteger("dna.minGeneCount");
         maxGeneCount = configManager.getInteger("dna.maxGeneCount");
+        geneValueCount = configManager.getInteger("dna.geneValueCount");
         mutationChance = configManager.getFloat("dna.mutationChance");
         geneCountChangeChance = configManager.getFloat("dna.geneCountChangeChance");
         geneDuplicateChance = configManager.getFloat("dna.geneDuplicateChance");
     }
 
-    final Array<Gene> genes = new Array<>();
+    private GenomeArena arena;
+    // slice of the arena with genes of this DNA, its size may be greater than genes need
+    byte[] bytes;
+    int offset;
+    int size;
+    int slice = -1;
+    private int geneCount;
+    // parsed programs by entry gene index, they are dropped on any change of genes
+    private final IntMap<GenomeProgram> programs = new IntMap<>();
+    private final IntMap<GenomeProgram> embryoPrograms = new IntMap<>();
+    // content hash of genes, it is computed on demand and dropped with programs
+    private long hashHigh, hashLow;
+    private boolean hashed;
+    // bots sharing this DNA, shared DNA is not changed, it is copied on write
+    private final AtomicInteger references = new AtomicInteger();
+
+    private DNA() {}
 
-    private DNA() {
-        for (int i = 0; i < minGeneCount; ++i) {
-            genes.add(Gene.getInstance());
+    /**
+     * @param arena Arena of genomes of the world where the DNA is used
+     */
+    public static DNA getInstance(GenomeArena arena) {
+        final DNA dna;
+        synchronized (pool) {
+            dna = pool.obtain();
         }
+        dna.arena = arena;
+        dna.references.set(1);
+        dna.setGeneCount(minGeneCount);
+        return dna;
+    }
+
+    /**
+     * Adds one more owner of this DNA, it should call {@link #release()} when the DNA is not needed
+     * @return This DNA
+     */
+    public DNA share() {
+        references.incrementAndGet();
+        return this;
     }
 
-    public static DNA getInstance() {
-        return pool.obtain();
+    /**
+     * @return This DNA if it is not shared, otherwise its copy, this DNA is released in that case
+     */
+    public DNA toPrivate() {
+        if (references.get() == 1) {
+            return this;
+        }
+        final DNA copy = getInstance(arena);
+        copy.set(this);
+        release();
+        return copy;
     }
 
     public void set(DNA original) {
-        set(original.genes);
+        set(original.bytes, original.offset, original.geneCount);
     }
 
-    @SuppressWarnings("unchecked")
     public void set(DNA parent1, DNA parent2) {
-        final RandomGen rand = Gene.RAND;
-        final Array<Gene> originalGenes = Pools.obtain(Array.class),
-                parentGenes1 = parent1.genes,
-                parentGenes2 = parent2.genes;
-        final int maxParentGeneCount = Math.max(parentGenes1.size, parentGenes2.size);
+        final RandomGen rand = RandomGen.current();
+        final ByteArray originalGenes = tmpGenes.get();
+        final int maxParentGeneCount = Math.max(parent1.geneCount, parent2.geneCount);
         for (int i = 0; i < maxParentGeneCount; ++i) {
-            Array<Gene> parentGenes = rand.nextBool() ? parentGenes1 : parentGenes2;
-            if (i < parentGenes.size) {
-                originalGenes.add(parentGenes.get(i));
+            DNA parent = rand.nextBool() ? parent1 : parent2;
+            if (i < parent.geneCount) {
+                originalGenes.addAll(parent.bytes, parent.offset + i * geneValueCount, geneValueCount);
             }
         }
-        set(originalGenes);
+        set(originalGenes.items, 0, originalGenes.size / geneValueCount);
         originalGenes.clear();
-        Pools.free(originalGenes);
     }
 
-    private void set(Array<Gene> originalGenes) {
-        final Array<Gene> thisGenes = this.genes;
-        int countToAdd = originalGenes.size - thisGenes.size;
-        while (--countToAdd > -1) {
-            thisGenes.add(Gene.getInstance());
+    private void set(byte[] originalBytes, int originalOffset, int originalGeneCount) {
+        invalidatePrograms();
+        resize(originalGeneCount);
+        System.arraycopy(originalBytes, originalOffset, bytes, offset, originalGeneCount * geneValueCount);
+    }
+
+    public void setRandom() {
+        invalidatePrograms();
+        RandomGen.current().nextBytes(bytes, offset, offset + geneCount * geneValueCount);
+    }
+
+    /**
+     * Mutates genes. Shared DNA is copied only when the first mutation happens.
+     * Genes without mutation are skipped at once: the distance to the next mutated gene is geometric,
+     * as the count of failed per gene trials, and it is drawn with the kind of the mutation from a single long.
+     * @return DNA which should be used instead of this one
+     */
+    public DNA mutate() {
+        return mutate(DNA.mutationChance);
+    }
+
+    /**
+     * @param mutationChance Chance of mutation of every gene, it is halved after each mutation
+     */
+    DNA mutate(float mutationChance) {
+        final RandomGen rand = RandomGen.current();
+        DNA dna = this;
+        boolean copied = false;
+        final ByteArray genesToAdd = tmpGenes.get();
+        long bits = rand.nextLong();
+        for (int i = skip(bits, mutationChance); i < dna.geneCount; ) {
+            if (!copied) {
+                dna = toPrivate();
+                dna.invalidatePrograms();
+                copied = true;
+            }
+            final int geneOffset = dna.offset + i * geneValueCount;
+            final float mutation = (bits & 0xFFFFFF) * 0x1p-24f;
+            mutationChance /= 2;
+            boolean removed = false;
+            if (mutation < 0.01f) {
+                mutateGene(dna.bytes, geneOffset);
+            } else if (mutation < geneCountChangeChance) {
+                // the same draw decides between deletion and duplication
+                final float duplicate = (mutation - 0.01f) / (geneCountChangeChance - 0.01f);
+                if (dna.geneCount == maxGeneCount || dna.geneCount > minGeneCount && duplicate >= geneDuplicateChance) {
+                    dna.removeGene(i);
+                    removed = true;
+                } else {
+                    genesToAdd.addAll(dna.bytes, geneOffset, geneValueCount);
+                    mutateGene(genesToAdd.items, genesToAdd.size - geneValueCount);
+                }
+            } else {
+                mutateGene(dna.bytes, geneOffset);
+            }
+            bits = rand.nextLong();
+            // the next gene takes place of the removed one
+            i += (removed ? 0 : 1) + skip(bits, mutationChance);
         }
-        for (int i = 0, n = Math.min(originalGenes.size, thisGenes.size); i < n; ++i) {
-            thisGenes.get(i).set(originalGenes.get(i));
+        if (genesToAdd.size > 0) {
+            final int oldGeneCount = dna.geneCount;
+            dna.resize(oldGeneCount + genesToAdd.size / geneValueCount);
+            System.arraycopy(genesToAdd.items, 0, dna.bytes, dna.offset + oldGeneCount * geneValueCount, genesToAdd.size);
+            genesToAdd.clear();
         }
-        int countToRemove = thisGenes.size - originalGenes.size;
-        while (--countToRemove > -1) {
-            thisGenes.removeIndex(thisGenes.size - 1).release();
+        return dna;
+    }
+
+    /**
+     * @param bits Random bits, upper 32 bits are used
+     * @return Count of genes without mutation before the next mutated one, MAX_SKIP if the chance is 0
+     */
+    private static int skip(long bits, float chance) {
+        if (chance <= 0) {
+            return MAX_SKIP;
         }
+        final double uniform = ((bits >>> 32) + 0.5) * 0x1p-32;
+        // 1 - chance is rounded to 1 for tiny chances, e.g. after many halvings, then failures is infinite
+        final double failures = Math.log(uniform) / Math.log(1.0 - chance);
+        return failures < MAX_SKIP && failures >= 0 ? (int) failures : MAX_SKIP;
     }
 
-    public void setRandom() {
-        for (Gene gene : genes) {
-            gene.setRandom();
+    /**
+     * Changes 1 to 5 random values of the gene, every next value is changed with the halved chance.
+     * The count of changes, the first position and value are taken from a single long.
+     */
+    private static void mutateGene(byte[] bytes, int geneOffset) {
+        final RandomGen rand = RandomGen.current();
+        long bits = rand.nextLong();
+        // chances of 2, 3, 4 and 5 changes are 1/2, 1/2 * 1/4, 1/8 * 1/8 and 1/64 * 1/16
+        final int countBits = (int) (bits >>> 54);
+        int count = countBits >= 512 ? 1 : countBits >= 128 ? 2 : countBits >= 16 ? 3 : countBits >= 1 ? 4 : 5;
+        while (true) {
+            bytes[geneOffset + (int) (((bits & 0xFFFFFFFFL) * geneValueCount) >>> 32)] = (byte) (bits >>> 32);
+            if (--count == 0) {
+                break;
+            }
+            bits = rand.nextLong();
         }
     }
 
-    @SuppressWarnings("unchecked")
-    public void mutate() {
-        final RandomGen rand = Gene.RAND;
-        float mutationChance = DNA.mutationChance;
-        Iterator<Gene> geneIterator = genes.iterator();
-        final Array<Gene> genesToAdd = Pools.obtain(Array.class);
-        while (geneIterator.hasNext()) {
-            Gene gene = geneIterator.next();
-            if (rand.nextBool(mutationChance)) {
-                float mutation = rand.nextFloat();
-                if (mutation < 0.01f) {
-                    gene.mutate();
-                } else if (mutation < geneCountChangeChance) {
-                    if (genes.size == maxGeneCount || genes.size > minGeneCount && !rand.nextBool(geneDuplicateChance)) {
-                        geneIterator.remove();
-                        gene.release();
-                    } else {
-                        Gene duplicate = Gene.getInstance();
-                        duplicate.set(gene);
-                        duplicate.mutate();
-                        genesToAdd.add(duplicate);
-                    }
-                } else {
-                    gene.mutate();
-                }
-                mutationChance /= 2;
+    private void removeGene(int index) {
+        final int geneOffset = offset + index * geneValueCount;
+        System.arraycopy(bytes, geneOffset + geneValueCount, bytes, geneOffset,
+                (geneCount - index - 1) * geneValueCount);
+        --geneCount;
+    }
+
+    /**
+     * Changes the gene count, genes are moved to a new slice of {@link GenomeArena} if the current one is too small.
+     * Values of added genes are not defined.
+     */
+    private void resize(int geneCount) {
+        final int required = geneCount * geneValueCount;
+        if (required > size) {
+            final byte[] oldBytes = bytes;
+            final int oldOffset = offset;
+            final int oldSize = Math.min(this.geneCount * geneValueCount, required);
+            arena.free(this);
+            // genes are rounded up to 4, so a few duplications do not move the genome
+            arena.allocate(this, ((geneCount + 3) & ~3) * geneValueCount);
+            if (oldBytes != null) {
+                System.arraycopy(oldBytes, oldOffset, bytes, offset, oldSize);
+            }
+        }
+        this.geneCount = geneCount;
+    }
+
+    /**
+     * Changes the gene count, added genes start with four -1 values
+     */
+    void setGeneCount(int geneCount) {
+        invalidatePrograms();
+        final int oldGeneCount = this.geneCount;
+        resize(geneCount);
+        for (int i = oldGeneCount; i < geneCount; ++i) {
+            final int geneOffset = offset + i * geneValueCount;
+            Arrays.fill(bytes, geneOffset, geneOffset + 4, (byte) -1);
+            Arrays.fill(bytes, geneOffset + 4, geneOffset + geneValueCount, (byte) 0);
+        }
+    }
+
+    public int getGeneCount() {
+        return geneCount;
+    }
+
+    public byte getValue(int geneIndex, int geneValueIndex) {
+        return bytes[offset + geneIndex * geneValueCount + geneValueIndex];
+    }
+
+    void setGene(int index, int... values) {
+        invalidatePrograms();
+        final int geneOffset = offset + index * geneValueCount;
+        for (int i = 0, n = Math.min(geneValueCount, values.length); i < n; ++i) {
+            bytes[geneOffset + i] = (byte) values[i];
+        }
+    }
+
+    // shared DNA may be run by several threads
+    synchronized GenomeProgram getProgram(int geneIndex, boolean embryo) {
+        return (embryo ? embryoPrograms : programs).get(geneIndex);
+    }
+
+    synchronized void putProgram(int geneIndex, boolean embryo, GenomeProgram program) {
+        (embryo ? embryoPrograms : programs).put(geneIndex, program);
+    }
+
+    private synchronized void invalidatePrograms() {
+        programs.clear();
+        embryoPrograms.clear();
+        hashed = false;
+    }
+
+    /**
+     * @return High half of the content hash, DNA with equal genes have equal hashes
+     * @see #contentHashLow()
+     */
+    synchronized long contentHashHigh() {
+        hash();
+        return hashHigh;
+    }
+
+    /**
+     * @return Low half of the content hash
+     */
+    synchronized long contentHashLow() {
+        hash();
+        return hashLow;
+    }
+
+    /**
+     * MurmurHash3 x64 128 of the gene count and values of all genes
+     */
+    private void hash() {
+        if (hashed) {
+            return;
+        }
+        long h1 = 0x9E3779B97F4A7C15L;
+        long h2 = 0xC2B2AE3D27D4EB4FL;
+        long k1 = geneCount;
+        long k2 = 0;
+        int length = 4;
+        for (int i = offset, n = i + geneCount * geneValueCount; i < n; ++i, ++length) {
+            final long value = bytes[i] & 0xFFL;
+            final int shift = (length & 7) << 3;
+            if ((length & 15) < 8) {
+                k1 |= value << shift;
+            } else {
+                k2 |= value << shift;
+            }
+            if ((length & 15) == 15) {
+                h1 ^= mixK1(k1);
+                h1 = Long.rotateLeft(h1, 27) + h2;
+                h1 = h1 * 5 + 0x52dce729;
+                h2 ^= mixK2(k2);
+                h2 = Long.rotateLeft(h2, 31) + h1;
+                h2 = h2 * 5 + 0x38495ab5;
+                k1 = 0;
+                k2 = 0;
             }
         }
-        genes.addAll(genesToAdd);
-        genesToAdd.clear();
-        Pools.free(genesToAdd);
+        h1 ^= mixK1(k1);
+        h2 ^= mixK2(k2);
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        hashHigh = h1;
+        hashLow = h2;
+        hashed = true;
     }
 
-    public Gene getGene(int index) {
-        return genes.get(index);
+    private static long mixK1(long k1) {
+        return Long.rotateLeft(k1 * 0x87c37b91114253d5L, 31) * 0x4cf5ad432745937fL;
+    }
+
+    private static long mixK2(long k2) {
+        return Long.rotateLeft(k2 * 0x4cf5ad432745937fL, 33) * 0x87c37b91114253d5L;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb93fe1a85a33L;
+        k ^= k >>> 33;
+        return k;
     }
 
     @Override
     public void reset() {
-        for (Gene gene : genes) {
-            gene.reset();
-        }
+        invalidatePrograms();
+        // the slice is returned to the arena, pooled DNA gets the initial genes in getInstance
+        arena.free(this);
+        // pooled DNA must not keep the arena of a disposed world
+        arena = null;
+        geneCount = 0;
     }
 
     @Override
     public void release() {
-        pool.free(this);
+        if (references.decrementAndGet() == 0) {
+            synchronized (pool) {
+                pool.free(this);
+            }
+        }
     }
 }
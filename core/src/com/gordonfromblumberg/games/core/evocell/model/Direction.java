@@ -19,7 +19,7 @@ public enum Direction {
     }
 
     public static Direction random() {
-        return ALL[RandomGen.INSTANCE.nextInt(4)];
+        return ALL[RandomGen.current().nextInt(4)];
     }
 
     public Direction opposite() {
@@ -0,0 +1,121 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+/**
+ * Environment property computed from {@link Source} into arrays of grid regions, e.g. chunks of {@link CellGrid}.
+ * Values are recomputed only in rows which the source reports as changed, static sources are computed once.
+ * Regions which are not stored may read values directly with {@link #get(int, int)}.
+ */
+public class EnvironmentField {
+    private final int height;
+    private final Source source;
+    private int changedAtTurn = -1;
+    private int updatedAtTurn = -1;
+
+    public EnvironmentField(int height, Source source) {
+        this.height = height;
+        this.source = source;
+    }
+
+    /**
+     * @return true if values may be changed by update at the given turn
+     */
+    public boolean isOutdated(int turn) {
+        if (updatedAtTurn < 0) {
+            return true;
+        }
+        if (source.isStatic() || turn == updatedAtTurn) {
+            return false;
+        }
+        for (int y = 0; y < height; ++y) {
+            if (source.isRowChanged(y, turn)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if stored regions should be recomputed with {@link #fill} and then {@link #updated(int, boolean)}
+     * should be invoked
+     */
+    public boolean isUpdateRequired(int turn) {
+        return updatedAtTurn < 0 || !source.isStatic() && turn != updatedAtTurn;
+    }
+
+    /**
+     * Computes values of region [x; x + width) x [y; y + height) stored row by row
+     * @param stride Length of a row in values array
+     * @param all Recompute all rows, otherwise only rows changed at the turn
+     * @return true if any value has been changed
+     */
+    public boolean fill(int[] values, int stride, int x, int y, int width, int height, int turn, boolean all) {
+        final Source source = this.source;
+        boolean changed = false;
+        for (int j = 0, index = 0; j < height; ++j, index += stride) {
+            if (!all && !source.isRowChanged(y + j, turn)) {
+                continue;
+            }
+            for (int i = 0; i < width; ++i) {
+                final int value = source.get(x + i, y + j, turn);
+                if (values[index + i] != value) {
+                    values[index + i] = value;
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Should be invoked when all stored regions have been filled at the turn
+     * @param changed true if any value has been changed
+     */
+    public void updated(int turn, boolean changed) {
+        if (changed || updatedAtTurn < 0) {
+            changedAtTurn = turn;
+        }
+        updatedAtTurn = turn;
+    }
+
+    /**
+     * @return Value at the turn of the last update
+     */
+    public int get(int x, int y) {
+        return source.get(x, y, updatedAtTurn);
+    }
+
+    /**
+     * @return The last turn when stored regions were filled, -1 if the field has not been computed yet
+     */
+    public int getUpdatedAtTurn() {
+        return updatedAtTurn;
+    }
+
+    /**
+     * @return The last turn when any value was changed, -1 if the field has not been computed yet
+     */
+    public int getChangedAtTurn() {
+        return changedAtTurn;
+    }
+
+    /**
+     * Distribution of an environment property over the grid
+     */
+    public interface Source {
+        int get(int x, int y, int turn);
+
+        /**
+         * @return true if values don't depend on turn
+         */
+        default boolean isStatic() {
+            return false;
+        }
+
+        /**
+         * @return false if values of the row at the given turn are the same as at the previous turn
+         */
+        default boolean isRowChanged(int y, int turn) {
+            return true;
+        }
+    }
+}
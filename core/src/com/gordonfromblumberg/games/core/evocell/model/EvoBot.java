@@ -13,19 +13,29 @@ public class EvoBot extends Bot {
         }
     };
 
-    final DNA dna = DNA.getInstance();
+    // shared with parent and offspring until mutation
+    DNA dna;
+    // program of the active gene, it is dropped when the DNA is replaced or changed
+    GenomeProgram program;
     byte embryoGeneIndex;
     byte activeGeneIndex;
-    Object contextObject;
+    int contextCell = -1;
 
     private EvoBot() { }
 
-    public static EvoBot getInstance() {
-        return pool.obtain();
+    public static EvoBot getInstance(BotStore store) {
+        final EvoBot bot;
+        synchronized (pool) {
+            bot = pool.obtain();
+        }
+        bot.attach(store);
+        return bot;
     }
 
     public void setRandomDna() {
+        dna = privateDna();
         dna.setRandom();
+        program = null;
     }
 
     public byte getEmbryoGeneIndex() {
@@ -41,27 +51,34 @@ public class EvoBot extends Bot {
     }
 
     public void setActiveGeneIndex(int index) {
-        this.activeGeneIndex = (byte) modPos(index, dna.genes.size);
+        this.activeGeneIndex = (byte) modPos(index, dna.getGeneCount());
     }
 
     public void setGene(int geneIndex, int... geneValues) {
-        dna.getGene(geneIndex).set(geneValues);
+        dna = privateDna();
+        dna.setGene(geneIndex, geneValues);
+        program = null;
+    }
+
+    private DNA privateDna() {
+        return dna != null ? dna.toPrivate() : DNA.getInstance(store.genomeArena);
     }
 
     @Override
     protected void _update(GameWorld world) {
-        contextObject = getForwardCell(world.getGrid());
+        startProgram(world);
         final Interpreter interpreter = world.interpreter();
         interpreter.run(world, this);
+        finishProgram(world);
+    }
+
+    void startProgram(GameWorld world) {
+        contextCell = getForwardCellIndex(world.getGrid());
+    }
+
+    void finishProgram(GameWorld world) {
         if (offspring != null) {
-            if (offspring.energy > 0 && offspring.organics > 0) {
-                initOffspring(world, offspring);
-                offspring.lastTurnUpdated = world.getTurn();
-                world.updateCellStatistic(offspring);
-            } else {
-                offspring.die();
-                offspring.release();
-            }
+            settleOffspring(world, offspring);
             offspring = null;
         }
     }
@@ -70,16 +87,19 @@ public class EvoBot extends Bot {
     protected void initOffspring(GameWorld world, Bot offspring) {
         final EvoBot child = (EvoBot) offspring;
         child.init();
-        child.dna.set(this.dna);
-        child.dna.mutate();
+        if (child.dna != null) {
+            child.dna.release();
+        }
+        child.dna = this.dna.share().mutate();
+        child.program = null;
         child.setActiveGeneIndex(1);
-        child.setEmbryoGeneIndex((byte) modPos(child.getEmbryoGeneIndex(), child.dna.genes.size));
+        child.setEmbryoGeneIndex((byte) modPos(child.getEmbryoGeneIndex(), child.dna.getGeneCount()));
         world.interpreter().runEmbryo(world, child);
     }
 
     @Override
     protected EvoBot getOffspringInstance(int embryoGeneIndex) {
-        EvoBot offspring = getInstance();
+        EvoBot offspring = getInstance(store);
         offspring.setEmbryoGeneIndex((byte) modPos(embryoGeneIndex, 128));
         return offspring;
     }
@@ -88,14 +108,20 @@ public class EvoBot extends Bot {
     public void reset() {
         super.reset();
 
-        dna.reset();
+        if (dna != null) {
+            dna.release();
+            dna = null;
+        }
+        program = null;
         embryoGeneIndex = 0;
         activeGeneIndex = 0;
-        contextObject = null;
+        contextCell = -1;
     }
 
     @Override
     public void release() {
-        pool.free(this);
+        synchronized (pool) {
+            pool.free(this);
+        }
     }
 }
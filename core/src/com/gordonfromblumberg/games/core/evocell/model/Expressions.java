@@ -4,44 +4,34 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.utils.IntMap;
 import com.badlogic.gdx.utils.JsonReader;
 import com.badlogic.gdx.utils.JsonValue;
-import com.badlogic.gdx.utils.ObjectMap;
-import com.gordonfromblumberg.games.core.common.utils.RandomGen;
+import com.badlogic.gdx.utils.ObjectIntMap;
 
 public final class Expressions {
-    static final ObjectMap<String, ExpressionMapping> expressionsMap = new ObjectMap<>();
+    // expression name -> opcode of GenomeProgram
+    static final ObjectIntMap<String> expressionOps = new ObjectIntMap<>();
     static final IntMap<ExpressionDef> expressionDefs = new IntMap<>();
 
     static {
-        expressionsMap.put("random", (g, b, p1, p2) -> RandomGen.INSTANCE.nextByte());
-        expressionsMap.put("equals", (g, b, p1, p2) -> p1.number(g, b) == p2.number(g, b) ? 1 : 0);
-        expressionsMap.put("not", (g, b, p1, p2) -> p1.bool(g, b) ? 0 : 1);
-        expressionsMap.put("gt", (g, b, p1, p2) -> p1.number(g, b) > p2.number(g, b) ? 1 : 0);
-        expressionsMap.put("lt", (g, b, p1, p2) -> p1.number(g, b) < p2.number(g, b) ? 1 : 0);
-        expressionsMap.put("and", (g, b, p1, p2) -> p1.bool(g, b) && p2.bool(g, b) ? 1 : 0);
-        expressionsMap.put("or", (g, b, p1, p2) -> p1.bool(g, b) || p2.bool(g, b) ? 1 : 0);
-        expressionsMap.put("sum", (g, b, p1, p2) -> p1.number(g, b) + p2.number(g, b));
-        expressionsMap.put("subtract", (g, b, p1, p2) -> p1.number(g, b) - p2.number(g, b));
-        expressionsMap.put("mul", (g, b, p1, p2) -> p1.number(g, b) * p2.number(g, b));
-        expressionsMap.put("div", (g, b, p1, p2) -> Bot.div(p1.number(g, b), p2.number(g, b)));
-        expressionsMap.put("get my cell property", (g, b, p1, p2) -> Bot.getCellProperty(b.getCell(), p1.number(g, b)));
-        expressionsMap.put("get my property", (g, b, p1, p2) -> Bot.getBotProperty(b, p1.number(g, b)));
-        expressionsMap.put("get my parameter", (g, b, p1, p2) -> b.getParameter(p1.number(g, b)));
-        expressionsMap.put("is my cell property gt", (g, b, p1, p2) ->
-                Bot.getCellProperty(b.getCell(), p1.number(g, b)) > p2.number(g, b) ? 1 : 0);
-        expressionsMap.put("is my property gt", (g, b, p1, p2) ->
-                Bot.getBotProperty(b, p1.number(g, b)) > p2.number(g, b) ? 1 : 0);
-        expressionsMap.put("is forward cell with bot", (g, b, p1, p2) -> {
-            Cell forwardCell = b.getForwardCell(g);
-            return forwardCell != null && forwardCell.bot != null ? 1 : 0;
-        });
-        expressionsMap.put("is near empty cell", (g, b, p1, p2) -> b.isNearEmptyCell(g) ? 1 : 0);
-        expressionsMap.put("is my relative forward", (g, b, p1, p2) -> {
-            Cell forwardCell = b.getForwardCell(g);
-            return forwardCell != null && forwardCell.bot != null
-                    && (forwardCell.bot.parentId == b.id || forwardCell.bot.id == b.parentId) ? 1 : 0;
-        });
-        expressionsMap.put("get context cell property", (g, b, p1, p2) ->
-                b.getCell() != null ? Bot.getCellProperty(b.getCell(), p1.number(g, b)) : 0);
+        expressionOps.put("random", GenomeProgram.RANDOM);
+        expressionOps.put("equals", GenomeProgram.EQUALS);
+        expressionOps.put("not", GenomeProgram.NOT);
+        expressionOps.put("gt", GenomeProgram.GT);
+        expressionOps.put("lt", GenomeProgram.LT);
+        expressionOps.put("and", GenomeProgram.AND);
+        expressionOps.put("or", GenomeProgram.OR);
+        expressionOps.put("sum", GenomeProgram.SUM);
+        expressionOps.put("subtract", GenomeProgram.SUBTRACT);
+        expressionOps.put("mul", GenomeProgram.MUL);
+        expressionOps.put("div", GenomeProgram.DIV);
+        expressionOps.put("get my cell property", GenomeProgram.CELL_PROPERTY);
+        expressionOps.put("get my property", GenomeProgram.MY_PROPERTY);
+        expressionOps.put("get my parameter", GenomeProgram.MY_PARAMETER);
+        expressionOps.put("is my cell property gt", GenomeProgram.CELL_PROPERTY_GT);
+        expressionOps.put("is my property gt", GenomeProgram.MY_PROPERTY_GT);
+        expressionOps.put("is forward cell with bot", GenomeProgram.FORWARD_CELL_WITH_BOT);
+        expressionOps.put("is near empty cell", GenomeProgram.NEAR_EMPTY_CELL);
+        expressionOps.put("is my relative forward", GenomeProgram.RELATIVE_FORWARD);
+        expressionOps.put("get context cell property", GenomeProgram.CONTEXT_CELL);
 
         loadExpressionDefs();
     }
@@ -50,6 +40,17 @@ public final class Expressions {
         throw new UnsupportedOperationException("Expressions should not be instantiated");
     }
 
+    static boolean isForwardCellWithBot(CellGrid grid, Bot bot) {
+        int forwardCell = bot.getForwardCellIndex(grid);
+        return forwardCell >= 0 && grid.getBot(forwardCell) != null;
+    }
+
+    static boolean isRelativeForward(CellGrid grid, Bot bot) {
+        int forwardCell = bot.getForwardCellIndex(grid);
+        Bot forwardBot = forwardCell >= 0 ? grid.getBot(forwardCell) : null;
+        return forwardBot != null && (forwardBot.parentId == bot.getId() || forwardBot.getId() == bot.parentId);
+    }
+
     private static void loadExpressionDefs() {
         final JsonReader jsonReader = new JsonReader();
         final JsonValue array = jsonReader.parse(Gdx.files.internal("model/expressions.json"));
@@ -59,7 +60,7 @@ public final class Expressions {
                     code,
                     exprDesc.getString("name"),
                     exprDesc.get("defaultParameters").asByteArray());
-            if (!expressionsMap.containsKey(expressionDef.name())) {
+            if (!expressionOps.containsKey(expressionDef.name())) {
                 throw new IllegalStateException("Expression " + expressionDef.name() + " is not mapped");
             }
             ExpressionDef existing = expressionDefs.put(code, expressionDef);
@@ -0,0 +1,132 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+import com.badlogic.gdx.utils.Array;
+
+import java.util.Arrays;
+
+/**
+ * Bytes of genomes of one world, the arena is owned by {@link BotStore} and DNA gets it at creation.
+ * Every {@link DNA} owns a slice of a large chunk, slices are allocated one after another
+ * and never move while the world is being updated, so genes are read and written without locks.
+ * Slices of released DNA become garbage, {@link #compact()} moves live slices to the beginning of the arena
+ * when there is more garbage than live genomes. The arena and all its genomes are collected with the world.
+ */
+public final class GenomeArena {
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    private final Array<byte[]> chunks = new Array<>();
+    // chunk where new slices are allocated and its first free byte
+    private int chunkIndex = -1;
+    private int top;
+    // owners of slices in order of allocation, null for released slices
+    private DNA[] owners = new DNA[1024];
+    private int sliceCount;
+
+    private long liveBytes;
+    private long garbageBytes;
+    private int compactions;
+
+    /**
+     * Allocates the slice of the given size for the DNA, its previous slice should be freed before
+     */
+    synchronized void allocate(DNA dna, int size) {
+        byte[] chunk = chunkIndex >= 0 ? chunks.get(chunkIndex) : null;
+        while (chunk == null || top + size > chunk.length) {
+            chunk = nextChunk(size);
+        }
+        dna.bytes = chunk;
+        dna.offset = top;
+        dna.size = size;
+        dna.slice = sliceCount;
+        top += size;
+        if (sliceCount == owners.length) {
+            owners = Arrays.copyOf(owners, sliceCount * 2);
+        }
+        owners[sliceCount++] = dna;
+        liveBytes += size;
+    }
+
+    private byte[] nextChunk(int size) {
+        ++chunkIndex;
+        top = 0;
+        if (chunkIndex == chunks.size) {
+            chunks.add(new byte[Math.max(CHUNK_SIZE, size)]);
+        } else if (chunks.get(chunkIndex).length < size) {
+            // chunks after the current one are empty
+            chunks.set(chunkIndex, new byte[size]);
+        }
+        return chunks.get(chunkIndex);
+    }
+
+    synchronized void free(DNA dna) {
+        if (dna.slice < 0) {
+            return;
+        }
+        owners[dna.slice] = null;
+        liveBytes -= dna.size;
+        garbageBytes += dna.size;
+        dna.bytes = null;
+        dna.offset = 0;
+        dna.size = 0;
+        dna.slice = -1;
+    }
+
+    /**
+     * Moves live slices to the beginning of the arena if there is more garbage than live genomes.
+     * It should be invoked when no genome is being read or changed, e.g. between turns.
+     */
+    public synchronized void compact() {
+        if (garbageBytes < CHUNK_SIZE || garbageBytes < liveBytes) {
+            return;
+        }
+
+        // slices are packed in the same order, so a slice never moves over a live one which is not moved yet
+        int chunk = 0;
+        int position = 0;
+        int count = 0;
+        for (int i = 0; i < sliceCount; ++i) {
+            final DNA dna = owners[i];
+            if (dna == null) {
+                continue;
+            }
+            final int size = dna.size;
+            byte[] target = chunks.get(chunk);
+            while (position + size > target.length) {
+                target = chunks.get(++chunk);
+                position = 0;
+            }
+            System.arraycopy(dna.bytes, dna.offset, target, position, size);
+            dna.bytes = target;
+            dna.offset = position;
+            dna.slice = count;
+            owners[count++] = dna;
+            position += size;
+        }
+        Arrays.fill(owners, count, sliceCount, null);
+        sliceCount = count;
+        chunkIndex = chunk;
+        top = position;
+        // one empty chunk is kept for the next allocations
+        while (chunks.size > chunk + 2) {
+            chunks.pop();
+        }
+        garbageBytes = 0;
+        ++compactions;
+    }
+
+    public synchronized long getLiveBytes() {
+        return liveBytes;
+    }
+
+    public synchronized long getGarbageBytes() {
+        return garbageBytes;
+    }
+
+    public synchronized int getChunkCount() {
+        return chunks.size;
+    }
+
+    public synchronized int getCompactions() {
+        return compactions;
+    }
+}
@@ -0,0 +1,530 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.gordonfromblumberg.games.core.common.utils.RandomGen;
+import com.gordonfromblumberg.games.core.evocell.world.GameWorld;
+
+import java.util.Arrays;
+
+import static com.gordonfromblumberg.games.core.evocell.model.Interpreter.*;
+
+/**
+ * Lock-step execution of bots which run the same genome program.
+ * Bots collected during the update are grouped by program, and each group is executed in batches
+ * of interpreter.batchSize lanes. Every instruction is performed for all lanes which reached it,
+ * so conditions and expressions are evaluated by loops over the batch columns.
+ * Lanes which took another branch are masked out until the batch reconverges, the instruction
+ * with the lowest position is performed first.
+ * <p>
+ * Every lane has its own stack, counters and defaults, so a bot executes the same instructions as alone.
+ * Batches are run only in intent mode where bots don't change each other during the update,
+ * only random values are drawn in another order than by bots one by one.
+ * A bot which is the only one with its program is run by {@link Interpreter} and may use compiled code,
+ * batched executions are not counted by {@link GenomeJit}.
+ * The batch belongs to a single thread.
+ */
+final class GenomeBatch {
+    private static final int HALTED = -1;
+
+    // lanes of a batch, groups are split into batches of this size
+    private final int batchSize;
+    private final ObjectMap<GenomeProgram, Group> groupsByProgram = new ObjectMap<>();
+    // groups in order of their first bot, so the order of execution doesn't depend on hash codes
+    private final Array<Group> groups = new Array<>();
+    private int groupCount;
+    // bots in order of adding
+    private final Array<EvoBot> added = new Array<>();
+    private boolean finished;
+
+    // lane columns, value of the lane l with index i is at i * width + l
+    private int width;
+    private EvoBot[] lanes = new EvoBot[16];
+    private int[] pcs = new int[16];
+    private int[] sps = new int[16];
+    private int[] gas = new int[16];
+    private int[] live = new int[16];
+    private int[] active = new int[16];
+    private long[] evaluatedGenes = new long[64];
+    private int[] actionCounters = new int[16];
+    private int[] gotoCounters = new int[16];
+    private int[] stack = new int[16];
+    private byte[] defaults = new byte[16];
+
+    GenomeBatch(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    void add(EvoBot bot, GenomeProgram program) {
+        if (finished) {
+            added.clear();
+            finished = false;
+        }
+        added.add(bot);
+
+        Group group = groupsByProgram.get(program);
+        if (group == null) {
+            if (groupCount == groups.size) {
+                groups.add(new Group());
+            }
+            group = groups.get(groupCount++);
+            group.program = program;
+            groupsByProgram.put(program, group);
+        }
+        group.bots.add(bot);
+    }
+
+    /**
+     * Runs programs of all added bots, single bots are run by the interpreter
+     * @return Added bots in order of adding, the array is cleared by the next adding
+     */
+    Array<EvoBot> run(GameWorld world, Interpreter interpreter) {
+        if (finished) {
+            added.clear();
+        }
+        for (int g = 0; g < groupCount; ++g) {
+            final Group group = groups.get(g);
+            final GenomeProgram program = group.program;
+            final Array<EvoBot> bots = group.bots;
+            for (int from = 0; from < bots.size; from += batchSize) {
+                final int count = Math.min(batchSize, bots.size - from);
+                if (world.isTurnBudgetExceeded()) {
+                    world.countSkippedPrograms(count);
+                } else if (count == 1) {
+                    interpreter.run(world, bots.get(from), program);
+                } else {
+                    execute(world, program, bots.items, from, count);
+                }
+            }
+            bots.clear();
+            group.program = null;
+        }
+        groupCount = 0;
+        groupsByProgram.clear();
+        finished = true;
+        return added;
+    }
+
+    /**
+     * Executes the program for bots [from; from + count) in lock-step
+     */
+    private void execute(GameWorld world, GenomeProgram program, EvoBot[] bots, int from, int count) {
+        prepare(program, count);
+        System.arraycopy(bots, from, lanes, 0, count);
+        final int initialGene = program.initialGene;
+        for (int l = 0; l < count; ++l) {
+            live[l] = l;
+            evaluateGene(l, initialGene);
+        }
+
+        final int[] code = program.code;
+        final int[] blockCosts = program.blockCosts;
+        final int[] pcs = this.pcs;
+        final int[] live = this.live;
+        final int[] active = this.active;
+        final GenomeProfiler.Counters profile = GenomeProfiler.enabled ? GenomeProfiler.counters() : null;
+        int liveCount = count;
+        while (liveCount > 0) {
+            int pc = Integer.MAX_VALUE;
+            for (int k = 0; k < liveCount; ++k) {
+                pc = Math.min(pc, pcs[live[k]]);
+            }
+            final int cost = blockCosts != null ? blockCosts[pc] : 0;
+            int activeCount = 0;
+            for (int k = 0; k < liveCount; ++k) {
+                final int l = live[k];
+                if (pcs[l] == pc) {
+                    if (cost > 0 && (gas[l] -= cost) < 0) {
+                        world.countOutOfGas();
+                        pcs[l] = HALTED;
+                    } else {
+                        active[activeCount++] = l;
+                    }
+                }
+            }
+
+            if (profile != null) {
+                final long start = System.nanoTime();
+                step(world, code, pc, activeCount, profile);
+                profile.executed(GenomeProfiler.row(code, pc), activeCount, System.nanoTime() - start);
+            } else {
+                step(world, code, pc, activeCount, null);
+            }
+
+            int kept = 0;
+            for (int k = 0; k < liveCount; ++k) {
+                final int l = live[k];
+                if (pcs[l] != HALTED) {
+                    live[kept++] = l;
+                }
+            }
+            liveCount = kept;
+        }
+        Arrays.fill(lanes, 0, count, null);
+    }
+
+    /**
+     * Performs the instruction at pc for the first activeCount lanes of {@link #active}
+     * @param profile Counters of events or null if profiling is off
+     */
+    private void step(GameWorld world, int[] code, int pc, int activeCount, GenomeProfiler.Counters profile) {
+        final int w = width;
+        final int[] active = this.active;
+        final int[] pcs = this.pcs;
+        final int[] sps = this.sps;
+        final int[] stack = this.stack;
+        final EvoBot[] lanes = this.lanes;
+        final CellGrid grid = world.getGrid();
+        switch (code[pc]) {
+            case GenomeProgram.HALT -> {
+                for (int k = 0; k < activeCount; ++k) {
+                    pcs[active[k]] = HALTED;
+                }
+            }
+            case GenomeProgram.ACT -> {
+                final int action = code[pc + 1];
+                final int counters = code[pc + 2] * w;
+                for (int k = 0; k < activeCount; ++k) {
+                    final int l = active[k];
+                    final EvoBot bot = lanes[l];
+                    final int counter = actionCounters[counters + l]++;
+                    Actions.act(action, world, bot, counter, stack[--sps[l] * w + l]);
+                    if (!check(bot)) {
+                        bot.die();
+                        pcs[l] = HALTED;
+                        if (profile != null) {
+                            ++profile.checkDeaths;
+                        }
+                    } else {
+                        pcs[l] = action == Actions.STOP ? HALTED : pc + 3;
+                    }
+                }
+            }
+            case GenomeProgram.CHECK -> {
+                for (int k = 0; k < activeCount; ++k) {
+                    final int l = active[k];
+                    final EvoBot bot = lanes[l];
+                    if (!check(bot)) {
+                        bot.die();
+                        pcs[l] = HALTED;
+                        if (profile != null) {
+                            ++profile.checkDeaths;
+                        }
+                    } else {
+                        pcs[l] = pc + 1;
+                    }
+                }
+            }
+            case GenomeProgram.JUMP -> {
+                final int target = code[pc + 1];
+                for (int k = 0; k < activeCount; ++k) {
+                    pcs[active[k]] = target;
+                }
+            }
+            case GenomeProgram.JUMP_IF_NOT -> {
+                final int target = code[pc + 1];
+                for (int k = 0; k < activeCount; ++k) {
+                    final int l = active[k];
+                    pcs[l] = stack[--sps[l] * w + l] > 0 ? pc + 2 : target;
+                }
+            }
+            case GenomeProgram.GOTO -> {
+                final int counters = code[pc + 1] * w;
+                final int target = code[pc + 2];
+                for (int k = 0; k < activeCount; ++k) {
+                    final int l = active[k];
+                    if (gotoCounters[counters + l]++ < gotoLimit) {
+                        pcs[l] = target;
+                    } else {
+                        pcs[l] = pc + 3;
+                        if (profile != null) {
+                            ++profile.gotoLimitHits;
+                        }
+                    }
+                }
+            }
+            case GenomeProgram.GOTO_GENE -> {
+                final int gene = code[pc + 1];
+                final int target = code[pc + 2];
+                for (int k = 0; k < activeCount; ++k) {
+                    final int l = active[k];
+                    if (evaluateGene(l, gene)) {
+                        pcs[l] = target;
+                        if (profile != null) {
+                            ++profile.geneJumps;
+                        }
+                    } else {
+                        pcs[l] = pc + 3;
+                    }
+                }
+            }
+
+            case GenomeProgram.CONST -> {
+                final int value = code[pc + 1];
+                for (int k = 0; k < activeCount; ++k) {
+                    final int l = active[k];
+                    stack[sps[l]++ * w + l] = value;
+                    pcs[l] = pc + 2;
+                }
+            }
+            case GenomeProgram.DEFAULT -> {
+                final int slot = code[pc + 1] * w;
+                for (int k = 0; k < activeCount; ++k) {
+                    final int l = active[k];
+                    stack[sps[l]++ * w + l] = defaults[slot + l];
+                    pcs[l] = pc + 2;
+                }
+            }
+            case GenomeProgram.RANDOM -> {
+                final RandomGen rand = RandomGen.current();
+                for (int k = 0; k < activeCount; ++k) {
+                    final int l = active[k];
+                    stack[sps[l]++ * w + l] = rand.nextByte();
+                    pcs[l] = pc + 1;
+                }
+            }
+            case GenomeProgram.EQUALS -> {
+                for (int k = 0; k < activeCount; ++k) {
+                    final int l = active[k];
+                    final int i = (--sps[l] - 1) * w + l;
+                    stack[i] = stack[i] == stack[i + w] ? 1 : 0;
+                    pcs[l] = pc + 1;
+                }
+            }
+            case GenomeProgram.NOT -> {
+                for (int k = 0; k < activeCount; ++k) {
+                    final int l = active[k];
+                    final int i = (sps[l] - 1) * w + l;
+                    stack[i] = stack[i] > 0 ? 0 : 1;
+                    pcs[l] = pc + 1;
+                }
+            }
+            case GenomeProgram.GT -> {
+                for (int k = 0; k < activeCount; ++k) {
+                    final int l = active[k];
+                    final int i = (--sps[l] - 1) * w + l;
+                    stack[i] = stack[i] > stack[i + w] ? 1 : 0;
+                    pcs[l] = pc + 1;
+                }
+            }
+            case GenomeProgram.LT -> {
+                for (int k = 0; k < activeCount; ++k) {
+                    final int l = active[k];
+                    final int i = (--sps[l] - 1) * w + l;
+                    stack[i] = stack[i] < stack[i + w] ? 1 : 0;
+                    pcs[l] = pc + 1;
+                }
+            }
+            case GenomeProgram.AND -> {
+                final int target = code[pc + 1];
+                for (int k = 0; k < activeCount; ++k) {
+                    final int l = active[k];
+                    final int i = --sps[l] * w + l;
+                    if (stack[i] > 0) {
+                        pcs[l] = pc + 2;
+                    } else {
+                        stack[i] = 0;
+                        ++sps[l];
+                        pcs[l] = target;
+                    }
+                }
+            }
+            case GenomeProgram.OR -> {
+                final int target = code[pc + 1];
+                for (int k = 0; k < activeCount; ++k) {
+                    final int l = active[k];
+                    final int i = --sps[l] * w + l;
+                    if (stack[i] > 0) {
+                        stack[i] = 1;
+                        ++sps[l];
+                        pcs[l] = target;
+                    } else {
+                        pcs[l] = pc + 2;
+                    }
+                }
+            }
+            case GenomeProgram.BOOL -> {
+                for (int k = 0; k < activeCount; ++k) {
+                    final int l = active[k];
+                    final int i = (sps[l] - 1) * w + l;
+                    stack[i] = stack[i] > 0 ? 1 : 0;
+                    pcs[l] = pc + 1;
+                }
+            }
+            case GenomeProgram.SUM -> {
+                for (int k = 0; k < activeCount; ++k) {
+                    final int l = active[k];
+                    final int i = (--sps[l] - 1) * w + l;
+                    stack[i] += stack[i + w];
+                    pcs[l] = pc + 1;
+                }
+            }
+            case GenomeProgram.SUBTRACT -> {
+                for (int k = 0; k < activeCount; ++k) {
+                    final int l = active[k];
+                    final int i = (--sps[l] - 1) * w + l;
+                    stack[i] -= stack[i + w];
+                    pcs[l] = pc + 1;
+                }
+            }
+            case GenomeProgram.MUL -> {
+                for (int k = 0; k < activeCount; ++k) {
+                    final int l = active[k];
+                    final int i = (--sps[l] - 1) * w + l;
+                    stack[i] *= stack[i + w];
+                    pcs[l] = pc + 1;
+                }
+            }
+            case GenomeProgram.DIV -> {
+                for (int k = 0; k < activeCount; ++k) {
+                    final int l = active[k];
+                    final int i = (--sps[l] - 1) * w + l;
+                    stack[i] = Bot.div(stack[i], stack[i + w]);
+                    pcs[l] = pc + 1;
+                }
+            }
+            case GenomeProgram.CELL_PROPERTY -> {
+                for (int k = 0; k < activeCount; ++k) {
+                    final int l = active[k];
+                    final int i = (sps[l] - 1) * w + l;
+                    stack[i] = Bot.getCellProperty(grid, lanes[l].cell, stack[i]);
+                    pcs[l] = pc + 1;
+                }
+            }
+            case GenomeProgram.MY_PROPERTY -> {
+                for (int k = 0; k < activeCount; ++k) {
+                    final int l = active[k];
+                    final int i = (sps[l] - 1) * w + l;
+                    stack[i] = Bot.getBotProperty(lanes[l], stack[i]);
+                    pcs[l] = pc + 1;
+                }
+            }
+            case GenomeProgram.MY_PARAMETER -> {
+                for (int k = 0; k < activeCount; ++k) {
+                    final int l = active[k];
+                    final int i = (sps[l] - 1) * w + l;
+                    stack[i] = lanes[l].getParameter(stack[i]);
+                    pcs[l] = pc + 1;
+                }
+            }
+            case GenomeProgram.CELL_PROPERTY_GT -> {
+                for (int k = 0; k < activeCount; ++k) {
+                    final int l = active[k];
+                    final int i = (--sps[l] - 1) * w + l;
+                    stack[i] = Bot.getCellProperty(grid, lanes[l].cell, stack[i]) > stack[i + w] ? 1 : 0;
+                    pcs[l] = pc + 1;
+                }
+            }
+            case GenomeProgram.MY_PROPERTY_GT -> {
+                for (int k = 0; k < activeCount; ++k) {
+                    final int l = active[k];
+                    final int i = (--sps[l] - 1) * w + l;
+                    stack[i] = Bot.getBotProperty(lanes[l], stack[i]) > stack[i + w] ? 1 : 0;
+                    pcs[l] = pc + 1;
+                }
+            }
+            case GenomeProgram.FORWARD_CELL_WITH_BOT -> {
+                for (int k = 0; k < activeCount; ++k) {
+                    final int l = active[k];
+                    stack[sps[l]++ * w + l] = Expressions.isForwardCellWithBot(grid, lanes[l]) ? 1 : 0;
+                    pcs[l] = pc + 1;
+                }
+            }
+            case GenomeProgram.NEAR_EMPTY_CELL -> {
+                for (int k = 0; k < activeCount; ++k) {
+                    final int l = active[k];
+                    stack[sps[l]++ * w + l] = lanes[l].isNearEmptyCell(grid) ? 1 : 0;
+                    pcs[l] = pc + 1;
+                }
+            }
+            case GenomeProgram.RELATIVE_FORWARD -> {
+                for (int k = 0; k < activeCount; ++k) {
+                    final int l = active[k];
+                    stack[sps[l]++ * w + l] = Expressions.isRelativeForward(grid, lanes[l]) ? 1 : 0;
+                    pcs[l] = pc + 1;
+                }
+            }
+            case GenomeProgram.CONTEXT_CELL -> {
+                final int target = code[pc + 1];
+                for (int k = 0; k < activeCount; ++k) {
+                    final int l = active[k];
+                    if (lanes[l].cell >= 0) {
+                        pcs[l] = pc + 2;
+                    } else {
+                        stack[sps[l]++ * w + l] = 0;
+                        pcs[l] = target;
+                    }
+                }
+            }
+            default -> throw new IllegalStateException("Unknown opcode " + code[pc] + " at " + pc);
+        }
+    }
+
+    private void prepare(GenomeProgram program, int count) {
+        width = count;
+        if (lanes.length < count) {
+            final int length = Math.max(count, lanes.length * 2);
+            lanes = new EvoBot[length];
+            pcs = new int[length];
+            sps = new int[length];
+            gas = new int[length];
+            live = new int[length];
+            active = new int[length];
+        }
+        Arrays.fill(pcs, 0, count, 0);
+        Arrays.fill(sps, 0, count, 0);
+        Arrays.fill(gas, 0, count, gasLimit);
+
+        evaluatedGenes = cleared(evaluatedGenes, 4 * count);
+        actionCounters = cleared(actionCounters, Actions.tagIds.size * count);
+        gotoCounters = cleared(gotoCounters, program.gotoSlots * count);
+        if (stack.length < program.maxStack * count) {
+            stack = new int[Math.max(program.maxStack * count, stack.length * 2)];
+        }
+
+        final ActionDef.DefaultParameterValue[] randomDefaults = program.randomDefaults;
+        final int n = randomDefaults.length;
+        if (defaults.length < n * count) {
+            defaults = new byte[Math.max(n * count, defaults.length * 2)];
+        }
+        // each bot draws its defaults in the same order as alone
+        for (int l = 0; l < count; ++l) {
+            for (int i = 0; i < n; ++i) {
+                defaults[i * count + l] = randomDefaults[i].get();
+            }
+        }
+    }
+
+    /**
+     * Marks the gene as evaluated by the lane
+     * @return false if the gene was evaluated already
+     */
+    private boolean evaluateGene(int lane, int gene) {
+        final int index = ((gene & 0xFF) >>> 6) * width + lane;
+        final long bit = 1L << gene;
+        final long genes = evaluatedGenes[index];
+        evaluatedGenes[index] = genes | bit;
+        return (genes & bit) == 0;
+    }
+
+    private static long[] cleared(long[] array, int length) {
+        if (array.length < length) {
+            return new long[Math.max(length, array.length * 2)];
+        }
+        Arrays.fill(array, 0, length, 0);
+        return array;
+    }
+
+    private static int[] cleared(int[] array, int length) {
+        if (array.length < length) {
+            return new int[Math.max(length, array.length * 2)];
+        }
+        Arrays.fill(array, 0, length, 0);
+        return array;
+    }
+
+    private static final class Group {
+        GenomeProgram program;
+        final Array<EvoBot> bots = new Array<>(EvoBot.class);
+    }
+}
@@ -0,0 +1,562 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntIntMap;
+import com.badlogic.gdx.utils.ObjectIntMap;
+
+import static com.gordonfromblumberg.games.core.evocell.model.GenomeProgram.*;
+
+/**
+ * Translates {@link GenomeProgram} code to a class file implementing {@link CompiledGenome}.
+ * Operand stack of the program is mapped to the JVM operand stack, counters and evaluated genes
+ * are kept in local variables, random defaults are drawn at the start like before interpretation.
+ * Gas is charged at the first instruction of each block like by the interpreter.
+ * Class file version 49 is used, so the class is checked by the type inferencing verifier
+ * and stack map frames are not required.
+ */
+final class GenomeCodeGenerator {
+    private static final int CLASS_VERSION = 49;
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final String MODEL = "com/gordonfromblumberg/games/core/evocell/model/";
+    private static final String CLASS_NAME = MODEL + "GenomeCode";
+    private static final String GAME_WORLD = "Lcom/gordonfromblumberg/games/core/evocell/world/GameWorld;";
+    private static final String RANDOM_GEN = "com/gordonfromblumberg/games/core/common/utils/RandomGen";
+    private static final String EVO_BOT = "L" + MODEL + "EvoBot;";
+    private static final String BOT = "L" + MODEL + "Bot;";
+    private static final String CELL_GRID = "L" + MODEL + "CellGrid;";
+
+    // JVM opcodes
+    private static final int ICONST_0 = 0x03;
+    private static final int ICONST_1 = 0x04;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC_W = 0x13;
+    private static final int ILOAD = 0x15;
+    private static final int ALOAD = 0x19;
+    private static final int ISTORE = 0x36;
+    private static final int DUP = 0x59;
+    private static final int ASTORE = 0x3a;
+    private static final int IADD = 0x60;
+    private static final int ISUB = 0x64;
+    private static final int IMUL = 0x68;
+    private static final int IINC = 0x84;
+    private static final int IFNE = 0x9a;
+    private static final int IFGE = 0x9c;
+    private static final int IFGT = 0x9d;
+    private static final int IFLE = 0x9e;
+    private static final int IF_ICMPNE = 0xa0;
+    private static final int IF_ICMPLT = 0xa1;
+    private static final int IF_ICMPGE = 0xa2;
+    private static final int IF_ICMPLE = 0xa4;
+    private static final int JVM_GOTO = 0xa7;
+    private static final int RETURN = 0xb1;
+    private static final int GETFIELD = 0xb4;
+    private static final int INVOKEVIRTUAL = 0xb6;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+
+    // fixed local variables of run method
+    private static final int WORLD = 1;
+    private static final int BOT_VAR = 2;
+    private static final int GRID = 3;
+    private static final int TMP = 4;
+    private static final int TMP2 = 5;
+    private static final int GAS = 6;
+    private static final int FIRST_FREE = 7;
+
+    private final ConstantPool pool = new ConstantPool();
+    private final Bytes code = new Bytes();
+    private final IntIntMap tagLocals = new IntIntMap();
+    private final IntIntMap geneLocals = new IntIntMap();
+    // positions of program instructions in JVM code
+    private final IntArray positions = new IntArray();
+    // JVM branches to program instructions: position of branch opcode, program position of target
+    private final IntArray branches = new IntArray();
+    private int maxLocals;
+
+    /**
+     * @return Class file bytes
+     * @throws IllegalStateException if the program can not be translated
+     */
+    static byte[] generate(GenomeProgram program) {
+        return new GenomeCodeGenerator().generateClass(program);
+    }
+
+    private byte[] generateClass(GenomeProgram program) {
+        final int thisClass = pool.classRef(CLASS_NAME);
+        final int superClass = pool.classRef("java/lang/Object");
+        final int genomeInterface = pool.classRef(MODEL + "CompiledGenome");
+        final byte[] constructor = generateConstructor();
+        final byte[] run = generateRun(program);
+        final int codeName = pool.utf8("Code");
+        final int constructorName = pool.utf8("<init>");
+        final int constructorDesc = pool.utf8("()V");
+        final int runName = pool.utf8("run");
+        final int runDesc = pool.utf8("(" + GAME_WORLD + EVO_BOT + ")V");
+
+        final Bytes out = new Bytes();
+        out.u4(0xCAFEBABE);
+        out.u2(0);
+        out.u2(CLASS_VERSION);
+        out.u2(pool.count);
+        out.bytes(pool.bytes);
+        out.u2(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+        out.u2(thisClass);
+        out.u2(superClass);
+        out.u2(1);
+        out.u2(genomeInterface);
+        out.u2(0); // fields
+        out.u2(2); // methods
+        writeMethod(out, constructorName, constructorDesc, codeName, 1, 1, constructor);
+        writeMethod(out, runName, runDesc, codeName, program.maxStack + 5, maxLocals, run);
+        out.u2(0); // attributes
+        return out.toArray();
+    }
+
+    private byte[] generateConstructor() {
+        final Bytes code = new Bytes();
+        code.u1(ALOAD);
+        code.u1(0);
+        code.u1(INVOKESPECIAL);
+        code.u2(pool.methodRef("java/lang/Object", "<init>", "()V"));
+        code.u1(RETURN);
+        return code.toArray();
+    }
+
+    private byte[] generateRun(GenomeProgram program) {
+        final int[] programCode = program.code;
+        int local = FIRST_FREE;
+
+        // allocate locals
+        final int defaultsStart = local;
+        local += program.randomDefaults.length;
+        final int gotosStart = local;
+        local += program.gotoSlots;
+        for (int pc = 0; pc < programCode.length; pc += 1 + operands(programCode[pc])) {
+            if (programCode[pc] == ACT && !tagLocals.containsKey(programCode[pc + 2])) {
+                tagLocals.put(programCode[pc + 2], local++);
+            } else if (programCode[pc] == GOTO_GENE) {
+                final int gene = programCode[pc + 1] & 0xFF;
+                if (gene != (program.initialGene & 0xFF) && !geneLocals.containsKey(gene)) {
+                    geneLocals.put(gene, local++);
+                }
+            }
+        }
+        maxLocals = local;
+
+        // prologue
+        load(ALOAD, WORLD);
+        invoke(INVOKEVIRTUAL, "com/gordonfromblumberg/games/core/evocell/world/GameWorld", "getGrid",
+               "()" + CELL_GRID);
+        store(ASTORE, GRID);
+        for (int i = 0; i < program.randomDefaults.length; ++i) {
+            final ActionDef.RandomParameterValue value = (ActionDef.RandomParameterValue) program.randomDefaults[i];
+            invoke(INVOKESTATIC, RANDOM_GEN, "current", "()L" + RANDOM_GEN + ";");
+            pushConst(value.min());
+            pushConst(value.max());
+            invoke(INVOKEVIRTUAL, RANDOM_GEN, "nextByte", "(BB)B");
+            store(ISTORE, defaultsStart + i);
+        }
+        for (int i = gotosStart; i < maxLocals; ++i) {
+            code.u1(ICONST_0);
+            store(ISTORE, i);
+        }
+        final int[] blockCosts = program.blockCosts;
+        if (blockCosts != null) {
+            pushConst(Interpreter.gasLimit);
+            store(ISTORE, GAS);
+        }
+
+        // body
+        for (int pc = 0; pc < programCode.length; pc += 1 + operands(programCode[pc])) {
+            while (positions.size < pc) {
+                positions.add(-1);
+            }
+            positions.add(code.size);
+            if (blockCosts != null && blockCosts[pc] > 0) {
+                chargeGas(blockCosts[pc]);
+            }
+            final int op = programCode[pc];
+            switch (op) {
+                case HALT -> code.u1(RETURN);
+                case ACT -> {
+                    final int action = programCode[pc + 1];
+                    final int tagLocal = tagLocals.get(programCode[pc + 2], -1);
+                    store(ISTORE, TMP);
+                    pushConst(action);
+                    load(ALOAD, WORLD);
+                    load(ALOAD, BOT_VAR);
+                    load(ILOAD, tagLocal);
+                    code.u1(IINC);
+                    code.u1(tagLocal);
+                    code.u1(1);
+                    load(ILOAD, TMP);
+                    invoke(INVOKESTATIC, MODEL + "Actions", "act", "(I" + GAME_WORLD + EVO_BOT + "II)V");
+                    check();
+                    if (action == Actions.STOP) {
+                        code.u1(RETURN);
+                    }
+                }
+                case CHECK -> check();
+                case JUMP -> branch(JVM_GOTO, programCode[pc + 1]);
+                case JUMP_IF_NOT -> branch(IFLE, programCode[pc + 1]);
+                case GenomeProgram.GOTO -> {
+                    final int counter = gotosStart + programCode[pc + 1];
+                    load(ILOAD, counter);
+                    code.u1(IINC);
+                    code.u1(counter);
+                    code.u1(1);
+                    pushConst(Interpreter.gotoLimit);
+                    branch(IF_ICMPLT, programCode[pc + 2]);
+                }
+                case GOTO_GENE -> {
+                    final int geneLocal = geneLocals.get(programCode[pc + 1] & 0xFF, -1);
+                    if (geneLocal >= 0) {
+                        // iload, ifne +9 over: iconst_1, istore, goto target
+                        load(ILOAD, geneLocal);
+                        code.u1(IFNE);
+                        code.u2(9);
+                        code.u1(ICONST_1);
+                        store(ISTORE, geneLocal);
+                        branch(JVM_GOTO, programCode[pc + 2]);
+                    }
+                }
+                case CONST -> pushConst(programCode[pc + 1]);
+                case DEFAULT -> load(ILOAD, defaultsStart + programCode[pc + 1]);
+                case RANDOM -> {
+                    invoke(INVOKESTATIC, RANDOM_GEN, "current", "()L" + RANDOM_GEN + ";");
+                    invoke(INVOKEVIRTUAL, RANDOM_GEN, "nextByte", "()B");
+                }
+                case EQUALS -> compare(IF_ICMPNE);
+                case NOT -> compare(IFGT);
+                case GT -> compare(IF_ICMPLE);
+                case LT -> compare(IF_ICMPGE);
+                case AND -> {
+                    // ifgt +7 over: iconst_0, goto target
+                    code.u1(IFGT);
+                    code.u2(7);
+                    code.u1(ICONST_0);
+                    branch(JVM_GOTO, programCode[pc + 1]);
+                }
+                case OR -> {
+                    code.u1(IFLE);
+                    code.u2(7);
+                    code.u1(ICONST_1);
+                    branch(JVM_GOTO, programCode[pc + 1]);
+                }
+                case BOOL -> {
+                    code.u1(ICONST_0);
+                    compare(IF_ICMPLE);
+                }
+                case SUM -> code.u1(IADD);
+                case SUBTRACT -> code.u1(ISUB);
+                case MUL -> code.u1(IMUL);
+                case DIV -> invoke(INVOKESTATIC, MODEL + "Bot", "div", "(II)I");
+                case CELL_PROPERTY -> cellProperty();
+                case MY_PROPERTY -> myProperty();
+                case MY_PARAMETER -> {
+                    store(ISTORE, TMP);
+                    load(ALOAD, BOT_VAR);
+                    load(ILOAD, TMP);
+                    invoke(INVOKEVIRTUAL, MODEL + "Bot", "getParameter", "(I)I");
+                }
+                case CELL_PROPERTY_GT -> {
+                    store(ISTORE, TMP2);
+                    cellProperty();
+                    load(ILOAD, TMP2);
+                    compare(IF_ICMPLE);
+                }
+                case MY_PROPERTY_GT -> {
+                    store(ISTORE, TMP2);
+                    myProperty();
+                    load(ILOAD, TMP2);
+                    compare(IF_ICMPLE);
+                }
+                case FORWARD_CELL_WITH_BOT -> {
+                    load(ALOAD, GRID);
+                    load(ALOAD, BOT_VAR);
+                    invoke(INVOKESTATIC, MODEL + "Expressions", "isForwardCellWithBot",
+                           "(" + CELL_GRID + BOT + ")Z");
+                }
+                case NEAR_EMPTY_CELL -> {
+                    load(ALOAD, BOT_VAR);
+                    load(ALOAD, GRID);
+                    invoke(INVOKEVIRTUAL, MODEL + "Bot", "isNearEmptyCell", "(" + CELL_GRID + ")Z");
+                }
+                case RELATIVE_FORWARD -> {
+                    load(ALOAD, GRID);
+                    load(ALOAD, BOT_VAR);
+                    invoke(INVOKESTATIC, MODEL + "Expressions", "isRelativeForward",
+                           "(" + CELL_GRID + BOT + ")Z");
+                }
+                case CONTEXT_CELL -> {
+                    load(ALOAD, BOT_VAR);
+                    code.u1(GETFIELD);
+                    code.u2(pool.memberRef(9, MODEL + "Bot", "cell", "I"));
+                    code.u1(IFGE);
+                    code.u2(7);
+                    code.u1(ICONST_0);
+                    branch(JVM_GOTO, programCode[pc + 1]);
+                }
+                default -> throw new IllegalStateException("Unknown opcode " + op + " at " + pc);
+            }
+        }
+
+        for (int i = 0, n = branches.size; i < n; i += 2) {
+            final int at = branches.get(i);
+            final int offset = positions.get(branches.get(i + 1)) - at;
+            if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                throw new IllegalStateException("Program is too large");
+            }
+            code.set2(at + 1, offset);
+        }
+        if (code.size > 0xFFFF || maxLocals > 0xFF) {
+            throw new IllegalStateException("Program is too large");
+        }
+        return code.toArray();
+    }
+
+    /**
+     * Kills the bot and returns if it is not alive
+     */
+    private void check() {
+        load(ALOAD, BOT_VAR);
+        invoke(INVOKESTATIC, MODEL + "Interpreter", "check", "(" + EVO_BOT + ")Z");
+        // ifne +9 over: aload, invokevirtual die, return
+        code.u1(IFNE);
+        code.u2(9);
+        load(ALOAD, BOT_VAR);
+        invoke(INVOKEVIRTUAL, MODEL + "Bot", "die", "()V");
+        code.u1(RETURN);
+    }
+
+    /**
+     * Subtracts the cost of the block from gas, counts the bot out of gas and returns if gas is spent
+     */
+    private void chargeGas(int cost) {
+        load(ILOAD, GAS);
+        pushConst(cost);
+        code.u1(ISUB);
+        code.u1(DUP);
+        store(ISTORE, GAS);
+        // ifge +9 over: aload, invokevirtual countOutOfGas, return
+        code.u1(IFGE);
+        code.u2(9);
+        load(ALOAD, WORLD);
+        invoke(INVOKEVIRTUAL, "com/gordonfromblumberg/games/core/evocell/world/GameWorld", "countOutOfGas", "()V");
+        code.u1(RETURN);
+    }
+
+    private void cellProperty() {
+        store(ISTORE, TMP);
+        load(ALOAD, GRID);
+        load(ALOAD, BOT_VAR);
+        code.u1(GETFIELD);
+        code.u2(pool.memberRef(9, MODEL + "Bot", "cell", "I"));
+        load(ILOAD, TMP);
+        invoke(INVOKESTATIC, MODEL + "Bot", "getCellProperty", "(" + CELL_GRID + "II)I");
+    }
+
+    private void myProperty() {
+        store(ISTORE, TMP);
+        load(ALOAD, BOT_VAR);
+        load(ILOAD, TMP);
+        invoke(INVOKESTATIC, MODEL + "Bot", "getBotProperty", "(" + BOT + "I)I");
+    }
+
+    /**
+     * Pushes 1 if the branch with the given opcode is not taken, otherwise 0
+     */
+    private void compare(int opcode) {
+        // if* +7: iconst_1, goto +4; iconst_0
+        code.u1(opcode);
+        code.u2(7);
+        code.u1(ICONST_1);
+        code.u1(JVM_GOTO);
+        code.u2(4);
+        code.u1(ICONST_0);
+    }
+
+    private void branch(int opcode, int target) {
+        branches.add(code.size, target);
+        code.u1(opcode);
+        code.u2(0);
+    }
+
+    private void load(int opcode, int local) {
+        code.u1(opcode);
+        code.u1(local);
+    }
+
+    private void store(int opcode, int local) {
+        code.u1(opcode);
+        code.u1(local);
+    }
+
+    private void invoke(int opcode, String owner, String name, String descriptor) {
+        code.u1(opcode);
+        code.u2(pool.memberRef(10, owner, name, descriptor));
+    }
+
+    private void pushConst(int value) {
+        if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            code.u1(BIPUSH);
+            code.u1(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            code.u1(SIPUSH);
+            code.u2(value);
+        } else {
+            code.u1(LDC_W);
+            code.u2(pool.integer(value));
+        }
+    }
+
+    private static void writeMethod(Bytes out, int name, int descriptor, int codeName,
+                                    int maxStack, int maxLocals, byte[] code) {
+        out.u2(ACC_PUBLIC);
+        out.u2(name);
+        out.u2(descriptor);
+        out.u2(1);
+        out.u2(codeName);
+        out.u4(12 + code.length);
+        out.u2(maxStack);
+        out.u2(maxLocals);
+        out.u4(code.length);
+        out.bytes(code);
+        out.u2(0); // exception table
+        out.u2(0); // attributes
+    }
+
+    private static final class ConstantPool {
+        private final ObjectIntMap<String> indexes = new ObjectIntMap<>();
+        private final Bytes bytes = new Bytes();
+        private int count = 1;
+
+        int utf8(String value) {
+            final String key = "U" + value;
+            int index = indexes.get(key, 0);
+            if (index == 0) {
+                bytes.u1(1);
+                bytes.u2(value.length());
+                for (int i = 0; i < value.length(); ++i) {
+                    bytes.u1(value.charAt(i));
+                }
+                index = add(key);
+            }
+            return index;
+        }
+
+        int integer(int value) {
+            final String key = "I" + value;
+            int index = indexes.get(key, 0);
+            if (index == 0) {
+                bytes.u1(3);
+                bytes.u4(value);
+                index = add(key);
+            }
+            return index;
+        }
+
+        int classRef(String name) {
+            final String key = "C" + name;
+            int index = indexes.get(key, 0);
+            if (index == 0) {
+                final int nameIndex = utf8(name);
+                bytes.u1(7);
+                bytes.u2(nameIndex);
+                index = add(key);
+            }
+            return index;
+        }
+
+        /**
+         * @param tag 9 for field, 10 for method
+         */
+        int memberRef(int tag, String owner, String name, String descriptor) {
+            final String key = "M" + tag + owner + '.' + name + descriptor;
+            int index = indexes.get(key, 0);
+            if (index == 0) {
+                final int ownerIndex = classRef(owner);
+                final int nameAndType = nameAndType(name, descriptor);
+                bytes.u1(tag);
+                bytes.u2(ownerIndex);
+                bytes.u2(nameAndType);
+                index = add(key);
+            }
+            return index;
+        }
+
+        int methodRef(String owner, String name, String descriptor) {
+            return memberRef(10, owner, name, descriptor);
+        }
+
+        private int nameAndType(String name, String descriptor) {
+            final String key = "N" + name + ' ' + descriptor;
+            int index = indexes.get(key, 0);
+            if (index == 0) {
+                final int nameIndex = utf8(name);
+                final int descriptorIndex = utf8(descriptor);
+                bytes.u1(12);
+                bytes.u2(nameIndex);
+                bytes.u2(descriptorIndex);
+                index = add(key);
+            }
+            return index;
+        }
+
+        private int add(String key) {
+            indexes.put(key, count);
+            return count++;
+        }
+    }
+
+    private static final class Bytes {
+        private byte[] data = new byte[256];
+        private int size;
+
+        void u1(int value) {
+            if (size == data.length) {
+                final byte[] newData = new byte[data.length * 2];
+                System.arraycopy(data, 0, newData, 0, size);
+                data = newData;
+            }
+            data[size++] = (byte) value;
+        }
+
+        void u2(int value) {
+            u1(value >> 8);
+            u1(value);
+        }
+
+        void u4(int value) {
+            u2(value >> 16);
+            u2(value);
+        }
+
+        void bytes(Bytes other) {
+            for (int i = 0; i < other.size; ++i) {
+                u1(other.data[i]);
+            }
+        }
+
+        void bytes(byte[] other) {
+            for (byte b : other) {
+                u1(b);
+            }
+        }
+
+        void set2(int position, int value) {
+            data[position] = (byte) (value >> 8);
+            data[position + 1] = (byte) value;
+        }
+
+        byte[] toArray() {
+            final byte[] result = new byte[size];
+            System.arraycopy(data, 0, result, 0, size);
+            return result;
+        }
+    }
+}
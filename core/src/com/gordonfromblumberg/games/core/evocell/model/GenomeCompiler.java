@@ -0,0 +1,202 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntIntMap;
+import com.badlogic.gdx.utils.ObjectIntMap;
+
+import static com.gordonfromblumberg.games.core.evocell.model.GenomeProgram.*;
+import static com.gordonfromblumberg.games.core.evocell.model.Step.StepType;
+
+/**
+ * Compiles the step tree parsed by {@link Interpreter} into the flat code of {@link GenomeProgram}.
+ * Each gene and each goto block is emitted once and ends with {@link GenomeProgram#HALT},
+ * because after goto or gotoGene the execution never returns to the caller.
+ * Not thread-safe, every interpreter context has its own compiler.
+ */
+final class GenomeCompiler {
+    private final IntArray code = new IntArray(128);
+    // emitted and pending blocks -> their positions in the code
+    private final ObjectIntMap<Step> blocks = new ObjectIntMap<>();
+    private final Array<Step> pendingBlocks = new Array<>();
+    // jump operands which should be set to block positions
+    private final IntArray fixupPositions = new IntArray();
+    private final Array<Step> fixupBlocks = new Array<>();
+    // goto key -> slot of the goto counter
+    private final IntIntMap gotoSlots = new IntIntMap();
+    private int stack;
+    private int maxStack;
+
+    GenomeProgram compile(int initialGene, Step root, Step[] genes,
+                          ActionDef.DefaultParameterValue[] randomDefaults) {
+        pendingBlocks.add(root);
+        while (pendingBlocks.notEmpty()) {
+            Step block = pendingBlocks.pop();
+            blocks.put(block, code.size);
+            emitStatement(block);
+            code.add(HALT);
+        }
+
+        final int[] code = this.code.toArray();
+        for (int i = 0, n = fixupPositions.size; i < n; ++i) {
+            code[fixupPositions.get(i)] = blocks.get(fixupBlocks.get(i), -1);
+        }
+        final GenomeProgram program = new GenomeProgram(initialGene, root, genes, randomDefaults,
+                code, gotoSlots.size, maxStack);
+
+        this.code.clear();
+        blocks.clear();
+        fixupPositions.clear();
+        fixupBlocks.clear();
+        gotoSlots.clear();
+        stack = 0;
+        maxStack = 0;
+        return program;
+    }
+
+    private void emitStatement(Step step) {
+        if (step.type == null) {
+            return;
+        }
+
+        final Array<Step> parameters = step.parameters();
+        switch (step.type) {
+            case action -> {
+                final ActionDef actionDef = (ActionDef) step.stepDef;
+                final int action = Actions.actionIds.get(actionDef.name(), -1);
+                if (action < 0) {
+                    throw new IllegalStateException("Action " + actionDef.name() + " is not mapped");
+                }
+                if (parameters.size > 0) {
+                    emitExpression(parameters.get(0));
+                } else {
+                    emit(CONST, 0);
+                }
+                code.add(ACT, action, Actions.tagIds.get(actionDef.tag(), -1));
+                pop();
+            }
+
+            case actionGroup -> {
+                for (Step subAction : parameters) {
+                    emitStatement(subAction);
+                }
+            }
+
+            case ifStatement -> {
+                if (parameters.size < 2) {
+                    return;
+                }
+
+                emitExpression(parameters.get(0));
+                code.add(JUMP_IF_NOT, 0);
+                pop();
+                final int elseJump = code.size - 1;
+                emitStatement(parameters.get(1));
+                if (parameters.size > 2) {
+                    code.add(JUMP, 0);
+                    final int endJump = code.size - 1;
+                    code.set(elseJump, code.size);
+                    emitStatement(parameters.get(2));
+                    code.set(endJump, code.size);
+                } else {
+                    code.set(elseJump, code.size);
+                }
+            }
+
+            case gotoStatement -> {
+                final ActionDef actionDef = (ActionDef) step.stepDef;
+                switch (actionDef.name()) {
+                    case "goto" -> {
+                        final int key = Interpreter.gotoToKey(step.geneIndex, step.geneValueIndex);
+                        int slot = gotoSlots.get(key, -1);
+                        if (slot < 0) {
+                            slot = gotoSlots.size;
+                            gotoSlots.put(key, slot);
+                        }
+                        code.add(GOTO, slot);
+                        emitBlockReference(parameters.get(0));
+                    }
+                    case "gotoGene" -> {
+                        code.add(GOTO_GENE, step.value);
+                        emitBlockReference(parameters.get(0));
+                    }
+                }
+            }
+
+            case expression -> throw new IllegalStateException("Expression step can not be compiled as statement");
+        }
+    }
+
+    private void emitExpression(Step step) {
+        if (step.stepDef instanceof ExpressionDef exprDef) {
+            final int op = Expressions.expressionOps.get(exprDef.name(), -1);
+            final Array<Step> parameters = step.parameters();
+            switch (op) {
+                case RANDOM, FORWARD_CELL_WITH_BOT, NEAR_EMPTY_CELL, RELATIVE_FORWARD -> {
+                    code.add(op);
+                    push();
+                }
+                case NOT, CELL_PROPERTY, MY_PROPERTY, MY_PARAMETER -> {
+                    emitExpression(parameters.get(0));
+                    code.add(op);
+                }
+                case EQUALS, GT, LT, SUM, SUBTRACT, MUL, DIV, CELL_PROPERTY_GT, MY_PROPERTY_GT -> {
+                    emitExpression(parameters.get(0));
+                    emitExpression(parameters.get(1));
+                    code.add(op);
+                    pop();
+                }
+                case AND, OR -> {
+                    emitExpression(parameters.get(0));
+                    code.add(op, 0);
+                    pop();
+                    final int jump = code.size - 1;
+                    emitExpression(parameters.get(1));
+                    code.add(BOOL);
+                    code.set(jump, code.size);
+                }
+                case CONTEXT_CELL -> {
+                    code.add(op, 0);
+                    final int jump = code.size - 1;
+                    emitExpression(parameters.get(0));
+                    code.add(CELL_PROPERTY);
+                    code.set(jump, code.size);
+                }
+                default -> throw new IllegalStateException("Expression " + exprDef.name() + " is not mapped");
+            }
+        } else if (step.type == StepType.expression) {
+            if (step.defaultSlot >= 0) {
+                emit(DEFAULT, step.defaultSlot);
+            } else {
+                emit(CONST, step.value);
+            }
+        } else {
+            throw new IllegalStateException("Step " + step + " can not be compiled as expression");
+        }
+    }
+
+    private void emit(int op, int operand) {
+        code.add(op, operand);
+        push();
+    }
+
+    private void emitBlockReference(Step block) {
+        fixupPositions.add(code.size);
+        fixupBlocks.add(block);
+        code.add(-1);
+        if (!blocks.containsKey(block)) {
+            blocks.put(block, -1);
+            pendingBlocks.add(block);
+        }
+    }
+
+    private void push() {
+        if (++stack > maxStack) {
+            maxStack = stack;
+        }
+    }
+
+    private void pop() {
+        --stack;
+    }
+}
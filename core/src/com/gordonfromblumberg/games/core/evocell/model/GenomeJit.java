@@ -0,0 +1,163 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+import com.gordonfromblumberg.games.core.common.factory.AbstractFactory;
+import com.gordonfromblumberg.games.core.common.log.LogManager;
+import com.gordonfromblumberg.games.core.common.log.Logger;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Second tier of genome execution.
+ * Programs with the same code share one {@link Entry} which counts their executions.
+ * When the count reaches interpreter.jitThreshold the program is translated by {@link GenomeCodeGenerator}
+ * and loaded as a hidden class, after that the interpreter runs it instead of the code.
+ * Entries are referenced only by programs, so when the lineage dies out, its DNA is changed or released
+ * and the program is evicted from {@link GenomeProgramCache}, the entry and its class are collected
+ * and removed from the cache.
+ */
+final class GenomeJit {
+    private static final Logger log = LogManager.create(GenomeJit.class);
+    private static final int threshold;
+
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    private static final ConcurrentHashMap<Key, EntryReference> entries = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<Entry> collectedEntries = new ReferenceQueue<>();
+
+    static {
+        threshold = AbstractFactory.getInstance().configManager().getInteger("interpreter.jitThreshold");
+    }
+
+    private GenomeJit() {
+        throw new UnsupportedOperationException("GenomeJit should not be instantiated");
+    }
+
+    /**
+     * @return Entry shared by programs with the same code or null if JIT is disabled, genomes are profiled
+     * or the program can not be compiled
+     */
+    static Entry entry(GenomeProgram program) {
+        if (threshold <= 0 || GenomeProfiler.enabled || !canCompile(program)) {
+            return null;
+        }
+
+        removeCollected();
+        final Key key = new Key(program);
+        while (true) {
+            final EntryReference reference = entries.get(key);
+            Entry entry = reference != null ? reference.get() : null;
+            if (entry != null) {
+                return entry;
+            }
+            entry = new Entry();
+            final EntryReference newReference = new EntryReference(entry, key);
+            if (reference == null
+                    ? entries.putIfAbsent(key, newReference) == null
+                    : entries.replace(key, reference, newReference)) {
+                return entry;
+            }
+        }
+    }
+
+    /**
+     * @return false if the program has defaults which can not be drawn by JVM code
+     */
+    static boolean canCompile(GenomeProgram program) {
+        for (ActionDef.DefaultParameterValue value : program.randomDefaults) {
+            if (!(value instanceof ActionDef.RandomParameterValue)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Translates the program to JVM bytecode and loads it as a hidden class
+     */
+    static CompiledGenome compile(GenomeProgram program) throws ReflectiveOperationException {
+        final byte[] bytes = GenomeCodeGenerator.generate(program);
+        final MethodHandles.Lookup classLookup = lookup.defineHiddenClass(bytes, true);
+        return (CompiledGenome) classLookup.lookupClass().getConstructor().newInstance();
+    }
+
+    static int getCachedCount() {
+        return entries.size();
+    }
+
+    private static void removeCollected() {
+        EntryReference reference;
+        while ((reference = (EntryReference) collectedEntries.poll()) != null) {
+            entries.remove(reference.key, reference);
+        }
+    }
+
+    static final class Entry {
+        // may be incremented by several threads concurrently, so it is approximate
+        private int executions;
+        private boolean failed;
+        volatile CompiledGenome compiled;
+
+        void executed(GenomeProgram program) {
+            if (++executions >= threshold) {
+                compile(program);
+            }
+        }
+
+        private synchronized void compile(GenomeProgram program) {
+            if (compiled != null || failed) {
+                return;
+            }
+            try {
+                compiled = GenomeJit.compile(program);
+                log.debug("Genome of " + program.code.length + " instructions compiled, "
+                        + entries.size() + " genomes cached");
+            } catch (Throwable e) {
+                failed = true;
+                log.warn("Genome is not compiled: " + e);
+            }
+        }
+    }
+
+    private static final class EntryReference extends WeakReference<Entry> {
+        final Key key;
+
+        EntryReference(Entry entry, Key key) {
+            super(entry, collectedEntries);
+            this.key = key;
+        }
+    }
+
+    private static final class Key {
+        private final int[] content;
+        private final int hash;
+
+        Key(GenomeProgram program) {
+            final ActionDef.DefaultParameterValue[] defaults = program.randomDefaults;
+            final int[] code = program.code;
+            content = new int[2 + 2 * defaults.length + code.length];
+            content[0] = program.initialGene;
+            content[1] = defaults.length;
+            int i = 2;
+            for (ActionDef.DefaultParameterValue value : defaults) {
+                final ActionDef.RandomParameterValue random = (ActionDef.RandomParameterValue) value;
+                content[i++] = random.min();
+                content[i++] = random.max();
+            }
+            System.arraycopy(code, 0, content, i, code.length);
+            hash = Arrays.hashCode(content);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && hash == other.hash && Arrays.equals(content, other.content);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,489 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntMap;
+
+import java.util.Arrays;
+
+import static com.gordonfromblumberg.games.core.evocell.model.GenomeProgram.*;
+
+/**
+ * Optimizes the code of {@link GenomeProgram} compiled by {@link GenomeCompiler}.
+ * Optimized program performs the same actions with the same parameters and action counters,
+ * draws the same random numbers and kills the bot at the same moment.
+ * <ul>
+ *     <li>no-op actions, nothing and stop with tags whose counters are not used by any action,
+ *     are replaced by {@link GenomeProgram#CHECK}</li>
+ *     <li>constant folding: operations and conditions with constant operands are evaluated</li>
+ *     <li>jump threading: jumps to jumps go to the final target, jumps to halt are replaced by halt</li>
+ *     <li>dead code elimination: unreachable code, checks of the bot which is known to be alive,
+ *     gotoGene to evaluated genes and goto with known counter are removed</li>
+ * </ul>
+ * Optimized code executes less instructions, so it spends not more gas than compiled one.
+ * GenomeOptimizerBenchmark of desktop tests measures the gain on evolved genomes.
+ * Not thread-safe, every interpreter context has its own optimizer.
+ */
+final class GenomeOptimizer {
+    // removed instruction, it is never encoded
+    private static final int NOP = -1;
+    private static final int MAX_PASSES = 8;
+    // tag id -> some action with the tag uses its counter
+    private static final boolean[] observableTags = new boolean[Actions.tagIds.size];
+
+    static {
+        markObservableTags(Actions.actionDefs);
+        markObservableTags(Actions.embryoActionDefs);
+    }
+
+    // instructions: opcode, operand which is not a jump target, action tag, jump target as instruction index
+    private int[] ops = new int[64];
+    private int[] args = new int[64];
+    private int[] tags = new int[64];
+    private int[] jumps = new int[64];
+    private boolean[] targeted = new boolean[64];
+    private int size;
+    private int[] indices = new int[128];
+
+    // state before each instruction found by analysis
+    private boolean[] reached = new boolean[64];
+    private boolean[] checked = new boolean[64];
+    // bit sets of genes which are evaluated on every path
+    private long[] genes = new long[64 * 4];
+    // bounds of goto counters, values not less than goto limit are stored as goto limit
+    private int[] gotoMin = new int[64];
+    private int[] gotoMax = new int[64];
+    private final IntArray worklist = new IntArray();
+    private boolean currentChecked;
+    private final long[] currentGenes = new long[4];
+    private int[] currentMin = new int[8];
+    private int[] currentMax = new int[8];
+
+    GenomeProgram optimize(GenomeProgram program) {
+        decode(program.code);
+        compact();
+        removeNoOps();
+        compact();
+        boolean changed = true;
+        for (int pass = 0; changed && pass < MAX_PASSES; ++pass) {
+            changed = fold();
+            compact();
+            changed |= thread();
+            compact();
+            changed |= eliminate(program);
+            compact();
+        }
+        return new GenomeProgram(program.initialGene, program.root, program.genes, program.randomDefaults,
+                encode(), program.gotoSlots, program.maxStack);
+    }
+
+    private void decode(int[] code) {
+        if (indices.length < code.length + 1) {
+            indices = new int[code.length + 1];
+        }
+        size = 0;
+        for (int pc = 0; pc < code.length; pc += 1 + operands(code[pc])) {
+            ensureCapacity(size + 1);
+            final int i = size++;
+            final int op = code[pc];
+            indices[pc] = i;
+            ops[i] = op;
+            args[i] = 0;
+            tags[i] = 0;
+            jumps[i] = -1;
+            switch (op) {
+                case ACT -> {
+                    args[i] = code[pc + 1];
+                    tags[i] = code[pc + 2];
+                }
+                case CONST, DEFAULT -> args[i] = code[pc + 1];
+                case JUMP, JUMP_IF_NOT, AND, OR, CONTEXT_CELL -> jumps[i] = code[pc + 1];
+                case GOTO, GOTO_GENE -> {
+                    args[i] = code[pc + 1];
+                    jumps[i] = code[pc + 2];
+                }
+            }
+        }
+        for (int i = 0; i < size; ++i) {
+            if (jumps[i] >= 0) {
+                jumps[i] = indices[jumps[i]];
+            }
+        }
+    }
+
+    private int[] encode() {
+        int pc = 0;
+        for (int i = 0; i < size; ++i) {
+            indices[i] = pc;
+            pc += 1 + operands(ops[i]);
+        }
+        final int[] code = new int[pc];
+        pc = 0;
+        for (int i = 0; i < size; ++i) {
+            final int op = ops[i];
+            code[pc++] = op;
+            switch (op) {
+                case ACT -> {
+                    code[pc++] = args[i];
+                    code[pc++] = tags[i];
+                }
+                case CONST, DEFAULT -> code[pc++] = args[i];
+                case JUMP, JUMP_IF_NOT, AND, OR, CONTEXT_CELL -> code[pc++] = indices[jumps[i]];
+                case GOTO, GOTO_GENE -> {
+                    code[pc++] = args[i];
+                    code[pc++] = indices[jumps[i]];
+                }
+            }
+        }
+        return code;
+    }
+
+    /**
+     * Drops removed instructions, jumps to them go to the next instruction
+     */
+    private void compact() {
+        int n = 0;
+        for (int i = 0; i < size; ++i) {
+            indices[i] = n;
+            if (ops[i] != NOP) {
+                ++n;
+            }
+        }
+        indices[size] = n;
+        n = 0;
+        for (int i = 0; i < size; ++i) {
+            if (ops[i] != NOP) {
+                ops[n] = ops[i];
+                args[n] = args[i];
+                tags[n] = tags[i];
+                jumps[n] = jumps[i] >= 0 ? indices[jumps[i]] : -1;
+                ++n;
+            }
+        }
+        size = n;
+
+        Arrays.fill(targeted, 0, size, false);
+        for (int i = 0; i < size; ++i) {
+            if (jumps[i] >= 0) {
+                targeted[jumps[i]] = true;
+            }
+        }
+    }
+
+    private void removeNoOps() {
+        for (int i = 0; i < size; ++i) {
+            if (ops[i] == ACT && (args[i] == Actions.NOTHING || args[i] == Actions.STOP) && !observableTags[tags[i]]) {
+                final int parameter = previous(i);
+                if (parameter < 0 || ops[parameter] != CONST && ops[parameter] != DEFAULT) {
+                    continue;
+                }
+                if (args[i] == Actions.STOP) {
+                    ops[parameter] = CHECK;
+                    ops[i] = HALT;
+                } else {
+                    ops[parameter] = NOP;
+                    ops[i] = CHECK;
+                }
+            }
+        }
+    }
+
+    private boolean fold() {
+        boolean changed = false;
+        for (int i = 0; i < size; ++i) {
+            final int op = ops[i];
+            switch (op) {
+                case EQUALS, GT, LT, SUM, SUBTRACT, MUL, DIV -> {
+                    final int second = previous(i);
+                    final int first = second >= 0 ? previous(second) : -1;
+                    if (first >= 0 && ops[first] == CONST && ops[second] == CONST) {
+                        args[first] = evaluate(op, args[first], args[second]);
+                        ops[second] = NOP;
+                        ops[i] = NOP;
+                        changed = true;
+                    }
+                }
+                case NOT, BOOL -> {
+                    final int operand = previous(i);
+                    if (operand >= 0 && ops[operand] == CONST) {
+                        args[operand] = evaluate(op, args[operand], 0);
+                        ops[i] = NOP;
+                        changed = true;
+                    }
+                }
+                case JUMP_IF_NOT, AND, OR -> {
+                    final int operand = previous(i);
+                    if (operand >= 0 && ops[operand] == CONST) {
+                        final boolean value = args[operand] > 0;
+                        if (op == JUMP_IF_NOT) {
+                            ops[operand] = NOP;
+                            ops[i] = value ? NOP : JUMP;
+                        } else if (value == (op == AND)) {
+                            // the second operand decides
+                            ops[operand] = NOP;
+                            ops[i] = NOP;
+                        } else {
+                            // the first operand decides, its boolean value is pushed
+                            args[operand] = value ? 1 : 0;
+                            ops[i] = JUMP;
+                        }
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    private static int evaluate(int op, int a, int b) {
+        return switch (op) {
+            case EQUALS -> a == b ? 1 : 0;
+            case GT -> a > b ? 1 : 0;
+            case LT -> a < b ? 1 : 0;
+            case SUM -> a + b;
+            case SUBTRACT -> a - b;
+            case MUL -> a * b;
+            case DIV -> Bot.div(a, b);
+            case NOT -> a > 0 ? 0 : 1;
+            case BOOL -> a > 0 ? 1 : 0;
+            default -> throw new IllegalStateException("Opcode " + op + " can not be evaluated");
+        };
+    }
+
+    private boolean thread() {
+        boolean changed = false;
+        for (int i = 0; i < size; ++i) {
+            if (jumps[i] < 0) {
+                continue;
+            }
+            int target = jumps[i];
+            for (int steps = 0; ops[target] == JUMP && jumps[target] != target && steps < size; ++steps) {
+                target = jumps[target];
+            }
+            if (target != jumps[i]) {
+                jumps[i] = target;
+                changed = true;
+            }
+            if (ops[i] == JUMP) {
+                if (ops[target] == HALT) {
+                    ops[i] = HALT;
+                    jumps[i] = -1;
+                    changed = true;
+                } else if (target == i + 1) {
+                    ops[i] = NOP;
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Finds state of the bot before each instruction and removes instructions which do nothing in that state
+     */
+    private boolean eliminate(GenomeProgram program) {
+        final int slots = program.gotoSlots;
+        analyze(program.initialGene, slots);
+
+        boolean changed = false;
+        for (int i = 0; i < size; ++i) {
+            if (!reached[i]) {
+                ops[i] = NOP;
+                changed = true;
+            } else if (ops[i] == CHECK && checked[i] || ops[i] == GOTO_GENE && isEvaluated(genes, i * 4, args[i])) {
+                ops[i] = NOP;
+                changed = true;
+            }
+        }
+
+        // goto counter may be dropped only if every goto of the slot is resolved
+        for (int slot = 0; slot < slots; ++slot) {
+            boolean resolved = true;
+            boolean found = false;
+            for (int i = 0; i < size && resolved; ++i) {
+                if (ops[i] == GOTO && args[i] == slot) {
+                    found = true;
+                    final int index = i * slots + slot;
+                    resolved = gotoMax[index] < Interpreter.gotoLimit || gotoMin[index] >= Interpreter.gotoLimit;
+                }
+            }
+            if (!found || !resolved) {
+                continue;
+            }
+            for (int i = 0; i < size; ++i) {
+                if (ops[i] == GOTO && args[i] == slot) {
+                    ops[i] = gotoMax[i * slots + slot] < Interpreter.gotoLimit ? JUMP : NOP;
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    private void analyze(int initialGene, int slots) {
+        if (reached.length < size) {
+            final int capacity = Math.max(size, reached.length * 2);
+            reached = new boolean[capacity];
+            checked = new boolean[capacity];
+            genes = new long[capacity * 4];
+        }
+        if (gotoMin.length < size * slots) {
+            gotoMin = new int[Math.max(size * slots, gotoMin.length * 2)];
+            gotoMax = new int[gotoMin.length];
+        }
+        if (currentMin.length < slots) {
+            currentMin = new int[slots];
+            currentMax = new int[slots];
+        }
+        Arrays.fill(reached, 0, size, false);
+
+        currentChecked = false;
+        Arrays.fill(currentGenes, 0);
+        evaluate(currentGenes, initialGene);
+        Arrays.fill(currentMin, 0, slots, 0);
+        Arrays.fill(currentMax, 0, slots, 0);
+        flow(0, slots);
+
+        final int limit = Interpreter.gotoLimit;
+        while (worklist.notEmpty()) {
+            final int i = worklist.pop();
+            currentChecked = checked[i];
+            System.arraycopy(genes, i * 4, currentGenes, 0, 4);
+            System.arraycopy(gotoMin, i * slots, currentMin, 0, slots);
+            System.arraycopy(gotoMax, i * slots, currentMax, 0, slots);
+
+            switch (ops[i]) {
+                case HALT -> {}
+                case ACT -> {
+                    if (args[i] != Actions.STOP) {
+                        currentChecked = true;
+                        flow(i + 1, slots);
+                    }
+                }
+                case CHECK -> {
+                    currentChecked = true;
+                    flow(i + 1, slots);
+                }
+                case JUMP -> flow(jumps[i], slots);
+                case JUMP_IF_NOT, AND, OR, CONTEXT_CELL -> {
+                    flow(i + 1, slots);
+                    flow(jumps[i], slots);
+                }
+                case GOTO -> {
+                    final int slot = args[i];
+                    final int min = currentMin[slot];
+                    final int max = currentMax[slot];
+                    if (min < limit) {
+                        currentMin[slot] = min + 1;
+                        currentMax[slot] = Math.min(max, limit - 1) + 1;
+                        flow(jumps[i], slots);
+                    }
+                    if (max >= limit) {
+                        currentMin[slot] = limit;
+                        currentMax[slot] = limit;
+                        flow(i + 1, slots);
+                    }
+                }
+                case GOTO_GENE -> {
+                    final boolean evaluated = isEvaluated(currentGenes, 0, args[i]);
+                    evaluate(currentGenes, args[i]);
+                    if (!evaluated) {
+                        flow(jumps[i], slots);
+                    }
+                    flow(i + 1, slots);
+                }
+                default -> flow(i + 1, slots);
+            }
+        }
+    }
+
+    /**
+     * Merges current state into the state before the instruction
+     */
+    private void flow(int i, int slots) {
+        final int genesStart = i * 4;
+        final int gotoStart = i * slots;
+        if (!reached[i]) {
+            reached[i] = true;
+            checked[i] = currentChecked;
+            System.arraycopy(currentGenes, 0, genes, genesStart, 4);
+            System.arraycopy(currentMin, 0, gotoMin, gotoStart, slots);
+            System.arraycopy(currentMax, 0, gotoMax, gotoStart, slots);
+            worklist.add(i);
+            return;
+        }
+
+        boolean changed = false;
+        if (checked[i] && !currentChecked) {
+            checked[i] = false;
+            changed = true;
+        }
+        for (int k = 0; k < 4; ++k) {
+            final long merged = genes[genesStart + k] & currentGenes[k];
+            if (merged != genes[genesStart + k]) {
+                genes[genesStart + k] = merged;
+                changed = true;
+            }
+        }
+        for (int slot = 0; slot < slots; ++slot) {
+            if (currentMin[slot] < gotoMin[gotoStart + slot]) {
+                gotoMin[gotoStart + slot] = currentMin[slot];
+                changed = true;
+            }
+            if (currentMax[slot] > gotoMax[gotoStart + slot]) {
+                gotoMax[gotoStart + slot] = currentMax[slot];
+                changed = true;
+            }
+        }
+        if (changed) {
+            worklist.add(i);
+        }
+    }
+
+    // the same bit set layout as InterpreterContext.evaluatedGenes
+    private static boolean isEvaluated(long[] genes, int start, int gene) {
+        return (genes[start + ((gene & 0xFF) >>> 6)] & 1L << gene) != 0;
+    }
+
+    private static void evaluate(long[] genes, int gene) {
+        genes[(gene & 0xFF) >>> 6] |= 1L << gene;
+    }
+
+    /**
+     * @return Index of the instruction which is executed right before the given one
+     * or -1 if the given one may be reached by a jump
+     */
+    private int previous(int i) {
+        if (targeted[i]) {
+            return -1;
+        }
+        for (int j = i - 1; j >= 0; --j) {
+            if (ops[j] != NOP) {
+                return j;
+            }
+            if (targeted[j]) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (ops.length < capacity) {
+            final int newCapacity = Math.max(capacity, ops.length * 2);
+            ops = Arrays.copyOf(ops, newCapacity);
+            args = Arrays.copyOf(args, newCapacity);
+            tags = Arrays.copyOf(tags, newCapacity);
+            jumps = Arrays.copyOf(jumps, newCapacity);
+            targeted = new boolean[newCapacity];
+        }
+    }
+
+    private static void markObservableTags(IntMap<ActionDef> actionDefs) {
+        for (ActionDef actionDef : actionDefs.values()) {
+            final int action = Actions.actionIds.get(actionDef.name(), -1);
+            if (action >= 0 && Actions.usesCounter(action)) {
+                observableTags[Actions.tagIds.get(actionDef.tag(), -1)] = true;
+            }
+        }
+    }
+}
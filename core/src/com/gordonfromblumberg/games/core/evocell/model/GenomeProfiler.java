@@ -0,0 +1,253 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectIntMap;
+import com.gordonfromblumberg.games.core.common.factory.AbstractFactory;
+import com.gordonfromblumberg.games.core.common.utils.Paths;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Counts executions and time of genome instructions when interpreter.profile is on.
+ * Actions are counted by {@link ActionDef}, expressions by {@link ExpressionDef},
+ * other instructions by their opcodes. Time of an instruction is measured from its start
+ * to the start of the next one, so it includes the cost of measuring.
+ * Compiled genomes are not profiled, so genomes are only interpreted while profiling.
+ * <p>
+ * Each thread counts to its own counters, rows are summed when they are read.
+ */
+public final class GenomeProfiler {
+    private static final int OPCODES = 32;
+    private static final int ROWS = OPCODES + 32;
+    private static final String[] names = new String[ROWS];
+    private static final String[] kinds = new String[ROWS];
+
+    static final boolean enabled;
+    private static final String fileName;
+    private static final Array<Counters> allCounters = new Array<>();
+    private static final ThreadLocal<Counters> counters = ThreadLocal.withInitial(() -> {
+        final Counters threadCounters = new Counters();
+        synchronized (allCounters) {
+            allCounters.add(threadCounters);
+        }
+        return threadCounters;
+    });
+
+    static {
+        enabled = AbstractFactory.getInstance().configManager().getBoolean("interpreter.profile");
+        fileName = AbstractFactory.getInstance().configManager().getString("interpreter.profileFile");
+
+        name(GenomeProgram.HALT, "halt");
+        name(GenomeProgram.JUMP, "jump");
+        name(GenomeProgram.JUMP_IF_NOT, "if");
+        name(GenomeProgram.GOTO, "goto");
+        name(GenomeProgram.GOTO_GENE, "gotoGene");
+        name(GenomeProgram.CHECK, "check");
+        name(GenomeProgram.CONST, "constant");
+        name(GenomeProgram.DEFAULT, "default parameter");
+        name(GenomeProgram.BOOL, "to boolean");
+        for (ObjectIntMap.Entry<String> entry : Expressions.expressionOps) {
+            names[entry.value] = entry.key;
+            kinds[entry.value] = "expression";
+        }
+        for (ObjectIntMap.Entry<String> entry : Actions.actionIds) {
+            names[OPCODES + entry.value] = entry.key;
+            kinds[OPCODES + entry.value] = "action";
+        }
+    }
+
+    private GenomeProfiler() {
+        throw new UnsupportedOperationException("GenomeProfiler should not be instantiated");
+    }
+
+    private static void name(int op, String name) {
+        names[op] = name;
+        kinds[op] = "control";
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return Counters of the current thread
+     */
+    static Counters counters() {
+        return counters.get();
+    }
+
+    /**
+     * @return Row of the instruction at pc, actions are counted by their ids
+     */
+    static int row(int[] code, int pc) {
+        final int op = code[pc];
+        return op == GenomeProgram.ACT ? OPCODES + code[pc + 1] : op;
+    }
+
+    /**
+     * Fills rows with sums of all threads, instructions which were not executed are skipped
+     */
+    public static void snapshot(Array<Row> rows) {
+        rows.clear();
+        final long[] executions = new long[ROWS];
+        final long[] nanos = new long[ROWS];
+        synchronized (allCounters) {
+            for (Counters threadCounters : allCounters) {
+                for (int i = 0; i < ROWS; ++i) {
+                    executions[i] += threadCounters.executions[i];
+                    nanos[i] += threadCounters.nanos[i];
+                }
+            }
+        }
+        for (int i = 0; i < ROWS; ++i) {
+            if (executions[i] > 0) {
+                rows.add(new Row(kinds[i], names[i] != null ? names[i] : "#" + i, executions[i], nanos[i]));
+            }
+        }
+    }
+
+    public static long getGotoLimitHits() {
+        long sum = 0;
+        synchronized (allCounters) {
+            for (Counters threadCounters : allCounters) {
+                sum += threadCounters.gotoLimitHits;
+            }
+        }
+        return sum;
+    }
+
+    public static long getGeneJumps() {
+        long sum = 0;
+        synchronized (allCounters) {
+            for (Counters threadCounters : allCounters) {
+                sum += threadCounters.geneJumps;
+            }
+        }
+        return sum;
+    }
+
+    public static long getCheckDeaths() {
+        long sum = 0;
+        synchronized (allCounters) {
+            for (Counters threadCounters : allCounters) {
+                sum += threadCounters.checkDeaths;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Clears counters of all threads, it should be invoked when no bot is being updated
+     */
+    public static void reset() {
+        synchronized (allCounters) {
+            for (Counters threadCounters : allCounters) {
+                threadCounters.reset();
+            }
+        }
+    }
+
+    /**
+     * Writes rows and events as CSV to interpreter.profileFile in work dir
+     * @return Written file
+     */
+    public static FileHandle export() throws IOException {
+        final String workDir = Paths.workDirPath();
+        final FileHandle file = workDir != null ? Gdx.files.absolute(workDir).child(fileName) : Gdx.files.local(fileName);
+        final Array<Row> rows = new Array<>();
+        snapshot(rows);
+        rows.sort((r1, r2) -> Long.compare(r2.nanos, r1.nanos));
+        try (Writer writer = file.writer(false, "UTF-8")) {
+            writer.write("kind,name,executions,nanos,nanosPerExecution\n");
+            for (Row row : rows) {
+                writer.write(row.kind + ",\"" + row.name + "\"," + row.executions + ","
+                        + row.nanos + "," + row.nanosPerExecution() + "\n");
+            }
+            writer.write("event,\"goto limit\"," + getGotoLimitHits() + ",,\n");
+            writer.write("event,\"gene jump\"," + getGeneJumps() + ",,\n");
+            writer.write("event,\"check death\"," + getCheckDeaths() + ",,\n");
+        }
+        return file;
+    }
+
+    /**
+     * Primitive counters of a single thread
+     */
+    static final class Counters {
+        private final long[] executions = new long[ROWS];
+        private final long[] nanos = new long[ROWS];
+        long gotoLimitHits;
+        long geneJumps;
+        long checkDeaths;
+        // instruction which is being executed by the interpreter
+        private int row = -1;
+        private long start;
+        // instructions of outer programs, e.g. the action which runs the embryo gene of offspring
+        private int depth;
+        private int[] outerRows = new int[4];
+        private long[] outerStarts = new long[4];
+
+        /**
+         * Starts profiling of a program, time of the outer instruction includes the nested program
+         */
+        void enter() {
+            if (depth == outerRows.length) {
+                outerRows = Arrays.copyOf(outerRows, depth * 2);
+                outerStarts = Arrays.copyOf(outerStarts, depth * 2);
+            }
+            outerRows[depth] = row;
+            outerStarts[depth++] = start;
+            row = -1;
+        }
+
+        /**
+         * Counts the last instruction of the program and continues the outer one
+         */
+        void exit() {
+            next(-1);
+            row = outerRows[--depth];
+            start = outerStarts[depth];
+        }
+
+        /**
+         * Counts the previous instruction and starts timing of the given one
+         */
+        void next(int row) {
+            final long now = System.nanoTime();
+            if (this.row >= 0) {
+                ++executions[this.row];
+                nanos[this.row] += now - start;
+            }
+            this.row = row;
+            start = now;
+        }
+
+        /**
+         * Counts the instruction executed by several bots at once
+         */
+        void executed(int row, int count, long time) {
+            executions[row] += count;
+            nanos[row] += time;
+        }
+
+        private void reset() {
+            for (int i = 0; i < ROWS; ++i) {
+                executions[i] = 0;
+                nanos[i] = 0;
+            }
+            gotoLimitHits = 0;
+            geneJumps = 0;
+            checkDeaths = 0;
+        }
+    }
+
+    public record Row(String kind, String name, long executions, long nanos) {
+        public long nanosPerExecution() {
+            return executions > 0 ? nanos / executions : 0;
+        }
+    }
+}
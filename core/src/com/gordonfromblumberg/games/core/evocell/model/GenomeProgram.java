@@ -0,0 +1,133 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+/**
+ * Gene parsed by {@link Interpreter}, compiled by {@link GenomeCompiler} into flat code
+ * and optimized by {@link GenomeOptimizer}.
+ * The program is cached in {@link DNA} and is not changed after compilation,
+ * so it is executed every turn until the DNA is changed.
+ * <p>
+ * Code is a sequence of opcodes followed by their operands. Statements take parameters from the
+ * operand stack, expressions push their results to it. Jump targets are absolute code positions.
+ */
+final class GenomeProgram {
+    // statements
+    /** stop execution */
+    static final int HALT = 0;
+    /** action, tag: pop parameter, perform action, stop if the bot is dead or the action is stop */
+    static final int ACT = 1;
+    /** target */
+    static final int JUMP = 2;
+    /** target: pop condition, jump if it is false */
+    static final int JUMP_IF_NOT = 3;
+    /** slot, target: jump if goto from the slot was performed less than goto limit times */
+    static final int GOTO = 4;
+    /** gene, target: jump if the gene was not evaluated yet */
+    static final int GOTO_GENE = 5;
+    /** stop if the bot is dead, it is left by {@link GenomeOptimizer} instead of no-op actions */
+    static final int CHECK = 29;
+
+    // expressions
+    /** value */
+    static final int CONST = 6;
+    /** slot: random default value drawn before execution */
+    static final int DEFAULT = 7;
+    static final int RANDOM = 8;
+    static final int EQUALS = 9;
+    static final int NOT = 10;
+    static final int GT = 11;
+    static final int LT = 12;
+    /** target: pop operand, if it is false push 0 and jump over the second operand */
+    static final int AND = 13;
+    /** target: pop operand, if it is true push 1 and jump over the second operand */
+    static final int OR = 14;
+    /** pop operand, push 1 if it is true, otherwise 0 */
+    static final int BOOL = 15;
+    static final int SUM = 16;
+    static final int SUBTRACT = 17;
+    static final int MUL = 18;
+    static final int DIV = 19;
+    static final int CELL_PROPERTY = 20;
+    static final int MY_PROPERTY = 21;
+    static final int MY_PARAMETER = 22;
+    static final int CELL_PROPERTY_GT = 23;
+    static final int MY_PROPERTY_GT = 24;
+    static final int FORWARD_CELL_WITH_BOT = 25;
+    static final int NEAR_EMPTY_CELL = 26;
+    static final int RELATIVE_FORWARD = 27;
+    /** target: if the bot has no cell push 0 and jump over the property */
+    static final int CONTEXT_CELL = 28;
+
+    // gene which is evaluated at start: active gene or 0 for embryo
+    final int initialGene;
+    final Step root;
+    // other genes reachable by gotoGene, sorted by gene index
+    final Step[] genes;
+    // random parameter defaults in order of parsing, they are drawn before each execution
+    final ActionDef.DefaultParameterValue[] randomDefaults;
+    final int[] code;
+    final int gotoSlots;
+    final int maxStack;
+    // gas charged at the first instruction of each basic block, null if interpreter.gasLimit is off
+    final int[] blockCosts;
+    // shared by programs with the same code, null if the program can not be compiled to JVM bytecode
+    GenomeJit.Entry jitEntry;
+
+    GenomeProgram(int initialGene, Step root, Step[] genes, ActionDef.DefaultParameterValue[] randomDefaults,
+                  int[] code, int gotoSlots, int maxStack) {
+        this.initialGene = initialGene;
+        this.root = root;
+        this.genes = genes;
+        this.randomDefaults = randomDefaults;
+        this.code = code;
+        this.gotoSlots = gotoSlots;
+        this.maxStack = maxStack;
+        this.blockCosts = Interpreter.gasLimit > 0 ? blockCosts(code) : null;
+    }
+
+    /**
+     * Gas is charged for the whole basic block when execution enters it, so the program
+     * is stopped only between blocks and the interpreter and compiled code stop at the same place.
+     * A block ends with any instruction which may stop the program, so only executed instructions are charged.
+     * @return Count of instructions of the block at its first instruction, 0 at other positions
+     */
+    static int[] blockCosts(int[] code) {
+        final boolean[] leaders = new boolean[code.length + 1];
+        leaders[0] = true;
+        for (int pc = 0; pc < code.length; pc += 1 + operands(code[pc])) {
+            final int next = pc + 1 + operands(code[pc]);
+            switch (code[pc]) {
+                case JUMP, JUMP_IF_NOT, AND, OR, CONTEXT_CELL -> {
+                    leaders[code[pc + 1]] = true;
+                    leaders[next] = true;
+                }
+                case GOTO, GOTO_GENE -> {
+                    leaders[code[pc + 2]] = true;
+                    leaders[next] = true;
+                }
+                // the program may stop after an action or a check as after halt
+                case HALT, ACT, CHECK -> leaders[next] = true;
+            }
+        }
+
+        final int[] costs = new int[code.length];
+        int leader = 0;
+        for (int pc = 0; pc < code.length; pc += 1 + operands(code[pc])) {
+            if (leaders[pc]) {
+                leader = pc;
+            }
+            ++costs[leader];
+        }
+        return costs;
+    }
+
+    /**
+     * @return Count of operands of the opcode
+     */
+    static int operands(int op) {
+        return switch (op) {
+            case ACT, GOTO, GOTO_GENE -> 2;
+            case JUMP, JUMP_IF_NOT, CONST, DEFAULT, AND, OR, CONTEXT_CELL -> 1;
+            default -> 0;
+        };
+    }
+}
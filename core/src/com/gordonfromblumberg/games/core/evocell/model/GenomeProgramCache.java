@@ -0,0 +1,159 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Programs shared by the population of a world.
+ * DNA caches programs of its own genes, this cache finds programs for DNA with the same genes
+ * which appeared independently, e.g. after crossover or after mutation back to a known genome.
+ * Programs are keyed by the content hash of DNA and the entry gene.
+ * The cache is split into stripes by the hash, every stripe is locked separately
+ * and evicts its least recently used programs when it is full.
+ */
+public final class GenomeProgramCache {
+    private static final int MAX_STRIPES = 16;
+    // small caches are not split, so they evict exactly the least recently used programs
+    private static final int MIN_STRIPE_CAPACITY = 64;
+
+    private final Stripe[] stripes;
+
+    /**
+     * @param capacity Count of programs, 0 disables the cache
+     */
+    GenomeProgramCache(int capacity) {
+        final int stripeCount = capacity > 0
+                ? Math.max(1, Math.min(MAX_STRIPES, capacity / MIN_STRIPE_CAPACITY))
+                : 0;
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; ++i) {
+            stripes[i] = new Stripe((capacity + stripeCount - 1) / stripeCount);
+        }
+    }
+
+    public boolean isEnabled() {
+        return stripes.length > 0;
+    }
+
+    /**
+     * @return Program of DNA with the same genes or null
+     */
+    GenomeProgram get(DNA dna, int geneIndex, boolean embryo) {
+        final long high = dna.contentHashHigh();
+        final long low = dna.contentHashLow();
+        final Stripe stripe = stripe(low);
+        synchronized (stripe) {
+            final GenomeProgram program = stripe.get(stripe.probe.set(high, low, geneIndex, embryo));
+            if (program != null) {
+                ++stripe.hits;
+            } else {
+                ++stripe.misses;
+            }
+            return program;
+        }
+    }
+
+    void put(DNA dna, int geneIndex, boolean embryo, GenomeProgram program) {
+        final Key key = new Key().set(dna.contentHashHigh(), dna.contentHashLow(), geneIndex, embryo);
+        final Stripe stripe = stripe(key.low);
+        synchronized (stripe) {
+            stripe.put(key, program);
+        }
+    }
+
+    private Stripe stripe(long hash) {
+        return stripes[(int) ((hash >>> 1) % stripes.length)];
+    }
+
+    public int getSize() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        long hits = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                hits += stripe.hits;
+            }
+        }
+        return hits;
+    }
+
+    public long getMisses() {
+        long misses = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                misses += stripe.misses;
+            }
+        }
+        return misses;
+    }
+
+    public long getEvictions() {
+        long evictions = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                evictions += stripe.evictions;
+            }
+        }
+        return evictions;
+    }
+
+    /**
+     * Access ordered map of a part of programs, it is used only under its own lock
+     */
+    private static final class Stripe extends LinkedHashMap<Key, GenomeProgram> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+        // key of lookups, so lookups don't allocate
+        private final Key probe = new Key();
+        private long hits;
+        private long misses;
+        private long evictions;
+
+        Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, GenomeProgram> eldest) {
+            if (size() > capacity) {
+                ++evictions;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static final class Key {
+        private long high;
+        private long low;
+        // entry gene and embryo flag
+        private int entry;
+
+        Key set(long high, long low, int geneIndex, boolean embryo) {
+            this.high = high;
+            this.low = low;
+            this.entry = geneIndex << 1 | (embryo ? 1 : 0);
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && high == other.high && low == other.low && entry == other.entry;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (high ^ high >>> 32) * 31 + entry;
+        }
+    }
+}
@@ -1,5 +1,10 @@
 package com.gordonfromblumberg.games.core.evocell.model;
 
-public interface HumidityDistribution {
+public interface HumidityDistribution extends EnvironmentField.Source {
     int getHumidity(int x, int y, int turn);
+
+    @Override
+    default int get(int x, int y, int turn) {
+        return getHumidity(x, y, turn);
+    }
 }
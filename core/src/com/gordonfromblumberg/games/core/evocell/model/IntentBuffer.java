@@ -0,0 +1,134 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+import java.util.Arrays;
+
+/**
+ * Actions affecting neighbour cells which bots emit during a turn in intent mode.
+ * Intents are stored in primitive columns and applied by {@link IntentCommitter} after all bots have been updated.
+ * Each buffer is filled by a single thread.
+ */
+public class IntentBuffer {
+    static final byte MOVE = 0;
+    static final byte OFFSPRING = 1;
+    static final byte BITE = 2;
+    static final byte SHARE = 3;
+    static final byte DEATH = 4;
+
+    static final int PARAM_COUNT = 5;
+
+    // offspring params
+    static final int ENERGY = 0;
+    static final int ORGANICS = 1;
+    static final int MINERALS = 2;
+    static final int WATER = 3;
+    static final int EMBRYO_GENE = 4;
+
+    // bite params, gains are filled by commit
+    static final int MASS = 0;
+    static final int ORGANICS_TO_BITE = 1;
+    static final int ORGANICS_GAIN = 2;
+    static final int MINERALS_GAIN = 3;
+    static final int WATER_GAIN = 4;
+
+    // share params
+    static final int RESOURCE = 0;
+    static final int AMOUNT = 1;
+
+    byte[] types;
+    /** Index of target cell in {@link CellGrid} */
+    int[] targets;
+    /** Index of bot's cell at the moment of emitting */
+    int[] sources;
+    Bot[] bots;
+    int[] params;
+    int size;
+
+    public IntentBuffer() {
+        this(64);
+    }
+
+    public IntentBuffer(int capacity) {
+        types = new byte[capacity];
+        targets = new int[capacity];
+        sources = new int[capacity];
+        bots = new Bot[capacity];
+        params = new int[capacity * PARAM_COUNT];
+    }
+
+    void move(Bot bot, int target) {
+        add(MOVE, bot, target);
+    }
+
+    void offspring(Bot parent, int target, int energy, int organics, int minerals, int water, int embryoGene) {
+        final int p = add(OFFSPRING, parent, target) * PARAM_COUNT;
+        params[p + ENERGY] = energy;
+        params[p + ORGANICS] = organics;
+        params[p + MINERALS] = minerals;
+        params[p + WATER] = water;
+        params[p + EMBRYO_GENE] = embryoGene;
+    }
+
+    void bite(Bot bot, int target, int mass, int organicsToBite) {
+        final int p = add(BITE, bot, target) * PARAM_COUNT;
+        params[p + MASS] = mass;
+        params[p + ORGANICS_TO_BITE] = organicsToBite;
+        params[p + ORGANICS_GAIN] = 0;
+        params[p + MINERALS_GAIN] = 0;
+        params[p + WATER_GAIN] = 0;
+    }
+
+    void share(Bot bot, int target, int resource, int amount) {
+        final int p = add(SHARE, bot, target) * PARAM_COUNT;
+        params[p + RESOURCE] = resource;
+        params[p + AMOUNT] = amount;
+    }
+
+    void death(Bot bot) {
+        add(DEATH, bot, bot.cell);
+    }
+
+    /**
+     * Appends all intents of another buffer preserving their order
+     */
+    void addAll(IntentBuffer other) {
+        final int n = other.size;
+        ensureCapacity(size + n);
+        System.arraycopy(other.types, 0, types, size, n);
+        System.arraycopy(other.targets, 0, targets, size, n);
+        System.arraycopy(other.sources, 0, sources, size, n);
+        System.arraycopy(other.bots, 0, bots, size, n);
+        System.arraycopy(other.params, 0, params, size * PARAM_COUNT, n * PARAM_COUNT);
+        size += n;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(bots, 0, size, null);
+        size = 0;
+    }
+
+    private int add(byte type, Bot bot, int target) {
+        ensureCapacity(size + 1);
+        final int i = size++;
+        types[i] = type;
+        targets[i] = target;
+        sources[i] = bot.cell;
+        bots[i] = bot;
+        return i;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= types.length) {
+            return;
+        }
+        final int newCapacity = Math.max(capacity, types.length * 2);
+        types = Arrays.copyOf(types, newCapacity);
+        targets = Arrays.copyOf(targets, newCapacity);
+        sources = Arrays.copyOf(sources, newCapacity);
+        bots = Arrays.copyOf(bots, newCapacity);
+        params = Arrays.copyOf(params, newCapacity * PARAM_COUNT);
+    }
+}
@@ -0,0 +1,343 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+import com.gordonfromblumberg.games.core.common.utils.KeyedRandomGen;
+import com.gordonfromblumberg.games.core.common.utils.RandomGen;
+import com.gordonfromblumberg.games.core.evocell.world.GameWorld;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static com.gordonfromblumberg.games.core.evocell.model.IntentBuffer.*;
+
+/**
+ * Applies intents emitted by bots during a turn.
+ * Intents are merged in buffers order and grouped by cell, every group is resolved independently from others,
+ * so the result doesn't depend on order of bots updating and groups may be resolved concurrently.
+ * <ol>
+ *     <li>Bites and shares are grouped by target cell. Bites are applied to target, gains are saved to intent</li>
+ *     <li>Bite gains are grouped by attacker and given to it</li>
+ *     <li>Moves and offsprings are grouped by target cell, the contender with the highest priority takes the cell</li>
+ *     <li>Dead bots are removed</li>
+ * </ol>
+ * Offspring of a group draw random numbers keyed by the turn and the target cell in any mode,
+ * so the result doesn't depend on how groups are split between threads.
+ */
+public class IntentCommitter {
+    private static final int MIN_GROUPS_PER_TASK = 64;
+
+    private final ForkJoinPool pool;
+    // keyed generator of each thread resolving groups
+    private final ThreadLocal<RandomGen> randoms;
+    private final IntentBuffer merged = new IntentBuffer(1024);
+    private long[] keys = new long[1024];
+    private int[] groupStarts = new int[1024];
+    private int keyCount;
+    private int groupCount;
+
+    private GameWorld world;
+    private CellGrid grid;
+
+    /**
+     * @param pool Pool to resolve groups concurrently, may be null
+     */
+    public IntentCommitter(ForkJoinPool pool) {
+        this.pool = pool;
+        final long seed = RandomGen.getSeed();
+        this.randoms = ThreadLocal.withInitial(() -> new KeyedRandomGen(seed));
+    }
+
+    /**
+     * Applies and clears all buffers
+     * @param buffers Intent buffers in fixed order, e.g. tile order
+     */
+    public void commit(GameWorld world, IntentBuffer... buffers) {
+        this.world = world;
+        this.grid = world.getGrid();
+
+        final IntentBuffer merged = this.merged;
+        for (IntentBuffer buffer : buffers) {
+            merged.addAll(buffer);
+            buffer.clear();
+        }
+
+        if (groupByTarget(BITE, SHARE)) {
+            resolveGroups(Pass.CONTACT);
+        }
+        if (groupBySource(BITE)) {
+            resolveGroups(Pass.GAIN);
+        }
+        if (groupByTarget(MOVE, OFFSPRING)) {
+            resolveGroups(Pass.PLACEMENT);
+        }
+        removeDead();
+
+        merged.clear();
+        this.world = null;
+        this.grid = null;
+    }
+
+    private void resolveGroups(Pass pass) {
+        if (pool != null && groupCount > MIN_GROUPS_PER_TASK) {
+            pool.invoke(new GroupTask(pass, 0, groupCount));
+        } else {
+            resolveGroups(pass, 0, groupCount);
+        }
+    }
+
+    private void resolveGroups(Pass pass, int fromGroup, int toGroup) {
+        for (int g = fromGroup; g < toGroup; ++g) {
+            final int from = groupStarts[g];
+            final int to = groupStarts[g + 1];
+            switch (pass) {
+                case CONTACT -> resolveContacts(from, to);
+                case GAIN -> resolveGains(from, to);
+                case PLACEMENT -> resolvePlacement(from, to);
+            }
+        }
+        if (pass == Pass.PLACEMENT) {
+            // keyed generator must not leak to other draws of the thread
+            RandomGen.setCurrent(null);
+        }
+    }
+
+    private void resolveContacts(int from, int to) {
+        final IntentBuffer merged = this.merged;
+        final CellGrid grid = this.grid;
+        final int cell = merged.targets[intent(from)];
+        for (int k = from; k < to; ++k) {
+            final int i = intent(k);
+            final int p = i * PARAM_COUNT;
+            if (merged.types[i] == SHARE) {
+                Bot.receiveShare(grid, cell, merged.params[p + RESOURCE], merged.params[p + AMOUNT]);
+                continue;
+            }
+
+            final Bot target = grid.getBot(cell);
+            if (target == null || target.isDead) {
+                continue;
+            }
+            final BotStore store = target.store;
+            final int slot = target.slot;
+            final int dmg = Bot.getBiteDamage(merged.params[p + MASS], target);
+            store.hp[slot] -= dmg;
+            final int organicsDiff = Math.min(merged.params[p + ORGANICS_TO_BITE], store.organics[slot]);
+            store.organics[slot] -= organicsDiff;
+            merged.params[p + ORGANICS_GAIN] = organicsDiff;
+            if (dmg > 3 && store.minerals[slot] > 10) {
+                --store.minerals[slot];
+                merged.params[p + MINERALS_GAIN] = 1;
+            }
+            if (dmg > 3 && store.water[slot] > 10) {
+                --store.water[slot];
+                merged.params[p + WATER_GAIN] = 1;
+            }
+
+            if (store.hp[slot] <= 0 || store.organics[slot] <= 0) {
+                target.die();
+            }
+        }
+    }
+
+    private void resolveGains(int from, int to) {
+        final IntentBuffer merged = this.merged;
+        final Bot bot = merged.bots[intent(from)];
+        for (int k = from; k < to; ++k) {
+            final int p = intent(k) * PARAM_COUNT;
+            if (!bot.isDead) {
+                final BotStore store = bot.store;
+                store.organics[bot.slot] += merged.params[p + ORGANICS_GAIN];
+                store.minerals[bot.slot] += merged.params[p + MINERALS_GAIN];
+                store.water[bot.slot] += merged.params[p + WATER_GAIN];
+            } else {
+                // resources of dead bot have been already dropped to its cell
+                grid.addOrganics(bot.cell, merged.params[p + ORGANICS_GAIN]);
+                grid.addMinerals(bot.cell, merged.params[p + MINERALS_GAIN]);
+                grid.addWater(bot.cell, merged.params[p + WATER_GAIN]);
+            }
+        }
+    }
+
+    private void resolvePlacement(int from, int to) {
+        final IntentBuffer merged = this.merged;
+        final CellGrid grid = this.grid;
+        final int cell = merged.targets[intent(from)];
+        final int turn = world.getTurn();
+
+        int winner = -1;
+        int winnerPriority = 0;
+        if (grid.getBot(cell) == null) {
+            for (int k = from; k < to; ++k) {
+                final int i = intent(k);
+                if (merged.bots[i].isDead) {
+                    continue;
+                }
+                final int priority = priority(turn, merged.sources[i]);
+                if (winner == -1 || priority > winnerPriority) {
+                    winner = i;
+                    winnerPriority = priority;
+                }
+            }
+        }
+
+        for (int k = from; k < to; ++k) {
+            final int i = intent(k);
+            final Bot bot = merged.bots[i];
+            if (merged.types[i] == MOVE) {
+                if (i == winner) {
+                    bot.setCell(grid, cell);
+                }
+                continue;
+            }
+
+            final int p = i * PARAM_COUNT;
+            final int[] params = merged.params;
+            if (i == winner) {
+                // the offspring is mutated and runs its embryo gene
+                final RandomGen random = randoms.get();
+                random.setKey(turn, cell, GameWorld.RANDOM_OFFSPRING);
+                RandomGen.setCurrent(random);
+                final Bot offspring = bot.createOffspring(cell, params[p + EMBRYO_GENE], params[p + ENERGY],
+                        params[p + ORGANICS], params[p + MINERALS], params[p + WATER]);
+                bot.settleOffspring(world, offspring);
+            } else if (!bot.isDead) {
+                final BotStore store = bot.store;
+                store.energy[bot.slot] += params[p + ENERGY];
+                store.organics[bot.slot] += params[p + ORGANICS];
+                store.minerals[bot.slot] += params[p + MINERALS];
+                store.water[bot.slot] += params[p + WATER];
+            } else {
+                grid.addEnergy(cell, params[p + ENERGY]);
+                grid.addOrganics(cell, params[p + ORGANICS]);
+                grid.addMinerals(cell, params[p + MINERALS]);
+                grid.addWater(cell, params[p + WATER]);
+            }
+        }
+    }
+
+    /**
+     * Bots died during update and bitten to death are removed.
+     * Removed bot is reset, so it is not removed twice
+     */
+    private void removeDead() {
+        final IntentBuffer merged = this.merged;
+        for (int i = 0, n = merged.size; i < n; ++i) {
+            final Bot bot = switch (merged.types[i]) {
+                case DEATH -> merged.bots[i];
+                case BITE -> grid.getBot(merged.targets[i]);
+                default -> null;
+            };
+            if (bot != null && bot.isDead) {
+                bot.remove();
+            }
+        }
+    }
+
+    /**
+     * Selects intents of the given types, sorts them by target cell and finds groups
+     * @return true if any intent was selected
+     */
+    private boolean groupByTarget(byte type1, byte type2) {
+        final IntentBuffer merged = this.merged;
+        keyCount = 0;
+        ensureKeyCapacity(merged.size);
+        for (int i = 0, n = merged.size; i < n; ++i) {
+            final byte type = merged.types[i];
+            if (type == type1 || type == type2) {
+                keys[keyCount++] = ((long) merged.targets[i] << 32) | i;
+            }
+        }
+        return sortAndGroup();
+    }
+
+    private boolean groupBySource(byte type) {
+        final IntentBuffer merged = this.merged;
+        keyCount = 0;
+        ensureKeyCapacity(merged.size);
+        for (int i = 0, n = merged.size; i < n; ++i) {
+            if (merged.types[i] == type) {
+                keys[keyCount++] = ((long) merged.sources[i] << 32) | i;
+            }
+        }
+        return sortAndGroup();
+    }
+
+    private boolean sortAndGroup() {
+        final int n = keyCount;
+        if (n == 0) {
+            return false;
+        }
+
+        final long[] keys = this.keys;
+        if (pool != null) {
+            Arrays.parallelSort(keys, 0, n);
+        } else {
+            Arrays.sort(keys, 0, n);
+        }
+
+        if (groupStarts.length < n + 1) {
+            groupStarts = new int[Math.max(n + 1, groupStarts.length * 2)];
+        }
+        int groups = 0;
+        long prevGroup = -1;
+        for (int k = 0; k < n; ++k) {
+            final long group = keys[k] >>> 32;
+            if (group != prevGroup) {
+                groupStarts[groups++] = k;
+                prevGroup = group;
+            }
+        }
+        groupStarts[groups] = n;
+        groupCount = groups;
+        return true;
+    }
+
+    private int intent(int k) {
+        return (int) keys[k];
+    }
+
+    private void ensureKeyCapacity(int capacity) {
+        if (keys.length < capacity) {
+            keys = new long[Math.max(capacity, keys.length * 2)];
+        }
+    }
+
+    /**
+     * Pseudo random but reproducible priority of a bot from the given cell to take a contended cell
+     */
+    static int priority(int turn, int sourceCell) {
+        int h = sourceCell * 0x9E3779B9 + turn * 0x85EBCA6B;
+        h ^= h >>> 16;
+        h *= 0x7FEB352D;
+        h ^= h >>> 15;
+        return h;
+    }
+
+    private enum Pass {
+        CONTACT, GAIN, PLACEMENT
+    }
+
+    private class GroupTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Pass pass;
+        private final int from, to;
+
+        GroupTask(Pass pass, int from, int to) {
+            this.pass = pass;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= MIN_GROUPS_PER_TASK) {
+                resolveGroups(pass, from, to);
+                return;
+            }
+
+            final int mid = (from + to) >>> 1;
+            invokeAll(new GroupTask(pass, from, mid), new GroupTask(pass, mid, to));
+        }
+    }
+}
@@ -8,16 +8,28 @@ import com.gordonfromblumberg.games.core.common.log.Logger;
 import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
 import com.gordonfromblumberg.games.core.evocell.world.GameWorld;
 
-import static com.gordonfromblumberg.games.core.common.utils.MathHelper.modPos;
-import static com.gordonfromblumberg.games.core.evocell.model.Gene.geneValueCount;
-import static com.gordonfromblumberg.games.core.evocell.model.Step.StepType;
-
+/**
+ * Runs and prints genomes of bots. It may be shared by all threads: parsing and execution state
+ * is kept in {@link InterpreterContext}s, programs of the population are shared by {@link GenomeProgramCache}.
+ */
 public class Interpreter {
     private static final Logger log = LogManager.create(Interpreter.class);
-    private static final byte expressionMarker;
-    private static final int gotoLimit;
-    private static final IntMap<String> indents = new IntMap<>();
-    private static final ActionDef nothingDef;
+    static final byte expressionMarker;
+    static final int gotoLimit;
+    static final boolean optimize;
+    static final int batchSize;
+    static final int gasLimit;
+    private static final int programCacheSize;
+    static final IntMap<String> indents = new IntMap<>();
+    static final ActionDef nothingDef;
+    // contexts are pooled per thread, so concurrent and nested operations get their own contexts
+    private static final ThreadLocal<Pool<InterpreterContext>> contexts = ThreadLocal.withInitial(() -> new Pool<>() {
+        @Override
+        protected InterpreterContext newObject() {
+            return new InterpreterContext();
+        }
+    });
+    private static final ThreadLocal<GenomeBatch> batches = ThreadLocal.withInitial(() -> new GenomeBatch(Interpreter.batchSize));
 
     static {
         final ConfigManager configManager = AbstractFactory.getInstance().configManager();
@@ -26,6 +38,10 @@ public class Interpreter {
             throw new IllegalStateException("interpreter.expressionMarker should be > 0, but = " + expressionMarker);
 
         gotoLimit = configManager.getInteger("interpreter.gotoLimit");
+        optimize = configManager.getBoolean("interpreter.optimize");
+        batchSize = configManager.getInteger("interpreter.batchSize");
+        gasLimit = configManager.getInteger("interpreter.gasLimit");
+        programCacheSize = configManager.getInteger("interpreter.programCacheSize");
 
         final String baseIndent = "  ";
         indents.put(0, "");
@@ -43,706 +59,154 @@ public class Interpreter {
         nothingDef = nthDef;
     }
 
-    private final Pool<Step> stepPool = new Pool<>(128, 2048) {
-        @Override
-        protected Step newObject() {
-            return new Step();
-        }
-    };
+    private final GenomeProgramCache programCache;
 
-    // gotoGene: geneIndex << 24
-    // goto : (geneIndex << 8) | geneValueIndex
-    private final IntMap<Step> parsedGotos = new IntMap<>();
-    private final IntSet evaluatedGenes = new IntSet();
-    private final IntIntMap evaluatedGotos = new IntIntMap();
-    private final IntSet printedGotos = new IntSet();
-    private final ObjectIntMap<String> actionCounter = new ObjectIntMap<>();
-
-    private boolean interpreting;
-
-    public void run(GameWorld world, EvoBot bot) {
-        if (interpreting) {
-            throw new IllegalStateException("Interpreter already in use");
-        }
-        interpreting = true;
-
-        byte activeGeneIndex = bot.activeGeneIndex;
-
-        Step geneActions = readGene(bot, activeGeneIndex, Actions.actionDefs);
-
-        evaluatedGenes.add(activeGeneIndex);
-        run(world, bot, geneActions);
-
-        reset(geneActions);
+    public Interpreter() {
+        this(programCacheSize);
     }
 
-    public void runEmbryo(GameWorld world, EvoBot bot) {
-        if (interpreting) {
-            throw new IllegalStateException("Interpreter already in use");
-        }
-        interpreting = true;
-
-        Step geneActions = readGene(bot, bot.embryoGeneIndex, Actions.embryoActionDefs);
-
-        evaluatedGenes.add(0);
-        run(world, bot, geneActions);
-
-        reset(geneActions);
-    }
-
-    public void print(EvoBot bot, GenomePrinter printer) {
-        Step embryoActions = readGene(bot, 0, Actions.embryoActionDefs);
-        printer.startRow("", "")
-                .append("Embryo gene #").append(bot.embryoGeneIndex).append(" {");
-        printer.endRow();
-        for (Step stepAction : embryoActions.parameters()) {
-            printStep(printer, stepAction, 0);
-        }
-        printer.startRow("", "")
-                .append("}");
-        printer.endRow();
-
-        printGenesExcept(printer, 0);
-
-        printer.startRow("", "");
-        printer.endRow();
-        reset(embryoActions);
-
-        byte activeGeneIndex = bot.activeGeneIndex;
-        Step geneActions = readGene(bot, activeGeneIndex, Actions.actionDefs);
-        printer.startRow("", "")
-               .append("Active gene #").append(activeGeneIndex).append(" {");
-        printer.endRow();
-
-        for (Step stepAction : geneActions.parameters()) {
-            printStep(printer, stepAction, 0);
-        }
-        printer.startRow("", "")
-               .append("}");
-        printer.endRow();
-
-        printGenesExcept(printer, activeGeneIndex);
-        reset(geneActions);
+    /**
+     * @param programCacheSize Count of programs shared by DNA with the same genes, 0 disables the cache
+     */
+    Interpreter(int programCacheSize) {
+        programCache = new GenomeProgramCache(programCacheSize);
     }
 
-    public String print(EvoBot bot) {
-        Step embryoActions = readGene(bot, 0, Actions.embryoActionDefs);
-        final StringBuilder sb = new StringBuilder("Embryo gene #0 {\n");
-        for (Step stepAction : embryoActions.parameters()) {
-            printStep(sb, stepAction, 0);
-        }
-        sb.append("}\n\n");
-
-        reset(embryoActions);
-        byte activeGeneIndex = bot.activeGeneIndex;
-        Step geneActions = readGene(bot, activeGeneIndex, Actions.actionDefs);
-        sb.append("Active gene #").append(activeGeneIndex).append(" {\n");
-
-        for (Step stepAction : geneActions.parameters()) {
-            printStep(sb, stepAction, 0);
-        }
-        sb.append("}\n");
-
-        final int minKey = geneToKey(0);
-        final int activeGeneKey = geneToKey(activeGeneIndex);
-        final IntArray genesToPrint = Pools.obtain(IntArray.class);
-        for (IntMap.Entry<Step> entry : parsedGotos) {
-            if (entry.key >= minKey && entry.key != activeGeneKey) {
-                genesToPrint.add(entry.key);
-            }
-        }
-        genesToPrint.sort();
-        for (int i = 0, n = genesToPrint.size; i < n; ++i) {
-            int geneKey = genesToPrint.get(i);
-            Step gene = parsedGotos.get(geneKey);
-            sb.append("\n")
-              .append("Gene #").append(gene.geneIndex).append(" {\n");
-            for (Step geneAction : gene.parameters()) {
-                printStep(sb, geneAction, 0);
-            }
-            sb.append("}\n");
-        }
-        genesToPrint.clear();
-        Pools.free(genesToPrint);
-
-        reset(geneActions);
-        return sb.toString();
+    /**
+     * @return true if bots with the same program should be run in lock-step batches
+     */
+    public static boolean isBatched() {
+        return batchSize > 1;
     }
 
-    void readActionsAsGroup(Step step, EvoBot bot, int geneIndex, int geneValueIndex, IntMap<ActionDef> actionMap) {
-        step.type = StepType.actionGroup;
-        int lastRead = geneValueIndex - 1;
-        while (lastRead + 1 < geneValueCount) {
-            Step subStep = readAction(bot, geneIndex, lastRead + 1, actionMap);
-            lastRead = subStep.lastRead;
-            step.addParameter(subStep);
-            if (subStep.stopReadActions) {
-                step.stopReadActions = true;
-                break;
-            }
+    /**
+     * Runs the active gene of the bot, the program is skipped if the world is out of the turn time budget
+     */
+    public void run(GameWorld world, EvoBot bot) {
+        if (world.isTurnBudgetExceeded()) {
+            world.countSkippedPrograms(1);
+            return;
         }
+        run(world, bot, activeProgram(bot));
     }
 
     /**
-     * Считывает весь ген, помещая полученные action как parameters в step с типом actionGroup.
-     * Если ген уже был считан (есть в evaluatedGenes), возвращает его.
-     * @param bot Бот
-     * @param geneIndex Индекс гена
-     * @param actionMap Соответствие кодов и действий
-     * @return Step типа actionGroup со всеми считанными action внутри
+     * Adds the bot to the batch of its program, it is run by {@link #runBatches(GameWorld)} of the same thread
      */
-    Step readGene(EvoBot bot, int geneIndex, IntMap<ActionDef> actionMap) {
-        final int key = geneToKey(geneIndex);
-        Step step = parsedGotos.get(key);
-        if (step == null) {
-            step = obtainStep(geneIndex, -1);
-            parsedGotos.put(key, step);
-            readActionsAsGroup(step, bot, geneIndex, 0, actionMap);
-        }
-        return step;
+    void batch(EvoBot bot) {
+        batches.get().add(bot, activeProgram(bot));
     }
 
     /**
-     * Считывает action с указанной позиции, включая все необходимые параметры.
-     * Если ген заканчивается, не считанные параметры заполняются значениями по умолчанию.
-     * @param bot Бот
-     * @param geneIndex Индекс гена
-     * @param geneValueIndex Позиция в гене
-     * @param actionMap Соответствие кодов и действий
-     * @return Объект Step со считанным action
+     * Runs bots added by {@link #batch(EvoBot)} in the current thread
+     * @return Run bots in order of adding, the array is cleared by the next adding
      */
-    Step readAction(EvoBot bot, int geneIndex, int geneValueIndex, IntMap<ActionDef> actionMap) {
-        final Gene gene = bot.dna.getGene(geneIndex);
-
-        ActionDef actionDef = null;
-        byte value = 0;
-        while (actionDef == null && geneValueIndex < geneValueCount) {
-            value = gene.getValue(geneValueIndex++);
-            actionDef = actionMap.get(value);
-        }
-
-        final Step step = obtainStep(geneIndex, geneValueIndex - 1);
-
-        step.lastRead = geneValueIndex - 1;
-        step.value = value;
-        if (actionDef != null) {
-            step.stepDef = actionDef;
-
-            switch (actionDef.type()) {
-                case spec -> {
-                    switch (actionDef.name()) {
-                        case "if" -> {
-                            step.type = StepType.ifStatement;
-                            if (step.lastRead + 1 >= geneValueCount) {
-                                break;
-                            }
-                            Step condition = readParameter(gene, geneIndex, step.lastRead + 1);
-                            step.lastRead = condition.lastRead;
-                            if (step.lastRead + 1 >= geneValueCount) {
-                                break;
-                            }
-                            Step action = readAction(bot, geneIndex, step.lastRead + 1, actionMap);
-                            step.addParameter(condition);
-                            step.addParameter(action);
-                            step.lastRead = action.lastRead;
-                            step.stopReadActions = action.stopReadActions || step.stopReadActions;
-                        }
-                        case "ifelse" -> {
-                            step.type = StepType.ifStatement;
-                            if (step.lastRead + 1 >= geneValueCount) {
-                                break;
-                            }
-                            Step condition = readParameter(gene, geneIndex, step.lastRead + 1);
-                            step.lastRead = condition.lastRead;
-                            if (step.lastRead + 1 >= geneValueCount) {
-                                break;
-                            }
-                            Step trueAction = readAction(bot, geneIndex, step.lastRead + 1, actionMap);
-                            step.addParameter(condition);
-                            step.addParameter(trueAction);
-                            if (trueAction.lastRead + 1 < geneValueCount) {
-                                Step falseAction = readAction(bot, geneIndex, trueAction.lastRead + 1, actionMap);
-                                step.addParameter(falseAction);
-                                step.lastRead = falseAction.lastRead;
-                                if (trueAction.stopReadActions && falseAction.stopReadActions) {
-                                    step.stopReadActions = true;
-                                }
-                            } else {
-                                step.lastRead = trueAction.lastRead;
-                            }
-                        }
-                        case "goto" -> {
-                            step.type = StepType.gotoStatement;
-                            step.stopReadActions = true;
-                            int index = geneValueIndex < geneValueCount
-                                    ? modPos(gene.getValue(geneValueIndex), geneValueCount)
-                                    : 0;
-                            step.value = (byte) index;
-                            int key = gotoToKey(geneIndex, geneValueIndex - 1);
-                            Step subStep = parsedGotos.get(key);
-                            if (subStep == null) {
-                                subStep = obtainStep(-1, -1);
-                                parsedGotos.put(key, subStep);
-                                readActionsAsGroup(subStep, bot, geneIndex, index, actionMap);
-                            }
-                            step.addParameter(subStep);
-                        }
-                        case "gotoGene" -> {
-                            step.type = StepType.gotoStatement;
-                            step.stopReadActions = true;
-                            int newGeneIndex = geneValueIndex < geneValueCount
-                                    ? modPos(gene.getValue(geneValueIndex), bot.dna.genes.size)
-                                    : modPos(geneIndex + 1, bot.dna.genes.size);
-                            step.value = (byte) newGeneIndex;
-                            step.addParameter(readGene(bot, newGeneIndex, actionMap));
-                        }
-                        case "stop" -> {
-                            step.type = StepType.action;
-                            step.stopReadActions = true;
-                        }
-                    }
-                }
-
-                case specaction -> {
-                    step.type = StepType.actionGroup;
-                    int requiredSubActions = switch (actionDef.name()) {
-                        case "2actions" -> 2;
-                        case "3actions" -> 3;
-                        default -> throw new IllegalStateException("Unknown specaction " + actionDef.name());
-                    };
-                    while (requiredSubActions-- > 0 && step.lastRead + 1 < geneValueCount) {
-                        Step subStep = readAction(bot, geneIndex, step.lastRead + 1, actionMap);
-                        step.lastRead = subStep.lastRead;
-                        step.addParameter(subStep);
-                        if (subStep.stopReadActions) {
-                            step.stopReadActions = true;
-                            break;
-                        }
-                    }
-                }
+    Array<EvoBot> runBatches(GameWorld world) {
+        return batches.get().run(world, this);
+    }
 
-                case action -> {
-                    step.type = StepType.action;
-                    int requiredParameters = actionDef.parameters() == null ? 0 : actionDef.parameters().length;
-                    while (requiredParameters-- > 0 && step.lastRead + 1 < geneValueCount) {
-                        Step subStep = readParameter(gene, geneIndex, step.lastRead + 1);
-                        step.lastRead = subStep.lastRead;
-                        step.addParameter(subStep);
-                    }
-                }
-            }
-        } else {
-            step.type = StepType.action;
-            step.stepDef = nothingDef;
-        }
+    public void runEmbryo(GameWorld world, EvoBot bot) {
+        run(world, bot, getProgram(bot, bot.embryoGeneIndex, true));
+    }
 
-        fillParametersByDefault(step);
-        return step;
+    public void print(EvoBot bot, GenomePrinter printer) {
+        final GenomeProgram embryoProgram = getProgram(bot, 0, true);
+        final byte activeGeneIndex = bot.activeGeneIndex;
+        final GenomeProgram program = getProgram(bot, activeGeneIndex, false);
+        final InterpreterContext context = obtain();
+        context.print(printer, bot.embryoGeneIndex, embryoProgram, activeGeneIndex, program);
+        context.release();
     }
 
-    Step readParameter(Gene gene, int geneIndex, int geneValueIndex) {
-        Step step = obtainStep(geneIndex, geneValueIndex);
-        step.type = StepType.expression;
-        byte value = gene.getValue(geneValueIndex++);
-        if ((value > expressionMarker || value < -expressionMarker) && geneValueIndex < geneValueCount) {
-            byte exprValue = gene.getValue(geneValueIndex++);
-            ExpressionDef expressionDef = Expressions.expressionDefs.get(exprValue);
-            if (expressionDef != null) {
-                int requiredParameters = expressionDef.defaultParameters().length;
-                int lastRead = geneValueIndex - 1;
-                while (requiredParameters-- > 0 && lastRead + 1 < geneValueCount) {
-                    Step subStep = readParameter(gene, geneIndex, lastRead + 1);
-                    lastRead = subStep.lastRead;
-                    step.addParameter(subStep);
-                }
-                step.stepDef = expressionDef;
-                step.value = exprValue;
-                step.lastRead = lastRead;
-                fillParametersByDefault(step);
-            } else {
-                step.value = exprValue;
-                step.lastRead = geneValueIndex - 1;
-            }
-        } else {
-            step.value = value;
-            step.lastRead = geneValueIndex - 1;
-        }
-        return step;
+    public String print(EvoBot bot) {
+        final GenomeProgram embryoProgram = getProgram(bot, 0, true);
+        final byte activeGeneIndex = bot.activeGeneIndex;
+        final GenomeProgram program = getProgram(bot, activeGeneIndex, false);
+        final InterpreterContext context = obtain();
+        final String result = context.print(embryoProgram, activeGeneIndex, program);
+        context.release();
+        return result;
     }
 
     /**
-     * @param world GameWorld
-     * @param bot EvoLivingCell bot
-     * @param step Action step
-     * @return if true actions running should be stopped
+     * Возвращает программу гена из кэша DNA, затем из общего кэша популяции,
+     * разбирая ген только если такой геном ещё не встречался.
+     * @param bot Бот
+     * @param geneIndex Индекс гена, с которого начинается выполнение
+     * @param embryo true для генов эмбриона
+     * @return Разобранная программа
      */
-    boolean run(GameWorld world, EvoBot bot, Step step) {
-        if (step.type == null) {
-            return false;
-        }
-
-        final Array<Step> parameters = step.parameters();
-        switch (step.type) {
-            case action -> {
-                ActionDef actionDef = (ActionDef) step.stepDef;
-                ActionMapping actionMapping = Actions.actionsMap.get(actionDef.name());
-                int counter = actionCounter.getAndIncrement(actionDef.tag(), 0, 1);
-                int parameter = parameters.size > 0 ? parameters.get(0).number(world.getGrid(), bot) : 0;
-                actionMapping.act(world, bot, counter, parameter);
-                if (!check(bot)) {
-                    bot.die();
-                    return true;
-                }
-                if ("stop".equals(actionDef.name())) {
-                    return true;
+    GenomeProgram getProgram(EvoBot bot, int geneIndex, boolean embryo) {
+        final DNA dna = bot.dna;
+        GenomeProgram program = dna.getProgram(geneIndex, embryo);
+        if (program == null) {
+            final GenomeProgramCache cache = programCache;
+            program = cache.isEnabled() ? cache.get(dna, geneIndex, embryo) : null;
+            if (program == null) {
+                final InterpreterContext context = obtain();
+                program = context.compile(bot, geneIndex, embryo);
+                context.release();
+                program.jitEntry = GenomeJit.entry(program);
+                if (cache.isEnabled()) {
+                    cache.put(dna, geneIndex, embryo, program);
                 }
             }
-
-            case actionGroup -> {
-                for (Step subAction : parameters) {
-                    if (run(world, bot, subAction)) {
-                        return true;
-                    }
-                }
-            }
-
-            case ifStatement -> {
-                if (parameters.size < 2) {
-                    return false;
-                }
-
-                return parameters.get(0).bool(world.getGrid(), bot)
-                        ? run(world, bot, parameters.get(1))
-                        : parameters.size > 2 && run(world, bot, parameters.get(2));
-            }
-
-            case gotoStatement -> {
-                ActionDef actionDef = (ActionDef) step.stepDef;
-                switch (actionDef.name()) {
-                    case "goto" -> {
-                        final int key = Interpreter.gotoToKey(step.geneIndex, step.geneValueIndex);
-                        if (evaluatedGotos.getAndIncrement(key, 0, 1) < Interpreter.gotoLimit) {
-                            run(world, bot, parameters.get(0));
-                            return true;
-                        }
-                    }
-                    case "gotoGene" -> {
-                        if (evaluatedGenes.add(step.value)) {
-                            run(world, bot, parameters.get(0));
-                            return true;
-                        }
-                    }
-                }
-            }
-
-            case expression -> throw new IllegalStateException("run should not be invoked for expression step");
+            dna.putProgram(geneIndex, embryo, program);
         }
-
-        return false;
-    }
-
-    Step obtainStep(int geneIndex, int geneValueIndex) {
-        Step step = stepPool.obtain();
-        step.geneIndex = geneIndex;
-        step.geneValueIndex = geneValueIndex;
-        step.wasReset = false;
-        return step;
+        return program;
     }
 
-    void fillParametersByDefault(Step step) {
-        if (step.stepDef instanceof ActionDef actionDef && actionDef.parameters() != null) {
-            for (int i = step.parameters().size, n = actionDef.parameters().length; i < n; ++i) {
-                Step parameterStep = obtainStep(-1, -1);
-                parameterStep.type = StepType.expression;
-                parameterStep.value = actionDef.parameters()[i].defaultValue().get();
-                step.addParameter(parameterStep);
-            }
-
-        } else if (step.stepDef instanceof ExpressionDef expressionDef) {
-            for (int i = step.parameters().size, n = expressionDef.defaultParameters().length; i < n; ++i) {
-                Step parameterStep = obtainStep(-1, -1);
-                parameterStep.type = StepType.expression;
-                parameterStep.value = expressionDef.defaultParameters()[i];
-                step.addParameter(parameterStep);
-            }
-        }
+    /**
+     * @return Programs shared by DNA with the same genes
+     */
+    public GenomeProgramCache getProgramCache() {
+        return programCache;
     }
 
-    void printStep(StringBuilder sb, Step step, int indent) {
-        switch (step.type) {
-            case action -> {
-                sb.append(step.geneValueIndex).append('\t')
-                  .append(step.value).append(' ').append(indents.get(indent))
-                  .append(((ActionDef) step.stepDef).description());
-                if (step.parameters().notEmpty()) {
-                    sb.append(" {\n");
-                    for (Step parStep : step.parameters()) {
-                        printStep(sb, parStep, indent + 1);
-                    }
-                    sb.append(step.geneValueIndex).append('\t')
-                      .append(step.value).append(' ').append(indents.get(indent)).append("}");
-                }
-                sb.append('\n');
-            }
-
-            case actionGroup -> {
-                sb.append(step.geneValueIndex).append('\t')
-                  .append(step.value).append(' ').append(indents.get(indent))
-                  .append("group of actions {\n");
-                for (Step subAction : step.parameters()) {
-                    printStep(sb, subAction, indent + 1);
-                }
-                sb.append(step.geneValueIndex).append('\t')
-                  .append(step.value).append(' ').append(indents.get(indent))
-                  .append("}\n");
-            }
-
-            case ifStatement -> {
-                if (step.parameters().size < 2)
-                    return;
-                sb.append(step.geneValueIndex).append('\t')
-                  .append(step.value).append(' ').append(indents.get(indent)).append("if (\n");
-                printStep(sb, step.parameters().first(), indent + 1);
-                sb.append(step.geneValueIndex).append('\t')
-                  .append(step.value).append(' ').append(indents.get(indent))
-                  .append(") {\n");
-                printStep(sb, step.parameters().get(1), indent + 1);
-                sb.append(step.geneValueIndex).append('\t')
-                  .append(step.value).append(' ').append(indents.get(indent))
-                  .append("}\n");
-                if (step.parameters().size > 2) {
-                    sb.append(step.geneValueIndex).append('\t')
-                      .append(step.value).append(' ').append(indents.get(indent))
-                      .append("else {\n");
-                    printStep(sb, step.parameters().get(2), indent + 1);
-                    sb.append(step.geneValueIndex).append('\t')
-                      .append(step.value).append(' ').append(indents.get(indent))
-                      .append("}\n");
-                }
-            }
-
-            case gotoStatement -> {
-                ActionDef actionDef = (ActionDef) step.stepDef;
-                switch (actionDef.name()) {
-                    case "goto" -> {
-                        sb.append(step.geneValueIndex).append('\t')
-                          .append(step.value).append(' ').append(indents.get(indent))
-                          .append(actionDef.description()).append(' ').append(step.value);
-                        final int key = Interpreter.gotoToKey(step.geneIndex, step.geneValueIndex);
-                        if (printedGotos.add(key)) {
-                            sb.append(" {\n");
-                            for (Step subAction : step.parameters()) {
-                                printStep(sb, subAction, indent + 1);
-                            }
-                            sb.append(step.geneValueIndex).append('\t')
-                              .append(step.value).append(' ').append(indents.get(indent))
-                              .append("}");
-                        }
-                        sb.append('\n');
-                    }
-                    case "gotoGene" -> sb.append(step.geneValueIndex).append('\t')
-                                     .append(step.value).append(' ').append(indents.get(indent))
-                                     .append(actionDef.description()).append(' ').append(step.value)
-                                     .append('\n');
-                }
-            }
-
-            case expression -> {
-                ExpressionDef exprDef = (ExpressionDef) step.stepDef;
-                sb.append(step.geneValueIndex).append('\t')
-                  .append(step.value).append(' ').append(indents.get(indent));
-                if (exprDef != null) {
-                    sb.append(exprDef.name()).append(" (\n");
-                    for (Step parStep : step.parameters()) {
-                        printStep(sb, parStep, indent + 1);
-                    }
-                    sb.append(step.geneValueIndex).append('\t')
-                      .append(step.value).append(' ').append(indents.get(indent))
-                      .append(')');
-                } else {
-                    sb.append(step.value);
-                }
-                sb.append('\n');
-            }
+    private GenomeProgram activeProgram(EvoBot bot) {
+        GenomeProgram program = bot.program;
+        if (program == null || program.initialGene != bot.activeGeneIndex) {
+            program = getProgram(bot, bot.activeGeneIndex, false);
+            bot.program = program;
         }
+        return program;
     }
 
-    void printStep(GenomePrinter printer, Step step, int indent) {
-        switch (step.type) {
-            case action -> {
-                StringBuilder sb = printer.startRow(String.valueOf(step.geneValueIndex), String.valueOf(step.value))
-                                          .append(indents.get(indent))
-                                          .append(((ActionDef) step.stepDef).description());
-                if (step.parameters().notEmpty()) {
-                    sb.append(" {");
-                    printer.endRow();
-                    for (Step parStep : step.parameters()) {
-                        printStep(printer, parStep, indent + 1);
-                    }
-                    printer.startRow(String.valueOf(step.geneValueIndex), String.valueOf(step.value))
-                                .append(indents.get(indent))
-                                .append('}');
-                    printer.endRow();
-                }
-            }
-
-            case actionGroup -> {
-                printer.startRow(String.valueOf(step.geneValueIndex), String.valueOf(step.value))
-                       .append(indents.get(indent))
-                       .append("group of actions {");
-                printer.endRow();
-                for (Step subAction : step.parameters()) {
-                    printStep(printer, subAction, indent + 1);
-                }
-                printer.startRow(String.valueOf(step.geneValueIndex), String.valueOf(step.value))
-                       .append(indents.get(indent))
-                       .append('}');
-                printer.endRow();
-            }
-
-            case ifStatement -> {
-                if (step.parameters().size < 2)
-                    return;
-                printer.startRow(String.valueOf(step.geneValueIndex), String.valueOf(step.value))
-                       .append(indents.get(indent))
-                       .append("if (");
-                printer.endRow();
-                printStep(printer, step.parameters().get(0), indent + 1);
-                printer.startRow(String.valueOf(step.geneValueIndex), String.valueOf(step.value))
-                       .append(indents.get(indent))
-                       .append(") {");
-                printer.endRow();
-                printStep(printer, step.parameters().get(1), indent + 1);
-                printer.startRow(String.valueOf(step.geneValueIndex), String.valueOf(step.value))
-                       .append(indents.get(indent))
-                       .append('}');
-                printer.endRow();
-                if (step.parameters().size > 2) {
-                    printer.startRow(String.valueOf(step.geneValueIndex), String.valueOf(step.value))
-                           .append(indents.get(indent))
-                           .append("else {");
-                    printer.endRow();
-                    printStep(printer, step.parameters().get(2), indent + 1);
-                    printer.startRow(String.valueOf(step.geneValueIndex), String.valueOf(step.value))
-                           .append(indents.get(indent))
-                           .append('}');
-                    printer.endRow();
-                }
-            }
-
-            case gotoStatement -> {
-                ActionDef actionDef = (ActionDef) step.stepDef;
-                switch (actionDef.name()) {
-                    case "goto" -> {
-                        StringBuilder sb = printer.startRow(String.valueOf(step.geneValueIndex), String.valueOf(step.value))
-                                                  .append(indents.get(indent))
-                                                  .append(actionDef.description()).append(' ').append(step.value);
-                        final int key = Interpreter.gotoToKey(step.geneIndex, step.geneValueIndex);
-                        if (printedGotos.add(key)) {
-                            sb.append(" {");
-                            printer.endRow();
-                            for (Step subAction : step.parameters()) {
-                                printStep(printer, subAction, indent + 1);
-                            }
-                            printer.startRow(String.valueOf(step.geneValueIndex), String.valueOf(step.value))
-                                   .append(indents.get(indent))
-                                   .append('}');
-                        }
-                        printer.endRow();
-                    }
-                    case "gotoGene" -> {
-                        printer.startRow(String.valueOf(step.geneValueIndex), String.valueOf(step.value))
-                               .append(indents.get(indent))
-                               .append(actionDef.description()).append(' ').append(step.value);
-                        printer.endRow();
-                    }
-                }
-            }
-
-            case expression -> {
-                ExpressionDef exprDef = (ExpressionDef) step.stepDef;
-                StringBuilder sb = printer.startRow(String.valueOf(step.geneValueIndex), String.valueOf(step.value))
-                                          .append(indents.get(indent));
-                if (exprDef != null) {
-                    sb.append(exprDef.name());
-                    if (step.parameters().notEmpty())
-                        sb.append(" (");
-                    printer.endRow();
-                    for (Step parStep : step.parameters()) {
-                        printStep(printer, parStep, indent + 1);
-                    }
-                    if (step.parameters().notEmpty()) {
-                        printer.startRow(String.valueOf(step.geneValueIndex), String.valueOf(step.value))
-                               .append(indents.get(indent))
-                               .append(')');
-                        printer.endRow();
-                    }
-                } else {
-                    sb.append(step.value);
-                    printer.endRow();
-                }
-            }
+    /**
+     * Runs JVM code of the program if it was compiled, otherwise interprets the program
+     */
+    void run(GameWorld world, EvoBot bot, GenomeProgram program) {
+        final GenomeJit.Entry jitEntry = program.jitEntry;
+        final CompiledGenome compiled = jitEntry != null ? jitEntry.compiled : null;
+        if (compiled != null) {
+            compiled.run(world, bot);
+            return;
         }
-    }
 
-    void printGenesExcept(GenomePrinter printer, int except) {
-        final int minKey = geneToKey(0);
-        final int exceptKey = geneToKey(except);
-        final IntArray genesToPrint = Pools.obtain(IntArray.class);
-        for (IntMap.Entry<Step> entry : parsedGotos) {
-            if (entry.key >= minKey && entry.key != exceptKey) {
-                genesToPrint.add(entry.key);
-            }
-        }
-        genesToPrint.sort();
-        for (int i = 0, n = genesToPrint.size; i < n; ++i) {
-            int geneKey = genesToPrint.get(i);
-            Step gene = parsedGotos.get(geneKey);
-            printer.startRow("", "")
-                   .append("Gene #").append(gene.geneIndex).append(" {");
-            printer.endRow();
-            for (Step geneAction : gene.parameters()) {
-                printStep(printer, geneAction, 0);
-            }
-            printer.startRow("", "")
-                   .append('}');
-            printer.endRow();
-        }
-        genesToPrint.clear();
-        Pools.free(genesToPrint);
+        final InterpreterContext context = obtain();
+        context.run(world, bot, program);
+        context.release();
     }
 
-    boolean check(EvoBot bot) {
-        return bot.hp > 0 && bot.energy > 0 && bot.organics > 0;
+    private static InterpreterContext obtain() {
+        return contexts.get().obtain();
     }
 
-    private void reset(Step step) {
-        parsedGotos.clear();
-        evaluatedGenes.clear();
-        evaluatedGotos.clear();
-        printedGotos.clear();
-        actionCounter.clear();
-        interpreting = false;
-        free(step);
+    static void free(InterpreterContext context) {
+        contexts.get().free(context);
     }
 
-    private void free(Step step) {
-        if (!step.wasReset) {
-            step.wasReset = true;
-            for (Step subStep : step.parameters()) {
-                if (!subStep.wasReset) {
-                    free(subStep);
-                }
-            }
-            stepPool.free(step);
-        }
+    static boolean check(EvoBot bot) {
+        final BotStore store = bot.store;
+        final int slot = bot.slot;
+        return store.hp[slot] > 0 && store.energy[slot] > 0 && store.organics[slot] > 0;
     }
 
-    private static int geneToKey(int geneIndex) {
+    static int geneToKey(int geneIndex) {
         return (geneIndex + 1) << 24;
     }
 
-    private static int gotoToKey(int geneIndex, int geneValueIndex) {
+    static int gotoToKey(int geneIndex, int geneValueIndex) {
         return (geneIndex << 8) | geneValueIndex;
     }
 
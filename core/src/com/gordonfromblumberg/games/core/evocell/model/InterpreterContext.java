@@ -0,0 +1,892 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+import com.badlogic.gdx.utils.*;
+import com.badlogic.gdx.utils.StringBuilder;
+import com.gordonfromblumberg.games.core.common.utils.Poolable;
+import com.gordonfromblumberg.games.core.common.utils.RandomGen;
+import com.gordonfromblumberg.games.core.evocell.world.GameWorld;
+
+import java.util.Arrays;
+
+import static com.gordonfromblumberg.games.core.common.utils.MathHelper.modPos;
+import static com.gordonfromblumberg.games.core.evocell.model.DNA.geneValueCount;
+import static com.gordonfromblumberg.games.core.evocell.model.Interpreter.*;
+import static com.gordonfromblumberg.games.core.evocell.model.Step.StepType;
+
+/**
+ * Mutable state of {@link Interpreter}: parsing of genes, execution of programs and printing.
+ * Contexts are obtained by {@link Interpreter} from the pool of the current thread for a single operation
+ * and released after it, so several threads and nested operations never share a context.
+ */
+final class InterpreterContext implements Poolable {
+    // gotoGene: geneIndex << 24
+    // goto : (geneIndex << 8) | geneValueIndex
+    private final IntMap<Step> parsedGotos = new IntMap<>();
+    private final IntSet printedGotos = new IntSet();
+    private final Array<ActionDef.DefaultParameterValue> parsedDefaults = new Array<>();
+    // keys of parsed genes, global Pools are not thread safe
+    private final IntArray geneKeys = new IntArray();
+    private final GenomeCompiler compiler = new GenomeCompiler();
+    private final GenomeOptimizer optimizer = new GenomeOptimizer();
+
+    // execution state, it is reset before each run
+    // bit set of evaluated genes by gene value
+    private final long[] evaluatedGenes = new long[4];
+    private final int[] actionCounters = new int[Actions.tagIds.size];
+    private int[] gotoCounters = new int[8];
+    private int[] stack = new int[16];
+    private byte[] defaults = new byte[8];
+
+    /**
+     * Parses the gene and compiles it into a program
+     */
+    GenomeProgram compile(EvoBot bot, int geneIndex, boolean embryo) {
+        return compile(bot, geneIndex, embryo, optimize);
+    }
+
+    /**
+     * @param optimize true if the program should be optimized by {@link GenomeOptimizer}
+     *                 regardless of interpreter.optimize
+     */
+    GenomeProgram compile(EvoBot bot, int geneIndex, boolean embryo, boolean optimize) {
+        final IntMap<ActionDef> actionMap = embryo ? Actions.embryoActionDefs : Actions.actionDefs;
+        final Step root = readGene(bot, geneIndex, actionMap);
+
+        final int minKey = geneToKey(0);
+        final int rootKey = geneToKey(geneIndex);
+        final IntArray geneKeys = this.geneKeys;
+        for (IntMap.Entry<Step> entry : parsedGotos) {
+            if (entry.key >= minKey && entry.key != rootKey) {
+                geneKeys.add(entry.key);
+            }
+        }
+        geneKeys.sort();
+        final Step[] genes = new Step[geneKeys.size];
+        for (int i = 0; i < genes.length; ++i) {
+            genes[i] = parsedGotos.get(geneKeys.get(i));
+        }
+        geneKeys.clear();
+
+        GenomeProgram program = compiler.compile(embryo ? 0 : geneIndex, root, genes,
+                parsedDefaults.toArray(ActionDef.DefaultParameterValue.class));
+        if (optimize) {
+            program = optimizer.optimize(program);
+        }
+        parsedGotos.clear();
+        parsedDefaults.clear();
+        return program;
+    }
+
+    /**
+     * Interprets the program and counts its execution for compilation
+     */
+    void run(GameWorld world, EvoBot bot, GenomeProgram program) {
+        prepare(program);
+        evaluateGene(program.initialGene);
+        if (GenomeProfiler.enabled) {
+            final GenomeProfiler.Counters profile = GenomeProfiler.counters();
+            profile.enter();
+            execute(world, bot, program);
+            profile.exit();
+        } else {
+            execute(world, bot, program);
+        }
+        final GenomeJit.Entry jitEntry = program.jitEntry;
+        if (jitEntry != null) {
+            jitEntry.executed(program);
+        }
+    }
+
+    void print(GenomePrinter printer, int embryoGeneIndex, GenomeProgram embryoProgram,
+               int activeGeneIndex, GenomeProgram program) {
+        printer.startRow("", "")
+                .append("Embryo gene #").append(embryoGeneIndex).append(" {");
+        printer.endRow();
+        for (Step stepAction : embryoProgram.root.parameters()) {
+            printStep(printer, stepAction, 0);
+        }
+        printer.startRow("", "")
+                .append("}");
+        printer.endRow();
+
+        printGenes(printer, embryoProgram);
+
+        printer.startRow("", "");
+        printer.endRow();
+        printedGotos.clear();
+
+        printer.startRow("", "")
+               .append("Active gene #").append(activeGeneIndex).append(" {");
+        printer.endRow();
+
+        for (Step stepAction : program.root.parameters()) {
+            printStep(printer, stepAction, 0);
+        }
+        printer.startRow("", "")
+               .append("}");
+        printer.endRow();
+
+        printGenes(printer, program);
+        printedGotos.clear();
+    }
+
+    String print(GenomeProgram embryoProgram, int activeGeneIndex, GenomeProgram program) {
+        final StringBuilder sb = new StringBuilder("Embryo gene #0 {\n");
+        for (Step stepAction : embryoProgram.root.parameters()) {
+            printStep(sb, stepAction, 0);
+        }
+        sb.append("}\n\n");
+
+        printedGotos.clear();
+        sb.append("Active gene #").append(activeGeneIndex).append(" {\n");
+
+        for (Step stepAction : program.root.parameters()) {
+            printStep(sb, stepAction, 0);
+        }
+        sb.append("}\n");
+
+        for (Step gene : program.genes) {
+            sb.append("\n")
+              .append("Gene #").append(gene.geneIndex).append(" {\n");
+            for (Step geneAction : gene.parameters()) {
+                printStep(sb, geneAction, 0);
+            }
+            sb.append("}\n");
+        }
+
+        printedGotos.clear();
+        return sb.toString();
+    }
+
+    private void prepare(GenomeProgram program) {
+        Arrays.fill(evaluatedGenes, 0);
+        Arrays.fill(actionCounters, 0);
+
+        final int gotoSlots = program.gotoSlots;
+        if (gotoCounters.length < gotoSlots) {
+            gotoCounters = new int[Math.max(gotoSlots, gotoCounters.length * 2)];
+        } else {
+            Arrays.fill(gotoCounters, 0, gotoSlots, 0);
+        }
+        if (stack.length < program.maxStack) {
+            stack = new int[Math.max(program.maxStack, stack.length * 2)];
+        }
+
+        final ActionDef.DefaultParameterValue[] randomDefaults = program.randomDefaults;
+        final int n = randomDefaults.length;
+        if (defaults.length < n) {
+            defaults = new byte[Math.max(n, defaults.length * 2)];
+        }
+        for (int i = 0; i < n; ++i) {
+            defaults[i] = randomDefaults[i].get();
+        }
+    }
+
+    /**
+     * Marks the gene as evaluated
+     * @param gene Gene value
+     * @return false if the gene was evaluated already
+     */
+    private boolean evaluateGene(int gene) {
+        final int index = (gene & 0xFF) >>> 6;
+        final long bit = 1L << gene;
+        final long genes = evaluatedGenes[index];
+        evaluatedGenes[index] = genes | bit;
+        return (genes & bit) == 0;
+    }
+
+    void readActionsAsGroup(Step step, EvoBot bot, int geneIndex, int geneValueIndex, IntMap<ActionDef> actionMap) {
+        step.type = StepType.actionGroup;
+        int lastRead = geneValueIndex - 1;
+        while (lastRead + 1 < geneValueCount) {
+            Step subStep = readAction(bot, geneIndex, lastRead + 1, actionMap);
+            lastRead = subStep.lastRead;
+            step.addParameter(subStep);
+            if (subStep.stopReadActions) {
+                step.stopReadActions = true;
+                break;
+            }
+        }
+    }
+
+    /**
+     * Считывает весь ген, помещая полученные action как parameters в step с типом actionGroup.
+     * Если ген уже был считан (есть в evaluatedGenes), возвращает его.
+     * @param bot Бот
+     * @param geneIndex Индекс гена
+     * @param actionMap Соответствие кодов и действий
+     * @return Step типа actionGroup со всеми считанными action внутри
+     */
+    Step readGene(EvoBot bot, int geneIndex, IntMap<ActionDef> actionMap) {
+        final int key = geneToKey(geneIndex);
+        Step step = parsedGotos.get(key);
+        if (step == null) {
+            step = obtainStep(geneIndex, -1);
+            parsedGotos.put(key, step);
+            readActionsAsGroup(step, bot, geneIndex, 0, actionMap);
+        }
+        return step;
+    }
+
+    /**
+     * Считывает action с указанной позиции, включая все необходимые параметры.
+     * Если ген заканчивается, не считанные параметры заполняются значениями по умолчанию.
+     * @param bot Бот
+     * @param geneIndex Индекс гена
+     * @param geneValueIndex Позиция в гене
+     * @param actionMap Соответствие кодов и действий
+     * @return Объект Step со считанным action
+     */
+    Step readAction(EvoBot bot, int geneIndex, int geneValueIndex, IntMap<ActionDef> actionMap) {
+        final DNA dna = bot.dna;
+
+        ActionDef actionDef = null;
+        byte value = 0;
+        while (actionDef == null && geneValueIndex < geneValueCount) {
+            value = dna.getValue(geneIndex, geneValueIndex++);
+            actionDef = actionMap.get(value);
+        }
+
+        final Step step = obtainStep(geneIndex, geneValueIndex - 1);
+
+        step.lastRead = geneValueIndex - 1;
+        step.value = value;
+        if (actionDef != null) {
+            step.stepDef = actionDef;
+
+            switch (actionDef.type()) {
+                case spec -> {
+                    switch (actionDef.name()) {
+                        case "if" -> {
+                            step.type = StepType.ifStatement;
+                            if (step.lastRead + 1 >= geneValueCount) {
+                                break;
+                            }
+                            Step condition = readParameter(dna, geneIndex, step.lastRead + 1);
+                            step.lastRead = condition.lastRead;
+                            if (step.lastRead + 1 >= geneValueCount) {
+                                break;
+                            }
+                            Step action = readAction(bot, geneIndex, step.lastRead + 1, actionMap);
+                            step.addParameter(condition);
+                            step.addParameter(action);
+                            step.lastRead = action.lastRead;
+                            step.stopReadActions = action.stopReadActions || step.stopReadActions;
+                        }
+                        case "ifelse" -> {
+                            step.type = StepType.ifStatement;
+                            if (step.lastRead + 1 >= geneValueCount) {
+                                break;
+                            }
+                            Step condition = readParameter(dna, geneIndex, step.lastRead + 1);
+                            step.lastRead = condition.lastRead;
+                            if (step.lastRead + 1 >= geneValueCount) {
+                                break;
+                            }
+                            Step trueAction = readAction(bot, geneIndex, step.lastRead + 1, actionMap);
+                            step.addParameter(condition);
+                            step.addParameter(trueAction);
+                            if (trueAction.lastRead + 1 < geneValueCount) {
+                                Step falseAction = readAction(bot, geneIndex, trueAction.lastRead + 1, actionMap);
+                                step.addParameter(falseAction);
+                                step.lastRead = falseAction.lastRead;
+                                if (trueAction.stopReadActions && falseAction.stopReadActions) {
+                                    step.stopReadActions = true;
+                                }
+                            } else {
+                                step.lastRead = trueAction.lastRead;
+                            }
+                        }
+                        case "goto" -> {
+                            step.type = StepType.gotoStatement;
+                            step.stopReadActions = true;
+                            int index = geneValueIndex < geneValueCount
+                                    ? modPos(dna.getValue(geneIndex, geneValueIndex), geneValueCount)
+                                    : 0;
+                            step.value = (byte) index;
+                            int key = gotoToKey(geneIndex, geneValueIndex - 1);
+                            Step subStep = parsedGotos.get(key);
+                            if (subStep == null) {
+                                subStep = obtainStep(-1, -1);
+                                parsedGotos.put(key, subStep);
+                                readActionsAsGroup(subStep, bot, geneIndex, index, actionMap);
+                            }
+                            step.addParameter(subStep);
+                        }
+                        case "gotoGene" -> {
+                            step.type = StepType.gotoStatement;
+                            step.stopReadActions = true;
+                            int newGeneIndex = geneValueIndex < geneValueCount
+                                    ? modPos(dna.getValue(geneIndex, geneValueIndex), dna.getGeneCount())
+                                    : modPos(geneIndex + 1, dna.getGeneCount());
+                            step.value = (byte) newGeneIndex;
+                            step.addParameter(readGene(bot, newGeneIndex, actionMap));
+                        }
+                        case "stop" -> {
+                            step.type = StepType.action;
+                            step.stopReadActions = true;
+                        }
+                    }
+                }
+
+                case specaction -> {
+                    step.type = StepType.actionGroup;
+                    int requiredSubActions = switch (actionDef.name()) {
+                        case "2actions" -> 2;
+                        case "3actions" -> 3;
+                        default -> throw new IllegalStateException("Unknown specaction " + actionDef.name());
+                    };
+                    while (requiredSubActions-- > 0 && step.lastRead + 1 < geneValueCount) {
+                        Step subStep = readAction(bot, geneIndex, step.lastRead + 1, actionMap);
+                        step.lastRead = subStep.lastRead;
+                        step.addParameter(subStep);
+                        if (subStep.stopReadActions) {
+                            step.stopReadActions = true;
+                            break;
+                        }
+                    }
+                }
+
+                case action -> {
+                    step.type = StepType.action;
+                    int requiredParameters = actionDef.parameters() == null ? 0 : actionDef.parameters().length;
+                    while (requiredParameters-- > 0 && step.lastRead + 1 < geneValueCount) {
+                        Step subStep = readParameter(dna, geneIndex, step.lastRead + 1);
+                        step.lastRead = subStep.lastRead;
+                        step.addParameter(subStep);
+                    }
+                }
+            }
+        } else {
+            step.type = StepType.action;
+            step.stepDef = nothingDef;
+        }
+
+        fillParametersByDefault(step);
+        return step;
+    }
+
+    Step readParameter(DNA dna, int geneIndex, int geneValueIndex) {
+        Step step = obtainStep(geneIndex, geneValueIndex);
+        step.type = StepType.expression;
+        byte value = dna.getValue(geneIndex, geneValueIndex++);
+        if ((value > expressionMarker || value < -expressionMarker) && geneValueIndex < geneValueCount) {
+            byte exprValue = dna.getValue(geneIndex, geneValueIndex++);
+            ExpressionDef expressionDef = Expressions.expressionDefs.get(exprValue);
+            if (expressionDef != null) {
+                int requiredParameters = expressionDef.defaultParameters().length;
+                int lastRead = geneValueIndex - 1;
+                while (requiredParameters-- > 0 && lastRead + 1 < geneValueCount) {
+                    Step subStep = readParameter(dna, geneIndex, lastRead + 1);
+                    lastRead = subStep.lastRead;
+                    step.addParameter(subStep);
+                }
+                step.stepDef = expressionDef;
+                step.value = exprValue;
+                step.lastRead = lastRead;
+                fillParametersByDefault(step);
+            } else {
+                step.value = exprValue;
+                step.lastRead = geneValueIndex - 1;
+            }
+        } else {
+            step.value = value;
+            step.lastRead = geneValueIndex - 1;
+        }
+        return step;
+    }
+
+    /**
+     * Executes the program code until halt or until the gas of the bot is spent
+     * @param world GameWorld
+     * @param bot EvoLivingCell bot
+     * @param program Compiled program
+     */
+    private void execute(GameWorld world, EvoBot bot, GenomeProgram program) {
+        execute(world, bot, program, program.blockCosts, gasLimit);
+    }
+
+    /**
+     * Interprets the program with the given gas regardless of interpreter.gasLimit
+     * @return Gas left, negative if the program was stopped out of gas
+     */
+    int run(GameWorld world, EvoBot bot, GenomeProgram program, int gas) {
+        prepare(program);
+        evaluateGene(program.initialGene);
+        return execute(world, bot, program, GenomeProgram.blockCosts(program.code), gas);
+    }
+
+    /**
+     * @param blockCosts Gas charged at basic blocks, null if gas is not limited
+     * @param gas Gas of the bot
+     * @return Gas left
+     */
+    private int execute(GameWorld world, EvoBot bot, GenomeProgram program, int[] blockCosts, int gas) {
+        final int[] code = program.code;
+        final int[] stack = this.stack;
+        final CellGrid grid = world.getGrid();
+        int sp = 0;
+        int pc = 0;
+        final GenomeProfiler.Counters profile = GenomeProfiler.enabled ? GenomeProfiler.counters() : null;
+        while (true) {
+            if (profile != null) {
+                profile.next(GenomeProfiler.row(code, pc));
+            }
+            if (blockCosts != null && (gas -= blockCosts[pc]) < 0) {
+                world.countOutOfGas();
+                return gas;
+            }
+            switch (code[pc]) {
+                case GenomeProgram.HALT -> {
+                    return gas;
+                }
+                case GenomeProgram.ACT -> {
+                    final int action = code[pc + 1];
+                    final int counter = actionCounters[code[pc + 2]]++;
+                    Actions.act(action, world, bot, counter, stack[--sp]);
+                    if (!check(bot)) {
+                        bot.die();
+                        if (profile != null) {
+                            ++profile.checkDeaths;
+                        }
+                        return gas;
+                    }
+                    if (action == Actions.STOP) {
+                        return gas;
+                    }
+                    pc += 3;
+                }
+                case GenomeProgram.CHECK -> {
+                    if (!check(bot)) {
+                        bot.die();
+                        if (profile != null) {
+                            ++profile.checkDeaths;
+                        }
+                        return gas;
+                    }
+                    ++pc;
+                }
+                case GenomeProgram.JUMP -> pc = code[pc + 1];
+                case GenomeProgram.JUMP_IF_NOT -> pc = stack[--sp] > 0 ? pc + 2 : code[pc + 1];
+                case GenomeProgram.GOTO -> {
+                    if (gotoCounters[code[pc + 1]]++ < gotoLimit) {
+                        pc = code[pc + 2];
+                    } else {
+                        pc += 3;
+                        if (profile != null) {
+                            ++profile.gotoLimitHits;
+                        }
+                    }
+                }
+                case GenomeProgram.GOTO_GENE -> {
+                    if (evaluateGene(code[pc + 1])) {
+                        pc = code[pc + 2];
+                        if (profile != null) {
+                            ++profile.geneJumps;
+                        }
+                    } else {
+                        pc += 3;
+                    }
+                }
+
+                case GenomeProgram.CONST -> {
+                    stack[sp++] = code[pc + 1];
+                    pc += 2;
+                }
+                case GenomeProgram.DEFAULT -> {
+                    stack[sp++] = defaults[code[pc + 1]];
+                    pc += 2;
+                }
+                case GenomeProgram.RANDOM -> {
+                    stack[sp++] = RandomGen.current().nextByte();
+                    ++pc;
+                }
+                case GenomeProgram.EQUALS -> {
+                    --sp;
+                    stack[sp - 1] = stack[sp - 1] == stack[sp] ? 1 : 0;
+                    ++pc;
+                }
+                case GenomeProgram.NOT -> {
+                    stack[sp - 1] = stack[sp - 1] > 0 ? 0 : 1;
+                    ++pc;
+                }
+                case GenomeProgram.GT -> {
+                    --sp;
+                    stack[sp - 1] = stack[sp - 1] > stack[sp] ? 1 : 0;
+                    ++pc;
+                }
+                case GenomeProgram.LT -> {
+                    --sp;
+                    stack[sp - 1] = stack[sp - 1] < stack[sp] ? 1 : 0;
+                    ++pc;
+                }
+                case GenomeProgram.AND -> {
+                    if (stack[--sp] > 0) {
+                        pc += 2;
+                    } else {
+                        stack[sp++] = 0;
+                        pc = code[pc + 1];
+                    }
+                }
+                case GenomeProgram.OR -> {
+                    if (stack[--sp] > 0) {
+                        stack[sp++] = 1;
+                        pc = code[pc + 1];
+                    } else {
+                        pc += 2;
+                    }
+                }
+                case GenomeProgram.BOOL -> {
+                    stack[sp - 1] = stack[sp - 1] > 0 ? 1 : 0;
+                    ++pc;
+                }
+                case GenomeProgram.SUM -> {
+                    --sp;
+                    stack[sp - 1] += stack[sp];
+                    ++pc;
+                }
+                case GenomeProgram.SUBTRACT -> {
+                    --sp;
+                    stack[sp - 1] -= stack[sp];
+                    ++pc;
+                }
+                case GenomeProgram.MUL -> {
+                    --sp;
+                    stack[sp - 1] *= stack[sp];
+                    ++pc;
+                }
+                case GenomeProgram.DIV -> {
+                    --sp;
+                    stack[sp - 1] = Bot.div(stack[sp - 1], stack[sp]);
+                    ++pc;
+                }
+                case GenomeProgram.CELL_PROPERTY -> {
+                    stack[sp - 1] = Bot.getCellProperty(grid, bot.cell, stack[sp - 1]);
+                    ++pc;
+                }
+                case GenomeProgram.MY_PROPERTY -> {
+                    stack[sp - 1] = Bot.getBotProperty(bot, stack[sp - 1]);
+                    ++pc;
+                }
+                case GenomeProgram.MY_PARAMETER -> {
+                    stack[sp - 1] = bot.getParameter(stack[sp - 1]);
+                    ++pc;
+                }
+                case GenomeProgram.CELL_PROPERTY_GT -> {
+                    --sp;
+                    stack[sp - 1] = Bot.getCellProperty(grid, bot.cell, stack[sp - 1]) > stack[sp] ? 1 : 0;
+                    ++pc;
+                }
+                case GenomeProgram.MY_PROPERTY_GT -> {
+                    --sp;
+                    stack[sp - 1] = Bot.getBotProperty(bot, stack[sp - 1]) > stack[sp] ? 1 : 0;
+                    ++pc;
+                }
+                case GenomeProgram.FORWARD_CELL_WITH_BOT -> {
+                    stack[sp++] = Expressions.isForwardCellWithBot(grid, bot) ? 1 : 0;
+                    ++pc;
+                }
+                case GenomeProgram.NEAR_EMPTY_CELL -> {
+                    stack[sp++] = bot.isNearEmptyCell(grid) ? 1 : 0;
+                    ++pc;
+                }
+                case GenomeProgram.RELATIVE_FORWARD -> {
+                    stack[sp++] = Expressions.isRelativeForward(grid, bot) ? 1 : 0;
+                    ++pc;
+                }
+                case GenomeProgram.CONTEXT_CELL -> {
+                    if (bot.cell >= 0) {
+                        pc += 2;
+                    } else {
+                        stack[sp++] = 0;
+                        pc = code[pc + 1];
+                    }
+                }
+                default -> throw new IllegalStateException("Unknown opcode " + code[pc] + " at " + pc);
+            }
+        }
+    }
+
+    Step obtainStep(int geneIndex, int geneValueIndex) {
+        Step step = new Step();
+        step.geneIndex = geneIndex;
+        step.geneValueIndex = geneValueIndex;
+        return step;
+    }
+
+    void fillParametersByDefault(Step step) {
+        if (step.stepDef instanceof ActionDef actionDef && actionDef.parameters() != null) {
+            for (int i = step.parameters().size, n = actionDef.parameters().length; i < n; ++i) {
+                Step parameterStep = obtainStep(-1, -1);
+                parameterStep.type = StepType.expression;
+                ActionDef.DefaultParameterValue defaultValue = actionDef.parameters()[i].defaultValue();
+                if (defaultValue instanceof ActionDef.ConstantParameterValue constant) {
+                    parameterStep.value = constant.value();
+                } else {
+                    parameterStep.defaultSlot = parsedDefaults.size;
+                    parsedDefaults.add(defaultValue);
+                }
+                step.addParameter(parameterStep);
+            }
+
+        } else if (step.stepDef instanceof ExpressionDef expressionDef) {
+            for (int i = step.parameters().size, n = expressionDef.defaultParameters().length; i < n; ++i) {
+                Step parameterStep = obtainStep(-1, -1);
+                parameterStep.type = StepType.expression;
+                parameterStep.value = expressionDef.defaultParameters()[i];
+                step.addParameter(parameterStep);
+            }
+        }
+    }
+
+    void printStep(StringBuilder sb, Step step, int indent) {
+        switch (step.type) {
+            case action -> {
+                sb.append(step.geneValueIndex).append('\t')
+                  .append(step.value).append(' ').append(indents.get(indent))
+                  .append(((ActionDef) step.stepDef).description());
+                if (step.parameters().notEmpty()) {
+                    sb.append(" {\n");
+                    for (Step parStep : step.parameters()) {
+                        printStep(sb, parStep, indent + 1);
+                    }
+                    sb.append(step.geneValueIndex).append('\t')
+                      .append(step.value).append(' ').append(indents.get(indent)).append("}");
+                }
+                sb.append('\n');
+            }
+
+            case actionGroup -> {
+                sb.append(step.geneValueIndex).append('\t')
+                  .append(step.value).append(' ').append(indents.get(indent))
+                  .append("group of actions {\n");
+                for (Step subAction : step.parameters()) {
+                    printStep(sb, subAction, indent + 1);
+                }
+                sb.append(step.geneValueIndex).append('\t')
+                  .append(step.value).append(' ').append(indents.get(indent))
+                  .append("}\n");
+            }
+
+            case ifStatement -> {
+                if (step.parameters().size < 2)
+                    return;
+                sb.append(step.geneValueIndex).append('\t')
+                  .append(step.value).append(' ').append(indents.get(indent)).append("if (\n");
+                printStep(sb, step.parameters().first(), indent + 1);
+                sb.append(step.geneValueIndex).append('\t')
+                  .append(step.value).append(' ').append(indents.get(indent))
+                  .append(") {\n");
+                printStep(sb, step.parameters().get(1), indent + 1);
+                sb.append(step.geneValueIndex).append('\t')
+                  .append(step.value).append(' ').append(indents.get(indent))
+                  .append("}\n");
+                if (step.parameters().size > 2) {
+                    sb.append(step.geneValueIndex).append('\t')
+                      .append(step.value).append(' ').append(indents.get(indent))
+                      .append("else {\n");
+                    printStep(sb, step.parameters().get(2), indent + 1);
+                    sb.append(step.geneValueIndex).append('\t')
+                      .append(step.value).append(' ').append(indents.get(indent))
+                      .append("}\n");
+                }
+            }
+
+            case gotoStatement -> {
+                ActionDef actionDef = (ActionDef) step.stepDef;
+                switch (actionDef.name()) {
+                    case "goto" -> {
+                        sb.append(step.geneValueIndex).append('\t')
+                          .append(step.value).append(' ').append(indents.get(indent))
+                          .append(actionDef.description()).append(' ').append(step.value);
+                        final int key = Interpreter.gotoToKey(step.geneIndex, step.geneValueIndex);
+                        if (printedGotos.add(key)) {
+                            sb.append(" {\n");
+                            for (Step subAction : step.parameters()) {
+                                printStep(sb, subAction, indent + 1);
+                            }
+                            sb.append(step.geneValueIndex).append('\t')
+                              .append(step.value).append(' ').append(indents.get(indent))
+                              .append("}");
+                        }
+                        sb.append('\n');
+                    }
+                    case "gotoGene" -> sb.append(step.geneValueIndex).append('\t')
+                                     .append(step.value).append(' ').append(indents.get(indent))
+                                     .append(actionDef.description()).append(' ').append(step.value)
+                                     .append('\n');
+                }
+            }
+
+            case expression -> {
+                ExpressionDef exprDef = (ExpressionDef) step.stepDef;
+                sb.append(step.geneValueIndex).append('\t')
+                  .append(step.value).append(' ').append(indents.get(indent));
+                if (exprDef != null) {
+                    sb.append(exprDef.name()).append(" (\n");
+                    for (Step parStep : step.parameters()) {
+                        printStep(sb, parStep, indent + 1);
+                    }
+                    sb.append(step.geneValueIndex).append('\t')
+                      .append(step.value).append(' ').append(indents.get(indent))
+                      .append(')');
+                } else {
+                    appendValue(sb, step);
+                }
+                sb.append('\n');
+            }
+        }
+    }
+
+    void printStep(GenomePrinter printer, Step step, int indent) {
+        switch (step.type) {
+            case action -> {
+                StringBuilder sb = printer.startRow(String.valueOf(step.geneValueIndex), String.valueOf(step.value))
+                                          .append(indents.get(indent))
+                                          .append(((ActionDef) step.stepDef).description());
+                if (step.parameters().notEmpty()) {
+                    sb.append(" {");
+                    printer.endRow();
+                    for (Step parStep : step.parameters()) {
+                        printStep(printer, parStep, indent + 1);
+                    }
+                    printer.startRow(String.valueOf(step.geneValueIndex), String.valueOf(step.value))
+                                .append(indents.get(indent))
+                                .append('}');
+                    printer.endRow();
+                }
+            }
+
+            case actionGroup -> {
+                printer.startRow(String.valueOf(step.geneValueIndex), String.valueOf(step.value))
+                       .append(indents.get(indent))
+                       .append("group of actions {");
+                printer.endRow();
+                for (Step subAction : step.parameters()) {
+                    printStep(printer, subAction, indent + 1);
+                }
+                printer.startRow(String.valueOf(step.geneValueIndex), String.valueOf(step.value))
+                       .append(indents.get(indent))
+                       .append('}');
+                printer.endRow();
+            }
+
+            case ifStatement -> {
+                if (step.parameters().size < 2)
+                    return;
+                printer.startRow(String.valueOf(step.geneValueIndex), String.valueOf(step.value))
+                       .append(indents.get(indent))
+                       .append("if (");
+                printer.endRow();
+                printStep(printer, step.parameters().get(0), indent + 1);
+                printer.startRow(String.valueOf(step.geneValueIndex), String.valueOf(step.value))
+                       .append(indents.get(indent))
+                       .append(") {");
+                printer.endRow();
+                printStep(printer, step.parameters().get(1), indent + 1);
+                printer.startRow(String.valueOf(step.geneValueIndex), String.valueOf(step.value))
+                       .append(indents.get(indent))
+                       .append('}');
+                printer.endRow();
+                if (step.parameters().size > 2) {
+                    printer.startRow(String.valueOf(step.geneValueIndex), String.valueOf(step.value))
+                           .append(indents.get(indent))
+                           .append("else {");
+                    printer.endRow();
+                    printStep(printer, step.parameters().get(2), indent + 1);
+                    printer.startRow(String.valueOf(step.geneValueIndex), String.valueOf(step.value))
+                           .append(indents.get(indent))
+                           .append('}');
+                    printer.endRow();
+                }
+            }
+
+            case gotoStatement -> {
+                ActionDef actionDef = (ActionDef) step.stepDef;
+                switch (actionDef.name()) {
+                    case "goto" -> {
+                        StringBuilder sb = printer.startRow(String.valueOf(step.geneValueIndex), String.valueOf(step.value))
+                                                  .append(indents.get(indent))
+                                                  .append(actionDef.description()).append(' ').append(step.value);
+                        final int key = Interpreter.gotoToKey(step.geneIndex, step.geneValueIndex);
+                        if (printedGotos.add(key)) {
+                            sb.append(" {");
+                            printer.endRow();
+                            for (Step subAction : step.parameters()) {
+                                printStep(printer, subAction, indent + 1);
+                            }
+                            printer.startRow(String.valueOf(step.geneValueIndex), String.valueOf(step.value))
+                                   .append(indents.get(indent))
+                                   .append('}');
+                        }
+                        printer.endRow();
+                    }
+                    case "gotoGene" -> {
+                        printer.startRow(String.valueOf(step.geneValueIndex), String.valueOf(step.value))
+                               .append(indents.get(indent))
+                               .append(actionDef.description()).append(' ').append(step.value);
+                        printer.endRow();
+                    }
+                }
+            }
+
+            case expression -> {
+                ExpressionDef exprDef = (ExpressionDef) step.stepDef;
+                StringBuilder sb = printer.startRow(String.valueOf(step.geneValueIndex), String.valueOf(step.value))
+                                          .append(indents.get(indent));
+                if (exprDef != null) {
+                    sb.append(exprDef.name());
+                    if (step.parameters().notEmpty())
+                        sb.append(" (");
+                    printer.endRow();
+                    for (Step parStep : step.parameters()) {
+                        printStep(printer, parStep, indent + 1);
+                    }
+                    if (step.parameters().notEmpty()) {
+                        printer.startRow(String.valueOf(step.geneValueIndex), String.valueOf(step.value))
+                               .append(indents.get(indent))
+                               .append(')');
+                        printer.endRow();
+                    }
+                } else {
+                    appendValue(sb, step);
+                    printer.endRow();
+                }
+            }
+        }
+    }
+
+    private static void appendValue(StringBuilder sb, Step step) {
+        if (step.defaultSlot >= 0) {
+            sb.append("random");
+        } else {
+            sb.append(step.value);
+        }
+    }
+
+    void printGenes(GenomePrinter printer, GenomeProgram program) {
+        for (Step gene : program.genes) {
+            printer.startRow("", "")
+                   .append("Gene #").append(gene.geneIndex).append(" {");
+            printer.endRow();
+            for (Step geneAction : gene.parameters()) {
+                printStep(printer, geneAction, 0);
+            }
+            printer.startRow("", "")
+                   .append('}');
+            printer.endRow();
+        }
+    }
+
+    @Override
+    public void release() {
+        Interpreter.free(this);
+    }
+
+    @Override
+    public void reset() {
+        parsedGotos.clear();
+        printedGotos.clear();
+        parsedDefaults.clear();
+    }
+}
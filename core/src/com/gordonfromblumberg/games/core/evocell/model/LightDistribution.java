@@ -1,5 +1,10 @@
 package com.gordonfromblumberg.games.core.evocell.model;
 
-public interface LightDistribution {
+public interface LightDistribution extends EnvironmentField.Source {
     int getLight(int x, int y, int turn);
+
+    @Override
+    default int get(int x, int y, int turn) {
+        return getLight(x, y, turn);
+    }
 }
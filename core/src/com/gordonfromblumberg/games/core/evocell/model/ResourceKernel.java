@@ -0,0 +1,35 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+import com.gordonfromblumberg.games.core.common.log.LogManager;
+import com.gordonfromblumberg.games.core.common.log.Logger;
+
+/**
+ * Uniform integer part of cell resources update: organics decay, energy decay and water convergence.
+ * It doesn't use random and neighbours, so it may be computed for many cells at once.
+ */
+public abstract class ResourceKernel {
+    private static final Logger log = LogManager.create(ResourceKernel.class);
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    /**
+     * @param vectorize Use Vector API kernel if jdk.incubator.vector module is available
+     */
+    public static ResourceKernel create(boolean vectorize) {
+        if (vectorize) {
+            if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+                final ResourceKernel kernel = new VectorResourceKernel();
+                log.info("Vector resource kernel: " + kernel.describe());
+                return kernel;
+            }
+            log.info("Module " + VECTOR_MODULE + " is not added, scalar resource kernel is used");
+        }
+        return new ScalarResourceKernel();
+    }
+
+    /**
+     * Updates cells of the chunk in range [from; to) of local indices
+     */
+    abstract void update(CellChunk chunk, int from, int to);
+
+    public abstract String describe();
+}
@@ -0,0 +1,45 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+class ScalarResourceKernel extends ResourceKernel {
+
+    @Override
+    void update(CellChunk chunk, int from, int to) {
+        final int[] temperatures = chunk.temperature;
+        final int[] organics = chunk.organics;
+        final int[] turnsAfterOrganicsUpdate = chunk.turnsAfterOrganicsUpdate;
+        final int[] minerals = chunk.minerals;
+        final int[] energy = chunk.energy;
+        final int[] humidity = chunk.humidity;
+        final int[] water = chunk.water;
+        final int[] turnsAfterWaterUpdate = chunk.turnsAfterWaterUpdate;
+
+        for (int i = from; i < to; ++i) {
+            final int temperature = temperatures[i];
+            final int organicsDelayLimit = 42 - 2 * temperature;
+            if (organics[i] > 0 && temperature > -10 && ++turnsAfterOrganicsUpdate[i] >= organicsDelayLimit) {
+                turnsAfterOrganicsUpdate[i] = 0;
+                organics[i] = Math.max(organics[i] - 2, 0);
+                ++minerals[i];
+            }
+
+            if (organics[i] == 0) {
+                energy[i] = 0;
+            }
+            if (energy[i] > 0) {
+                energy[i] = Math.max(energy[i] - Math.max(3, energy[i] / 4), 0);
+            }
+
+            final int waterDiff = humidity[i] - water[i];
+            if (waterDiff != 0 && ++turnsAfterWaterUpdate[i] >= 12 - Math.abs(waterDiff)) {
+                turnsAfterWaterUpdate[i] = 0;
+                if (waterDiff > 0) ++water[i];
+                else --water[i];
+            }
+        }
+    }
+
+    @Override
+    public String describe() {
+        return "scalar";
+    }
+}
@@ -33,46 +33,49 @@ public class SimpleBot extends Bot {
 
     private SimpleBot() { }
 
-    public static SimpleBot getInstance() {
-        return pool.obtain();
+    public static SimpleBot getInstance(BotStore store) {
+        final SimpleBot bot;
+        synchronized (pool) {
+            bot = pool.obtain();
+        }
+        bot.attach(store);
+        return bot;
     }
 
     @Override
     public void init() {
         super.init();
 
-        setParameter(BotParameters.ParameterName.chlorophyll, RandomGen.INSTANCE.nextInt(4, 7));
+        setParameter(BotParameters.ParameterName.chlorophyll, RandomGen.current().nextInt(4, 7));
     }
 
     @Override
     protected void _update(GameWorld world) {
-        if (cell.minerals > 0)
+        if (grid.getMinerals(cell) > 0)
             eatMinerals(0);
 
-        if (energy >= energyToProduceOffspring) {
-            if (producedOffsprings < 2 && organics >= organicsToProduceOffspring
-                    && age >= minAgeToReproduce && turnsAfterReproduced >= reproduceDelay) {
+        if (store.energy[slot] >= energyToProduceOffspring) {
+            if (producedOffsprings < 2 && store.organics[slot] >= organicsToProduceOffspring
+                    && store.age[slot] >= minAgeToReproduce && turnsAfterReproduced >= reproduceDelay) {
                 produceOffspring(world, 0, 0);
                 if (offspring != null) {
-                    initOffspring(world, offspring);
-                    offspring.lastTurnUpdated = world.getTurn();
-                    world.updateCellStatistic(offspring);
+                    settleOffspring(world, offspring);
                     offspring = null;
-                    ++producedOffsprings;
                 }
             } else {
                 produceOrganics(0);
             }
         }
 
-        if (energy >= energyToMove + getMoveCost() && RandomGen.INSTANCE.nextBool(moveProb)) {
-            Cell forward = getForwardCell(world.getGrid());
-            if (forward != null && forward.bot == null) {
-                move(world.getGrid(), 0);
+        if (store.energy[slot] >= energyToMove + getMoveCost() && RandomGen.current().nextBool(moveProb)) {
+            final CellGrid grid = world.getGrid();
+            int forward = getForwardCellIndex(grid);
+            if (forward >= 0 && grid.getBot(forward) == null) {
+                move(world, 0);
             }
         }
-        if (energy >= energyToMove + getRotateCost() && RandomGen.INSTANCE.nextBool(rotateProb)) {
-            if (RandomGen.INSTANCE.nextBool())
+        if (store.energy[slot] >= energyToMove + getRotateCost() && RandomGen.current().nextBool(rotateProb)) {
+            if (RandomGen.current().nextBool())
                 rotateLeft(0);
             else
                 rotateRight(0);
@@ -82,16 +85,19 @@ public class SimpleBot extends Bot {
     @Override
     protected void initOffspring(GameWorld world, Bot offspring) {
         offspring.init();
+        ++producedOffsprings;
     }
 
     @Override
     protected SimpleBot getOffspringInstance(int parameter) {
-        return getInstance();
+        return getInstance(store);
     }
 
     @Override
     public void release() {
-        pool.free(this);
+        synchronized (pool) {
+            pool.free(this);
+        }
     }
 
     @Override
@@ -13,4 +13,9 @@ public class StaticHumidityDistribution implements HumidityDistribution {
     public int getHumidity(int x, int y, int turn) {
         return (10 + 1) * (x + y) / (worldParams.getWidth() + worldParams.getHeight());
     }
+
+    @Override
+    public boolean isStatic() {
+        return true;
+    }
 }
@@ -15,4 +15,9 @@ public class StaticLightDistribution implements LightDistribution {
         return worldParams.getMinLight()
                 + (worldParams.getMaxLight() - worldParams.getMinLight() + 1) * y * y / (worldHeight * worldHeight);
     }
+
+    @Override
+    public boolean isStatic() {
+        return true;
+    }
 }
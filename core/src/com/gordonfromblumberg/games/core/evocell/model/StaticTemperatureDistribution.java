@@ -14,4 +14,9 @@ public class StaticTemperatureDistribution implements TemperatureDistribution {
         return worldParams.getMinTemperature()
                 + (worldParams.getMaxTemperature() - worldParams.getMinTemperature() + 1) * x / worldParams.getWidth();
     }
+
+    @Override
+    public boolean isStatic() {
+        return true;
+    }
 }
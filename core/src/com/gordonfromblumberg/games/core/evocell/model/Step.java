@@ -3,7 +3,7 @@ package com.gordonfromblumberg.games.core.evocell.model;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Pool;
 
-public class Step implements Pool.Poolable, ExpressionMapping.ExpressionParameter {
+public class Step implements Pool.Poolable {
     private final Array<Step> parameters = new Array<>(4);
 
     byte value;
@@ -12,8 +12,9 @@ public class Step implements Pool.Poolable, ExpressionMapping.ExpressionParamete
     int geneIndex;
     int geneValueIndex;
     int lastRead;
+    // index of the random default value drawn before execution, -1 if the value is not random
+    int defaultSlot = -1;
     boolean stopReadActions;
-    boolean wasReset;
 
     void addParameter(Step step) {
         parameters.add(step);
@@ -23,25 +24,6 @@ public class Step implements Pool.Poolable, ExpressionMapping.ExpressionParamete
         return parameters;
     }
 
-    @Override
-    public boolean bool(CellGrid grid, Bot bot) {
-        return number(grid, bot) > 0;
-    }
-
-    @Override
-    public int number(CellGrid grid, Bot bot) {
-        if (stepDef instanceof ExpressionDef exprDef) {
-            ExpressionMapping expression = Expressions.expressionsMap.get(exprDef.name());
-            Step par1 = parameters.size > 0 ? parameters.get(0) : null;
-            Step par2 = parameters.size > 1 ? parameters.get(1) : null;
-            return expression.getValue(grid, bot, par1, par2);
-        } else if (type == StepType.expression) {
-            return value;
-        } else {
-            throw new IllegalStateException("number should not be invoked on " + type + " step with stepDef " + stepDef);
-        }
-    }
-
     @Override
     public void reset() {
         this.parameters.clear();
@@ -50,6 +32,7 @@ public class Step implements Pool.Poolable, ExpressionMapping.ExpressionParamete
         this.stepDef = null;
         this.geneIndex = -1;
         this.geneValueIndex = -1;
+        this.defaultSlot = -1;
         this.stopReadActions = false;
     }
 
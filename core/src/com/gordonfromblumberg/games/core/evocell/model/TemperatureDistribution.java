@@ -1,5 +1,10 @@
 package com.gordonfromblumberg.games.core.evocell.model;
 
-public interface TemperatureDistribution {
+public interface TemperatureDistribution extends EnvironmentField.Source {
     int getTemperature(int x, int y, int turn);
+
+    @Override
+    default int get(int x, int y, int turn) {
+        return getTemperature(x, y, turn);
+    }
 }
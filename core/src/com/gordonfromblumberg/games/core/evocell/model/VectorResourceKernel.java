@@ -0,0 +1,75 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link ScalarResourceKernel} on jdk.incubator.vector, conditions are expressed with lane masks.
+ * Tail of the range which doesn't fill a whole vector is updated by scalar kernel.
+ * The class must be loaded only if the module is present, see {@link ResourceKernel#create(boolean)}
+ */
+class VectorResourceKernel extends ResourceKernel {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    private final ScalarResourceKernel tail = new ScalarResourceKernel();
+
+    @Override
+    void update(CellChunk chunk, int from, int to) {
+        final int[] temperatures = chunk.temperature;
+        final int[] organics = chunk.organics;
+        final int[] turnsAfterOrganicsUpdate = chunk.turnsAfterOrganicsUpdate;
+        final int[] minerals = chunk.minerals;
+        final int[] energies = chunk.energy;
+        final int[] humidities = chunk.humidity;
+        final int[] waters = chunk.water;
+        final int[] turnsAfterWaterUpdate = chunk.turnsAfterWaterUpdate;
+
+        final int length = SPECIES.length();
+        final int upper = from + SPECIES.loopBound(to - from);
+        int i = from;
+        for (; i < upper; i += length) {
+            final IntVector temperature = IntVector.fromArray(SPECIES, temperatures, i);
+            IntVector organic = IntVector.fromArray(SPECIES, organics, i);
+            IntVector turnsAfterOrganics = IntVector.fromArray(SPECIES, turnsAfterOrganicsUpdate, i);
+            final VectorMask<Integer> decaying = organic.compare(VectorOperators.GT, 0)
+                    .and(temperature.compare(VectorOperators.GT, -10));
+            turnsAfterOrganics = turnsAfterOrganics.add(1, decaying);
+            final VectorMask<Integer> decayed = decaying.and(
+                    turnsAfterOrganics.compare(VectorOperators.GE, temperature.mul(-2).add(42)));
+            turnsAfterOrganics = turnsAfterOrganics.blend(0, decayed);
+            organic = organic.sub(2, decayed).max(0);
+            turnsAfterOrganics.intoArray(turnsAfterOrganicsUpdate, i);
+            organic.intoArray(organics, i);
+            IntVector.fromArray(SPECIES, minerals, i).add(1, decayed).intoArray(minerals, i);
+
+            IntVector energy = IntVector.fromArray(SPECIES, energies, i);
+            energy = energy.blend(0, organic.compare(VectorOperators.EQ, 0));
+            energy = energy.sub(energy.lanewise(VectorOperators.ASHR, 2).max(3)).max(0);
+            energy.intoArray(energies, i);
+
+            final IntVector humidity = IntVector.fromArray(SPECIES, humidities, i);
+            IntVector water = IntVector.fromArray(SPECIES, waters, i);
+            IntVector turnsAfterWater = IntVector.fromArray(SPECIES, turnsAfterWaterUpdate, i);
+            final IntVector waterDiff = humidity.sub(water);
+            final VectorMask<Integer> converging = waterDiff.compare(VectorOperators.NE, 0);
+            turnsAfterWater = turnsAfterWater.add(1, converging);
+            final VectorMask<Integer> changed = converging.and(
+                    turnsAfterWater.compare(VectorOperators.GE, waterDiff.abs().neg().add(12)));
+            turnsAfterWater = turnsAfterWater.blend(0, changed);
+            water = water.add(1, changed.and(waterDiff.compare(VectorOperators.GT, 0)))
+                    .sub(1, changed.and(waterDiff.compare(VectorOperators.LT, 0)));
+            turnsAfterWater.intoArray(turnsAfterWaterUpdate, i);
+            water.intoArray(waters, i);
+        }
+        if (i < to) {
+            tail.update(chunk, i, to);
+        }
+    }
+
+    @Override
+    public String describe() {
+        return SPECIES.length() + " int lanes, " + SPECIES.vectorBitSize() + " bit";
+    }
+}
@@ -17,11 +17,12 @@ public class BotInfoWindow extends Window {
     private final Container<Table> propertiesPane = new Container<>();
     private final VerticalScrollPane parametersPane;
     private final VerticalScrollPane genomePane;
-    private final Interpreter interpreter = new Interpreter();
+    private final Interpreter interpreter;
 
-    public BotInfoWindow(String title, Skin skin) {
+    public BotInfoWindow(String title, Skin skin, Interpreter interpreter) {
         super(title, skin);
 
+        this.interpreter = interpreter;
         propertiesPane.align(Align.center);
 
         float maxPaneHeight = 500f;
@@ -0,0 +1,105 @@
+package com.gordonfromblumberg.games.core.evocell.ui;
+
+import com.badlogic.gdx.scenes.scene2d.ui.*;
+import com.badlogic.gdx.utils.Align;
+import com.badlogic.gdx.utils.Array;
+import com.gordonfromblumberg.games.core.common.ui.UIUtils;
+import com.gordonfromblumberg.games.core.common.ui.VerticalScrollPane;
+import com.gordonfromblumberg.games.core.evocell.model.GenomeProfiler;
+
+import java.io.IOException;
+import java.util.Comparator;
+
+/**
+ * Table of genome instructions profiled by {@link GenomeProfiler}, it is refreshed every second.
+ * Clicking a column header sorts rows by the column, the second click reverses the order.
+ */
+public class GenomeProfileWindow extends Window {
+    private static final float REFRESH_INTERVAL = 1f;
+
+    private final Array<GenomeProfiler.Row> rows = new Array<>();
+    private final Table rowsTable;
+    private final Label eventsLabel;
+    private final Label statusLabel;
+    private final Comparator<GenomeProfiler.Row> byTime = Comparator.comparingLong(GenomeProfiler.Row::nanos);
+    private Comparator<GenomeProfiler.Row> sortColumn = byTime;
+    private boolean descending = true;
+    private float sinceRefresh = REFRESH_INTERVAL;
+
+    public GenomeProfileWindow(String title, Skin skin) {
+        super(title, skin);
+
+        final Table header = new Table(skin);
+        header.defaults().width(90f).padRight(2f);
+        header.add(sortButton("Instruction", Comparator.comparing(GenomeProfiler.Row::name))).width(190f);
+        header.add(sortButton("Count", Comparator.comparingLong(GenomeProfiler.Row::executions)));
+        header.add(sortButton("Time, ms", byTime));
+        header.add(sortButton("ns / exec", Comparator.comparingLong(GenomeProfiler.Row::nanosPerExecution)));
+        add(header);
+
+        row();
+        rowsTable = new Table(skin);
+        rowsTable.defaults().width(90f).padRight(2f).align(Align.right);
+        add(new VerticalScrollPane(rowsTable, skin, 300f)).fillX();
+
+        row().padTop(5f);
+        eventsLabel = new Label("", skin);
+        add(eventsLabel).align(Align.left);
+
+        row().padTop(5f);
+        final Table buttons = new Table(skin);
+        buttons.add(UIUtils.textButton("Reset", skin, () -> {
+            GenomeProfiler.reset();
+            refresh();
+        }, null)).padRight(5f);
+        buttons.add(UIUtils.textButton("Export", skin, this::export, null)).padRight(5f);
+        statusLabel = new Label("", skin);
+        buttons.add(statusLabel);
+        add(buttons).align(Align.left);
+        pack();
+    }
+
+    @Override
+    public void act(float delta) {
+        super.act(delta);
+
+        sinceRefresh += delta;
+        if (sinceRefresh >= REFRESH_INTERVAL) {
+            refresh();
+        }
+    }
+
+    private TextButton sortButton(String text, Comparator<GenomeProfiler.Row> column) {
+        return UIUtils.textButton(text, getSkin(), () -> {
+            descending = column != sortColumn || !descending;
+            sortColumn = column;
+            refresh();
+        }, null);
+    }
+
+    private void refresh() {
+        sinceRefresh = 0;
+        GenomeProfiler.snapshot(rows);
+        rows.sort(descending ? sortColumn.reversed() : sortColumn);
+
+        rowsTable.clearChildren();
+        for (GenomeProfiler.Row row : rows) {
+            rowsTable.add(row.kind() + " " + row.name()).width(190f).align(Align.left);
+            rowsTable.add(String.valueOf(row.executions()));
+            rowsTable.add(String.valueOf(row.nanos() / 1_000_000));
+            rowsTable.add(String.valueOf(row.nanosPerExecution()));
+            rowsTable.row();
+        }
+        eventsLabel.setText("Goto limit " + GenomeProfiler.getGotoLimitHits()
+                + ", gene jumps " + GenomeProfiler.getGeneJumps()
+                + ", check deaths " + GenomeProfiler.getCheckDeaths());
+    }
+
+    private void export() {
+        try {
+            statusLabel.setText("Exported to " + GenomeProfiler.export().name());
+        } catch (IOException e) {
+            statusLabel.setText("Export failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.gordonfromblumberg.games.core.evocell.ui;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.scenes.scene2d.Actor;
+import com.badlogic.gdx.scenes.scene2d.ui.*;
+import com.badlogic.gdx.scenes.scene2d.utils.ChangeListener;
+import com.badlogic.gdx.utils.Align;
+import com.gordonfromblumberg.games.core.common.ui.UIUtils;
+import com.gordonfromblumberg.games.core.evocell.world.StatisticRecorder;
+import com.gordonfromblumberg.games.core.evocell.world.StatisticRecorder.Metric;
+
+import java.io.IOException;
+
+/**
+ * Chart of metrics recorded by {@link StatisticRecorder}, either last turns or whole history.
+ * Every metric is scaled to its own maximum, a column of the chart spans minimum and maximum of turns it covers.
+ */
+public class StatisticChartWindow extends Window {
+    private static final Color[] colors = {Color.WHITE, Color.GOLD, Color.LIME, Color.SKY, Color.CORAL};
+
+    private final StatisticRecorder recorder;
+    private final boolean[] shown = new boolean[Metric.values().length];
+    private final CheckBox historyCheckBox;
+    private final Label rangeLabel;
+    private final Label statusLabel;
+
+    public StatisticChartWindow(String title, Skin skin, StatisticRecorder recorder) {
+        super(title, skin);
+        this.recorder = recorder;
+
+        final Table legend = new Table(skin);
+        for (Metric metric : Metric.values()) {
+            shown[metric.ordinal()] = true;
+            final CheckBox checkBox = new CheckBox(metric.title, skin);
+            checkBox.setChecked(true);
+            checkBox.getLabel().setColor(colors[metric.ordinal()]);
+            checkBox.addListener(new ChangeListener() {
+                @Override
+                public void changed(ChangeEvent event, Actor actor) {
+                    shown[metric.ordinal()] = checkBox.isChecked();
+                }
+            });
+            legend.add(checkBox).padRight(5f);
+        }
+        add(legend).align(Align.left);
+
+        row();
+        add(new Chart(skin.getRegion("white"))).size(400f, 150f);
+
+        row().padTop(5f);
+        final Table bottom = new Table(skin);
+        historyCheckBox = new CheckBox("All turns", skin);
+        bottom.add(historyCheckBox).padRight(5f);
+        rangeLabel = new Label("", skin);
+        bottom.add(rangeLabel).expandX().align(Align.left);
+        add(bottom).fillX();
+
+        row().padTop(5f);
+        final Table buttons = new Table(skin);
+        buttons.add(UIUtils.textButton("Export CSV", skin, () -> export(false), null)).padRight(5f);
+        buttons.add(UIUtils.textButton("Export binary", skin, () -> export(true), null)).padRight(5f);
+        statusLabel = new Label("", skin);
+        buttons.add(statusLabel);
+        add(buttons).align(Align.left);
+        pack();
+    }
+
+    @Override
+    public void act(float delta) {
+        super.act(delta);
+
+        if (recorder.isEmpty()) {
+            rangeLabel.setText("");
+        } else if (historyCheckBox.isChecked()) {
+            rangeLabel.setText("turns " + recorder.getFirstTurn() + " - " + recorder.getLastTurn()
+                    + ", " + recorder.getBucketTurns() + " per point");
+        } else {
+            rangeLabel.setText("turns " + recorder.getRecentFirstTurn() + " - " + recorder.getLastTurn());
+        }
+    }
+
+    private void export(boolean binary) {
+        try {
+            statusLabel.setText("Exported to " + (binary ? recorder.exportBinary() : recorder.exportCsv()).name());
+        } catch (IOException e) {
+            statusLabel.setText("Export failed: " + e.getMessage());
+        }
+    }
+
+    private class Chart extends Widget {
+        private final TextureRegion white;
+
+        Chart(TextureRegion white) {
+            this.white = white;
+        }
+
+        @Override
+        public void draw(Batch batch, float parentAlpha) {
+            validate();
+            final Color batchColor = batch.getColor();
+            final float r = batchColor.r, g = batchColor.g, b = batchColor.b, a = batchColor.a;
+            final float x = getX(), y = getY(), width = getWidth(), height = getHeight();
+
+            batch.setColor(0f, 0f, 0f, 0.5f * parentAlpha);
+            batch.draw(white, x, y, width, height);
+
+            final boolean history = historyCheckBox.isChecked();
+            final int points = history ? recorder.getBucketCount() : recorder.getRecentCount();
+            final int columns = (int) width;
+            if (points > 0) {
+                for (Metric metric : Metric.values()) {
+                    if (shown[metric.ordinal()]) {
+                        final Color color = colors[metric.ordinal()];
+                        batch.setColor(color.r, color.g, color.b, parentAlpha);
+                        drawMetric(batch, metric, history, points, columns, x, y, height);
+                    }
+                }
+            }
+            batch.setColor(r, g, b, a);
+        }
+
+        private void drawMetric(Batch batch, Metric metric, boolean history, int points, int columns,
+                                float x, float y, float height) {
+            long scale = 1;
+            for (int i = 0; i < points; ++i) {
+                scale = Math.max(scale, history ? recorder.getMax(metric, i) : recorder.getRecent(metric, i));
+            }
+
+            // columns are joined with neighbours, so the line has no gaps
+            float previousMin = -1f, previousMax = -1f;
+            for (int c = 0; c < columns; ++c) {
+                final int from = (int) ((long) c * points / columns);
+                final int to = Math.max(from + 1, (int) ((long) (c + 1) * points / columns));
+                long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+                for (int i = from; i < to; ++i) {
+                    min = Math.min(min, history ? recorder.getMin(metric, i) : recorder.getRecent(metric, i));
+                    max = Math.max(max, history ? recorder.getMax(metric, i) : recorder.getRecent(metric, i));
+                }
+                final float minY = height * Math.max(min, 0) / scale;
+                final float maxY = height * Math.max(max, 0) / scale;
+                final float bottom = previousMax >= 0 ? Math.min(minY, previousMax) : minY;
+                final float top = previousMin >= 0 ? Math.max(maxY, previousMin) : maxY;
+                batch.draw(white, x + c, y + bottom, 1f, Math.max(top - bottom, 1f));
+                previousMin = minY;
+                previousMax = maxY;
+            }
+        }
+
+        @Override
+        public float getPrefWidth() {
+            return 400f;
+        }
+
+        @Override
+        public float getPrefHeight() {
+            return 150f;
+        }
+    }
+}
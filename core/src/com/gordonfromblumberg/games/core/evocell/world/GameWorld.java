@@ -1,10 +1,11 @@
 package com.gordonfromblumberg.games.core.evocell.world;
 
-import com.badlogic.gdx.utils.PooledLinkedList;
+import com.badlogic.gdx.utils.Array;
 import com.gordonfromblumberg.games.core.common.factory.AbstractFactory;
 import com.gordonfromblumberg.games.core.common.log.LogManager;
 import com.gordonfromblumberg.games.core.common.log.Logger;
 import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
+import com.gordonfromblumberg.games.core.common.utils.KeyedRandomGen;
 import com.gordonfromblumberg.games.core.common.utils.RandomGen;
 import com.gordonfromblumberg.games.core.common.world.World;
 import com.gordonfromblumberg.games.core.evocell.model.*;
@@ -12,15 +13,38 @@ import com.gordonfromblumberg.games.core.game_template.TemplateWorld;
 
 public class GameWorld extends World {
     private static final Logger log = LogManager.create(TemplateWorld.class);
+    /** Domains of keyed random draws, see {@link #keyRandom(int, int)} */
+    public static final int RANDOM_CELLS = 0;
+    public static final int RANDOM_BOTS = 1;
+    public static final int RANDOM_OFFSPRING = 2;
 
     final WorldParams params;
     final CellGrid cellGrid;
-    final PooledLinkedList<Bot> livingCells = new PooledLinkedList<>(2048);
+    final BotStore botStore = new BotStore();
+    final ActiveBotList activeBots = new ActiveBotList();
+    private final boolean shuffleBots;
     private final LightDistribution lightDistribution;
     private final TemperatureDistribution temperatureDistribution;
     private final HumidityDistribution humidityDistribution;
+    private final int seedArea;
     final WorldStatistic statistic = new WorldStatistic();
-    private final Interpreter interpreter;
+    private final StatisticRecorder recorder;
+    private final Interpreter interpreter = new Interpreter();
+    private final ThreadLocal<WorkerContext> workerContext = ThreadLocal.withInitial(this::createWorkerContext);
+    private final Array<WorkerContext> workerContexts = new Array<>();
+    private ParallelTurnStepper parallelStepper;
+    private final boolean intentMode;
+    private final boolean lazyCells;
+    private final int lazySyncInterval;
+    // draws are keyed by turn and cell, tiles are always used, so the result doesn't depend on threads
+    private final boolean deterministic;
+    // genome programs of bots are skipped when the turn lasts longer, 0 if the budget is off
+    private final long turnBudgetNanos;
+    private long turnDeadline;
+    private int nextSyncTurn;
+    private long syncedEnergy, syncedOrganics, syncedMinerals;
+    private IntentBuffer intents;
+    private IntentCommitter intentCommitter;
     Cell selectedCell;
 
     private int turn = 0;
@@ -31,12 +55,36 @@ public class GameWorld extends World {
         this.params = params;
 
         final ConfigManager configManager = AbstractFactory.getInstance().configManager();
-        this.cellGrid = new CellGrid(params.width, params.height, configManager.getInteger("world.cellSize"));
         this.lightDistribution = new StaticLightDistribution(params);
         this.temperatureDistribution = new StaticTemperatureDistribution(params);
         this.humidityDistribution = new StaticHumidityDistribution(params);
+        this.cellGrid = new CellGrid(params.width, params.height, configManager.getInteger("world.cellSize"),
+                lightDistribution, temperatureDistribution, humidityDistribution);
 
-        this.interpreter = new Interpreter();
+        this.intentMode = configManager.getBoolean("world.intentMode");
+        this.shuffleBots = configManager.getBoolean("world.shuffleBots");
+        this.lazyCells = configManager.getBoolean("world.lazyCells");
+        this.lazySyncInterval = configManager.getInteger("world.lazySyncInterval");
+        this.seedArea = configManager.getInteger("world.seedArea");
+        this.turnBudgetNanos = configManager.getInteger("world.turnBudget") * 1_000_000L;
+        this.deterministic = configManager.getBoolean("world.deterministic");
+        this.recorder = new StatisticRecorder(configManager.getInteger("statistic.recentSize"),
+                                              configManager.getInteger("statistic.historySize"));
+        final int threads = configManager.getInteger("world.threads");
+        if (threads > 1 || deterministic) {
+            final int tileSize = deterministic
+                    ? ParallelTurnStepper.DETERMINISTIC_TILE_SIZE
+                    : configManager.getInteger("world.tileSize");
+            this.parallelStepper = new ParallelTurnStepper(this, Math.max(threads, 1), tileSize);
+        }
+        if (intentMode) {
+            this.intentCommitter = new IntentCommitter(parallelStepper != null ? parallelStepper.getPool() : null);
+            if (parallelStepper == null) {
+                this.intents = new IntentBuffer(1024);
+            }
+        } else if (Interpreter.isBatched()) {
+            log.info("Batched execution of genomes requires intent mode, bots are run one by one");
+        }
         log.debug("GameWorld was constructed");
     }
 
@@ -47,6 +95,7 @@ public class GameWorld extends World {
         final ConfigManager configManager = AbstractFactory.getInstance().configManager();
         updateDelay = 1f / configManager.getInteger("world.turnsPerSecond");
 
+        updateEnvironment();
         setInitialMinerals(0.1f);
         initDebug();
         pause();
@@ -56,7 +105,7 @@ public class GameWorld extends World {
         int x = params.getWidth() / 2;
         int y = params.getHeight() * 3 / 4;
 //        for (Direction d : Direction.ALL) {
-            Bot bot = SimpleBot.getInstance();
+            Bot bot = SimpleBot.getInstance(botStore);
 //            bot.setCell(cellGrid.cells[x][y + 30]);
             bot.setEnergy(50);
             bot.setOrganics(20);
@@ -68,10 +117,10 @@ public class GameWorld extends World {
 //            if (d.ordinal() % 2 == 0) ++x; else ++y;
 //        }
 
-        EvoBot evoBot = EvoBot.getInstance();
+        EvoBot evoBot = EvoBot.getInstance(botStore);
         evoBot.setRandomDna();
 //        evoBot.setCell(cellGrid.cells[x - 2][y + 10]);
-        cellGrid.cells[x - 2][y].setMinerals(10);
+        cellGrid.setMinerals(cellGrid.index(x - 2, y), 10);
         evoBot.setEnergy(1000);
         evoBot.setOrganics(100);
         evoBot.setDir(Direction.random());
@@ -82,15 +131,15 @@ public class GameWorld extends World {
         evoBot.setGene(2, 0, -99, -125, -24, 1, -121, 12, 2, 120, -102, 3);
         evoBot.setGene(3, 0, -100, -125, -24, 2, 30, 16, 0, 17, 120, -102, 3);
         evoBot.init();
-        interpreter.runEmbryo(this, evoBot);
+        interpreter().runEmbryo(this, evoBot);
 
-        for (int i = 5, maxI = cellGrid.getWidth(); i < maxI; i += 10) {
-            for (int j = 5, maxJ = cellGrid.getHeight(); j < maxJ; j += 10) {
-                Cell cell = cellGrid.cells[i][j];
-                if (cell.getBot() != null) continue;
-                EvoBot evoBot0 = EvoBot.getInstance();
+        for (int i = seedFrom(params.width) + 5, maxI = seedTo(params.width); i < maxI; i += 10) {
+            for (int j = seedFrom(params.height) + 5, maxJ = seedTo(params.height); j < maxJ; j += 10) {
+                int cell = cellGrid.index(i, j);
+                if (cellGrid.getBot(cell) != null) continue;
+                EvoBot evoBot0 = EvoBot.getInstance(botStore);
                 evoBot0.setRandomDna();
-                evoBot0.setCell(cell);
+                evoBot0.setCell(cellGrid, cell);
                 evoBot0.setEnergy(1000);
                 evoBot0.setOrganics(100);
                 evoBot0.setMinerals(10);
@@ -99,7 +148,7 @@ public class GameWorld extends World {
                 evoBot0.setRandomDna();
                 evoBot0.init();
                 evoBot0.setActiveGeneIndex(1);
-                interpreter.runEmbryo(this, evoBot0);
+                interpreter().runEmbryo(this, evoBot0);
                 evoBot0.setTemperature(evoBot0.getWishedTemperature());
             }
         }
@@ -117,53 +166,170 @@ public class GameWorld extends World {
             }
 
             time = 0;
-            ++turn;
-
-            final Cell[][] cells = cellGrid.cells;
-            final int cellGridWidth = cellGrid.getWidth();
-            final int cellGridHeight = cellGrid.getHeight();
-            statistic.resetForNewTurn();
-            int worldEnergy = 0;
-            int worldOrganics = 0;
-            int worldMinerals = 0;
-            final int turn = this.turn;
-            for (int i = 0; i < cellGridWidth; ++i) {
-                final Cell[] cellCol = cells[i];
-                for (int j = 0; j < cellGridHeight; ++j) {
-                    final Cell cell = cellCol[j];
-                    cell.setSunLight(lightDistribution.getLight(i, j, turn));
-                    cell.setTemperature(temperatureDistribution.getTemperature(i, j, turn));
-                    cell.setHumidity(humidityDistribution.getHumidity(i, j, turn));
-                    cell.update(this);
-                    worldEnergy += cell.getEnergy();
-                    worldOrganics += cell.getOrganics();
-                    worldMinerals += cell.getMinerals();
-                }
-            }
-            statistic.worldEnergy = worldEnergy;
-            statistic.worldOrganics = worldOrganics;
-            statistic.worldMinerals = worldMinerals;
-            statistic.updateMaximums();
+            step();
+        }
+    }
 
-            if (statistic.botCount == 0) {
-                initDebug();
+    /**
+     * Advances the world by exactly one turn.
+     * Doesn't depend on render loop and may be invoked without Gdx backend
+     */
+    public void step() {
+        ++turn;
+        if (turnBudgetNanos > 0) {
+            turnDeadline = System.nanoTime() + turnBudgetNanos;
+        }
+        useKeyedRandom();
+
+        // every bot produces at most one offspring per turn and offspring are not updated in the turn of birth
+        botStore.reserve(botStore.size());
+        activeBots.collect(botStore);
+        if (shuffleBots) {
+            activeBots.shuffle(RandomGen.INSTANCE);
+        }
+        for (WorkerContext context : workerContexts) {
+            context.statistic.resetForNewTurn();
+        }
+        updateEnvironment();
+        if (lazyCells) {
+            if (turn >= nextSyncTurn) {
+                syncCells();
+                nextSyncTurn = turn + lazySyncInterval;
             }
+            catchUpActiveBots();
+        }
+        if (!lazyCells) {
+            cellGrid.snapshotMinerals();
+        }
+        if (parallelStepper != null) {
+            parallelStepper.step(activeBots);
+        } else {
+            if (!lazyCells) {
+                updateCells(0, 0, cellGrid.getWidth(), cellGrid.getHeight());
+            }
+            updateBots(activeBots.slots(), 0, activeBots.size(), intents);
+        }
+        if (intentMode) {
+            if (parallelStepper != null) {
+                intentCommitter.commit(this, parallelStepper.getIntentBuffers());
+            } else {
+                intentCommitter.commit(this, intents);
+            }
+        }
+        statistic.resetForNewTurn();
+        for (WorkerContext context : workerContexts) {
+            statistic.merge(context.statistic);
+        }
+        if (lazyCells) {
+            statistic.worldEnergy = syncedEnergy;
+            statistic.worldOrganics = syncedOrganics;
+            statistic.worldMinerals = syncedMinerals;
+        }
+        statistic.updateMaximums();
+        recorder.record(turn, statistic);
+        botStore.compact();
+        // the arena is owned by this world, so other worlds don't move genomes being read here
+        botStore.getGenomeArena().compact();
+
+        if (statistic.botCount == 0) {
+            initDebug();
+        }
+        // keyed generator of the thread must not leak to draws between turns, e.g. to creation of another world
+        RandomGen.setCurrent(null);
+    }
+
+    /**
+     * Recomputes changed parts of environment.
+     * In lazy mode cells are caught up to the previous turn before environment changes
+     */
+    private void updateEnvironment() {
+        if (lazyCells && turn > 0 && cellGrid.isEnvironmentOutdated(turn)) {
+            cellGrid.catchUpCreatedChunks(turn - 1);
+        }
+        cellGrid.updateEnvironment(turn);
+    }
+
+    /**
+     * Updates resources of cells in rectangle [fromX; toX) x [fromY; toY) row by row
+     */
+    void updateCells(int fromX, int fromY, int toX, int toY) {
+        useKeyedRandom();
+        final CellGrid grid = this.cellGrid;
+        final WorkerContext context = workerContext.get();
+        final long[] totals = context.resourceTotals;
+        totals[0] = totals[1] = totals[2] = 0;
+        for (int j = fromY; j < toY; ++j) {
+            grid.updateResources(j, fromX, toX);
+            grid.sumResources(j, fromX, toX, totals);
+        }
+        final WorldStatistic statistic = context.statistic;
+        statistic.worldEnergy += totals[0];
+        statistic.worldOrganics += totals[1];
+        statistic.worldMinerals += totals[2];
+    }
+
+    /**
+     * Updates bots from slots [from; to)
+     * @param intents Buffer for intents of the bots, null if intent mode is off
+     */
+    void updateBots(int[] slots, int from, int to, IntentBuffer intents) {
+        useKeyedRandom();
+        workerContext.get().intents = intents;
+        botStore.update(this, slots, from, to);
+    }
+
+    /**
+     * Lazy mode: catches up cells of created chunks, sums their resources and releases chunks with default state.
+     * Between syncs resource totals of the world are not updated
+     */
+    private void syncCells() {
+        final CellGrid grid = this.cellGrid;
+        grid.catchUpCreatedChunks(turn);
+        final long[] totals = new long[3];
+        grid.sumCreatedChunks(totals);
+        syncedEnergy = totals[0];
+        syncedOrganics = totals[1];
+        syncedMinerals = totals[2];
+        final int released = grid.releaseEmptyChunks();
+        if (released > 0) {
+            log.debug("Released " + released + " chunks, created " + grid.getCreatedChunkCount());
+        }
+    }
+
+    /**
+     * Lazy mode: brings up to date all cells which bots can read or change before they move
+     */
+    private void catchUpActiveBots() {
+        final int[] slots = activeBots.slots();
+        final CellGrid grid = this.cellGrid;
+        for (int i = 0, n = activeBots.size(); i < n; ++i) {
+            grid.catchUpAround(botStore.get(slots[i]).getCellIndex(), turn);
         }
     }
 
     public void updateCellStatistic(Bot bot) {
-        ++statistic.botCount;
-        statistic.totalBotEnergy += bot.getEnergy();
-        statistic.totalBotOrganics += bot.getOrganics();
-        statistic.totalBotMinerals += bot.getMinerals();
-        if (bot.getAge() > statistic.currentMaxBotAge)
-            statistic.currentMaxBotAge = bot.getAge();
-        if (bot.getOrganics() > statistic.maxBotOrganics)
-            statistic.maxBotOrganics = bot.getOrganics();
-        if (bot.getMinerals() > statistic.maxBotMinerals)
-            statistic.maxBotMinerals = bot.getMinerals();
-        if (bot.getGeneration() > statistic.maxBotGeneration)
-            statistic.maxBotGeneration = bot.getGeneration();
+        workerContext.get().statistic.addBot(bot);
+    }
+
+    /**
+     * @return true if world.turnBudget is on and the current turn lasts longer
+     */
+    public boolean isTurnBudgetExceeded() {
+        return turnBudgetNanos > 0 && System.nanoTime() > turnDeadline;
+    }
+
+    /**
+     * Counts genome program stopped because the bot spent all its gas
+     */
+    public void countOutOfGas() {
+        ++workerContext.get().statistic.outOfGasPrograms;
+    }
+
+    /**
+     * Counts genome programs which were not run because the turn is out of its time budget
+     */
+    public void countSkippedPrograms(int count) {
+        workerContext.get().statistic.skippedPrograms += count;
     }
 
     public WorldParams getParams() {
@@ -174,29 +340,137 @@ public class GameWorld extends World {
         return cellGrid;
     }
 
+    public BotStore getBotStore() {
+        return botStore;
+    }
+
     public int getTurn() {
         return turn;
     }
 
+    public WorldStatistic getStatistic() {
+        return statistic;
+    }
+
+    public StatisticRecorder getRecorder() {
+        return recorder;
+    }
+
+    /**
+     * In intent mode bots don't change neighbour cells immediately,
+     * they emit intents which are applied after all bots have been updated.
+     * So result of turn doesn't depend on order of bots updating
+     */
+    public boolean isIntentMode() {
+        return intentMode;
+    }
+
+    /**
+     * In lazy cells mode resources of a cell are updated only when the cell is touched by a bot
+     * or synced, all missed turns are applied at once
+     */
+    public boolean isLazyCells() {
+        return lazyCells;
+    }
+
+    /**
+     * Fills energy, organics, minerals and water of the cell at the current turn to resources[0], ..., resources[3].
+     * Doesn't change the world, in lazy cells mode missed turns are projected, see {@link CellGrid#project}
+     */
+    public void getResources(int index, int[] resources) {
+        if (lazyCells) {
+            cellGrid.project(index, turn, resources);
+        } else {
+            resources[0] = cellGrid.getEnergy(index);
+            resources[1] = cellGrid.getOrganics(index);
+            resources[2] = cellGrid.getMinerals(index);
+            resources[3] = cellGrid.getWater(index);
+        }
+    }
+
+    public boolean isDeterministic() {
+        return deterministic;
+    }
+
+    /**
+     * @return Intent buffer of the part of the world which is being updated by the current thread
+     */
+    public IntentBuffer intents() {
+        return workerContext.get().intents;
+    }
+
+    /**
+     * @return Interpreter shared by all threads
+     */
     public Interpreter interpreter() {
         return interpreter;
     }
 
+    /**
+     * Deterministic mode: keys the following draws of the current thread by the turn and the index
+     * @param index Index of a cell
+     * @param domain One of RANDOM_* constants
+     */
+    public void keyRandom(int index, int domain) {
+        if (deterministic) {
+            final RandomGen random = workerContext.get().random;
+            random.setKey(turn, index, domain);
+            RandomGen.setCurrent(random);
+        }
+    }
+
+    /**
+     * Deterministic mode: the current thread draws from its keyed generator
+     */
+    private void useKeyedRandom() {
+        if (deterministic) {
+            RandomGen.setCurrent(workerContext.get().random);
+        }
+    }
+
+    private WorkerContext createWorkerContext() {
+        final WorkerContext context = new WorkerContext();
+        if (deterministic) {
+            context.random = new KeyedRandomGen(RandomGen.getSeed());
+        }
+        synchronized (workerContexts) {
+            workerContexts.add(context);
+        }
+        return context;
+    }
+
     private void setInitialMinerals(float probability) {
         final LightDistribution lightDist = this.lightDistribution;
-        final Cell[][] cells = cellGrid.cells;
-        for (int i = 0, w = cellGrid.getWidth(), h = cellGrid.getHeight(); i < w; ++i) {
-            final Cell[] col = cells[i];
-            for (int j = 0; j < h; ++j) {
+        for (int i = seedFrom(params.width), w = seedTo(params.width); i < w; ++i) {
+            for (int j = seedFrom(params.height), h = seedTo(params.height); j < h; ++j) {
                 final int light = lightDist.getLight(i, j, 0);
-                final Cell cell = col[j];
                 if (RandomGen.INSTANCE.nextBool(light > 0 ? probability / light : probability)) {
                     int min = 10 - light, max = 50 - 3 * light;
                     if (min < 0) min = 0;
                     if (max < 0) max = 0;
-                    cell.setMinerals(RandomGen.INSTANCE.nextInt(min, max));
+                    cellGrid.setMinerals(cellGrid.index(i, j), RandomGen.INSTANCE.nextInt(min, max));
                 }
             }
         }
     }
+
+    /**
+     * Initial minerals and bots are placed in the square {@code world.seedArea} in the middle of the world,
+     * the rest of the world stays in default state, so its chunks are not created
+     */
+    private int seedFrom(int size) {
+        return seedArea > 0 && seedArea < size ? (size - seedArea) / 2 : 0;
+    }
+
+    private int seedTo(int size) {
+        return seedArea > 0 && seedArea < size ? (size - seedArea) / 2 + seedArea : size;
+    }
+
+    @Override
+    public void dispose() {
+        if (parallelStepper != null) {
+            parallelStepper.dispose();
+        }
+        super.dispose();
+    }
 }
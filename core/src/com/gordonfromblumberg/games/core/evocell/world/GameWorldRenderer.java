@@ -34,6 +34,7 @@ public class GameWorldRenderer extends WorldRenderer<GameWorld> {
     private final ShapeRenderer shapeRenderer = new ShapeRenderer();
     private final RenderParams renderParams;
     private final Array<Bot> livingCells = new Array<>();
+    private final int[] resources = new int[4];
 
     private final Color simpleLivingCellColor = new Color(Color.GRAY);
     private final Color evoLivingCellColor = new Color(Color.OLIVE);
@@ -66,23 +67,31 @@ public class GameWorldRenderer extends WorldRenderer<GameWorld> {
         final int cellSize = world.cellGrid.getCellSize();
         final int livingCellSize = cellSize - 2;
 
-        final Cell[][] cells = world.cellGrid.cells;
+        final CellGrid grid = world.cellGrid;
+        // only cells in the camera view are drawn
+        final float halfViewWidth = camera.viewportWidth * camera.zoom / 2;
+        final float halfViewHeight = camera.viewportHeight * camera.zoom / 2;
+        final int fromX = Math.max(0, (int) ((camera.position.x - halfViewWidth) / cellSize));
+        final int toX = Math.min(cellGridWidth, (int) ((camera.position.x + halfViewWidth) / cellSize) + 1);
+        final int fromY = Math.max(0, (int) ((camera.position.y - halfViewHeight) / cellSize));
+        final int toY = Math.min(cellGridHeight, (int) ((camera.position.y + halfViewHeight) / cellSize) + 1);
 
         final boolean renderLight = renderParams.renderLight;
         final boolean renderMinerals = renderParams.renderMinerals;
         final boolean renderTemperature = renderParams.renderTemperature;
         shapeRenderer.begin(ShapeRenderer.ShapeType.Filled);
-        for (int i = 0; i < cellGridWidth; ++i) {
-            final Cell[] col = cells[i];
-            for (int j = 0; j < cellGridHeight; ++j) {
-                Cell cell = col[j];
+        for (int j = fromY; j < toY; ++j) {
+            for (int i = fromX; i < toX; ++i) {
+                final int index = grid.index(i, j);
                 color.set(Color.WHITE);
                 if (renderMinerals) {
-                    color.lerp(MINERALS_COLOR, cell.getMinerals() / MAX_MINERALS);
+                    // rendering doesn't catch up lazy cells, so the simulation doesn't depend on the camera
+                    world.getResources(index, resources);
+                    color.lerp(MINERALS_COLOR, resources[2] / MAX_MINERALS);
                 }
                 if (renderTemperature) {
                     tempColor.set(Color.WHITE);
-                    int temperature = cell.getTemperature();
+                    int temperature = grid.getTemperature(index);
                     if (temperature > 15) {
                         tempColor.lerp(MAX_TEMPERATURE_COLOR, (temperature - 15) / (MAX_TEMPERATURE - 15));
                     } else if (temperature < 15) {
@@ -92,20 +101,21 @@ public class GameWorldRenderer extends WorldRenderer<GameWorld> {
                 }
                 if (renderLight) {
                     float maxLightColor = 1f;
-                    color.mul(MathUtils.map(0, MAX_LIGHT, minLightColor, maxLightColor, cell.getSunLight()));
+                    color.mul(MathUtils.map(0, MAX_LIGHT, minLightColor, maxLightColor, grid.getSunLight(index)));
                 }
                 shapeRenderer.setColor(color);
                 shapeRenderer.rect(i * cellSize, j * cellSize, cellSize, cellSize);
-                if (cell.getBot() != null) {
-                    livingCells.add(cell.getBot());
+                final Bot bot = grid.getBot(index);
+                if (bot != null) {
+                    livingCells.add(bot);
                 }
             }
         }
 
         for (Bot bot : livingCells) {
             shapeRenderer.setColor(bot instanceof SimpleBot ? simpleLivingCellColor : evoLivingCellColor);
-            shapeRenderer.rect(cellSize * bot.getCell().getX() + 1,
-                    cellSize * bot.getCell().getY() + 1,
+            shapeRenderer.rect(cellSize * grid.x(bot.getCellIndex()) + 1,
+                    cellSize * grid.y(bot.getCellIndex()) + 1,
                     livingCellSize, livingCellSize);
         }
         shapeRenderer.end();
@@ -116,8 +126,8 @@ public class GameWorldRenderer extends WorldRenderer<GameWorld> {
         final int quarterCell = cellSize / 4;
         final int threeQuarters = 3 * cellSize / 4;
         for (Bot bot : livingCells) {
-            int x = cellSize * bot.getCell().getX();
-            int y = cellSize * bot.getCell().getY();
+            int x = cellSize * grid.x(bot.getCellIndex());
+            int y = cellSize * grid.y(bot.getCellIndex());
             shapeRenderer.rect(x + 1,y + 1, livingCellSize, livingCellSize);
             switch (bot.getDir()) {
                 case up -> shapeRenderer.line(x + quarterCell, y + threeQuarters,
@@ -17,7 +17,11 @@ import com.gordonfromblumberg.games.core.common.world.WorldUIInfo;
 import com.gordonfromblumberg.games.core.common.world.WorldUIRenderer;
 import com.gordonfromblumberg.games.core.evocell.model.Bot;
 import com.gordonfromblumberg.games.core.evocell.model.Cell;
+import com.gordonfromblumberg.games.core.evocell.model.GenomeProfiler;
+import com.gordonfromblumberg.games.core.evocell.model.GenomeProgramCache;
 import com.gordonfromblumberg.games.core.evocell.ui.BotInfoWindow;
+import com.gordonfromblumberg.games.core.evocell.ui.GenomeProfileWindow;
+import com.gordonfromblumberg.games.core.evocell.ui.StatisticChartWindow;
 import com.gordonfromblumberg.games.core.evocell.utils.ECUIUtils;
 
 import java.util.function.Consumer;
@@ -27,6 +31,7 @@ public class GameWorldUIRenderer extends WorldUIRenderer<GameWorld> {
 
     private final RenderParams renderParams;
     private final BotInfoWindow botInfoWindow;
+    private final int[] cellResources = new int[4];
 
     public GameWorldUIRenderer(WorldUIInfo<GameWorld> worldInfo, RenderParams renderParams) {
         super(worldInfo);
@@ -40,6 +45,10 @@ public class GameWorldUIRenderer extends WorldUIRenderer<GameWorld> {
         stage.addActor(createWorldStatisticWindow(skin));
         stage.addActor(createRenderParamsWindow(skin));
         stage.addActor(createWorldParamsWindow(skin));
+        stage.addActor(createStatisticChartWindow(skin));
+        if (GenomeProfiler.isEnabled()) {
+            stage.addActor(createGenomeProfileWindow(skin));
+        }
 
         stage.addListener(new ClickListener(Input.Buttons.LEFT) {
             @Override
@@ -60,12 +69,12 @@ public class GameWorldUIRenderer extends WorldUIRenderer<GameWorld> {
     }
 
     private BotInfoWindow createBotInfoWindow(Skin skin) {
-        return new BotInfoWindow("Bot info", skin);
+        return new BotInfoWindow("Bot info", skin, world.interpreter());
     }
 
     private Window createSelectedCellWindow(Skin skin) {
         final Window window = new Window("Cell", skin);
-        window.setY(220f);
+        window.setY(300f);
         window.setWidth(250f);
         window.setHeight(250f);
         window.defaults().align(Align.right).spaceRight(2f);
@@ -91,17 +100,17 @@ public class GameWorldUIRenderer extends WorldUIRenderer<GameWorld> {
 
         window.row();
         window.add("Energy / cons");
-        window.add(createCellInfo(skin, Cell::getEnergy));
+        window.add(createCellInfo(skin, cell -> getResource(cell, 0)));
         window.add(createLivCellInfo(skin, lc -> lc.getEnergy() + " / " + lc.getEnergyConsumption()));
 
         window.row();
         window.add("Organics");
-        window.add(createCellInfo(skin, Cell::getOrganics));
+        window.add(createCellInfo(skin, cell -> getResource(cell, 1)));
         window.add(createLivCellInfo(skin, Bot::getOrganics));
 
         window.row();
         window.add("Minerals");
-        window.add(createCellInfo(skin, Cell::getMinerals));
+        window.add(createCellInfo(skin, cell -> getResource(cell, 2)));
         window.add(createLivCellInfo(skin, Bot::getMinerals));
 
         window.row();
@@ -111,7 +120,7 @@ public class GameWorldUIRenderer extends WorldUIRenderer<GameWorld> {
 
         window.row();
         window.add("Water");
-        window.add(createCellInfo(skin, Cell::getWater));
+        window.add(createCellInfo(skin, cell -> getResource(cell, 3)));
         window.add(createLivCellInfo(skin, Bot::getWater));
         return window;
     }
@@ -119,7 +128,7 @@ public class GameWorldUIRenderer extends WorldUIRenderer<GameWorld> {
     private Window createWorldStatisticWindow(Skin skin) {
         final Window window = new Window("World statistic", skin);
         window.setWidth(300f);
-        window.setHeight(220f);
+        window.setHeight(300f);
         window.defaults().align(Align.right).spaceRight(2f);
 
         window.add("Turn");
@@ -152,6 +161,25 @@ public class GameWorldUIRenderer extends WorldUIRenderer<GameWorld> {
         window.row();
         window.add("Generation");
         window.add(new UpdatableLabel(skin, withClear(sb -> sb.append(world.statistic.maxBotGeneration))));
+
+        final GenomeProgramCache programCache = world.interpreter().getProgramCache();
+        window.row().padTop(10f);
+        window.add("Programs");
+        window.add(new UpdatableLabel(skin, withClear(sb -> sb.append(programCache.getSize()))));
+
+        window.row();
+        window.add("Hit / miss");
+        window.add(new UpdatableLabel(skin, withClear(sb -> sb.append(programCache.getHits())
+                .append(" / ").append(programCache.getMisses()))));
+
+        window.row();
+        window.add("Evicted");
+        window.add(new UpdatableLabel(skin, withClear(sb -> sb.append(programCache.getEvictions()))));
+
+        window.row();
+        window.add("Out of gas / skip");
+        window.add(new UpdatableLabel(skin, withClear(sb -> sb.append(world.statistic.outOfGasPrograms)
+                .append(" / ").append(world.statistic.skippedPrograms))));
         return window;
     }
 
@@ -207,6 +235,19 @@ public class GameWorldUIRenderer extends WorldUIRenderer<GameWorld> {
         return window;
     }
 
+    private Window createStatisticChartWindow(Skin skin) {
+        final Window window = new StatisticChartWindow("Statistic chart", skin, world.getRecorder());
+        window.setX(300f);
+        return window;
+    }
+
+    private Window createGenomeProfileWindow(Skin skin) {
+        final Window window = new GenomeProfileWindow("Genome profile", skin);
+        window.setX(viewport.getWorldWidth() - window.getWidth());
+        window.setY(viewport.getWorldHeight() - window.getHeight());
+        return window;
+    }
+
     private UpdatableLabel createCellInfo(Skin skin, Function<Cell, Object> getter) {
         return new UpdatableLabel(skin, withClear(sb -> {
             if (world.selectedCell == null)
@@ -216,6 +257,11 @@ public class GameWorldUIRenderer extends WorldUIRenderer<GameWorld> {
         }));
     }
 
+    private int getResource(Cell cell, int resource) {
+        world.getResources(cell.getIndex(), cellResources);
+        return cellResources[resource];
+    }
+
     private UpdatableLabel createLivCellInfo(Skin skin, Function<Bot, Object> getter) {
         return new UpdatableLabel(skin, withClear(sb -> {
             if (world.selectedCell == null || world.selectedCell.getBot() == null)
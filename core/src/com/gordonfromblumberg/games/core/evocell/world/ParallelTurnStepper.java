@@ -0,0 +1,234 @@
+package com.gordonfromblumberg.games.core.evocell.world;
+
+import com.gordonfromblumberg.games.core.common.log.LogManager;
+import com.gordonfromblumberg.games.core.common.log.Logger;
+import com.gordonfromblumberg.games.core.common.utils.RandomGen;
+import com.gordonfromblumberg.games.core.evocell.model.ActiveBotList;
+import com.gordonfromblumberg.games.core.evocell.model.Bot;
+import com.gordonfromblumberg.games.core.evocell.model.BotStore;
+import com.gordonfromblumberg.games.core.evocell.model.IntentBuffer;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits cell grid into square tiles and updates them on ForkJoin pool.
+ * Tiles are colored as a 2x2 checkerboard, each turn consists of 4 phases, one per color.
+ * Tiles of the same color are separated by a whole tile, so bots of concurrently updated tiles
+ * never touch the same cell if tile is wider than 2 * {@link #BOT_REACH}.
+ * In intent mode bots change only their own cells, so all tiles are updated in a single phase,
+ * each tile emits intents to its own buffer.
+ * Active bots are bucketed by tile of their cell before turn, so a tile updates only its own bots.
+ * Every tile draws random numbers from its own stream derived from the seed,
+ * so draws do not depend on which thread updates the tile.
+ * In deterministic mode tiles are updated in 4 phases in intent mode too and bots of a tile are updated in cell order,
+ * so the result doesn't depend on count of threads. Order of bots depends on tiling, so deterministic mode always uses
+ * tiles of {@link #DETERMINISTIC_TILE_SIZE}.
+ */
+public class ParallelTurnStepper {
+    private static final Logger log = LogManager.create(ParallelTurnStepper.class);
+
+    /**
+     * How far from its cell a bot can change the world during one turn:
+     * up to 4 moves (action counter limit) and then bite, share or offspring to neighbour cell
+     */
+    static final int BOT_REACH = 5;
+    static final int MIN_TILE_SIZE = 2 * BOT_REACH + 1;
+    /** Tile size of deterministic mode, world.tileSize is ignored so results of a seed don't depend on config */
+    static final int DETERMINISTIC_TILE_SIZE = 32;
+
+    private final GameWorld world;
+    private final ForkJoinPool pool;
+    private final int tileSize;
+    private final int tilesX, tilesY;
+    private final int[][] phaseTiles;
+    private final IntentBuffer[] intentBuffers;
+    private final RandomGen[] tileRandoms;
+    /** Active bot slots sorted by tile, bots of tile t are in [tileStarts[t]; tileStarts[t + 1]) */
+    final int[] tileStarts;
+    private final int[] tileCursors;
+    int[] tileSlots = new int[1024];
+    // cell << 32 | slot, deterministic mode only
+    private long[] cellSlots;
+
+    public ParallelTurnStepper(GameWorld world, int threads, int tileSize) {
+        final boolean checkerboard = !world.isIntentMode() || world.isDeterministic();
+        if (checkerboard && tileSize < MIN_TILE_SIZE) {
+            throw new IllegalArgumentException("Tile size should be at least " + MIN_TILE_SIZE + ", but = " + tileSize);
+        }
+
+        this.world = world;
+        this.pool = new ForkJoinPool(threads);
+        this.tileSize = tileSize;
+        this.tilesX = (world.cellGrid.getWidth() + tileSize - 1) / tileSize;
+        this.tilesY = (world.cellGrid.getHeight() + tileSize - 1) / tileSize;
+
+        final int phaseCount = checkerboard ? 4 : 1;
+        this.phaseTiles = new int[phaseCount][];
+        final int[] phaseSizes = new int[phaseCount];
+        for (int i = 0; i < tilesX; ++i) {
+            for (int j = 0; j < tilesY; ++j) {
+                ++phaseSizes[phase(i, j, phaseCount)];
+            }
+        }
+        for (int p = 0; p < phaseCount; ++p) {
+            phaseTiles[p] = new int[phaseSizes[p]];
+            phaseSizes[p] = 0;
+        }
+        for (int i = 0; i < tilesX; ++i) {
+            for (int j = 0; j < tilesY; ++j) {
+                int p = phase(i, j, phaseCount);
+                phaseTiles[p][phaseSizes[p]++] = i * tilesY + j;
+            }
+        }
+
+        this.tileStarts = new int[tilesX * tilesY + 1];
+        this.tileCursors = new int[tilesX * tilesY];
+        this.tileRandoms = new RandomGen[tilesX * tilesY];
+        for (int i = 0; i < tileRandoms.length; ++i) {
+            tileRandoms[i] = RandomGen.stream(i);
+        }
+
+        if (world.isIntentMode()) {
+            this.intentBuffers = new IntentBuffer[tilesX * tilesY];
+            for (int i = 0; i < intentBuffers.length; ++i) {
+                intentBuffers[i] = new IntentBuffer();
+            }
+        } else {
+            this.intentBuffers = null;
+        }
+
+        log.info("Parallel stepping: " + threads + " threads, " + tilesX + "x" + tilesY + " tiles of " + tileSize);
+    }
+
+    /**
+     * Updates all cells of the grid and active bots, phases are separated by barrier
+     */
+    public void step(ActiveBotList activeBots) {
+        bucketByTile(activeBots);
+        for (int[] tiles : phaseTiles) {
+            if (tiles.length > 0) {
+                pool.invoke(new PhaseTask(tiles, 0, tiles.length));
+            }
+        }
+    }
+
+    /**
+     * @return Intent buffers in tile order, so merged intents don't depend on threads scheduling
+     */
+    public IntentBuffer[] getIntentBuffers() {
+        return intentBuffers;
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    public void dispose() {
+        pool.shutdown();
+    }
+
+    private void updateTile(int tile) {
+        final int tileX = tile / tilesY;
+        final int tileY = tile % tilesY;
+        final int fromX = tileX * tileSize;
+        final int fromY = tileY * tileSize;
+        RandomGen.setCurrent(tileRandoms[tile]);
+        if (!world.isLazyCells()) {
+            world.updateCells(fromX, fromY,
+                              Math.min(fromX + tileSize, world.cellGrid.getWidth()),
+                              Math.min(fromY + tileSize, world.cellGrid.getHeight()));
+        }
+        world.updateBots(tileSlots, tileStarts[tile], tileStarts[tile + 1],
+                         intentBuffers != null ? intentBuffers[tile] : null);
+        RandomGen.setCurrent(null);
+    }
+
+    /**
+     * Counting sort of active slots by tile, keeps order of slots inside a tile
+     */
+    void bucketByTile(ActiveBotList activeBots) {
+        final int[] slots = activeBots.slots();
+        final int n = activeBots.size();
+        if (tileSlots.length < n) {
+            tileSlots = new int[Math.max(n, tileSlots.length * 2)];
+        }
+        final int[] tileStarts = this.tileStarts;
+        final int[] tileSlots = this.tileSlots;
+        final BotStore store = world.botStore;
+        Arrays.fill(tileStarts, 0);
+        for (int i = 0; i < n; ++i) {
+            ++tileStarts[tileOf(store.get(slots[i])) + 1];
+        }
+        for (int t = 1; t < tileStarts.length; ++t) {
+            tileStarts[t] += tileStarts[t - 1];
+        }
+        final int[] cursors = this.tileCursors;
+        System.arraycopy(tileStarts, 0, cursors, 0, cursors.length);
+        for (int i = 0; i < n; ++i) {
+            final int slot = slots[i];
+            tileSlots[cursors[tileOf(store.get(slot))]++] = slot;
+        }
+        if (world.isDeterministic()) {
+            sortByCell(n);
+        }
+    }
+
+    /**
+     * Sorts bots of every tile by their cells, slots of new bots depend on threads scheduling
+     */
+    private void sortByCell(int n) {
+        if (cellSlots == null || cellSlots.length < n) {
+            cellSlots = new long[Math.max(n, tileSlots.length)];
+        }
+        final long[] cellSlots = this.cellSlots;
+        final int[] tileSlots = this.tileSlots;
+        final BotStore store = world.botStore;
+        for (int i = 0; i < n; ++i) {
+            final int slot = tileSlots[i];
+            cellSlots[i] = (long) store.get(slot).getCellIndex() << 32 | slot;
+        }
+        for (int t = 0, tiles = tileStarts.length - 1; t < tiles; ++t) {
+            Arrays.sort(cellSlots, tileStarts[t], tileStarts[t + 1]);
+        }
+        for (int i = 0; i < n; ++i) {
+            tileSlots[i] = (int) cellSlots[i];
+        }
+    }
+
+    private int tileOf(Bot bot) {
+        final int cell = bot.getCellIndex();
+        final int x = world.cellGrid.x(cell) / tileSize;
+        final int y = world.cellGrid.y(cell) / tileSize;
+        return x * tilesY + y;
+    }
+
+    private static int phase(int tileX, int tileY, int phaseCount) {
+        return phaseCount == 1 ? 0 : (tileX & 1) | ((tileY & 1) << 1);
+    }
+
+    private class PhaseTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] tiles;
+        private final int from, to;
+
+        PhaseTask(int[] tiles, int from, int to) {
+            this.tiles = tiles;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                updateTile(tiles[from]);
+                return;
+            }
+
+            final int mid = (from + to) >>> 1;
+            invokeAll(new PhaseTask(tiles, from, mid), new PhaseTask(tiles, mid, to));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.gordonfromblumberg.games.core.evocell.world;
+
+import com.gordonfromblumberg.games.core.common.factory.AbstractFactory;
+import com.gordonfromblumberg.games.core.common.log.LogManager;
+import com.gordonfromblumberg.games.core.common.log.Logger;
+import com.gordonfromblumberg.games.core.evocell.model.GenomeArena;
+import com.gordonfromblumberg.games.core.evocell.model.GenomeProfiler;
+import com.gordonfromblumberg.games.core.evocell.model.GenomeProgramCache;
+
+import java.io.IOException;
+
+/**
+ * Steps {@link GameWorld} turns back to back, without render loop and frame delta.
+ * Used for long evolution runs where the simulation should take all available CPU.
+ */
+public class SimulationEngine {
+    private static final Logger log = LogManager.create(SimulationEngine.class);
+
+    private final GameWorld world;
+
+    private long turnsDone;
+    private long stepNanos;
+    private long maxStepNanos;
+    private long outOfGasPrograms;
+    private long skippedPrograms;
+
+    public SimulationEngine(WorldParams params) {
+        this(new GameWorld(params));
+        world.initialize();
+    }
+
+    public SimulationEngine(GameWorld world) {
+        this.world = world;
+    }
+
+    public void step() {
+        final long start = System.nanoTime();
+        world.step();
+        final long nanos = System.nanoTime() - start;
+        stepNanos += nanos;
+        maxStepNanos = Math.max(maxStepNanos, nanos);
+        ++turnsDone;
+        outOfGasPrograms += world.statistic.getOutOfGasPrograms();
+        skippedPrograms += world.statistic.getSkippedPrograms();
+    }
+
+    public void run(int turns) {
+        run(turns, 0, null);
+    }
+
+    /**
+     * @param turns Count of turns to step
+     * @param reportInterval Listener is invoked after every reportInterval turns, 0 means never
+     * @param listener May be null
+     */
+    public void run(int turns, int reportInterval, TurnListener listener) {
+        log.info("Run " + turns + " turns from turn " + world.getTurn());
+        for (int i = 1; i <= turns; ++i) {
+            step();
+            if (listener != null && reportInterval > 0 && i % reportInterval == 0) {
+                listener.onTurn(this);
+            }
+        }
+        log.info("Finished at turn " + world.getTurn() + ", " + getTurnsPerSecond() + " turns/sec");
+        final GenomeProgramCache programCache = world.interpreter().getProgramCache();
+        if (programCache.isEnabled()) {
+            log.info("Program cache: " + programCache.getSize() + " programs, " + programCache.getHits() + " hits, "
+                    + programCache.getMisses() + " misses, " + programCache.getEvictions() + " evicted");
+        }
+        log.info("Longest turn " + maxStepNanos / 1_000_000 + " ms, " + outOfGasPrograms + " programs out of gas, "
+                + skippedPrograms + " programs skipped by turn budget");
+        final GenomeArena arena = world.botStore.getGenomeArena();
+        log.info("Genome arena: " + arena.getLiveBytes() / 1024 + " KB live, " + arena.getGarbageBytes() / 1024
+                + " KB garbage, " + arena.getChunkCount() + " chunks, " + arena.getCompactions() + " compactions");
+        if (AbstractFactory.getInstance().configManager().getBoolean("statistic.export")) {
+            final StatisticRecorder recorder = world.getRecorder();
+            try {
+                log.info("Statistic is exported to " + recorder.exportCsv().file().getAbsolutePath()
+                        + " and " + recorder.exportBinary().file().getAbsolutePath());
+            } catch (IOException e) {
+                log.warn("Statistic is not exported: " + e);
+            }
+        }
+        if (GenomeProfiler.isEnabled()) {
+            try {
+                log.info("Genome profile is exported to " + GenomeProfiler.export().file().getAbsolutePath());
+            } catch (IOException e) {
+                log.warn("Genome profile is not exported: " + e);
+            }
+        }
+    }
+
+    public GameWorld getWorld() {
+        return world;
+    }
+
+    public long getTurnsDone() {
+        return turnsDone;
+    }
+
+    public float getTurnsPerSecond() {
+        return stepNanos > 0 ? turnsDone * 1_000_000_000f / stepNanos : 0f;
+    }
+
+    @FunctionalInterface
+    public interface TurnListener {
+        void onTurn(SimulationEngine engine);
+    }
+}
@@ -0,0 +1,347 @@
+package com.gordonfromblumberg.games.core.evocell.world;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.gordonfromblumberg.games.core.common.factory.AbstractFactory;
+import com.gordonfromblumberg.games.core.common.utils.Paths;
+
+import java.io.*;
+
+/**
+ * Keeps history of {@link WorldStatistic} for charts and export. Memory doesn't depend on length of the run.
+ * <p>
+ * Last turns are kept at full resolution in a ring buffer of statistic.recentSize turns.
+ * Whole history is kept in statistic.historySize buckets with minimum and maximum of each metric,
+ * a bucket covers the same count of turns. When all buckets are full, neighbour buckets are merged,
+ * so half of them become free and every bucket covers twice more turns.
+ * Nothing is allocated while turns are recorded.
+ */
+public class StatisticRecorder {
+    private static final int MAGIC = 0x45435354;
+    private static final int VERSION = 1;
+
+    private final int recentSize;
+    private final int historySize;
+    private final long[][] recent;
+    // index of the oldest recent turn and count of recent turns
+    private int recentStart;
+    private int recentCount;
+    private final long[][] mins;
+    private final long[][] maxs;
+    private int firstTurn;
+    private int lastTurn;
+    private int bucketTurns = 1;
+    // count of complete buckets and turns recorded to the next one
+    private int bucketCount;
+    private int bucketFill;
+
+    /**
+     * @param recentSize Count of last turns kept at full resolution
+     * @param historySize Count of buckets of whole history, should be even
+     */
+    public StatisticRecorder(int recentSize, int historySize) {
+        if (recentSize <= 0)
+            throw new IllegalArgumentException("recentSize should be > 0, but = " + recentSize);
+        if (historySize < 2 || historySize % 2 != 0)
+            throw new IllegalArgumentException("historySize should be even and >= 2, but = " + historySize);
+
+        final int metrics = Metric.values().length;
+        this.recentSize = recentSize;
+        this.historySize = historySize;
+        this.recent = new long[metrics][recentSize];
+        this.mins = new long[metrics][historySize];
+        this.maxs = new long[metrics][historySize];
+    }
+
+    /**
+     * Records statistic of the turn, turns should be recorded one after another
+     */
+    public void record(int turn, WorldStatistic statistic) {
+        if (isEmpty()) {
+            firstTurn = turn;
+        }
+        lastTurn = turn;
+
+        final int recentIndex;
+        if (recentCount < recentSize) {
+            recentIndex = (recentStart + recentCount++) % recentSize;
+        } else {
+            recentIndex = recentStart;
+            recentStart = (recentStart + 1) % recentSize;
+        }
+        final int bucket = bucketCount;
+        final boolean newBucket = bucketFill == 0;
+        final Metric[] metrics = Metric.values;
+        for (int m = 0; m < metrics.length; ++m) {
+            final long value = metrics[m].value(statistic);
+            recent[m][recentIndex] = value;
+            if (newBucket || value < mins[m][bucket])
+                mins[m][bucket] = value;
+            if (newBucket || value > maxs[m][bucket])
+                maxs[m][bucket] = value;
+        }
+
+        if (++bucketFill == bucketTurns) {
+            bucketFill = 0;
+            if (++bucketCount == historySize) {
+                mergeBuckets();
+            }
+        }
+    }
+
+    private void mergeBuckets() {
+        final int half = historySize / 2;
+        for (int m = 0; m < mins.length; ++m) {
+            final long[] min = mins[m];
+            final long[] max = maxs[m];
+            for (int i = 0; i < half; ++i) {
+                min[i] = Math.min(min[2 * i], min[2 * i + 1]);
+                max[i] = Math.max(max[2 * i], max[2 * i + 1]);
+            }
+        }
+        bucketCount = half;
+        bucketTurns *= 2;
+    }
+
+    public void clear() {
+        recentStart = recentCount = 0;
+        bucketCount = bucketFill = 0;
+        bucketTurns = 1;
+        firstTurn = lastTurn = 0;
+    }
+
+    public boolean isEmpty() {
+        return bucketCount == 0 && bucketFill == 0;
+    }
+
+    public int getRecentCount() {
+        return recentCount;
+    }
+
+    public int getRecentFirstTurn() {
+        return lastTurn - recentCount + 1;
+    }
+
+    /**
+     * @param index 0 for the oldest recent turn
+     */
+    public long getRecent(Metric metric, int index) {
+        return recent[metric.ordinal()][(recentStart + index) % recentSize];
+    }
+
+    /**
+     * @return Count of buckets including the last one which may cover less turns than others
+     */
+    public int getBucketCount() {
+        return bucketFill > 0 ? bucketCount + 1 : bucketCount;
+    }
+
+    /**
+     * @return Count of turns covered by a bucket
+     */
+    public int getBucketTurns() {
+        return bucketTurns;
+    }
+
+    public int getFirstTurn() {
+        return firstTurn;
+    }
+
+    public int getLastTurn() {
+        return lastTurn;
+    }
+
+    public long getMin(Metric metric, int bucket) {
+        return mins[metric.ordinal()][bucket];
+    }
+
+    public long getMax(Metric metric, int bucket) {
+        return maxs[metric.ordinal()][bucket];
+    }
+
+    /**
+     * Writes buckets of whole history as CSV, first turn of bucket, its turn count, minimum and maximum of each metric
+     */
+    public void writeCsv(Writer writer) throws IOException {
+        writer.write("turn,turns");
+        for (Metric metric : Metric.values) {
+            writer.write("," + metric.title + " min," + metric.title + " max");
+        }
+        writer.write('\n');
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0, n = getBucketCount(); i < n; ++i) {
+            final int turn = firstTurn + i * bucketTurns;
+            sb.setLength(0);
+            sb.append(turn).append(',').append(Math.min(bucketTurns, lastTurn - turn + 1));
+            for (Metric metric : Metric.values) {
+                sb.append(',').append(getMin(metric, i)).append(',').append(getMax(metric, i));
+            }
+            writer.write(sb.append('\n').toString());
+        }
+    }
+
+    /**
+     * Writes buckets of whole history in binary format: header with names of metrics and turns,
+     * then for each metric minimums as zigzag varint deltas from the previous bucket
+     * and maximums as varint differences from minimums of the same bucket
+     */
+    public void writeBinary(OutputStream out) throws IOException {
+        final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeByte(Metric.values.length);
+        for (Metric metric : Metric.values) {
+            data.writeUTF(metric.title);
+        }
+        data.writeInt(firstTurn);
+        data.writeInt(lastTurn);
+        data.writeInt(bucketTurns);
+        final int n = getBucketCount();
+        data.writeInt(n);
+        for (Metric metric : Metric.values) {
+            long previous = 0;
+            for (int i = 0; i < n; ++i) {
+                final long min = getMin(metric, i);
+                writeVarLong(data, zigzag(min - previous));
+                writeVarLong(data, getMax(metric, i) - min);
+                previous = min;
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads history written by {@link #writeBinary(OutputStream)}, recent turns are not restored.
+     * Metrics are matched by names, unknown metrics are skipped
+     */
+    public static StatisticRecorder readBinary(InputStream in) throws IOException {
+        final DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC)
+            throw new IOException("Not a statistic file");
+        final int version = data.readByte();
+        if (version != VERSION)
+            throw new IOException("Unsupported version of statistic file " + version);
+
+        final Metric[] metrics = new Metric[data.readByte()];
+        for (int m = 0; m < metrics.length; ++m) {
+            final String title = data.readUTF();
+            for (Metric metric : Metric.values) {
+                if (metric.title.equals(title)) {
+                    metrics[m] = metric;
+                }
+            }
+        }
+        final int firstTurn = data.readInt();
+        final int lastTurn = data.readInt();
+        final int bucketTurns = data.readInt();
+        final int n = data.readInt();
+        final StatisticRecorder recorder = new StatisticRecorder(1, Math.max(2, (n + 2) & ~1));
+        for (Metric metric : metrics) {
+            long min = 0;
+            for (int i = 0; i < n; ++i) {
+                min += unzigzag(readVarLong(data));
+                final long max = min + readVarLong(data);
+                if (metric != null) {
+                    recorder.mins[metric.ordinal()][i] = min;
+                    recorder.maxs[metric.ordinal()][i] = max;
+                }
+            }
+        }
+        recorder.firstTurn = firstTurn;
+        recorder.lastTurn = lastTurn;
+        recorder.bucketTurns = bucketTurns;
+        if (n > 0) {
+            final int lastFill = (lastTurn - firstTurn + 1) - (n - 1) * bucketTurns;
+            recorder.bucketCount = lastFill == bucketTurns ? n : n - 1;
+            recorder.bucketFill = lastFill == bucketTurns ? 0 : lastFill;
+        }
+        return recorder;
+    }
+
+    /**
+     * Writes history as CSV to statistic.csvFile in work dir
+     * @return Written file
+     */
+    public FileHandle exportCsv() throws IOException {
+        final FileHandle file = file("statistic.csvFile");
+        try (Writer writer = file.writer(false, "UTF-8")) {
+            writeCsv(writer);
+        }
+        return file;
+    }
+
+    /**
+     * Writes history in binary format to statistic.binaryFile in work dir
+     * @return Written file
+     */
+    public FileHandle exportBinary() throws IOException {
+        final FileHandle file = file("statistic.binaryFile");
+        try (OutputStream out = file.write(false)) {
+            writeBinary(out);
+        }
+        return file;
+    }
+
+    private static FileHandle file(String property) {
+        final String fileName = AbstractFactory.getInstance().configManager().getString(property);
+        final String workDir = Paths.workDirPath();
+        return workDir != null ? Gdx.files.absolute(workDir).child(fileName) : Gdx.files.local(fileName);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    public enum Metric {
+        BOTS("bots"),
+        ENERGY("energy"),
+        ORGANICS("organics"),
+        MINERALS("minerals"),
+        GENERATION("generation");
+
+        static final Metric[] values = values();
+
+        public final String title;
+
+        Metric(String title) {
+            this.title = title;
+        }
+
+        /**
+         * @return Value of the metric, resources of the world include resources of bots
+         */
+        long value(WorldStatistic statistic) {
+            return switch (this) {
+                case BOTS -> statistic.botCount;
+                case ENERGY -> statistic.worldEnergy + statistic.totalBotEnergy;
+                case ORGANICS -> statistic.worldOrganics + statistic.totalBotOrganics;
+                case MINERALS -> statistic.worldMinerals + statistic.totalBotMinerals;
+                case GENERATION -> statistic.maxBotGeneration;
+            };
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.gordonfromblumberg.games.core.evocell.world;
+
+import com.gordonfromblumberg.games.core.common.utils.RandomGen;
+import com.gordonfromblumberg.games.core.evocell.model.IntentBuffer;
+
+/**
+ * State owned by a single thread while it steps a part of the world.
+ * Each thread accumulates statistic separately, partial statistics are merged after turn.
+ */
+public class WorkerContext {
+    final WorldStatistic statistic = new WorldStatistic();
+    /** Energy, organics and minerals of cells updated by the thread */
+    final long[] resourceTotals = new long[3];
+    /** Buffer of the tile being updated, intent mode only */
+    IntentBuffer intents;
+    /** Keyed generator of the thread, deterministic mode only */
+    RandomGen random;
+}
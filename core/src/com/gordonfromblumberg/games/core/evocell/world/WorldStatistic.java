@@ -1,24 +1,34 @@
 package com.gordonfromblumberg.games.core.evocell.world;
 
+import com.gordonfromblumberg.games.core.evocell.model.Bot;
+
 public class WorldStatistic {
-    int worldEnergy;
-    int worldOrganics;
-    int worldMinerals;
+    // totals are long, so they don't overflow on big worlds
+    long worldEnergy;
+    long worldOrganics;
+    long worldMinerals;
     int botCount;
     int maxBotCount;
-    int totalBotEnergy;
-    int totalBotOrganics;
-    int totalBotMinerals;
+    long totalBotEnergy;
+    long totalBotOrganics;
+    long totalBotMinerals;
     int currentMaxBotAge;
     int maxBotAge;
-    int maxTotalBotEnergy;
-    int maxTotalBotOrganics;
+    long maxTotalBotEnergy;
+    long maxTotalBotOrganics;
     int maxBotOrganics;
-    int maxTotalBotMinerals;
+    long maxTotalBotMinerals;
     int maxBotMinerals;
     int maxBotGeneration;
+    /** Genome programs stopped because the bot spent interpreter.gasLimit */
+    int outOfGasPrograms;
+    /** Genome programs not run because the turn exceeded world.turnBudget */
+    int skippedPrograms;
 
     void resetForNewTurn() {
+        worldEnergy = 0;
+        worldOrganics = 0;
+        worldMinerals = 0;
         totalBotEnergy = 0;
         totalBotOrganics = 0;
         totalBotMinerals = 0;
@@ -27,6 +37,46 @@ public class WorldStatistic {
         maxBotOrganics = 0;
         maxBotMinerals = 0;
         maxBotGeneration = 0;
+        outOfGasPrograms = 0;
+        skippedPrograms = 0;
+    }
+
+    void addBot(Bot bot) {
+        ++botCount;
+        totalBotEnergy += bot.getEnergy();
+        totalBotOrganics += bot.getOrganics();
+        totalBotMinerals += bot.getMinerals();
+        if (bot.getAge() > currentMaxBotAge)
+            currentMaxBotAge = bot.getAge();
+        if (bot.getOrganics() > maxBotOrganics)
+            maxBotOrganics = bot.getOrganics();
+        if (bot.getMinerals() > maxBotMinerals)
+            maxBotMinerals = bot.getMinerals();
+        if (bot.getGeneration() > maxBotGeneration)
+            maxBotGeneration = bot.getGeneration();
+    }
+
+    /**
+     * Adds current turn values of partial statistic collected by one of worker threads
+     */
+    void merge(WorldStatistic partial) {
+        worldEnergy += partial.worldEnergy;
+        worldOrganics += partial.worldOrganics;
+        worldMinerals += partial.worldMinerals;
+        botCount += partial.botCount;
+        totalBotEnergy += partial.totalBotEnergy;
+        totalBotOrganics += partial.totalBotOrganics;
+        totalBotMinerals += partial.totalBotMinerals;
+        if (partial.currentMaxBotAge > currentMaxBotAge)
+            currentMaxBotAge = partial.currentMaxBotAge;
+        if (partial.maxBotOrganics > maxBotOrganics)
+            maxBotOrganics = partial.maxBotOrganics;
+        if (partial.maxBotMinerals > maxBotMinerals)
+            maxBotMinerals = partial.maxBotMinerals;
+        if (partial.maxBotGeneration > maxBotGeneration)
+            maxBotGeneration = partial.maxBotGeneration;
+        outOfGasPrograms += partial.outOfGasPrograms;
+        skippedPrograms += partial.skippedPrograms;
     }
 
     void updateMaximums() {
@@ -41,4 +91,36 @@ public class WorldStatistic {
         if (totalBotMinerals > maxTotalBotMinerals)
             maxTotalBotMinerals = totalBotMinerals;
     }
+
+    public long getWorldEnergy() {
+        return worldEnergy;
+    }
+
+    public long getWorldOrganics() {
+        return worldOrganics;
+    }
+
+    public long getWorldMinerals() {
+        return worldMinerals;
+    }
+
+    public int getBotCount() {
+        return botCount;
+    }
+
+    public int getMaxBotCount() {
+        return maxBotCount;
+    }
+
+    public int getMaxBotGeneration() {
+        return maxBotGeneration;
+    }
+
+    public int getOutOfGasPrograms() {
+        return outOfGasPrograms;
+    }
+
+    public int getSkippedPrograms() {
+        return skippedPrograms;
+    }
 }
@@ -0,0 +1,94 @@
+package com.gordonfromblumberg.games.core.common.chunk;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChunkedGridTest {
+    private static final int[] EMPTY = new int[0];
+
+    private final ChunkedGrid<int[]> grid = new ChunkedGrid<>(150, 70, EMPTY, int[][]::new,
+            key -> new int[ChunkedGrid.CHUNK_AREA]);
+
+    @Test
+    void indexKeepsCoordinates() {
+        for (int x = 0; x < 150; ++x) {
+            for (int y = 0; y < 70; ++y) {
+                final int index = grid.index(x, y);
+                assertTrue(index >= 0);
+                assertEquals(x, grid.x(index));
+                assertEquals(y, grid.y(index));
+            }
+        }
+    }
+
+    @Test
+    void neighbourCrossesChunks() {
+        assertEquals(grid.index(64, 10), grid.neighbour(grid.index(63, 10), 1, 0));
+        assertEquals(grid.index(63, 10), grid.neighbour(grid.index(64, 10), -1, 0));
+        assertEquals(grid.index(100, 64), grid.neighbour(grid.index(100, 63), 0, 1));
+        assertEquals(grid.index(100, 63), grid.neighbour(grid.index(100, 64), 0, -1));
+        assertEquals(grid.index(11, 10), grid.neighbour(grid.index(10, 10), 1, 0));
+        assertEquals(-1, grid.neighbour(grid.index(0, 10), -1, 0));
+        assertEquals(-1, grid.neighbour(grid.index(149, 10), 1, 0));
+        assertEquals(-1, grid.neighbour(grid.index(149, 69), 0, 1));
+        assertEquals(-1, grid.neighbour(grid.index(20, 0), 0, -1));
+    }
+
+    @Test
+    void chunkIsCreatedOnWriteAndReleased() {
+        final int index = grid.index(130, 66);
+        final int key = ChunkedGrid.key(index);
+        assertSame(EMPTY, grid.get(index));
+        assertEquals(0, grid.getChunkCount());
+
+        final int[] chunk = grid.getForWrite(index);
+        assertNotSame(EMPTY, chunk);
+        assertSame(chunk, grid.get(index));
+        assertSame(chunk, grid.getForWrite(grid.index(128, 64)));
+        assertEquals(1, grid.getChunkCount());
+        assertEquals(22, grid.getChunkWidth(key));
+        assertEquals(6, grid.getChunkHeight(key));
+        assertEquals(128, grid.getOriginX(key));
+        assertEquals(64, grid.getOriginY(key));
+
+        grid.release(key);
+        assertSame(EMPTY, grid.get(index));
+        assertEquals(0, grid.getChunkCount());
+    }
+
+    @Test
+    void chunkIsReleasedToSettledPlaceholder() {
+        final int[] settled = new int[ChunkedGrid.CHUNK_AREA];
+        final ChunkedGrid<int[]> grid = new ChunkedGrid<>(150, 70, EMPTY, settled, int[][]::new,
+                key -> new int[ChunkedGrid.CHUNK_AREA]);
+        final int index = grid.index(10, 10);
+        final int key = ChunkedGrid.key(index);
+        grid.getForWrite(index);
+
+        grid.release(key, settled);
+        assertSame(settled, grid.get(index));
+        assertFalse(grid.isCreated(key));
+        assertEquals(0, grid.getChunkCount());
+
+        final int[] chunk = grid.getForWrite(index);
+        assertNotSame(settled, chunk);
+        assertTrue(grid.isCreated(key));
+        assertEquals(1, grid.getChunkCount());
+
+        assertThrows(IllegalArgumentException.class, () -> grid.release(key, new int[0]));
+        assertThrows(IllegalArgumentException.class, () -> this.grid.release(key, settled));
+    }
+
+    @Test
+    void factoryMustNotReturnPlaceholder() {
+        final ChunkedGrid<int[]> grid = new ChunkedGrid<>(10, 10, EMPTY, int[][]::new, key -> EMPTY);
+        assertThrows(IllegalStateException.class, () -> grid.getForWrite(0));
+    }
+
+    @Test
+    void tooLargeGridIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ChunkedGrid<>(100_000, 100_000, EMPTY, int[][]::new, key -> EMPTY));
+    }
+}
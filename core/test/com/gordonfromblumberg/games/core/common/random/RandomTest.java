@@ -1,8 +1,13 @@
 package com.gordonfromblumberg.games.core.common.random;
 
+import com.gordonfromblumberg.games.core.common.utils.KeyedRandomGen;
 import com.gordonfromblumberg.games.core.common.utils.RandomGen;
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -28,4 +33,71 @@ public class RandomTest {
             System.out.println(e.getKey() + ":\t" + e.getValue());
         }
     }
+
+    @Test
+    void binomialMean() {
+        final int samples = 20000;
+        for (int n : new int[] {5, 40, 1000}) {
+            long sum = 0;
+            for (int i = 0; i < samples; ++i) {
+                final int count = RandomGen.INSTANCE.nextBinomial(n, 0.2f);
+                assertTrue(count >= 0 && count <= n);
+                sum += count;
+            }
+            assertEquals(n * 0.2, (double) sum / samples, n * 0.01 + 0.05);
+        }
+    }
+
+    @Test
+    void geometricMean() {
+        final int samples = 20000;
+        long sum = 0;
+        for (int i = 0; i < samples; ++i) {
+            sum += RandomGen.INSTANCE.nextGeometric(0.2f);
+        }
+        assertEquals(4.0, (double) sum / samples, 0.2);
+    }
+
+    @Test
+    void streamsDependOnSeedAndIndex() {
+        RandomGen.setSeed(42);
+        final long first = RandomGen.stream(3).nextLong();
+        final long other = RandomGen.stream(4).nextLong();
+        RandomGen.INSTANCE.nextLong();
+        assertEquals(first, RandomGen.stream(3).nextLong());
+        assertNotEquals(first, other);
+    }
+
+    @Test
+    void nextBytesFillsRange() {
+        final byte[] bytes = new byte[21];
+        new RandomGen(7).nextBytes(bytes, 2, 19);
+        assertEquals(0, bytes[0]);
+        assertEquals(0, bytes[20]);
+        int nonZero = 0;
+        for (int i = 2; i < 19; ++i) {
+            if (bytes[i] != 0) {
+                ++nonZero;
+            }
+        }
+        assertTrue(nonZero > 10);
+    }
+
+    @Test
+    void keyedDrawsDependOnlyOnKey() {
+        final KeyedRandomGen rand = new KeyedRandomGen(42);
+        rand.setKey(10, 5, 1);
+        final long first = rand.nextLong();
+        final int second = rand.nextInt(1000);
+
+        final KeyedRandomGen other = new KeyedRandomGen(42);
+        other.setKey(10, 6, 1);
+        other.nextLong();
+        other.setKey(10, 5, 1);
+        assertEquals(first, other.nextLong());
+        assertEquals(second, other.nextInt(1000));
+
+        other.setKey(10, 5, 2);
+        assertNotEquals(first, other.nextLong());
+    }
 }
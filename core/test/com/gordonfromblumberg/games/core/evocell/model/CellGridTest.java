@@ -0,0 +1,313 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+import com.gordonfromblumberg.games.core.common.factory.AbstractFactory;
+import com.gordonfromblumberg.games.core.common.factory.TestFactory;
+import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
+import com.gordonfromblumberg.games.core.common.utils.KeyedRandomGen;
+import com.gordonfromblumberg.games.core.common.utils.RandomGen;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class CellGridTest {
+
+    @BeforeAll
+    static void init() {
+        TestFactory.init();
+        ConfigManager config = AbstractFactory.getInstance().configManager();
+        config.setFloat("cell.mineralsIncreasing", 0.2f);
+        config.setBoolean("cell.vectorKernels", false);
+    }
+
+    @Test
+    void releasedChunkIsCaughtUpFromRelease() {
+        int[] humidity = {0};
+        CellGrid grid = new CellGrid(1, 1, 1, constant(25), constant(20), new EnvironmentField.Source() {
+            @Override
+            public int get(int x, int y, int turn) {
+                return humidity[0];
+            }
+        });
+        int cell = grid.index(0, 0);
+        grid.updateEnvironment(0);
+        grid.setOrganics(cell, 2);
+        // organics decay at turn 2, 51 turns is the period of minerals increasing with light 25
+        grid.catchUp(cell, 51);
+        grid.setMinerals(cell, 0);
+        Assertions.assertEquals(1, grid.releaseEmptyChunks());
+        Assertions.assertFalse(grid.isCreated(cell));
+
+        humidity[0] = 11;
+        grid.updateEnvironment(52);
+        grid.catchUp(cell, 54);
+
+        // 3 turns since release: water converges to 11 by 1 in 1 turn, then by 1 in 2 turns
+        Assertions.assertTrue(grid.isCreated(cell));
+        Assertions.assertEquals(2, grid.getWater(cell));
+    }
+
+    @Test
+    void settledChunkIsReleasedAndRebuilt() {
+        CellGrid grid = new CellGrid(70, 3, 1, constant(10), constant(20), constant(3));
+        grid.updateEnvironment(0);
+        for (int x = 0; x < 70; ++x) {
+            for (int y = 0; y < 3; ++y) {
+                grid.setMinerals(grid.index(x, y), 200);
+                grid.setWater(grid.index(x, y), 3);
+            }
+        }
+        int cell = grid.index(5, 1);
+        grid.setMinerals(grid.index(66, 2), 150);
+        Assertions.assertEquals(2, grid.getCreatedChunkCount());
+
+        Assertions.assertEquals(1, grid.releaseEmptyChunks());
+        Assertions.assertFalse(grid.isCreated(cell));
+        Assertions.assertEquals(200, grid.getMinerals(cell));
+        Assertions.assertEquals(3, grid.getWater(cell));
+        long[] totals = new long[3];
+        grid.sumCreatedChunks(totals);
+        Assertions.assertEquals(200 * 64 * 3 + 200 * 6 * 3 - 50, totals[2]);
+
+        grid.catchUp(cell, 1000);
+        Assertions.assertFalse(grid.isCreated(cell));
+
+        grid.setMinerals(cell, 0);
+        Assertions.assertTrue(grid.isCreated(cell));
+        Assertions.assertEquals(0, grid.getMinerals(cell));
+        Assertions.assertEquals(200, grid.getMinerals(grid.index(6, 1)));
+        Assertions.assertEquals(3, grid.getWater(cell));
+    }
+
+    @Test
+    void catchUpIsEquivalentToSteppingInDistribution() {
+        final int size = 64, turns = 300, seeds = 12;
+        final int[] resources = new int[4];
+        double eagerSum = 0, lazySum = 0, eagerSquares = 0, lazySquares = 0;
+        int samples = 0;
+        for (int seed = 1; seed <= seeds; ++seed) {
+            RandomGen.setSeed(seed);
+            CellGrid eager = createGrid(size);
+            CellGrid lazy = createGrid(size);
+            for (int turn = 1; turn <= turns; ++turn) {
+                eager.updateEnvironment(turn);
+                eager.snapshotMinerals();
+                for (int y = 0; y < size; ++y) {
+                    eager.updateResources(y, 0, size);
+                }
+            }
+            for (int cell = 0; cell < size * size; ++cell) {
+                lazy.project(cell, turns, resources);
+                lazy.catchUp(cell, turns);
+                Assertions.assertEquals(eager.getEnergy(cell), lazy.getEnergy(cell));
+                Assertions.assertEquals(eager.getOrganics(cell), lazy.getOrganics(cell));
+                Assertions.assertEquals(eager.getWater(cell), lazy.getWater(cell));
+                Assertions.assertEquals(resources[0], lazy.getEnergy(cell));
+                Assertions.assertEquals(resources[1], lazy.getOrganics(cell));
+                Assertions.assertEquals(resources[3], lazy.getWater(cell));
+
+                // deviations from the projected expectation should have the same mean and variance
+                double eagerDeviation = eager.getMinerals(cell) - resources[2];
+                double lazyDeviation = lazy.getMinerals(cell) - resources[2];
+                eagerSum += eagerDeviation;
+                lazySum += lazyDeviation;
+                eagerSquares += eagerDeviation * eagerDeviation;
+                lazySquares += lazyDeviation * lazyDeviation;
+                ++samples;
+            }
+        }
+
+        double eagerMean = eagerSum / samples, lazyMean = lazySum / samples;
+        double eagerVariance = eagerSquares / samples - eagerMean * eagerMean;
+        double lazyVariance = lazySquares / samples - lazyMean * lazyMean;
+        double meanError = 4 * Math.sqrt((eagerVariance + lazyVariance) / samples);
+        Assertions.assertEquals(eagerMean, lazyMean, meanError);
+        Assertions.assertEquals(eagerVariance, lazyVariance, 0.1 * eagerVariance);
+    }
+
+    @Test
+    void mineralsIncreasingDoesntDependOnRowOrder() {
+        // minerals increase every turn without light, a cell next to minerals increases them 5 times more often
+        CellGrid upward = new CellGrid(64, 64, 1, constant(0), constant(20), constant(7));
+        CellGrid downward = new CellGrid(64, 64, 1, constant(0), constant(20), constant(7));
+        RandomGen.setCurrent(new KeyedRandomGen(5));
+        try {
+            for (int turn = 0; turn <= 8; ++turn) {
+                upward.updateEnvironment(turn);
+                downward.updateEnvironment(turn);
+                upward.snapshotMinerals();
+                downward.snapshotMinerals();
+                for (int y = 0; y < 64; ++y) {
+                    upward.updateResources(y, 0, 64);
+                    downward.updateResources(63 - y, 0, 64);
+                }
+            }
+        } finally {
+            RandomGen.setCurrent(null);
+        }
+
+        int withMinerals = 0;
+        for (int cell = 0; cell < 64 * 64; ++cell) {
+            Assertions.assertEquals(upward.getMinerals(cell), downward.getMinerals(cell));
+            if (upward.getMinerals(cell) > 0) {
+                ++withMinerals;
+            }
+        }
+        Assertions.assertTrue(withMinerals > 64 * 64 / 8 && withMinerals < 64 * 64 * 7 / 8);
+    }
+
+    @Test
+    void projectionDoesNotChangeGrid() {
+        CellGrid grid = createGrid(70);
+        int created = grid.index(3, 4);
+        int notCreated = grid.index(66, 66);
+        int[] first = new int[4], second = new int[4];
+
+        RandomGen.setSeed(3);
+        grid.project(created, 500, first);
+        grid.project(notCreated, 500, second);
+        int next = RandomGen.current().nextInt(1000);
+        RandomGen.setSeed(3);
+        Assertions.assertEquals(next, RandomGen.current().nextInt(1000));
+        Assertions.assertFalse(grid.isCreated(notCreated));
+        Assertions.assertTrue(second[2] > 0);
+
+        grid.project(created, 500, second);
+        Assertions.assertArrayEquals(first, second);
+        Assertions.assertNotEquals(first[1], grid.getOrganics(created));
+
+        grid.catchUp(created, 500);
+        Assertions.assertEquals(first[0], grid.getEnergy(created));
+        Assertions.assertEquals(first[1], grid.getOrganics(created));
+        Assertions.assertEquals(first[3], grid.getWater(created));
+    }
+
+    @Test
+    void cellAccessorsReadAndWriteColumnsOfTheCell() {
+        CellGrid grid = new CellGrid(70, 70, 1, new EnvironmentField.Source() {
+            @Override
+            public int get(int x, int y, int turn) {
+                return x;
+            }
+
+            @Override
+            public boolean isStatic() {
+                return true;
+            }
+        }, new EnvironmentField.Source() {
+            @Override
+            public int get(int x, int y, int turn) {
+                return y;
+            }
+
+            @Override
+            public boolean isStatic() {
+                return true;
+            }
+        }, constant(7));
+        grid.updateEnvironment(0);
+
+        // environment of cells of not created chunks is read from sources
+        Cell notCreated = grid.getCell(66, 3);
+        Assertions.assertFalse(grid.isCreated(notCreated.getIndex()));
+        Assertions.assertEquals(66, notCreated.getSunLight());
+        Assertions.assertEquals(3, notCreated.getTemperature());
+        Assertions.assertEquals(7, notCreated.getHumidity());
+
+        // every cell of full and partial chunks gets own values, so aliased columns would be found
+        for (int x = 0; x < 70; ++x) {
+            for (int y = 0; y < 70; ++y) {
+                Cell cell = grid.getCell(x, y);
+                int i = cell.getIndex();
+                cell.setOrganics(1000 + i);
+                cell.setMinerals(20000 + i);
+                cell.setWater(30000 + i);
+                grid.addEnergy(i, 1 + i);
+            }
+        }
+        for (int x = 0; x < 70; ++x) {
+            for (int y = 0; y < 70; ++y) {
+                int i = grid.index(x, y);
+                Cell cell = grid.getCell(i);
+                Assertions.assertEquals(x, cell.getX());
+                Assertions.assertEquals(y, cell.getY());
+                Assertions.assertEquals(x, cell.getSunLight());
+                Assertions.assertEquals(y, cell.getTemperature());
+                Assertions.assertEquals(7, cell.getHumidity());
+                Assertions.assertEquals(1000 + i, grid.getOrganics(i));
+                Assertions.assertEquals(20000 + i, grid.getMinerals(i));
+                Assertions.assertEquals(30000 + i, grid.getWater(i));
+                Assertions.assertEquals(1 + i, cell.getEnergy());
+                Assertions.assertNull(cell.getBot());
+            }
+        }
+
+        Cell cell = grid.getCell(5, 5);
+        Assertions.assertEquals(grid.getCell(5, 5), cell);
+        Assertions.assertEquals(grid.getCell(5, 5).hashCode(), cell.hashCode());
+        Assertions.assertNotEquals(grid.getCell(5, 6), cell);
+        for (Direction dir : Direction.ALL) {
+            Cell neighbour = grid.getCell(cell, dir);
+            Assertions.assertEquals(5 + dir.x, neighbour.getX());
+            Assertions.assertEquals(5 + dir.y, neighbour.getY());
+            Assertions.assertEquals(grid.neighbour(cell.getIndex(), dir), neighbour.getIndex());
+        }
+    }
+
+    /**
+     * Grid with various environment and resources, the checkerboard of the left half has cells without minerals
+     * surrounded by full ones, so first increasing of minerals doesn't depend on order of catching up
+     */
+    private static CellGrid createGrid(int size) {
+        CellGrid grid = new CellGrid(size, size, 1, new EnvironmentField.Source() {
+            @Override
+            public int get(int x, int y, int turn) {
+                return x % 8;
+            }
+
+            @Override
+            public boolean isStatic() {
+                return true;
+            }
+        }, new EnvironmentField.Source() {
+            @Override
+            public int get(int x, int y, int turn) {
+                return y % 30 - 5;
+            }
+
+            @Override
+            public boolean isStatic() {
+                return true;
+            }
+        }, constant(7));
+        grid.updateEnvironment(0);
+        for (int x = 0; x < Math.min(size, 64); ++x) {
+            for (int y = 0; y < Math.min(size, 64); ++y) {
+                int cell = grid.index(x, y);
+                if (x < 32) {
+                    grid.setMinerals(cell, (x + y) % 2 == 0 ? 0 : 200);
+                } else {
+                    grid.setMinerals(cell, 1 + x * y % 50);
+                }
+                grid.setOrganics(cell, (x * 7 + y * 3) % 20);
+                if ((x + y) % 3 == 0) {
+                    grid.addEnergy(cell, 10 + x);
+                }
+            }
+        }
+        return grid;
+    }
+
+    private static EnvironmentField.Source constant(int value) {
+        return new EnvironmentField.Source() {
+            @Override
+            public int get(int x, int y, int turn) {
+                return value;
+            }
+
+            @Override
+            public boolean isStatic() {
+                return true;
+            }
+        };
+    }
+}
@@ -8,6 +8,7 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 public class DNATest {
+    private final GenomeArena arena = new GenomeArena();
 
     @BeforeAll
     static void init() {
@@ -23,119 +24,196 @@ public class DNATest {
 
     @Test
     void setWith0() {
-        DNA dna1 = DNA.getInstance();
-        DNA dna2 = DNA.getInstance();
+        DNA dna1 = DNA.getInstance(arena);
+        DNA dna2 = DNA.getInstance(arena);
 
-        dna2.getGene(0).set(1, 2, 3, 4, 5, 6, 7, 8);
-        dna2.getGene(2).set(8, 7, 6, 5, 4, 3, 2, 1);
+        dna2.setGene(0, 1, 2, 3, 4, 5, 6, 7, 8);
+        dna2.setGene(2, 8, 7, 6, 5, 4, 3, 2, 1);
 
-        Assertions.assertEquals(4, dna1.genes.size);
-        Assertions.assertEquals(4, dna2.genes.size);
+        Assertions.assertEquals(4, dna1.getGeneCount());
+        Assertions.assertEquals(4, dna2.getGeneCount());
 
         dna1.set(dna2);
 
-        Assertions.assertEquals(4, dna1.genes.size);
-        Assertions.assertEquals(4, dna2.genes.size);
+        Assertions.assertEquals(4, dna1.getGeneCount());
+        Assertions.assertEquals(4, dna2.getGeneCount());
 
         for (int i = 0; i < 8; ++i) {
-            Assertions.assertEquals(i + 1, dna2.getGene(0).getValue(i));
-            Assertions.assertEquals(8 - i, dna2.getGene(2).getValue(i));
+            Assertions.assertEquals(i + 1, dna2.getValue(0, i));
+            Assertions.assertEquals(8 - i, dna2.getValue(2, i));
         }
     }
 
     @Test
     void setWithPlus1() {
-        DNA dna1 = DNA.getInstance();
-        DNA dna2 = DNA.getInstance();
+        DNA dna1 = DNA.getInstance(arena);
+        DNA dna2 = DNA.getInstance(arena);
 
-        dna2.getGene(0).set(1, 2, 3, 4, 5, 6, 7, 8);
-        dna2.getGene(2).set(8, 7, 6, 5, 4, 3, 2, 1);
-        dna2.genes.add(Gene.getInstance());
+        dna2.setGene(0, 1, 2, 3, 4, 5, 6, 7, 8);
+        dna2.setGene(2, 8, 7, 6, 5, 4, 3, 2, 1);
+        dna2.setGeneCount(dna2.getGeneCount() + 1);
 
-        Assertions.assertEquals(4, dna1.genes.size);
-        Assertions.assertEquals(5, dna2.genes.size);
+        Assertions.assertEquals(4, dna1.getGeneCount());
+        Assertions.assertEquals(5, dna2.getGeneCount());
 
         dna1.set(dna2);
 
-        Assertions.assertEquals(5, dna1.genes.size);
-        Assertions.assertEquals(5, dna2.genes.size);
+        Assertions.assertEquals(5, dna1.getGeneCount());
+        Assertions.assertEquals(5, dna2.getGeneCount());
 
         for (int i = 0; i < 8; ++i) {
-            Assertions.assertEquals(i + 1, dna2.getGene(0).getValue(i));
-            Assertions.assertEquals(8 - i, dna2.getGene(2).getValue(i));
+            Assertions.assertEquals(i + 1, dna2.getValue(0, i));
+            Assertions.assertEquals(8 - i, dna2.getValue(2, i));
         }
     }
 
     @Test
     void setWithPlus3() {
-        DNA dna1 = DNA.getInstance();
-        DNA dna2 = DNA.getInstance();
+        DNA dna1 = DNA.getInstance(arena);
+        DNA dna2 = DNA.getInstance(arena);
 
-        dna2.getGene(0).set(1, 2, 3, 4, 5, 6, 7, 8);
-        dna2.getGene(2).set(8, 7, 6, 5, 4, 3, 2, 1);
-        dna2.genes.add(Gene.getInstance());
-        dna2.genes.add(Gene.getInstance());
-        dna2.genes.add(Gene.getInstance());
+        dna2.setGene(0, 1, 2, 3, 4, 5, 6, 7, 8);
+        dna2.setGene(2, 8, 7, 6, 5, 4, 3, 2, 1);
+        dna2.setGeneCount(dna2.getGeneCount() + 3);
 
-        Assertions.assertEquals(4, dna1.genes.size);
-        Assertions.assertEquals(7, dna2.genes.size);
+        Assertions.assertEquals(4, dna1.getGeneCount());
+        Assertions.assertEquals(7, dna2.getGeneCount());
 
         dna1.set(dna2);
 
-        Assertions.assertEquals(7, dna1.genes.size);
-        Assertions.assertEquals(7, dna2.genes.size);
+        Assertions.assertEquals(7, dna1.getGeneCount());
+        Assertions.assertEquals(7, dna2.getGeneCount());
 
         for (int i = 0; i < 8; ++i) {
-            Assertions.assertEquals(i + 1, dna2.getGene(0).getValue(i));
-            Assertions.assertEquals(8 - i, dna2.getGene(2).getValue(i));
+            Assertions.assertEquals(i + 1, dna2.getValue(0, i));
+            Assertions.assertEquals(8 - i, dna2.getValue(2, i));
         }
     }
 
     @Test
     void setWithMinus1() {
-        DNA dna1 = DNA.getInstance();
-        DNA dna2 = DNA.getInstance();
+        DNA dna1 = DNA.getInstance(arena);
+        DNA dna2 = DNA.getInstance(arena);
 
-        dna2.getGene(0).set(1, 2, 3, 4, 5, 6, 7, 8);
-        dna2.getGene(2).set(8, 7, 6, 5, 4, 3, 2, 1);
-        dna1.genes.add(Gene.getInstance());
+        dna2.setGene(0, 1, 2, 3, 4, 5, 6, 7, 8);
+        dna2.setGene(2, 8, 7, 6, 5, 4, 3, 2, 1);
+        dna1.setGeneCount(dna1.getGeneCount() + 1);
 
-        Assertions.assertEquals(5, dna1.genes.size);
-        Assertions.assertEquals(4, dna2.genes.size);
+        Assertions.assertEquals(5, dna1.getGeneCount());
+        Assertions.assertEquals(4, dna2.getGeneCount());
 
         dna1.set(dna2);
 
-        Assertions.assertEquals(4, dna1.genes.size);
-        Assertions.assertEquals(4, dna2.genes.size);
+        Assertions.assertEquals(4, dna1.getGeneCount());
+        Assertions.assertEquals(4, dna2.getGeneCount());
 
         for (int i = 0; i < 8; ++i) {
-            Assertions.assertEquals(i + 1, dna2.getGene(0).getValue(i));
-            Assertions.assertEquals(8 - i, dna2.getGene(2).getValue(i));
+            Assertions.assertEquals(i + 1, dna2.getValue(0, i));
+            Assertions.assertEquals(8 - i, dna2.getValue(2, i));
         }
     }
 
     @Test
     void setWithMinus3() {
-        DNA dna1 = DNA.getInstance();
-        DNA dna2 = DNA.getInstance();
+        DNA dna1 = DNA.getInstance(arena);
+        DNA dna2 = DNA.getInstance(arena);
 
-        dna2.getGene(0).set(1, 2, 3, 4, 5, 6, 7, 8);
-        dna2.getGene(2).set(8, 7, 6, 5, 4, 3, 2, 1);
-        dna1.genes.add(Gene.getInstance());
-        dna1.genes.add(Gene.getInstance());
-        dna1.genes.add(Gene.getInstance());
+        dna2.setGene(0, 1, 2, 3, 4, 5, 6, 7, 8);
+        dna2.setGene(2, 8, 7, 6, 5, 4, 3, 2, 1);
+        dna1.setGeneCount(dna1.getGeneCount() + 3);
 
-        Assertions.assertEquals(7, dna1.genes.size);
-        Assertions.assertEquals(4, dna2.genes.size);
+        Assertions.assertEquals(7, dna1.getGeneCount());
+        Assertions.assertEquals(4, dna2.getGeneCount());
 
         dna1.set(dna2);
 
-        Assertions.assertEquals(4, dna1.genes.size);
-        Assertions.assertEquals(4, dna2.genes.size);
+        Assertions.assertEquals(4, dna1.getGeneCount());
+        Assertions.assertEquals(4, dna2.getGeneCount());
 
         for (int i = 0; i < 8; ++i) {
-            Assertions.assertEquals(i + 1, dna2.getGene(0).getValue(i));
-            Assertions.assertEquals(8 - i, dna2.getGene(2).getValue(i));
+            Assertions.assertEquals(i + 1, dna2.getValue(0, i));
+            Assertions.assertEquals(8 - i, dna2.getValue(2, i));
+        }
+    }
+
+    @Test
+    void sharedIsCopiedOnWrite() {
+        DNA parent = DNA.getInstance(arena);
+        parent.setGene(1, 1, 2, 3, 4, 5, 6, 7, 8);
+
+        DNA child = parent.share().toPrivate();
+        Assertions.assertNotSame(parent, child);
+        Assertions.assertSame(child, child.toPrivate());
+        child.setGene(1, 8, 7, 6, 5, 4, 3, 2, 1);
+
+        for (int i = 0; i < 8; ++i) {
+            Assertions.assertEquals(i + 1, parent.getValue(1, i));
+            Assertions.assertEquals(8 - i, child.getValue(1, i));
+        }
+    }
+
+    @Test
+    void compactionKeepsGenes() {
+        DNA dna = DNA.getInstance(arena);
+        dna.setGene(3, 1, 2, 3, 4, 5, 6, 7, 8);
+        GenomeArena otherArena = new GenomeArena();
+        DNA other = DNA.getInstance(otherArena);
+        other.setGene(0, 8, 7, 6, 5, 4, 3, 2, 1);
+        DNA.getInstance(otherArena).release();
+
+        // released DNA leaves garbage in the arena
+        for (int i = 0; i < 20_000; ++i) {
+            DNA.getInstance(arena).release();
+        }
+        Assertions.assertEquals(dna.size, arena.getLiveBytes());
+        arena.compact();
+
+        Assertions.assertEquals(1, arena.getCompactions());
+        Assertions.assertEquals(0, arena.getGarbageBytes());
+        Assertions.assertEquals(4, dna.getGeneCount());
+        for (int i = 0; i < 8; ++i) {
+            Assertions.assertEquals(i + 1, dna.getValue(3, i));
+        }
+        Assertions.assertEquals(-1, dna.getValue(0, 0));
+
+        // genomes of another world are not moved
+        Assertions.assertEquals(0, otherArena.getCompactions());
+        Assertions.assertEquals(other.size, otherArena.getLiveBytes());
+        Assertions.assertEquals(other.size, otherArena.getGarbageBytes());
+        for (int i = 0; i < 8; ++i) {
+            Assertions.assertEquals(8 - i, other.getValue(0, i));
+        }
+    }
+
+    @Test
+    void mutationRateIsPerGene() {
+        DNA parent = DNA.getInstance(arena);
+        // the static chance may be loaded from another config, so the chance is passed explicitly
+        float chance = 0.02f;
+        int mutated = 0;
+        int trials = 20_000;
+        for (int i = 0; i < trials; ++i) {
+            DNA child = parent.share().mutate(chance);
+            if (child != parent) {
+                ++mutated;
+            }
+            child.release();
+        }
+
+        // 4 genes, each mutates with the given chance
+        double expected = 1 - Math.pow(1 - chance, parent.getGeneCount());
+        Assertions.assertEquals(expected, (double) mutated / trials, 0.01);
+    }
+
+    @Test
+    void zeroMutationChanceNeverMutates() {
+        DNA parent = DNA.getInstance(arena);
+        for (float chance : new float[] {0f, Float.MIN_VALUE, 1e-20f}) {
+            for (int i = 0; i < 1000; ++i) {
+                DNA child = parent.share().mutate(chance);
+                Assertions.assertSame(parent, child);
+                child.release();
+            }
         }
     }
 }
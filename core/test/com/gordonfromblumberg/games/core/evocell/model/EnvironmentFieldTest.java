@@ -0,0 +1,85 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class EnvironmentFieldTest {
+
+    @Test
+    void staticFieldIsComputedOnce() {
+        final int[] calls = new int[1];
+        final int[] values = new int[12];
+        final EnvironmentField field = new EnvironmentField(3, new EnvironmentField.Source() {
+            @Override
+            public int get(int x, int y, int turn) {
+                ++calls[0];
+                return x + 10 * y;
+            }
+
+            @Override
+            public boolean isStatic() {
+                return true;
+            }
+        });
+
+        Assertions.assertTrue(field.isOutdated(0));
+        update(field, values, 0);
+        Assertions.assertEquals(12, calls[0]);
+        Assertions.assertEquals(21, values[2 * 4 + 1]);
+        Assertions.assertEquals(0, field.getChangedAtTurn());
+
+        Assertions.assertFalse(field.isOutdated(5));
+        Assertions.assertFalse(update(field, values, 5));
+        Assertions.assertEquals(12, calls[0]);
+    }
+
+    @Test
+    void onlyChangedRowsAreRecomputed() {
+        final int[] calls = new int[1];
+        final int[] values = new int[12];
+        final EnvironmentField field = new EnvironmentField(3, new EnvironmentField.Source() {
+            @Override
+            public int get(int x, int y, int turn) {
+                ++calls[0];
+                return y == 1 ? turn : y;
+            }
+
+            @Override
+            public boolean isRowChanged(int y, int turn) {
+                return y == 1;
+            }
+        });
+
+        update(field, values, 0);
+        calls[0] = 0;
+        Assertions.assertTrue(field.isOutdated(1));
+        Assertions.assertTrue(update(field, values, 1));
+        Assertions.assertEquals(4, calls[0]);
+        Assertions.assertEquals(1, values[4]);
+        Assertions.assertEquals(2, values[8]);
+        Assertions.assertEquals(1, field.getChangedAtTurn());
+    }
+
+    @Test
+    void regionIsFilledWithOffset() {
+        final int[] values = new int[8];
+        final EnvironmentField field = new EnvironmentField(10, (x, y, turn) -> x + 10 * y);
+
+        update(field, new int[0], 0);
+        field.fill(values, 4, 5, 7, 2, 2, field.getUpdatedAtTurn(), true);
+        Assertions.assertEquals(75, values[0]);
+        Assertions.assertEquals(86, values[5]);
+        Assertions.assertEquals(0, values[2]);
+        Assertions.assertEquals(86, field.get(6, 8));
+    }
+
+    private static boolean update(EnvironmentField field, int[] values, int turn) {
+        if (!field.isUpdateRequired(turn)) {
+            return false;
+        }
+        final boolean changed = field.fill(values, 4, 0, 0, 4, values.length / 4, turn,
+                field.getUpdatedAtTurn() < 0);
+        field.updated(turn, changed);
+        return changed;
+    }
+}
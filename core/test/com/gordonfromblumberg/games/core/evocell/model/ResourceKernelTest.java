@@ -0,0 +1,97 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+import jdk.incubator.vector.IntVector;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class ResourceKernelTest {
+    private static ResourceKernel vector;
+
+    @BeforeAll
+    static void init() {
+        Assumptions.assumeTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(),
+                "jdk.incubator.vector module is not added");
+        vector = new VectorResourceKernel();
+    }
+
+    @Test
+    void vectorKernelUpdatesCellsAsScalar() {
+        final ResourceKernel scalar = new ScalarResourceKernel();
+        final Random random = new Random(1);
+        final CellChunk scalarChunk = new CellChunk(false);
+        final CellChunk vectorChunk = new CellChunk(false);
+        fill(scalarChunk, random);
+        copy(scalarChunk, vectorChunk);
+
+        // ranges of any length at any offset, so most of them have a tail which doesn't fill a vector
+        final int maxLength = 4 * IntVector.SPECIES_PREFERRED.length();
+        for (int turn = 0; turn < 2000; ++turn) {
+            final int from = random.nextInt(CellChunk.AREA - maxLength);
+            final int to = from + random.nextInt(maxLength + 1);
+            scalar.update(scalarChunk, from, to);
+            vector.update(vectorChunk, from, to);
+            assertEquals(scalarChunk, vectorChunk, "turn " + turn + ", range [" + from + "; " + to + ")");
+            if (turn % 100 == 0) {
+                // cells come to stable state, so new values are set from time to time
+                fill(scalarChunk, random);
+                copy(scalarChunk, vectorChunk);
+            }
+        }
+    }
+
+    @Test
+    void wholeChunkIsUpdatedAsScalar() {
+        final ResourceKernel scalar = new ScalarResourceKernel();
+        final CellChunk scalarChunk = new CellChunk(false);
+        final CellChunk vectorChunk = new CellChunk(false);
+        fill(scalarChunk, new Random(2));
+        copy(scalarChunk, vectorChunk);
+        for (int turn = 0; turn < 50; ++turn) {
+            scalar.update(scalarChunk, 0, CellChunk.AREA);
+            vector.update(vectorChunk, 0, CellChunk.AREA);
+            assertEquals(scalarChunk, vectorChunk, "turn " + turn);
+        }
+    }
+
+    /**
+     * Sets resources as they are in the world: not negative, often zero, organics delay and water convergence
+     * limits are reached at once or never for some cells
+     */
+    private static void fill(CellChunk chunk, Random random) {
+        for (int i = 0; i < CellChunk.AREA; ++i) {
+            chunk.temperature[i] = random.nextInt(-30, 40);
+            chunk.organics[i] = random.nextInt(3) == 0 ? 0 : random.nextInt(100);
+            chunk.turnsAfterOrganicsUpdate[i] = random.nextInt(50);
+            chunk.minerals[i] = random.nextInt(300);
+            chunk.energy[i] = random.nextInt(3) == 0 ? 0 : random.nextInt(100);
+            chunk.humidity[i] = random.nextInt(20);
+            chunk.water[i] = random.nextInt(20);
+            chunk.turnsAfterWaterUpdate[i] = random.nextInt(15);
+        }
+    }
+
+    private static void copy(CellChunk from, CellChunk to) {
+        final int[][] source = arrays(from);
+        final int[][] target = arrays(to);
+        for (int i = 0; i < source.length; ++i) {
+            System.arraycopy(source[i], 0, target[i], 0, CellChunk.AREA);
+        }
+    }
+
+    private static void assertEquals(CellChunk expected, CellChunk actual, String message) {
+        final int[][] expectedArrays = arrays(expected);
+        final int[][] actualArrays = arrays(actual);
+        for (int i = 0; i < expectedArrays.length; ++i) {
+            Assertions.assertArrayEquals(expectedArrays[i], actualArrays[i], message);
+        }
+    }
+
+    private static int[][] arrays(CellChunk chunk) {
+        return new int[][] {chunk.temperature, chunk.organics, chunk.turnsAfterOrganicsUpdate, chunk.minerals,
+                chunk.energy, chunk.humidity, chunk.water, chunk.turnsAfterWaterUpdate};
+    }
+}
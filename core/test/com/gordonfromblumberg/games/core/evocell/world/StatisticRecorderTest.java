@@ -0,0 +1,84 @@
+package com.gordonfromblumberg.games.core.evocell.world;
+
+import com.gordonfromblumberg.games.core.evocell.world.StatisticRecorder.Metric;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+
+public class StatisticRecorderTest {
+
+    @Test
+    void historyIsDownsampled() {
+        StatisticRecorder recorder = new StatisticRecorder(16, 8);
+        record(recorder, 1, 100);
+
+        Assertions.assertEquals(16, recorder.getBucketTurns());
+        Assertions.assertEquals(7, recorder.getBucketCount());
+        Assertions.assertEquals(1, recorder.getFirstTurn());
+        Assertions.assertEquals(100, recorder.getLastTurn());
+        for (int i = 0; i < recorder.getBucketCount(); ++i) {
+            long first = 1 + 16L * i;
+            Assertions.assertEquals(value(first), recorder.getMin(Metric.BOTS, i));
+            Assertions.assertEquals(value(Math.min(first + 15, 100)), recorder.getMax(Metric.BOTS, i));
+        }
+
+        Assertions.assertEquals(16, recorder.getRecentCount());
+        Assertions.assertEquals(85, recorder.getRecentFirstTurn());
+        for (int i = 0; i < 16; ++i) {
+            Assertions.assertEquals(value(85 + i), recorder.getRecent(Metric.BOTS, i));
+        }
+    }
+
+    @Test
+    void totalsDontOverflow() {
+        StatisticRecorder recorder = new StatisticRecorder(4, 4);
+        WorldStatistic statistic = new WorldStatistic();
+        statistic.worldEnergy = Integer.MAX_VALUE;
+        statistic.totalBotEnergy = Integer.MAX_VALUE;
+        recorder.record(1, statistic);
+
+        Assertions.assertEquals(2L * Integer.MAX_VALUE, recorder.getMax(Metric.ENERGY, 0));
+    }
+
+    @Test
+    void binaryRoundTrip() throws IOException {
+        StatisticRecorder recorder = new StatisticRecorder(16, 8);
+        record(recorder, 5, 60);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        recorder.writeBinary(out);
+
+        StatisticRecorder read = StatisticRecorder.readBinary(new ByteArrayInputStream(out.toByteArray()));
+        Assertions.assertEquals(recorder.getFirstTurn(), read.getFirstTurn());
+        Assertions.assertEquals(recorder.getLastTurn(), read.getLastTurn());
+        Assertions.assertEquals(recorder.getBucketTurns(), read.getBucketTurns());
+        Assertions.assertEquals(recorder.getBucketCount(), read.getBucketCount());
+        for (Metric metric : Metric.values()) {
+            for (int i = 0; i < recorder.getBucketCount(); ++i) {
+                Assertions.assertEquals(recorder.getMin(metric, i), read.getMin(metric, i));
+                Assertions.assertEquals(recorder.getMax(metric, i), read.getMax(metric, i));
+            }
+        }
+
+        StringWriter csv = new StringWriter();
+        recorder.writeCsv(csv);
+        Assertions.assertEquals(recorder.getBucketCount() + 1, csv.toString().split("\n").length);
+    }
+
+    private static void record(StatisticRecorder recorder, int fromTurn, int toTurn) {
+        WorldStatistic statistic = new WorldStatistic();
+        for (int turn = fromTurn; turn <= toTurn; ++turn) {
+            statistic.botCount = (int) value(turn);
+            statistic.worldMinerals = 1_000_000L * turn;
+            statistic.maxBotGeneration = turn / 3;
+            recorder.record(turn, statistic);
+        }
+    }
+
+    private static long value(long turn) {
+        return turn * 2 + 1;
+    }
+}
@@ -3,6 +3,7 @@ package com.gordonfromblumberg.games.desktop.common;
 import com.badlogic.gdx.Files;
 import com.badlogic.gdx.backends.lwjgl.LwjglApplication;
 import com.badlogic.gdx.backends.lwjgl.LwjglApplicationConfiguration;
+import com.badlogic.gdx.utils.ObjectMap;
 import com.gordonfromblumberg.games.core.common.Main;
 import com.gordonfromblumberg.games.core.common.debug.DebugOptions;
 import com.gordonfromblumberg.games.core.common.factory.AbstractFactory;
@@ -24,7 +25,48 @@ public class DesktopLauncher {
 		DesktopFactory.init();
 		ConfigManager cfgMgr = AbstractFactory.getInstance().configManager();
 
+		boolean headless = false;
+		int turns = 10_000;
+		Long seed = null;
+		int reportInterval = 1000;
+		int threads = 0;
+		boolean intentMode = false;
+		ObjectMap<String, String> configOverrides = new ObjectMap<>();
 		for (String arg : args) {
+			if ("-headless".equals(arg)) {
+				headless = true;
+				continue;
+			}
+			String turnsPrefix = "-turns=";
+			if (arg.startsWith(turnsPrefix)) {
+				turns = Integer.parseInt(arg.substring(turnsPrefix.length()));
+				continue;
+			}
+			String seedPrefix = "-seed=";
+			if (arg.startsWith(seedPrefix)) {
+				seed = Long.parseLong(arg.substring(seedPrefix.length()));
+				continue;
+			}
+			String threadsPrefix = "-threads=";
+			if (arg.startsWith(threadsPrefix)) {
+				threads = Integer.parseInt(arg.substring(threadsPrefix.length()));
+				continue;
+			}
+			if ("-intentMode".equals(arg)) {
+				intentMode = true;
+				continue;
+			}
+			String configPrefix = "-config:";
+			if (arg.startsWith(configPrefix) && arg.indexOf('=') > configPrefix.length()) {
+				int eq = arg.indexOf('=');
+				configOverrides.put(arg.substring(configPrefix.length(), eq), arg.substring(eq + 1));
+				continue;
+			}
+			String reportPrefix = "-reportEvery=";
+			if (arg.startsWith(reportPrefix)) {
+				reportInterval = Integer.parseInt(arg.substring(reportPrefix.length()));
+				continue;
+			}
 			if ("-debug".equals(arg)) {
 				DebugOptions.DEBUG = true;
 				continue;
@@ -58,6 +100,11 @@ public class DesktopLauncher {
 			}
 		}
 
+		if (headless) {
+			new HeadlessLauncher(turns, seed, threads, intentMode, configOverrides, reportInterval).run();
+			return;
+		}
+
 		new LwjglApplication(Main.createInstance(), config);
 	}
 }
@@ -0,0 +1,87 @@
+package com.gordonfromblumberg.games.desktop.common;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl.LwjglFiles;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.gordonfromblumberg.games.core.common.Main;
+import com.gordonfromblumberg.games.core.common.factory.AbstractFactory;
+import com.gordonfromblumberg.games.core.common.log.LogManager;
+import com.gordonfromblumberg.games.core.common.log.Logger;
+import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
+import com.gordonfromblumberg.games.core.common.utils.RandomGen;
+import com.gordonfromblumberg.games.core.evocell.world.SimulationEngine;
+import com.gordonfromblumberg.games.core.evocell.world.WorldParams;
+import com.gordonfromblumberg.games.core.evocell.world.WorldStatistic;
+
+/**
+ * Runs simulation without window and graphics context.
+ * Only file access is initialized, so config and model descriptions can be loaded.
+ */
+public class HeadlessLauncher {
+    private static final Logger log = LogManager.create(HeadlessLauncher.class);
+
+    private final int turns;
+    private final Long seed;
+    private final int threads;
+    private final boolean intentMode;
+    private final ObjectMap<String, String> configOverrides;
+    private final int reportInterval;
+
+    /**
+     * @param threads Overrides world.threads from config if > 0
+     * @param intentMode Turns on world.intentMode if true
+     * @param configOverrides Config properties to set over loaded ones, e.g. from -config:world.lazyCells=true
+     */
+    HeadlessLauncher(int turns, Long seed, int threads, boolean intentMode,
+                     ObjectMap<String, String> configOverrides, int reportInterval) {
+        this.turns = turns;
+        this.seed = seed;
+        this.threads = threads;
+        this.intentMode = intentMode;
+        this.configOverrides = configOverrides;
+        this.reportInterval = reportInterval;
+    }
+
+    void run() {
+        Gdx.files = new LwjglFiles();
+        final ConfigManager configManager = AbstractFactory.getInstance().configManager();
+        configManager.init(Main.NAME);
+        if (threads > 0) {
+            configManager.setInteger("world.threads", threads);
+        }
+        if (intentMode) {
+            configManager.setBoolean("world.intentMode", true);
+        }
+        for (ObjectMap.Entry<String, String> override : configOverrides) {
+            configManager.setString(override.key, override.value);
+        }
+        LogManager.init();
+
+        long seed = this.seed != null ? this.seed
+                : configManager.contains("seed") ? configManager.getLong("seed")
+                : new RandomGen().nextLong();
+        log.info("Headless run, seed = " + seed);
+        RandomGen.setSeed(seed);
+
+        final WorldParams params = new WorldParams();
+        params.load(configManager);
+        final SimulationEngine engine = new SimulationEngine(params);
+        engine.run(turns, reportInterval, HeadlessLauncher::report);
+        if (reportInterval <= 0 || turns % reportInterval != 0) {
+            report(engine);
+        }
+
+        LogManager.close();
+    }
+
+    private static void report(SimulationEngine engine) {
+        final WorldStatistic statistic = engine.getWorld().getStatistic();
+        System.out.println("turn " + engine.getWorld().getTurn()
+                + "\tbots " + statistic.getBotCount()
+                + "\tgeneration " + statistic.getMaxBotGeneration()
+                + "\tenergy " + statistic.getWorldEnergy()
+                + "\torganics " + statistic.getWorldOrganics()
+                + "\tminerals " + statistic.getWorldMinerals()
+                + "\tturns/sec " + engine.getTurnsPerSecond());
+    }
+}
@@ -0,0 +1,99 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+import com.gordonfromblumberg.games.core.evocell.world.TestWorlds;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class BotStoreTest {
+
+    @BeforeAll
+    static void init() {
+        TestWorlds.init();
+    }
+
+    @Test
+    void freedSlotIsTakenByLastBotAfterCompaction() {
+        final BotStore store = new BotStore(4);
+        final SimpleBot[] bots = add(store, 3);
+        for (int i = 0; i < bots.length; ++i) {
+            Assertions.assertEquals(i, bots[i].slot);
+            Assertions.assertSame(bots[i], store.get(i));
+            Assertions.assertSame(bots[i], store.getById(bots[i].getId()));
+            store.energy[i] = 100 + i;
+            store.parameters[i * store.parameterCount] = 10 + i;
+        }
+
+        final int removedId = bots[1].getId();
+        bots[1].release();
+        Assertions.assertNull(store.get(1));
+        Assertions.assertEquals(-1, store.getSlot(removedId));
+        Assertions.assertEquals(3, store.size());
+
+        store.compact();
+        Assertions.assertEquals(2, store.size());
+        Assertions.assertEquals(1, bots[2].slot);
+        Assertions.assertSame(bots[2], store.get(1));
+        Assertions.assertEquals(1, store.getSlot(bots[2].getId()));
+        Assertions.assertEquals(102, store.energy[1]);
+        Assertions.assertEquals(12, store.parameters[store.parameterCount]);
+        Assertions.assertEquals(100, store.energy[0]);
+
+        // the slot after the last bot is reused with cleared columns
+        final SimpleBot added = SimpleBot.getInstance(store);
+        Assertions.assertEquals(2, added.slot);
+        Assertions.assertEquals(0, store.energy[2]);
+        Assertions.assertEquals(0, store.parameters[2 * store.parameterCount]);
+    }
+
+    @Test
+    void freedSlotsAreFilledInOrder() {
+        final BotStore store = new BotStore(8);
+        final SimpleBot[] bots = add(store, 6);
+        // the last bot is freed too, so it is trimmed and not moved
+        bots[5].release();
+        bots[2].release();
+        bots[0].release();
+
+        store.compact();
+        Assertions.assertEquals(3, store.size());
+        Assertions.assertSame(bots[4], store.get(0));
+        Assertions.assertSame(bots[1], store.get(1));
+        Assertions.assertSame(bots[3], store.get(2));
+        for (int slot = 0; slot < store.size(); ++slot) {
+            Assertions.assertEquals(slot, store.get(slot).slot);
+            Assertions.assertEquals(slot, store.getSlot(store.get(slot).getId()));
+        }
+    }
+
+    @Test
+    void columnsGrowUnlessCapacityIsReserved() {
+        final BotStore store = new BotStore(2);
+        final SimpleBot[] bots = add(store, 5);
+        for (SimpleBot bot : bots) {
+            store.energy[bot.slot] = bot.getId();
+        }
+        Assertions.assertTrue(store.bots.length >= 5);
+
+        store.reserve(3);
+        Assertions.assertTrue(store.bots.length >= 8);
+        add(store, store.bots.length - store.size());
+        final IllegalStateException e = Assertions.assertThrows(IllegalStateException.class, () -> add(store, 1));
+        Assertions.assertTrue(e.getMessage().contains("reserved"), e.getMessage());
+
+        store.compact();
+        add(store, 1);
+        for (SimpleBot bot : bots) {
+            Assertions.assertEquals(bot.getId(), store.energy[bot.slot]);
+        }
+    }
+
+    private static SimpleBot[] add(BotStore store, int count) {
+        final SimpleBot[] bots = new SimpleBot[count];
+        for (int i = 0; i < count; ++i) {
+            bots[i] = SimpleBot.getInstance(store);
+            bots[i].init();
+        }
+        return bots;
+    }
+}
@@ -0,0 +1,179 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+import com.badlogic.gdx.utils.Array;
+import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
+import com.gordonfromblumberg.games.core.common.utils.RandomGen;
+import com.gordonfromblumberg.games.core.evocell.world.GameWorld;
+import com.gordonfromblumberg.games.core.evocell.world.TestWorlds;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Bots of the first world of {@link TwinWorlds} run their programs one by one, bots of the second world
+ * run the same programs in lock-step batches, every bot should get the same state and emit the same intents.
+ * Worlds are in deterministic intent mode. Random defaults are drawn lane by lane, so they are equal
+ * to draws one by one, random expressions are drawn in another order, so they return the same value for all bots
+ */
+public class GenomeBatchTest {
+    private static final int BATCH_SIZE = 4;
+    // bots of different genomes are interleaved, the last batch of a genome is smaller or has a single bot
+    private static final int GENOMES = 3;
+    private static final int BOTS = 3 * GENOMES * BATCH_SIZE - 2;
+    // random genomes run by each bot
+    private static final int ROUNDS = 4;
+
+    @BeforeAll
+    static void init() {
+        TestWorlds.init();
+    }
+
+    @AfterEach
+    void reset() {
+        final ConfigManager config = TestWorlds.config();
+        config.setBoolean("world.deterministic", false);
+        config.setBoolean("world.intentMode", false);
+    }
+
+    @Test
+    void batchedBotsActAsRunOneByOne() {
+        final ConfigManager config = TestWorlds.config();
+        config.setBoolean("world.deterministic", true);
+        config.setBoolean("world.intentMode", true);
+        int runs = 0;
+        for (long seed = 1; seed <= 2; ++seed) {
+            runs += compare(seed, 0);
+            runs += compare(seed, 30);
+        }
+        Assertions.assertTrue(runs > 2000, "Only " + runs + " programs were run");
+    }
+
+    /**
+     * @return Count of run programs
+     */
+    private static int compare(long seed, int turns) {
+        final TwinWorlds worlds = new TwinWorlds(seed, turns);
+        final InterpreterContext context = new InterpreterContext();
+        final IntentBuffer firstIntents = new IntentBuffer();
+        final IntentBuffer secondIntents = new IntentBuffer();
+        TestWorlds.useIntents(worlds.first, firstIntents);
+        TestWorlds.useIntents(worlds.second, secondIntents);
+        final GenomeBatch batch = new GenomeBatch(BATCH_SIZE);
+        final Array<EvoBot> firstBots = new Array<>();
+        final Array<EvoBot> secondBots = new Array<>();
+        final GenomeProgram[] firstPrograms = new GenomeProgram[GENOMES];
+        final GenomeProgram[] secondPrograms = new GenomeProgram[GENOMES];
+        int runs = 0;
+        for (int round = 0; round < ROUNDS; ++round) {
+            for (int from = 0; from + BOTS <= worlds.botCount(); from += BOTS) {
+                final long stream = ((seed * 100 + turns) * ROUNDS + round) * 10_000 + from;
+                // bot from + i gets genome i % GENOMES
+                firstBots.clear();
+                secondBots.clear();
+                for (int i = 0; i < BOTS; ++i) {
+                    final int genome = i % GENOMES;
+                    RandomGenomes.set(worlds.firstBot(from + i), new RandomGen(stream + genome));
+                    RandomGenomes.set(worlds.secondBot(from + i), new RandomGen(stream + genome));
+                    firstBots.add(worlds.firstBot(from + i));
+                    secondBots.add(worlds.secondBot(from + i));
+                }
+                final boolean optimize = round % 2 == 1;
+                for (int genome = 0; genome < GENOMES; ++genome) {
+                    final EvoBot first = firstBots.get(genome);
+                    final EvoBot second = secondBots.get(genome);
+                    firstPrograms[genome] = context.compile(first, first.activeGeneIndex, false, optimize);
+                    secondPrograms[genome] = context.compile(second, second.activeGeneIndex, false, optimize);
+                }
+                final String message = "seed " + seed + ", turn " + turns + ", round " + round
+                        + ", bots from " + from;
+
+                // batches run groups in order of their first bots, so one by one bots are run in the same order
+                firstIntents.clear();
+                final int firstDraw = run(worlds.first, firstBots, stream, () -> {
+                    for (int genome = 0; genome < GENOMES; ++genome) {
+                        for (int i = genome; i < BOTS; i += GENOMES) {
+                            context.run(worlds.first, firstBots.get(i), firstPrograms[genome]);
+                        }
+                    }
+                });
+                secondIntents.clear();
+                final int secondDraw = run(worlds.second, secondBots, stream, () -> {
+                    for (int i = 0; i < BOTS; ++i) {
+                        batch.add(secondBots.get(i), secondPrograms[i % GENOMES]);
+                    }
+                    final Array<EvoBot> added = batch.run(worlds.second, worlds.second.interpreter());
+                    Assertions.assertEquals(secondBots, added, message);
+                });
+
+                Assertions.assertEquals(firstDraw, secondDraw, message);
+                final Map<Bot, String> firstEmitted = intents(firstIntents);
+                final Map<Bot, String> secondEmitted = intents(secondIntents);
+                for (int i = 0; i < BOTS; ++i) {
+                    final EvoBot first = firstBots.get(i);
+                    final EvoBot second = secondBots.get(i);
+                    final String botMessage = message + ", bot " + i;
+                    Assertions.assertEquals(first.activeGeneIndex, second.activeGeneIndex, botMessage);
+                    Assertions.assertEquals(first.isDead, second.isDead, botMessage);
+                    Assertions.assertEquals(firstEmitted.get(first), secondEmitted.get(second), botMessage);
+                }
+                Assertions.assertEquals(firstEmitted.size(), secondEmitted.size(), message);
+                worlds.assertEqual(message);
+                runs += BOTS;
+            }
+        }
+        worlds.dispose();
+        return runs;
+    }
+
+    /**
+     * Starts the programs of the bots, runs them and finishes them as {@link BotStore} does.
+     * Random expressions return the same value for all bots, the value depends on the stream
+     * @return Next draw of the stream after the programs
+     */
+    private static int run(GameWorld world, Array<EvoBot> bots, long stream, Runnable programs) {
+        final byte randomExpression = (byte) new RandomGen(stream).nextInt(-3, 3);
+        RandomGen.setCurrent(new RandomGen(stream) {
+            @Override
+            public byte nextByte() {
+                return randomExpression;
+            }
+        });
+        try {
+            for (EvoBot bot : bots) {
+                bot.startProgram(world);
+            }
+            programs.run();
+            for (EvoBot bot : bots) {
+                bot.finishProgram(world);
+            }
+            return RandomGen.current().nextInt(1 << 30);
+        } finally {
+            RandomGen.setCurrent(null);
+        }
+    }
+
+    /**
+     * @return Intents grouped by bots in order of emitting, only params set by the bot are compared
+     */
+    private static Map<Bot, String> intents(IntentBuffer intents) {
+        final Map<Bot, String> result = new IdentityHashMap<>();
+        for (int i = 0; i < intents.size; ++i) {
+            final byte type = intents.types[i];
+            final int p = i * IntentBuffer.PARAM_COUNT;
+            final int params = switch (type) {
+                case IntentBuffer.OFFSPRING, IntentBuffer.BITE -> IntentBuffer.PARAM_COUNT;
+                case IntentBuffer.SHARE -> 2;
+                default -> 0;
+            };
+            final String intent = type + " " + intents.sources[i] + "->" + intents.targets[i]
+                    + " " + Arrays.toString(Arrays.copyOfRange(intents.params, p, p + params));
+            result.merge(intents.bots[i], intent, (emitted, next) -> emitted + "; " + next);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,354 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+import com.badlogic.gdx.utils.IntMap;
+import com.gordonfromblumberg.games.core.common.utils.RandomGen;
+import com.gordonfromblumberg.games.core.evocell.world.TestWorlds;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Runs genomes of {@link TwinWorlds} by {@link ReferenceInterpreter} in the first world
+ * and compiled programs in the second one. Gas of compiled programs is charged per basic block
+ */
+public class GenomeCompilerTest {
+    // random genomes run by each bot
+    private static final int GENOMES = 4;
+    private static final int TRUE = 1;
+    private static final int FALSE = 0;
+    // energy of a bot before a run with limited gas
+    private static final int ENERGY = 1000;
+
+    private static int IF_ELSE, GOTO, GOTO_GENE, SET_ACTIVE_GENE, ROTATE, ROTATE_LEFT, NOTHING;
+    private static int MARKER, AND, OR, RANDOM;
+
+    @BeforeAll
+    static void init() {
+        TestWorlds.init();
+        IF_ELSE = action("ifelse");
+        GOTO = action("goto");
+        GOTO_GENE = action("gotoGene");
+        SET_ACTIVE_GENE = action("setActiveGene");
+        ROTATE = action("rotate");
+        ROTATE_LEFT = action("rotateLeft");
+        NOTHING = action("nothing");
+        MARKER = Interpreter.expressionMarker + 1;
+        AND = expression("and");
+        OR = expression("or");
+        RANDOM = expression("random");
+    }
+
+    @Test
+    void compiledProgramsActAsParsedSteps() {
+        int runs = 0;
+        for (long seed = 1; seed <= 2; ++seed) {
+            runs += compareRandomGenomes(seed, 0);
+            runs += compareRandomGenomes(seed, 30);
+        }
+        Assertions.assertTrue(runs > 2000, "Only " + runs + " programs were run");
+    }
+
+    @Test
+    void gotoOverLimitFallsThrough() {
+        // goto 0 is run until the limit, each run costs more energy, then the false branch is skipped
+        // and the gene goes on
+        final int[] gene = gene(ROTATE_LEFT, IF_ELSE, TRUE, GOTO, 0, SET_ACTIVE_GENE, 1, SET_ACTIVE_GENE, 3);
+        forBothModes((worlds, optimize) -> {
+            set(worlds, 0, gene);
+            worlds.firstBot(0).setEnergy(1000);
+            worlds.secondBot(0).setEnergy(1000);
+            compare(worlds, 0, false, optimize, 1, "goto");
+            Assertions.assertEquals(3, worlds.firstBot(0).activeGeneIndex);
+        });
+    }
+
+    @Test
+    void gotoGeneToEvaluatedGeneFallsThrough() {
+        // the active gene is evaluated, gene 1 goes to the active one and falls through
+        final int[] gene0 = gene(IF_ELSE, TRUE, GOTO_GENE, 1, SET_ACTIVE_GENE, 1);
+        final int[] gene1 = gene(IF_ELSE, TRUE, GOTO_GENE, 0, SET_ACTIVE_GENE, 1, SET_ACTIVE_GENE, 2);
+        forBothModes((worlds, optimize) -> {
+            set(worlds, 0, gene0, gene1);
+            compare(worlds, 0, false, optimize, 1, "gotoGene");
+            Assertions.assertEquals(2, worlds.firstBot(0).activeGeneIndex);
+        });
+    }
+
+    @Test
+    void embryoProgramStartsFromGeneZero() {
+        // embryo gene 2 falls through gotoGene 0, but goes to itself once more
+        final int[] gene0 = gene(SET_ACTIVE_GENE, 1);
+        final int[] gene2 = gene(IF_ELSE, TRUE, GOTO_GENE, 0, SET_ACTIVE_GENE, 1,
+                IF_ELSE, TRUE, GOTO_GENE, 2, SET_ACTIVE_GENE, 1, SET_ACTIVE_GENE, 3);
+        forBothModes((worlds, optimize) -> {
+            set(worlds, 0, gene0, gene(), gene2);
+            worlds.firstBot(0).setEmbryoGeneIndex((byte) 2);
+            worlds.secondBot(0).setEmbryoGeneIndex((byte) 2);
+            compare(worlds, 0, true, optimize, 1, "embryo");
+            Assertions.assertEquals(3, worlds.firstBot(0).activeGeneIndex);
+        });
+    }
+
+    @Test
+    void andOrEvaluateSecondOperandOnlyIfNeeded() {
+        final long stream = 1;
+        final int noDraws = new RandomGen(stream).nextInt(1 << 30);
+        forBothModes((worlds, optimize) -> {
+            set(worlds, 0, gene(IF_ELSE, MARKER, AND, FALSE, MARKER, RANDOM, ROTATE_LEFT, NOTHING));
+            Assertions.assertEquals(noDraws, compare(worlds, 0, false, optimize, stream, "and false"));
+            set(worlds, 0, gene(IF_ELSE, MARKER, OR, TRUE, MARKER, RANDOM, ROTATE_LEFT, NOTHING));
+            Assertions.assertEquals(noDraws, compare(worlds, 0, false, optimize, stream, "or true"));
+            set(worlds, 0, gene(IF_ELSE, MARKER, AND, TRUE, MARKER, RANDOM, ROTATE_LEFT, NOTHING));
+            Assertions.assertNotEquals(noDraws, compare(worlds, 0, false, optimize, stream, "and true"));
+        });
+    }
+
+    @Test
+    void botIsCheckedAfterEachAction() {
+        forBothModes((worlds, optimize) -> {
+            set(worlds, 0, gene(ROTATE_LEFT, SET_ACTIVE_GENE, 2));
+            worlds.firstBot(0).setEnergy(1);
+            worlds.secondBot(0).setEnergy(1);
+            compare(worlds, 0, false, optimize, 1, "check");
+            Assertions.assertTrue(worlds.firstBot(0).isDead);
+            Assertions.assertEquals(0, worlds.firstBot(0).activeGeneIndex);
+        });
+    }
+
+    @Test
+    void randomDefaultsAreDrawnInOrderOfParsing() {
+        // gene 2 is parsed before gene 1, but only gene 1 runs, rotate without parameter at the end
+        // of a gene gets a random direction
+        final int[] gene0 = gene(IF_ELSE, FALSE, GOTO_GENE, 2, GOTO_GENE, 1);
+        final int[] lastRotate = gene();
+        lastRotate[DNA.geneValueCount - 1] = ROTATE;
+        forBothModes((worlds, optimize) -> {
+            final Set<Direction> directions = EnumSet.noneOf(Direction.class);
+            for (long stream = 1; stream <= 16; ++stream) {
+                set(worlds, 0, gene0, lastRotate, lastRotate);
+                final Direction dir = worlds.firstBot(0).getDir();
+                compare(worlds, 0, false, optimize, stream, "stream " + stream);
+                directions.add(worlds.firstBot(0).getDir());
+                worlds.firstBot(0).setDir(dir);
+                worlds.secondBot(0).setDir(dir);
+            }
+            Assertions.assertEquals(2, directions.size());
+        });
+    }
+
+    @Test
+    void programOutOfGasStopsBeforeBlock() {
+        // the optimized loop is the entry rotation and the loop rotation, each is followed by the block of goto
+        // to the loop, goto over the limit falls through to halt
+        final int[] gene = gene(ROTATE_LEFT, IF_ELSE, TRUE, GOTO, 0, SET_ACTIVE_GENE, 3);
+        final TwinWorlds worlds = new TwinWorlds(1, 0);
+        final EvoBot bot = worlds.firstBot(0);
+        set(worlds, 0, gene);
+        final InterpreterContext context = new InterpreterContext();
+        final GenomeProgram program = context.compile(bot, 0, false, true);
+        Assertions.assertArrayEquals(new int[] {2, 1, 2, 1, 1}, blocks(program));
+
+        final int rotations = 1 + Interpreter.gotoLimit;
+        final int total = 3 * rotations + 1;
+        for (int gas = 0; gas <= total + 1; ++gas) {
+            final int left = rotate(worlds, bot, context, program, gas);
+            final String message = "gas " + gas;
+            Assertions.assertEquals(gas >= total, left >= 0, message);
+            if (gas >= total) {
+                Assertions.assertEquals(gas - total, left, message);
+                Assertions.assertEquals(rotations, rotations(bot), message);
+            } else {
+                // the rotation is done before goto is charged
+                Assertions.assertEquals(Math.min(rotations, (gas + 1) / 3), rotations(bot), message);
+            }
+        }
+        worlds.dispose();
+    }
+
+    @Test
+    void programOutOfGasDoesntStopInsideBlock() {
+        final TwinWorlds worlds = new TwinWorlds(1, 0);
+        final EvoBot bot = worlds.firstBot(0);
+        set(worlds, 0, gene(ROTATE_LEFT, ROTATE_LEFT, ROTATE_LEFT));
+        final InterpreterContext context = new InterpreterContext();
+        for (int optimize = 0; optimize < 2; ++optimize) {
+            final GenomeProgram program = context.compile(bot, 0, false, optimize == 1);
+            final int[] blocks = blocks(program);
+            // an action ends its block, parameters of the action are in the same block
+            int gas = 0;
+            for (int block = 0; block < 3; ++block) {
+                Assertions.assertTrue(blocks[block] > 1);
+                gas += blocks[block];
+                Assertions.assertTrue(rotate(worlds, bot, context, program, gas - 1) < 0);
+                Assertions.assertEquals(block, rotations(bot));
+                rotate(worlds, bot, context, program, gas);
+                Assertions.assertEquals(block + 1, rotations(bot));
+            }
+        }
+        worlds.dispose();
+    }
+
+    @Test
+    void branchesAreBlocksOfTheirOwn() {
+        // not optimized condition is the block of the condition, the block of the true branch, the block
+        // of the jump over the false branch, the block of the false branch and blocks of actions after them
+        final TwinWorlds worlds = new TwinWorlds(1, 0);
+        final EvoBot bot = worlds.firstBot(0);
+        set(worlds, 0, gene(IF_ELSE, TRUE, ROTATE_LEFT, ROTATE_LEFT, ROTATE_LEFT));
+        final InterpreterContext context = new InterpreterContext();
+        final GenomeProgram program = context.compile(bot, 0, false, false);
+        final int[] blocks = blocks(program);
+        Assertions.assertEquals(blocks[1], blocks[3]);
+        Assertions.assertEquals(1, blocks[2]);
+
+        final int condition = blocks[0];
+        final int trueBranch = condition + blocks[1];
+        final int afterBranches = trueBranch + blocks[2] + blocks[4];
+        final int total = Arrays.stream(blocks).sum() - blocks[3];
+        Assertions.assertTrue(rotate(worlds, bot, context, program, trueBranch - 1) < 0);
+        Assertions.assertEquals(0, rotations(bot));
+        Assertions.assertTrue(rotate(worlds, bot, context, program, afterBranches - 1) < 0);
+        Assertions.assertEquals(1, rotations(bot));
+        Assertions.assertEquals(0, rotate(worlds, bot, context, program, total));
+        Assertions.assertEquals(2, rotations(bot));
+        worlds.dispose();
+    }
+
+    /**
+     * Runs the program of the bot with the given gas, energy of the bot is reset before the run
+     * @return Gas left, negative if the program was stopped out of gas
+     */
+    private static int rotate(TwinWorlds worlds, EvoBot bot, InterpreterContext context, GenomeProgram program,
+                              int gas) {
+        final int[] left = new int[1];
+        bot.setEnergy(ENERGY);
+        TwinWorlds.run(worlds.first, bot, 1, () -> left[0] = context.run(worlds.first, bot, program, gas));
+        return left[0];
+    }
+
+    /**
+     * @return Count of rotations after {@link #rotate}, each next rotation of a turn costs more
+     */
+    private static int rotations(EvoBot bot) {
+        final int cost = bot.getRotateCost();
+        int spent = ENERGY - bot.getEnergy();
+        int rotations = 0;
+        while (spent > 0) {
+            spent -= ++rotations * cost;
+        }
+        Assertions.assertEquals(0, spent, "Energy isn't spent by rotations");
+        return rotations;
+    }
+
+    /**
+     * @return Costs of basic blocks of the program in order of code
+     */
+    private static int[] blocks(GenomeProgram program) {
+        return Arrays.stream(GenomeProgram.blockCosts(program.code)).filter(cost -> cost > 0).toArray();
+    }
+
+    private interface WorldTest {
+        void run(TwinWorlds worlds, boolean optimize);
+    }
+
+    private static void forBothModes(WorldTest test) {
+        for (int optimize = 0; optimize < 2; ++optimize) {
+            final TwinWorlds worlds = new TwinWorlds(1, 0);
+            test.run(worlds, optimize == 1);
+            worlds.dispose();
+        }
+    }
+
+    /**
+     * @return Count of run programs
+     */
+    private static int compareRandomGenomes(long seed, int turns) {
+        final TwinWorlds worlds = new TwinWorlds(seed, turns);
+        int runs = 0;
+        for (int i = 0; i < worlds.botCount(); ++i) {
+            // genome of the world, then random ones
+            for (int genome = 0; genome <= GENOMES && worlds.isLive(i); ++genome) {
+                final long stream = (long) i * (GENOMES + 1) + genome;
+                if (genome > 0) {
+                    RandomGenomes.set(worlds.firstBot(i), new RandomGen(stream));
+                    RandomGenomes.set(worlds.secondBot(i), new RandomGen(stream));
+                }
+                compare(worlds, i, genome % 2 == 1, genome % 4 >= 2, stream,
+                        "seed " + seed + ", turn " + turns + ", bot " + i + ", genome " + genome);
+                ++runs;
+            }
+        }
+        worlds.dispose();
+        return runs;
+    }
+
+    /**
+     * Runs the active or embryo gene of the bot by the reference interpreter in the first world
+     * and by the compiled program in the second world
+     * @return Next draw of the stream after the program
+     */
+    private static int compare(TwinWorlds worlds, int i, boolean embryo, boolean optimize, long stream,
+                               String message) {
+        final EvoBot referenceBot = worlds.firstBot(i);
+        final EvoBot compiledBot = worlds.secondBot(i);
+        final int gene = embryo ? referenceBot.embryoGeneIndex : referenceBot.activeGeneIndex;
+        final InterpreterContext context = new InterpreterContext();
+        final GenomeProgram parsed = context.compile(referenceBot, gene, embryo, false);
+        final GenomeProgram compiled = context.compile(compiledBot, gene, embryo, optimize);
+
+        final ReferenceInterpreter reference = new ReferenceInterpreter();
+        final int referenceDraw = TwinWorlds.run(worlds.first, referenceBot, stream,
+                () -> reference.run(worlds.first, referenceBot, parsed.root, gene, embryo));
+        final int compiledDraw = TwinWorlds.run(worlds.second, compiledBot, stream,
+                () -> context.run(worlds.second, compiledBot, compiled));
+        Assertions.assertEquals(referenceDraw, compiledDraw, message);
+        Assertions.assertEquals(referenceBot.activeGeneIndex, compiledBot.activeGeneIndex, message);
+        Assertions.assertEquals(referenceBot.isDead, compiledBot.isDead, message);
+        worlds.assertEqual(message);
+        return referenceDraw;
+    }
+
+    /**
+     * Sets genes of the bot in both worlds starting from gene 0 and makes gene 0 active
+     */
+    private static void set(TwinWorlds worlds, int i, int[]... genes) {
+        for (EvoBot bot : new EvoBot[] {worlds.firstBot(i), worlds.secondBot(i)}) {
+            for (int gene = 0; gene < genes.length; ++gene) {
+                bot.setGene(gene, genes[gene]);
+            }
+            bot.setActiveGeneIndex(0);
+        }
+    }
+
+    /**
+     * @return Gene of the given values, the rest values are nothing
+     */
+    private static int[] gene(int... values) {
+        final int[] gene = new int[DNA.geneValueCount];
+        Arrays.fill(gene, NOTHING);
+        System.arraycopy(values, 0, gene, 0, values.length);
+        return gene;
+    }
+
+    private static int action(String name) {
+        for (IntMap.Entry<ActionDef> entry : Actions.actionDefs) {
+            if (entry.value.name().equals(name)) {
+                return entry.key;
+            }
+        }
+        throw new IllegalArgumentException("Unknown action " + name);
+    }
+
+    private static int expression(String name) {
+        for (IntMap.Entry<ExpressionDef> entry : Expressions.expressionDefs) {
+            if (entry.value.name().equals(name)) {
+                return entry.key;
+            }
+        }
+        throw new IllegalArgumentException("Unknown expression " + name);
+    }
+}
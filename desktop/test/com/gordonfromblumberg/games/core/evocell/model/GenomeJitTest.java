@@ -0,0 +1,73 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+import com.gordonfromblumberg.games.core.common.utils.RandomGen;
+import com.gordonfromblumberg.games.core.evocell.world.TestWorlds;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Every program is translated to JVM code before its first run, as if interpreter.jitThreshold were reached
+ * at once. {@link TwinWorlds} run interpreted programs in the first world and JVM code in the second one
+ */
+public class GenomeJitTest {
+    // random genomes run by each bot
+    private static final int GENOMES = 4;
+
+    @BeforeAll
+    static void init() {
+        TestWorlds.init();
+    }
+
+    @Test
+    void compiledGenomesActAsInterpreted() throws ReflectiveOperationException {
+        int runs = 0;
+        for (long seed = 1; seed <= 2; ++seed) {
+            runs += compare(seed, 0);
+            runs += compare(seed, 30);
+        }
+        Assertions.assertTrue(runs > 2000, "Only " + runs + " programs were run");
+    }
+
+    /**
+     * @return Count of run programs
+     */
+    private static int compare(long seed, int turns) throws ReflectiveOperationException {
+        final TwinWorlds worlds = new TwinWorlds(seed, turns);
+        final InterpreterContext context = new InterpreterContext();
+        int runs = 0;
+        for (int i = 0; i < worlds.botCount(); ++i) {
+            final EvoBot interpretedBot = worlds.firstBot(i);
+            final EvoBot compiledBot = worlds.secondBot(i);
+            // genome of the world, then random ones
+            for (int genome = 0; genome <= GENOMES && worlds.isLive(i); ++genome) {
+                final long stream = (long) i * (GENOMES + 1) + genome;
+                if (genome > 0) {
+                    RandomGenomes.set(interpretedBot, new RandomGen(stream));
+                    RandomGenomes.set(compiledBot, new RandomGen(stream));
+                }
+                final boolean embryo = genome % 2 == 1;
+                final boolean optimize = genome % 4 >= 2;
+                final int gene = embryo ? interpretedBot.embryoGeneIndex : interpretedBot.activeGeneIndex;
+                final GenomeProgram program = context.compile(interpretedBot, gene, embryo, optimize);
+                if (!GenomeJit.canCompile(program)) {
+                    continue;
+                }
+                final CompiledGenome compiled = GenomeJit.compile(context.compile(compiledBot, gene, embryo, optimize));
+
+                final String message = "seed " + seed + ", turn " + turns + ", bot " + i + ", genome " + genome;
+                final int interpretedDraw = TwinWorlds.run(worlds.first, interpretedBot, stream,
+                        () -> context.run(worlds.first, interpretedBot, program));
+                final int compiledDraw = TwinWorlds.run(worlds.second, compiledBot, stream,
+                        () -> compiled.run(worlds.second, compiledBot));
+                Assertions.assertEquals(interpretedDraw, compiledDraw, message);
+                Assertions.assertEquals(interpretedBot.activeGeneIndex, compiledBot.activeGeneIndex, message);
+                Assertions.assertEquals(interpretedBot.isDead, compiledBot.isDead, message);
+                worlds.assertEqual(message);
+                ++runs;
+            }
+        }
+        worlds.dispose();
+        return runs;
+    }
+}
@@ -0,0 +1,107 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+import com.gordonfromblumberg.games.core.common.utils.RandomGen;
+import com.gordonfromblumberg.games.core.evocell.world.GameWorld;
+import com.gordonfromblumberg.games.core.evocell.world.TestWorlds;
+
+import java.util.Arrays;
+
+/**
+ * Compares interpretation of compiled and optimized programs of evolved bots.
+ * Two equal worlds are run, after each measured turn every live bot runs its active program once more
+ * in both worlds: compiled program in the first world and optimized one in the second world.
+ * Optimized programs act as compiled ones, so the worlds stay equal.
+ * <p>
+ * Run by {@code gradle desktop:bench -Pbenchmark=com.gordonfromblumberg.games.core.evocell.model.GenomeOptimizerBenchmark},
+ * the argument is the seed of the worlds
+ */
+public class GenomeOptimizerBenchmark {
+    private static final int SIZE = 500;
+    private static final int WARM_UP_TURNS = 400;
+    private static final int TURNS = 200;
+
+    public static void main(String[] args) {
+        TestWorlds.init();
+        TestWorlds.config().setInteger("world.width", SIZE);
+        TestWorlds.config().setInteger("world.height", SIZE);
+        // worlds are stepped in turns, so their draws should not depend on the order
+        TestWorlds.config().setBoolean("world.deterministic", true);
+        final long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+
+        final TwinWorlds worlds = new TwinWorlds(seed, 0);
+        final InterpreterContext context = new InterpreterContext();
+        final long[] compiled = new long[3];
+        final long[] optimized = new long[3];
+        // execution time of optimized programs relative to compiled ones by measured turns
+        final double[] ratios = new double[TURNS];
+        long runs = 0;
+        for (int turn = 1; turn <= WARM_UP_TURNS + TURNS; ++turn) {
+            worlds.step();
+            if (turn == WARM_UP_TURNS) {
+                Arrays.fill(compiled, 0);
+                Arrays.fill(optimized, 0);
+                runs = 0;
+            }
+            final long compiledTime = compiled[1], optimizedTime = optimized[1];
+            for (int i = 0; i < worlds.botCount(); ++i) {
+                if (!worlds.isLive(i)) {
+                    continue;
+                }
+                final long stream = (long) turn * SIZE * SIZE + i;
+                // the order is changed every turn, so both variants run with warm and cold caches
+                if ((turn & 1) == 0) {
+                    run(worlds.first, worlds.firstBot(i), context, false, stream, compiled);
+                    run(worlds.second, worlds.secondBot(i), context, true, stream, optimized);
+                } else {
+                    run(worlds.second, worlds.secondBot(i), context, true, stream, optimized);
+                    run(worlds.first, worlds.firstBot(i), context, false, stream, compiled);
+                }
+                ++runs;
+            }
+            if (turn > WARM_UP_TURNS) {
+                ratios[turn - WARM_UP_TURNS - 1] = (double) (optimized[1] - optimizedTime) / (compiled[1] - compiledTime);
+            }
+            if (turn % 50 == 0) {
+                worlds.assertEqual("Worlds differ at turn " + turn);
+            }
+        }
+
+        System.out.printf("%d programs run in %d turns%n", runs, TURNS);
+        print("compiled", compiled, runs);
+        print("optimized", optimized, runs);
+        Arrays.sort(ratios);
+        System.out.printf("execution %.1f%% faster, median of turns %.1f%%, code %.1f%% shorter%n",
+                100.0 * (compiled[1] - optimized[1]) / compiled[1], 100.0 * (1 - ratios[TURNS / 2]),
+                100.0 * (compiled[2] - optimized[2]) / compiled[2]);
+        final double saved = (double) (compiled[1] - optimized[1]) / runs;
+        final double cost = (double) (optimized[0] - compiled[0]) / runs;
+        System.out.printf("optimization costs %.0f ns, it pays back after %.1f runs of the program%n",
+                cost, cost / saved);
+        worlds.dispose();
+    }
+
+    /**
+     * @param totals Nanoseconds of compilation, nanoseconds of execution and length of code
+     */
+    private static void run(GameWorld world, EvoBot bot, InterpreterContext context, boolean optimize,
+                            long stream, long[] totals) {
+        final long start = System.nanoTime();
+        final GenomeProgram program = context.compile(bot, bot.activeGeneIndex, false, optimize);
+        final long compiled = System.nanoTime();
+        RandomGen.setCurrent(new RandomGen(stream));
+        bot.startProgram(world);
+        final long executionStart = System.nanoTime();
+        context.run(world, bot, program);
+        final long executed = System.nanoTime();
+        bot.finishProgram(world);
+        RandomGen.setCurrent(null);
+        totals[0] += compiled - start;
+        totals[1] += executed - executionStart;
+        totals[2] += program.code.length;
+    }
+
+    private static void print(String name, long[] totals, long runs) {
+        System.out.printf("%-10s compilation %6.0f ns, execution %6.1f ns, code %5.1f%n",
+                name, (double) totals[0] / runs, (double) totals[1] / runs, (double) totals[2] / runs);
+    }
+}
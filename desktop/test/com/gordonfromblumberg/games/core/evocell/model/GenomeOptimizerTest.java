@@ -0,0 +1,72 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+import com.gordonfromblumberg.games.core.common.utils.RandomGen;
+import com.gordonfromblumberg.games.core.evocell.world.TestWorlds;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs genomes of {@link TwinWorlds}, compiled programs in the first world and optimized programs in the second one
+ */
+public class GenomeOptimizerTest {
+    private static final int GAS = Integer.MAX_VALUE;
+    // random genomes run by each bot
+    private static final int GENOMES = 4;
+
+    @BeforeAll
+    static void init() {
+        TestWorlds.init();
+    }
+
+    @Test
+    void optimizedProgramsActAsCompiled() {
+        int runs = 0;
+        for (long seed = 1; seed <= 3; ++seed) {
+            runs += compare(seed, 0);
+            runs += compare(seed, 30);
+        }
+        Assertions.assertTrue(runs > 4000, "Only " + runs + " programs were run");
+    }
+
+    /**
+     * @return Count of run programs
+     */
+    private static int compare(long seed, int turns) {
+        final TwinWorlds worlds = new TwinWorlds(seed, turns);
+        worlds.assertEqual("seed " + seed + ", turn " + turns);
+        final InterpreterContext context = new InterpreterContext();
+        final int[] gas = new int[2];
+        int runs = 0;
+        for (int i = 0; i < worlds.botCount(); ++i) {
+            final EvoBot compiledBot = worlds.firstBot(i);
+            final EvoBot optimizedBot = worlds.secondBot(i);
+            // genome of the world, then random ones
+            for (int genome = 0; genome <= GENOMES && worlds.isLive(i); ++genome) {
+                final long stream = (long) i * (GENOMES + 1) + genome;
+                if (genome > 0) {
+                    RandomGenomes.set(compiledBot, new RandomGen(stream));
+                    RandomGenomes.set(optimizedBot, new RandomGen(stream));
+                }
+                final boolean embryo = genome % 2 == 1;
+                final int gene = embryo ? compiledBot.embryoGeneIndex : compiledBot.activeGeneIndex;
+                final GenomeProgram compiled = context.compile(compiledBot, gene, embryo, false);
+                final GenomeProgram optimized = context.compile(optimizedBot, gene, embryo, true);
+                Assertions.assertTrue(optimized.code.length <= compiled.code.length);
+
+                final String message = "seed " + seed + ", turn " + turns + ", bot " + i + ", genome " + genome;
+                final int compiledDraw = TwinWorlds.run(worlds.first, compiledBot, stream,
+                        () -> gas[0] = GAS - context.run(worlds.first, compiledBot, compiled, GAS));
+                final int optimizedDraw = TwinWorlds.run(worlds.second, optimizedBot, stream,
+                        () -> gas[1] = GAS - context.run(worlds.second, optimizedBot, optimized, GAS));
+                Assertions.assertTrue(gas[1] <= gas[0], message);
+                Assertions.assertEquals(compiledDraw, optimizedDraw, message);
+                Assertions.assertEquals(compiledBot.activeGeneIndex, optimizedBot.activeGeneIndex, message);
+                worlds.assertEqual(message);
+                ++runs;
+            }
+        }
+        worlds.dispose();
+        return runs;
+    }
+}
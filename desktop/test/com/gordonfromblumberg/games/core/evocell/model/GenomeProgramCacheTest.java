@@ -0,0 +1,112 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+import com.gordonfromblumberg.games.core.evocell.world.GameWorld;
+import com.gordonfromblumberg.games.core.evocell.world.TestWorlds;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class GenomeProgramCacheTest {
+
+    @BeforeAll
+    static void init() {
+        TestWorlds.init();
+    }
+
+    @Test
+    void hashDependsOnContent() {
+        final GenomeArena arena = new GenomeArena();
+        final DNA dna1 = DNA.getInstance(arena);
+        final DNA dna2 = DNA.getInstance(arena);
+        dna1.setGene(1, 1, 2, 3, 4, 5, 6, 7, 8);
+        dna2.setGene(1, 1, 2, 3, 4, 5, 6, 7, 8);
+        assertHashEquals(true, dna1, dna2);
+
+        dna2.setGene(3, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1);
+        assertHashEquals(false, dna1, dna2);
+
+        dna2.set(dna1);
+        assertHashEquals(true, dna1, dna2);
+        dna2.setGeneCount(dna2.getGeneCount() + 1);
+        assertHashEquals(false, dna1, dna2);
+        dna1.release();
+        dna2.release();
+    }
+
+    @Test
+    void leastRecentlyUsedProgramIsEvicted() {
+        final GameWorld world = TestWorlds.create(1);
+        final EvoBot bot = bot(world);
+        final InterpreterContext context = new InterpreterContext();
+        final GenomeProgramCache cache = new GenomeProgramCache(2);
+        final GenomeProgram program0 = context.compile(bot, 0, false);
+        final GenomeProgram program1 = context.compile(bot, 1, false);
+        cache.put(bot.dna, 0, false, program0);
+        cache.put(bot.dna, 1, false, program1);
+        Assertions.assertSame(program0, cache.get(bot.dna, 0, false));
+        Assertions.assertNull(cache.get(bot.dna, 0, true));
+
+        cache.put(bot.dna, 0, true, context.compile(bot, 0, true));
+        Assertions.assertNull(cache.get(bot.dna, 1, false));
+        Assertions.assertSame(program0, cache.get(bot.dna, 0, false));
+        Assertions.assertEquals(2, cache.getSize());
+        Assertions.assertEquals(2, cache.getHits());
+        Assertions.assertEquals(2, cache.getMisses());
+        Assertions.assertEquals(1, cache.getEvictions());
+        world.dispose();
+    }
+
+    @Test
+    void botsWithEqualGenesShareProgram() {
+        final GameWorld world = TestWorlds.create(1);
+        final Interpreter interpreter = new Interpreter(16);
+        final GenomeProgramCache cache = interpreter.getProgramCache();
+        final EvoBot original = bot(world);
+        final EvoBot bot1 = copy(original);
+        final EvoBot bot2 = copy(original);
+
+        final GenomeProgram program = interpreter.getProgram(bot1, bot1.activeGeneIndex, false);
+        Assertions.assertSame(program, interpreter.getProgram(bot2, bot2.activeGeneIndex, false));
+        Assertions.assertEquals(1, cache.getHits());
+        Assertions.assertEquals(1, cache.getMisses());
+
+        // the embryo program printed for the second bot is compiled for the first one
+        interpreter.print(bot1);
+        Assertions.assertEquals(2, cache.getMisses());
+        interpreter.print(bot2);
+        Assertions.assertEquals(2, cache.getMisses());
+        Assertions.assertEquals(2, cache.getHits());
+        bot1.release();
+        bot2.release();
+        world.dispose();
+    }
+
+    /**
+     * @return New bot with the genes of the given one in its own DNA
+     */
+    private static EvoBot copy(EvoBot original) {
+        final EvoBot bot = EvoBot.getInstance(original.store);
+        bot.setRandomDna();
+        bot.dna.set(original.dna);
+        bot.setActiveGeneIndex(original.activeGeneIndex);
+        bot.setEmbryoGeneIndex(original.getEmbryoGeneIndex());
+        return bot;
+    }
+
+    private static EvoBot bot(GameWorld world) {
+        final CellGrid grid = world.getGrid();
+        for (int x = 0; x < grid.getWidth(); ++x) {
+            for (int y = 0; y < grid.getHeight(); ++y) {
+                if (grid.getBot(grid.index(x, y)) instanceof EvoBot bot) {
+                    return bot;
+                }
+            }
+        }
+        throw new IllegalStateException("No evo bots in the world");
+    }
+
+    private static void assertHashEquals(boolean expected, DNA dna1, DNA dna2) {
+        Assertions.assertEquals(expected, dna1.contentHashHigh() == dna2.contentHashHigh()
+                && dna1.contentHashLow() == dna2.contentHashLow());
+    }
+}
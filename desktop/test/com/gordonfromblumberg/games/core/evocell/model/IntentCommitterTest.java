@@ -0,0 +1,97 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+import com.badlogic.gdx.utils.IntMap;
+import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
+import com.gordonfromblumberg.games.core.common.utils.RandomGen;
+import com.gordonfromblumberg.games.core.evocell.world.GameWorld;
+import com.gordonfromblumberg.games.core.evocell.world.TestWorlds;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+/**
+ * Groups of intents are resolved concurrently, offspring of a group draw from the stream of its target cell,
+ * so in intent mode the result of a turn doesn't depend on threads even if the world is not deterministic
+ */
+public class IntentCommitterTest {
+    private static final long SEED = 3;
+    private static final int TILE_SIZE = 20;
+
+    @BeforeAll
+    static void init() {
+        TestWorlds.init();
+    }
+
+    @AfterEach
+    void reset() {
+        final ConfigManager config = TestWorlds.config();
+        config.setBoolean("world.intentMode", false);
+        config.setInteger("world.threads", 1);
+        config.setInteger("world.tileSize", 32);
+    }
+
+    @Test
+    void offspringDontDependOnThreads() {
+        final ConfigManager config = TestWorlds.config();
+        config.setBoolean("world.intentMode", true);
+        config.setInteger("world.tileSize", TILE_SIZE);
+        for (int seed = 0; seed < 3; ++seed) {
+            Assertions.assertEquals(turn(SEED + seed, 2), turn(SEED + seed, 4), "seed " + (SEED + seed));
+        }
+    }
+
+    /**
+     * Every bot of the new world produces an offspring in the first turn
+     * @return Hash of the world after the turn
+     */
+    private static long turn(long seed, int threads) {
+        TestWorlds.config().setInteger("world.threads", threads);
+        final GameWorld world = TestWorlds.create(seed);
+        final CellGrid grid = world.getGrid();
+        final int[] gene = new int[DNA.geneValueCount];
+        Arrays.fill(gene, action("nothing"));
+        gene[0] = action("produceOffspring");
+        int parents = 0;
+        for (int x = 0; x < grid.getWidth(); ++x) {
+            for (int y = 0; y < grid.getHeight(); ++y) {
+                if (grid.getBot(grid.index(x, y)) instanceof EvoBot bot) {
+                    bot.setGene(0, gene);
+                    bot.setActiveGeneIndex(0);
+                    bot.store.age[bot.slot] = Bot.minAgeToReproduce;
+                    bot.turnsAfterReproduced = Bot.reproduceDelay;
+                    ++parents;
+                }
+            }
+        }
+
+        // draws of the main thread between worlds don't matter
+        RandomGen.setSeed(seed);
+        world.step();
+        int offspring = 0;
+        for (int x = 0; x < grid.getWidth(); ++x) {
+            for (int y = 0; y < grid.getHeight(); ++y) {
+                final Bot bot = grid.getBot(grid.index(x, y));
+                if (bot != null && bot.getParentId() != 0) {
+                    ++offspring;
+                }
+            }
+        }
+        // every offspring is the winner of its own group
+        Assertions.assertTrue(offspring > parents / 2, offspring + " offspring of " + parents + " bots");
+        final long hash = TestWorlds.hash(world);
+        world.dispose();
+        return hash;
+    }
+
+    private static int action(String name) {
+        for (IntMap.Entry<ActionDef> entry : Actions.actionDefs) {
+            if (entry.value.name().equals(name)) {
+                return entry.key;
+            }
+        }
+        throw new IllegalArgumentException("Unknown action " + name);
+    }
+}
@@ -0,0 +1,54 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.gordonfromblumberg.games.core.common.utils.RandomGen;
+
+/**
+ * Random genomes for tests of genome execution. Uniformly random genes consist mostly of
+ * constants and actions without parameters, so codes of actions, expressions and expression markers
+ * are drawn more often, then conditions, gotos and nested expressions are common
+ */
+final class RandomGenomes {
+    private static final IntArray actionCodes = new IntArray();
+    private static final IntArray expressionCodes = new IntArray();
+
+    static {
+        actionCodes.addAll(Actions.actionDefs.keys().toArray());
+        actionCodes.addAll(Actions.embryoActionDefs.keys().toArray());
+        expressionCodes.addAll(Expressions.expressionDefs.keys().toArray());
+    }
+
+    private RandomGenomes() {
+        throw new UnsupportedOperationException("RandomGenomes is utility class");
+    }
+
+    /**
+     * Replaces all genes of the bot by random ones
+     */
+    static void set(EvoBot bot, RandomGen rand) {
+        final int[] values = new int[DNA.geneValueCount];
+        for (int gene = 0, n = bot.dna.getGeneCount(); gene < n; ++gene) {
+            for (int i = 0; i < values.length; ++i) {
+                values[i] = value(rand);
+            }
+            bot.setGene(gene, values);
+        }
+        bot.setActiveGeneIndex(rand.nextInt(bot.dna.getGeneCount()));
+        bot.setEmbryoGeneIndex((byte) rand.nextInt(bot.dna.getGeneCount()));
+    }
+
+    private static int value(RandomGen rand) {
+        final int kind = rand.nextInt(10);
+        if (kind < 3) {
+            return actionCodes.get(rand.nextInt(actionCodes.size));
+        } else if (kind < 5) {
+            return expressionCodes.get(rand.nextInt(expressionCodes.size));
+        } else if (kind < 7) {
+            final int marker = rand.nextInt(Interpreter.expressionMarker + 1, Byte.MAX_VALUE);
+            return rand.nextBool() ? marker : -marker;
+        } else if (kind < 8) {
+            return rand.nextInt(-3, 3);
+        }
+        return rand.nextByte();
+    }
+}
@@ -0,0 +1,164 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntIntMap;
+import com.badlogic.gdx.utils.IntSet;
+import com.badlogic.gdx.utils.ObjectIntMap;
+import com.gordonfromblumberg.games.core.common.utils.RandomGen;
+import com.gordonfromblumberg.games.core.evocell.world.GameWorld;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Walks parsed steps of a program as the interpreter did before genomes were compiled to flat code,
+ * compiled code should act the same:
+ * <ul>
+ *     <li>random defaults are drawn in order of parsing, goto targets are parsed where the goto is met</li>
+ *     <li>the bot is checked after each action, a dead bot stops the program</li>
+ *     <li>goto over the limit and gotoGene to an evaluated gene fall through to the next action</li>
+ *     <li>and, or evaluate the second operand only if the first one doesn't decide</li>
+ *     <li>embryo program marks gene 0 as evaluated, not the embryo gene</li>
+ * </ul>
+ */
+final class ReferenceInterpreter {
+    private final IntSet evaluatedGenes = new IntSet();
+    private final IntIntMap evaluatedGotos = new IntIntMap();
+    private final ObjectIntMap<String> actionCounters = new ObjectIntMap<>();
+    private final Map<Step, Byte> defaults = new IdentityHashMap<>();
+    private final Set<Step> parsed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Runs parsed steps of the gene as the active program or as the embryo program of the bot
+     * @param root Parsed gene, root of a compiled program
+     */
+    void run(GameWorld world, EvoBot bot, Step root, int geneIndex, boolean embryo) {
+        evaluatedGenes.clear();
+        evaluatedGotos.clear();
+        actionCounters.clear();
+        defaults.clear();
+        parsed.clear();
+        drawDefaults(root);
+
+        evaluatedGenes.add(embryo ? 0 : geneIndex);
+        run(world, bot, root);
+    }
+
+    /**
+     * Draws defaults of the step and its parameters in order of parsing, steps of goto targets are shared
+     * and they are parsed once
+     */
+    private void drawDefaults(Step step) {
+        if (!parsed.add(step)) {
+            return;
+        }
+        final Array<Step> parameters = step.parameters();
+        for (int i = 0; i < parameters.size; ++i) {
+            final Step parameter = parameters.get(i);
+            if (parameter.defaultSlot >= 0) {
+                final ActionDef actionDef = (ActionDef) step.stepDef;
+                defaults.put(parameter, actionDef.parameters()[i].defaultValue().get());
+            } else {
+                drawDefaults(parameter);
+            }
+        }
+    }
+
+    /**
+     * @return true if the program should be stopped
+     */
+    private boolean run(GameWorld world, EvoBot bot, Step step) {
+        if (step.type == null) {
+            return false;
+        }
+
+        final Array<Step> parameters = step.parameters();
+        switch (step.type) {
+            case action -> {
+                final ActionDef actionDef = (ActionDef) step.stepDef;
+                final int counter = actionCounters.getAndIncrement(actionDef.tag(), 0, 1);
+                final int parameter = parameters.size > 0 ? number(world, bot, parameters.get(0)) : 0;
+                Actions.act(Actions.actionIds.get(actionDef.name(), -1), world, bot, counter, parameter);
+                if (!Interpreter.check(bot)) {
+                    bot.die();
+                    return true;
+                }
+                return "stop".equals(actionDef.name());
+            }
+            case actionGroup -> {
+                for (Step subAction : parameters) {
+                    if (run(world, bot, subAction)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            case ifStatement -> {
+                if (parameters.size < 2) {
+                    return false;
+                }
+                return bool(world, bot, parameters.get(0))
+                        ? run(world, bot, parameters.get(1))
+                        : parameters.size > 2 && run(world, bot, parameters.get(2));
+            }
+            case gotoStatement -> {
+                final ActionDef actionDef = (ActionDef) step.stepDef;
+                if ("goto".equals(actionDef.name())) {
+                    final int key = Interpreter.gotoToKey(step.geneIndex, step.geneValueIndex);
+                    if (evaluatedGotos.getAndIncrement(key, 0, 1) < Interpreter.gotoLimit) {
+                        run(world, bot, parameters.get(0));
+                        return true;
+                    }
+                } else if (evaluatedGenes.add(step.value)) {
+                    run(world, bot, parameters.get(0));
+                    return true;
+                }
+                return false;
+            }
+            default -> throw new IllegalStateException("run should not be invoked for expression step");
+        }
+    }
+
+    private boolean bool(GameWorld world, EvoBot bot, Step step) {
+        return number(world, bot, step) > 0;
+    }
+
+    private int number(GameWorld world, EvoBot bot, Step step) {
+        if (!(step.stepDef instanceof ExpressionDef expressionDef)) {
+            return step.defaultSlot >= 0 ? defaults.get(step) : step.value;
+        }
+
+        final CellGrid grid = world.getGrid();
+        final Array<Step> parameters = step.parameters();
+        final Step p1 = parameters.size > 0 ? parameters.get(0) : null;
+        final Step p2 = parameters.size > 1 ? parameters.get(1) : null;
+        return switch (expressionDef.name()) {
+            case "random" -> RandomGen.current().nextByte();
+            case "equals" -> number(world, bot, p1) == number(world, bot, p2) ? 1 : 0;
+            case "not" -> bool(world, bot, p1) ? 0 : 1;
+            case "gt" -> number(world, bot, p1) > number(world, bot, p2) ? 1 : 0;
+            case "lt" -> number(world, bot, p1) < number(world, bot, p2) ? 1 : 0;
+            case "and" -> bool(world, bot, p1) && bool(world, bot, p2) ? 1 : 0;
+            case "or" -> bool(world, bot, p1) || bool(world, bot, p2) ? 1 : 0;
+            case "sum" -> number(world, bot, p1) + number(world, bot, p2);
+            case "subtract" -> number(world, bot, p1) - number(world, bot, p2);
+            case "mul" -> number(world, bot, p1) * number(world, bot, p2);
+            case "div" -> Bot.div(number(world, bot, p1), number(world, bot, p2));
+            case "get my cell property" -> Bot.getCellProperty(grid, bot.cell, number(world, bot, p1));
+            case "get my property" -> Bot.getBotProperty(bot, number(world, bot, p1));
+            case "get my parameter" -> bot.getParameter(number(world, bot, p1));
+            case "is my cell property gt" ->
+                    Bot.getCellProperty(grid, bot.cell, number(world, bot, p1)) > number(world, bot, p2) ? 1 : 0;
+            case "is my property gt" ->
+                    Bot.getBotProperty(bot, number(world, bot, p1)) > number(world, bot, p2) ? 1 : 0;
+            case "is forward cell with bot" -> Expressions.isForwardCellWithBot(grid, bot) ? 1 : 0;
+            case "is near empty cell" -> bot.isNearEmptyCell(grid) ? 1 : 0;
+            case "is my relative forward" -> Expressions.isRelativeForward(grid, bot) ? 1 : 0;
+            case "get context cell property" ->
+                    bot.cell >= 0 ? Bot.getCellProperty(grid, bot.cell, number(world, bot, p1)) : 0;
+            default -> throw new IllegalStateException("Unknown expression " + expressionDef.name());
+        };
+    }
+}
@@ -0,0 +1,143 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.gordonfromblumberg.games.core.common.chunk.ChunkedGrid;
+import jdk.incubator.vector.IntVector;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares scalar and vector resource kernels on the ranges which {@code GameWorld.updateCells} passes to them.
+ * A row of a tile is split by chunks, a part which is not a multiple of the lane count ends with a scalar tail,
+ * lane utilisation is the share of cells updated by whole vectors.
+ * Cells are reset to the same random state before every turn, otherwise they come to stable state.
+ * <p>
+ * Run by {@code gradle desktop:bench -Pbenchmark=com.gordonfromblumberg.games.core.evocell.model.ResourceKernelBenchmark},
+ * arguments are world width and tile size, 0 tile size means whole rows as sequential update does.
+ * Without arguments widths 160, 500, 1000 are measured with whole rows, deterministic tiles of 32 and tiles of 20
+ */
+public class ResourceKernelBenchmark {
+    private static final int WARM_UP_TURNS = 200;
+    private static final int TURNS = 400;
+
+    public static void main(String[] args) {
+        final ResourceKernel scalar = new ScalarResourceKernel();
+        final ResourceKernel vector = new VectorResourceKernel();
+        System.out.println("vector kernel: " + vector.describe());
+        System.out.println(" width  tile  lane utilisation  scalar ns/cell  vector ns/cell  speedup");
+        if (args.length > 0) {
+            run(scalar, vector, Integer.parseInt(args[0]), args.length > 1 ? Integer.parseInt(args[1]) : 0);
+            return;
+        }
+        for (int width : new int[] {160, 500, 1000}) {
+            for (int tileSize : new int[] {0, 32, 20}) {
+                run(scalar, vector, width, tileSize);
+            }
+        }
+    }
+
+    private static void run(ResourceKernel scalar, ResourceKernel vector, int width, int tileSize) {
+        final IntArray ranges = rowRanges(width, tileSize);
+        int vectorCells = 0;
+        for (int i = 0; i < ranges.size; i += 2) {
+            vectorCells += IntVector.SPECIES_PREFERRED.loopBound(ranges.get(i + 1) - ranges.get(i));
+        }
+
+        final CellChunk initial = new CellChunk(false);
+        fill(initial, new Random(width));
+        final CellChunk scalarChunk = new CellChunk(false);
+        final CellChunk vectorChunk = new CellChunk(false);
+        long scalarTime = 0, vectorTime = 0;
+        for (int turn = 0; turn < WARM_UP_TURNS + TURNS; ++turn) {
+            if (turn == WARM_UP_TURNS) {
+                scalarTime = vectorTime = 0;
+            }
+            copy(initial, scalarChunk);
+            copy(initial, vectorChunk);
+            // the order is changed every turn, so both kernels run with warm and cold caches
+            if ((turn & 1) == 0) {
+                scalarTime += turn(scalar, scalarChunk, ranges, width);
+                vectorTime += turn(vector, vectorChunk, ranges, width);
+            } else {
+                vectorTime += turn(vector, vectorChunk, ranges, width);
+                scalarTime += turn(scalar, scalarChunk, ranges, width);
+            }
+            assertEqual(scalarChunk, vectorChunk);
+        }
+
+        final double cells = (double) width * width * TURNS;
+        System.out.printf("%6d  %4d  %15.1f%%  %14.3f  %14.3f  %6.2fx%n", width, tileSize,
+                100.0 * vectorCells / width, scalarTime / cells, vectorTime / cells, (double) scalarTime / vectorTime);
+    }
+
+    /**
+     * @return Pairs of x ranges [from; to) passed to the kernel for one row, tiles split rows and chunks split tiles
+     */
+    private static IntArray rowRanges(int width, int tileSize) {
+        final IntArray ranges = new IntArray();
+        final int step = tileSize > 0 ? tileSize : width;
+        for (int fromX = 0; fromX < width; fromX += step) {
+            final int toX = Math.min(fromX + step, width);
+            for (int x = fromX; x < toX; ) {
+                final int to = Math.min(toX, (x & -ChunkedGrid.CHUNK_SIZE) + ChunkedGrid.CHUNK_SIZE);
+                ranges.add(x, to);
+                x = to;
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Updates all rows of a square world, every row is mapped to the row of one chunk with the same local indices
+     * @return Nanoseconds
+     */
+    private static long turn(ResourceKernel kernel, CellChunk chunk, IntArray ranges, int height) {
+        final int mask = ChunkedGrid.CHUNK_SIZE - 1;
+        final long start = System.nanoTime();
+        for (int y = 0; y < height; ++y) {
+            final int rowStart = (y & mask) << ChunkedGrid.CHUNK_SHIFT;
+            for (int i = 0; i < ranges.size; i += 2) {
+                final int from = ranges.get(i);
+                kernel.update(chunk, rowStart + (from & mask), rowStart + (from & mask) + ranges.get(i + 1) - from);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static void fill(CellChunk chunk, Random random) {
+        for (int i = 0; i < CellChunk.AREA; ++i) {
+            chunk.temperature[i] = random.nextInt(-30, 40);
+            chunk.organics[i] = random.nextInt(3) == 0 ? 0 : random.nextInt(100);
+            chunk.turnsAfterOrganicsUpdate[i] = random.nextInt(50);
+            chunk.minerals[i] = random.nextInt(300);
+            chunk.energy[i] = random.nextInt(3) == 0 ? 0 : random.nextInt(100);
+            chunk.humidity[i] = random.nextInt(20);
+            chunk.water[i] = random.nextInt(20);
+            chunk.turnsAfterWaterUpdate[i] = random.nextInt(15);
+        }
+    }
+
+    private static void copy(CellChunk from, CellChunk to) {
+        final int[][] source = arrays(from);
+        final int[][] target = arrays(to);
+        for (int i = 0; i < source.length; ++i) {
+            System.arraycopy(source[i], 0, target[i], 0, CellChunk.AREA);
+        }
+    }
+
+    private static void assertEqual(CellChunk expected, CellChunk actual) {
+        final int[][] expectedArrays = arrays(expected);
+        final int[][] actualArrays = arrays(actual);
+        for (int i = 0; i < expectedArrays.length; ++i) {
+            if (!Arrays.equals(expectedArrays[i], actualArrays[i])) {
+                throw new IllegalStateException("Vector kernel differs from scalar one");
+            }
+        }
+    }
+
+    private static int[][] arrays(CellChunk chunk) {
+        return new int[][] {chunk.temperature, chunk.organics, chunk.turnsAfterOrganicsUpdate, chunk.minerals,
+                chunk.energy, chunk.humidity, chunk.water, chunk.turnsAfterWaterUpdate};
+    }
+}
@@ -0,0 +1,118 @@
+package com.gordonfromblumberg.games.core.evocell.model;
+
+import com.badlogic.gdx.utils.Array;
+import com.gordonfromblumberg.games.core.common.utils.RandomGen;
+import com.gordonfromblumberg.games.core.evocell.world.GameWorld;
+import com.gordonfromblumberg.games.core.evocell.world.TestWorlds;
+import org.junit.jupiter.api.Assertions;
+
+/**
+ * Two equal worlds for differential tests of genome execution: a bot of the first world runs
+ * one implementation of its genome, the bot of the same cell of the second world runs another one,
+ * then both worlds should stay equal
+ */
+final class TwinWorlds {
+    final GameWorld first;
+    final GameWorld second;
+    private final Array<EvoBot> firstBots = new Array<>();
+    private final Array<EvoBot> secondBots = new Array<>();
+
+    /**
+     * Worlds are created and run one after another, so they get the same draws in any mode
+     */
+    TwinWorlds(long seed, int turns) {
+        first = create(seed, turns);
+        second = create(seed, turns);
+        collectBots();
+    }
+
+    private static GameWorld create(long seed, int turns) {
+        final GameWorld world = TestWorlds.create(seed);
+        for (int i = 0; i < turns; ++i) {
+            world.step();
+        }
+        return world;
+    }
+
+    /**
+     * Steps both worlds, draws of the worlds don't depend on the order only in deterministic mode
+     */
+    void step() {
+        first.step();
+        second.step();
+        collectBots();
+    }
+
+    /**
+     * Collects bots of both worlds in order of cells
+     */
+    void collectBots() {
+        collectBots(first, firstBots);
+        collectBots(second, secondBots);
+        Assertions.assertEquals(firstBots.size, secondBots.size);
+    }
+
+    private static void collectBots(GameWorld world, Array<EvoBot> bots) {
+        bots.clear();
+        final CellGrid grid = world.getGrid();
+        // cells are stored by chunks, so their indices are taken by coordinates
+        for (int x = 0; x < grid.getWidth(); ++x) {
+            for (int y = 0; y < grid.getHeight(); ++y) {
+                if (grid.getBot(grid.index(x, y)) instanceof EvoBot bot) {
+                    bots.add(bot);
+                }
+            }
+        }
+    }
+
+    int botCount() {
+        return firstBots.size;
+    }
+
+    EvoBot firstBot(int i) {
+        return firstBots.get(i);
+    }
+
+    EvoBot secondBot(int i) {
+        return secondBots.get(i);
+    }
+
+    /**
+     * @return false if the bot died or was eaten by a bot run before, it is checked in both worlds
+     */
+    boolean isLive(int i) {
+        final boolean live = isLive(first, firstBots.get(i));
+        Assertions.assertEquals(live, isLive(second, secondBots.get(i)), "Liveness of bot " + i);
+        return live;
+    }
+
+    static boolean isLive(GameWorld world, EvoBot bot) {
+        return !bot.isDead && bot.cell >= 0 && world.getGrid().getBot(bot.cell) == bot;
+    }
+
+    void assertEqual(String message) {
+        Assertions.assertEquals(TestWorlds.hash(first), TestWorlds.hash(second), message);
+    }
+
+    void dispose() {
+        first.dispose();
+        second.dispose();
+    }
+
+    /**
+     * Runs a program of the bot as a turn of the bot does, the bot draws from the given stream
+     * @return Next draw of the stream after the program, programs which draw different count of numbers
+     * return different values
+     */
+    static int run(GameWorld world, EvoBot bot, long stream, Runnable program) {
+        RandomGen.setCurrent(new RandomGen(stream));
+        try {
+            bot.startProgram(world);
+            program.run();
+            bot.finishProgram(world);
+            return RandomGen.current().nextInt(1 << 30);
+        } finally {
+            RandomGen.setCurrent(null);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.gordonfromblumberg.games.core.evocell.world;
+
+import com.badlogic.gdx.utils.IntIntMap;
+import com.badlogic.gdx.utils.IntSet;
+import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
+import com.gordonfromblumberg.games.core.common.utils.RandomGen;
+import com.gordonfromblumberg.games.core.evocell.model.ActiveBotList;
+import com.gordonfromblumberg.games.core.evocell.model.Bot;
+import com.gordonfromblumberg.games.core.evocell.model.BotStore;
+import com.gordonfromblumberg.games.core.evocell.model.CellGrid;
+import com.gordonfromblumberg.games.core.evocell.model.IntentBuffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Bots are updated from the list of active slots, in parallel mode the list is bucketed by tiles
+ */
+public class ActiveBotsTest {
+    private static final long SEED = 1;
+    private static final int TURNS = 30;
+
+    @BeforeAll
+    static void init() {
+        TestWorlds.init();
+    }
+
+    @AfterEach
+    void reset() {
+        final ConfigManager config = TestWorlds.config();
+        config.setBoolean("world.deterministic", false);
+        config.setBoolean("world.intentMode", false);
+        config.setBoolean("world.shuffleBots", false);
+        config.setInteger("world.threads", 1);
+        config.setInteger("world.tileSize", 32);
+    }
+
+    @Test
+    void everyLiveBotIsUpdatedOnce() {
+        checkUpdates("sequential");
+    }
+
+    @Test
+    void everyLiveBotIsUpdatedOnceInShuffledOrder() {
+        TestWorlds.config().setBoolean("world.shuffleBots", true);
+        checkUpdates("shuffled");
+    }
+
+    @Test
+    void everyLiveBotIsUpdatedOnceByTiles() {
+        final ConfigManager config = TestWorlds.config();
+        config.setInteger("world.threads", 3);
+        config.setInteger("world.tileSize", 20);
+        checkUpdates("tiles");
+        config.setBoolean("world.intentMode", true);
+        checkUpdates("tiles, intent mode");
+        config.setBoolean("world.deterministic", true);
+        checkUpdates("deterministic");
+    }
+
+    @Test
+    void bucketsHoldBotsOfTheirTiles() {
+        for (int tileSize : new int[] {16, 32, 50}) {
+            checkBuckets(tileSize, false);
+            checkBuckets(tileSize, true);
+        }
+    }
+
+    /**
+     * Records slots passed to updates of every turn, each slot of a live bot placed on the grid
+     * at the start of the turn should be updated exactly once
+     */
+    private static void checkUpdates(String mode) {
+        final IntIntMap updates = new IntIntMap();
+        final GameWorld world = TestWorlds.create(SEED, params -> new GameWorld(params) {
+            @Override
+            void updateBots(int[] slots, int from, int to, IntentBuffer intents) {
+                synchronized (updates) {
+                    for (int i = from; i < to; ++i) {
+                        updates.getAndIncrement(slots[i], 0, 1);
+                    }
+                }
+                super.updateBots(slots, from, to, intents);
+            }
+        });
+        final IntSet liveSlots = new IntSet();
+        for (int turn = 1; turn <= TURNS; ++turn) {
+            liveSlots(world, liveSlots);
+            updates.clear();
+            world.step();
+
+            final String message = mode + ", turn " + turn;
+            Assertions.assertTrue(liveSlots.size > 0, message);
+            Assertions.assertEquals(liveSlots.size, updates.size, message);
+            final IntSet.IntSetIterator slots = liveSlots.iterator();
+            while (slots.hasNext) {
+                final int slot = slots.next();
+                Assertions.assertEquals(1, updates.get(slot, 0), message + ", slot " + slot);
+            }
+        }
+        world.dispose();
+    }
+
+    /**
+     * Collects slots of bots placed on the grid, dead bots are removed from the grid by the end of turn
+     */
+    private static void liveSlots(GameWorld world, IntSet slots) {
+        slots.clear();
+        final CellGrid grid = world.cellGrid;
+        final BotStore store = world.botStore;
+        for (int x = 0; x < grid.getWidth(); ++x) {
+            for (int y = 0; y < grid.getHeight(); ++y) {
+                final Bot bot = grid.getBot(grid.index(x, y));
+                if (bot != null) {
+                    slots.add(store.getSlot(bot.getId()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Every active slot should get into the bucket of the tile of its cell once. Bots of a tile are updated
+     * in order of the list, in deterministic mode in order of cells
+     */
+    private static void checkBuckets(int tileSize, boolean deterministic) {
+        TestWorlds.config().setBoolean("world.deterministic", deterministic);
+        final GameWorld world = TestWorlds.create(SEED);
+        for (int turn = 0; turn < TURNS; ++turn) {
+            world.step();
+        }
+        final ActiveBotList activeBots = new ActiveBotList();
+        activeBots.collect(world.botStore);
+        if (!deterministic) {
+            activeBots.shuffle(new RandomGen(tileSize));
+        }
+        final ParallelTurnStepper stepper = new ParallelTurnStepper(world, 1, tileSize);
+        stepper.bucketByTile(activeBots);
+
+        final String message = "tile " + tileSize + (deterministic ? ", deterministic" : "");
+        final CellGrid grid = world.cellGrid;
+        final BotStore store = world.botStore;
+        final int tilesY = (grid.getHeight() + tileSize - 1) / tileSize;
+        // position of each active slot in the list
+        final IntIntMap positions = new IntIntMap();
+        for (int i = 0; i < activeBots.size(); ++i) {
+            positions.put(activeBots.slots()[i], i);
+        }
+        final int[] tileStarts = stepper.tileStarts;
+        Assertions.assertEquals(0, tileStarts[0], message);
+        Assertions.assertEquals(activeBots.size(), tileStarts[tileStarts.length - 1], message);
+        for (int tile = 0; tile < tileStarts.length - 1; ++tile) {
+            int previous = -1;
+            for (int i = tileStarts[tile]; i < tileStarts[tile + 1]; ++i) {
+                final int slot = stepper.tileSlots[i];
+                final int cell = store.get(slot).getCellIndex();
+                final int cellTile = grid.x(cell) / tileSize * tilesY + grid.y(cell) / tileSize;
+                Assertions.assertEquals(tile, cellTile, message + ", slot " + slot);
+                final int position = positions.remove(slot, -1);
+                Assertions.assertTrue(position >= 0, message + ", slot " + slot);
+                final int order = deterministic ? cell : position;
+                Assertions.assertTrue(previous < order, message + ", slot " + slot);
+                previous = order;
+            }
+        }
+        Assertions.assertEquals(0, positions.size, message);
+        stepper.dispose();
+        world.dispose();
+    }
+}
@@ -0,0 +1,54 @@
+package com.gordonfromblumberg.games.core.evocell.world;
+
+import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class DeterministicModeTest {
+    private static final long SEED = 11;
+    // population of the test world dies out after 150 turns
+    private static final int TURNS = 60;
+
+    @BeforeAll
+    static void init() {
+        TestWorlds.init();
+    }
+
+    @AfterEach
+    void reset() {
+        ConfigManager config = TestWorlds.config();
+        config.setBoolean("world.deterministic", false);
+        config.setBoolean("world.intentMode", false);
+        config.setInteger("world.threads", 1);
+        config.setInteger("world.tileSize", 32);
+    }
+
+    @Test
+    void resultDoesntDependOnThreads() {
+        TestWorlds.config().setBoolean("world.deterministic", true);
+        Assertions.assertEquals(run(1, 32), run(2, 32));
+        Assertions.assertEquals(run(1, 32), run(4, 32));
+    }
+
+    @Test
+    void resultDoesntDependOnThreadsInIntentMode() {
+        TestWorlds.config().setBoolean("world.deterministic", true);
+        TestWorlds.config().setBoolean("world.intentMode", true);
+        Assertions.assertEquals(run(1, 32), run(3, 32));
+    }
+
+    @Test
+    void resultDoesntDependOnTileSize() {
+        TestWorlds.config().setBoolean("world.deterministic", true);
+        Assertions.assertEquals(run(2, 16), run(2, 48));
+    }
+
+    private static long run(int threads, int tileSize) {
+        ConfigManager config = TestWorlds.config();
+        config.setInteger("world.threads", threads);
+        config.setInteger("world.tileSize", tileSize);
+        return TestWorlds.run(SEED, TURNS);
+    }
+}
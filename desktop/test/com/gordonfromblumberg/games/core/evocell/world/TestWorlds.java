@@ -0,0 +1,128 @@
+package com.gordonfromblumberg.games.core.evocell.world;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl.LwjglFiles;
+import com.gordonfromblumberg.games.core.common.Main;
+import com.gordonfromblumberg.games.core.common.factory.AbstractFactory;
+import com.gordonfromblumberg.games.core.common.log.LogManager;
+import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
+import com.gordonfromblumberg.games.core.common.utils.RandomGen;
+import com.gordonfromblumberg.games.core.evocell.model.Bot;
+import com.gordonfromblumberg.games.core.evocell.model.CellGrid;
+import com.gordonfromblumberg.games.core.evocell.model.EvoBot;
+import com.gordonfromblumberg.games.core.evocell.model.IntentBuffer;
+import com.gordonfromblumberg.games.desktop.common.factory.DesktopFactory;
+
+import java.util.function.Function;
+
+/**
+ * Creates worlds for tests as headless launcher does, config and model descriptions are loaded from assets.
+ * Config values cached in static fields are read once per JVM, so tests should change only settings
+ * which are read by every new world, e.g. world.threads or world.deterministic
+ */
+public final class TestWorlds {
+    private static boolean initialized;
+
+    private TestWorlds() {
+        throw new UnsupportedOperationException("TestWorlds is utility class");
+    }
+
+    public static synchronized void init() {
+        if (initialized) {
+            return;
+        }
+        Gdx.files = new LwjglFiles();
+        DesktopFactory.init();
+        final ConfigManager config = config();
+        config.init(Main.NAME);
+        config.setInteger("world.width", 160);
+        config.setInteger("world.height", 160);
+        LogManager.init();
+        initialized = true;
+    }
+
+    public static ConfigManager config() {
+        return AbstractFactory.getInstance().configManager();
+    }
+
+    /**
+     * Creates and initializes the world of the seed, the caller should dispose it
+     */
+    public static GameWorld create(long seed) {
+        return create(seed, GameWorld::new);
+    }
+
+    /**
+     * Creates and initializes the world of the seed by the given constructor, e.g. of a world with stubbed methods
+     */
+    public static <W extends GameWorld> W create(long seed, Function<WorldParams, W> constructor) {
+        RandomGen.setSeed(seed);
+        final WorldParams params = new WorldParams();
+        params.load(config());
+        final W world = constructor.apply(params);
+        world.initialize();
+        return world;
+    }
+
+    /**
+     * Intent mode: bots run by the current thread outside of a turn emit intents to the given buffer,
+     * as if the thread updated bots of a tile
+     */
+    public static void useIntents(GameWorld world, IntentBuffer intents) {
+        world.updateBots(new int[0], 0, 0, intents);
+    }
+
+    /**
+     * @return Hash of the world after the given count of turns
+     */
+    public static long run(long seed, int turns) {
+        final GameWorld world = create(seed);
+        try {
+            for (int i = 0; i < turns; ++i) {
+                world.step();
+            }
+            return hash(world);
+        } finally {
+            world.dispose();
+        }
+    }
+
+    /**
+     * Hash of resources of cells and state of bots. Ids of bots are skipped,
+     * they are taken from a shared counter and depend on threads scheduling
+     */
+    public static long hash(GameWorld world) {
+        final CellGrid grid = world.cellGrid;
+        long hash = world.getTurn();
+        // cells are stored by chunks, so their indices are taken by coordinates
+        for (int x = 0; x < grid.getWidth(); ++x) {
+            for (int y = 0; y < grid.getHeight(); ++y) {
+                final int i = grid.index(x, y);
+                hash = mix(hash, grid.getEnergy(i));
+                hash = mix(hash, grid.getOrganics(i));
+                hash = mix(hash, grid.getMinerals(i));
+                hash = mix(hash, grid.getWater(i));
+                final Bot bot = grid.getBot(i);
+                if (bot != null) {
+                    hash = mix(hash, bot.getEnergy());
+                    hash = mix(hash, bot.getOrganics());
+                    hash = mix(hash, bot.getMinerals());
+                    hash = mix(hash, bot.getWater());
+                    hash = mix(hash, bot.getTemperature());
+                    hash = mix(hash, bot.getHp());
+                    hash = mix(hash, bot.getAge());
+                    hash = mix(hash, bot.getGeneration());
+                    hash = mix(hash, bot.getDir().ordinal());
+                    if (bot instanceof EvoBot) {
+                        hash = mix(hash, ((EvoBot) bot).getActiveGeneIndex());
+                    }
+                }
+            }
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, int value) {
+        return (hash ^ value) * 0x100000001B3L;
+    }
+}
@@ -0,0 +1,70 @@
+package com.gordonfromblumberg.games.core.evocell.world;
+
+import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The turn runs out of its time budget after the given count of programs, then every next program
+ * is skipped and counted in {@link WorldStatistic}
+ */
+public class TurnBudgetTest {
+    private static final long SEED = 1;
+    // programs run before the budget is exceeded
+    private static final int PROGRAMS = 50;
+
+    @BeforeAll
+    static void init() {
+        TestWorlds.init();
+    }
+
+    @AfterEach
+    void reset() {
+        TestWorlds.config().setInteger("world.threads", 1);
+    }
+
+    @Test
+    void programsAreRunWithoutBudget() {
+        final GameWorld world = TestWorlds.create(SEED);
+        for (int turn = 0; turn < 5; ++turn) {
+            world.step();
+            Assertions.assertEquals(0, world.statistic.getSkippedPrograms());
+        }
+        world.dispose();
+    }
+
+    @Test
+    void skippedProgramsAreCounted() {
+        checkSkippedPrograms(1);
+    }
+
+    @Test
+    void skippedProgramsOfThreadsAreCounted() {
+        checkSkippedPrograms(3);
+    }
+
+    private static void checkSkippedPrograms(int threads) {
+        final ConfigManager config = TestWorlds.config();
+        config.setInteger("world.threads", threads);
+        // every program checks the budget once
+        final AtomicInteger programs = new AtomicInteger();
+        final GameWorld world = TestWorlds.create(SEED, params -> new GameWorld(params) {
+            @Override
+            public boolean isTurnBudgetExceeded() {
+                return programs.incrementAndGet() > PROGRAMS;
+            }
+        });
+        for (int turn = 0; turn < 5; ++turn) {
+            programs.set(0);
+            world.step();
+            final String message = "threads " + threads + ", turn " + world.getTurn();
+            Assertions.assertTrue(programs.get() > PROGRAMS, message);
+            Assertions.assertEquals(programs.get() - PROGRAMS, world.statistic.getSkippedPrograms(), message);
+        }
+        world.dispose();
+    }
+}